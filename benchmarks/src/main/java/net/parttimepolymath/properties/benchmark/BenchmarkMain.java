@@ -0,0 +1,64 @@
+package net.parttimepolymath.properties.benchmark;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.profile.StackProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * entry point for the benchmarks jar. This accepts the same arguments as the JMH command line, but unless profilers
+ * are named with -prof it reports the allocation rate of each benchmark with the gc profiler, and where threads spend
+ * their time, including blocked or waiting on each other, with the stack profiler.
+ * 
+ * @author robert
+ */
+public final class BenchmarkMain {
+    /**
+     * the exit status when the arguments cannot be parsed or the benchmarks fail.
+     */
+    private static final int FAILED = 1;
+
+    /**
+     * private constructor to prevent construction.
+     */
+    private BenchmarkMain() {
+
+    }
+
+    /**
+     * run the benchmarks.
+     * 
+     * @param args the JMH command line arguments.
+     * @throws IOException if help cannot be shown.
+     */
+    public static void main(final String[] args) throws IOException {
+        try {
+            CommandLineOptions cmd = new CommandLineOptions(args);
+            if (cmd.shouldHelp()) {
+                cmd.showHelp();
+                return;
+            }
+            if (cmd.shouldList()) {
+                new Runner(cmd).list();
+                return;
+            }
+            ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+            if (cmd.getProfilers().isEmpty()) {
+                options.addProfiler(GCProfiler.class).addProfiler(StackProfiler.class);
+            }
+            new Runner(options.build()).run();
+        } catch (CommandLineOptionException cloe) {
+            System.err.println("Error parsing command line: " + cloe.getMessage());
+            System.exit(FAILED);
+        } catch (RunnerException re) {
+            System.err.println("Error running benchmarks: " + re.getMessage());
+            System.exit(FAILED);
+        }
+    }
+}
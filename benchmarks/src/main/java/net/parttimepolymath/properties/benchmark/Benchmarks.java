@@ -0,0 +1,110 @@
+package net.parttimepolymath.properties.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * helpers shared by the benchmarks for setting up their files, and the cursor each thread reads its keys with.
+ * 
+ * @author robert
+ */
+public final class Benchmarks {
+    /**
+     * the distance apart that threads start in the keys. This is odd, so that threads start at different keys however
+     * many keys there are.
+     */
+    private static final int STRIDE = 4097;
+
+    /**
+     * private constructor to prevent construction.
+     */
+    private Benchmarks() {
+
+    }
+
+    /**
+     * write a properties file defining keys made from a prefix and a number, each with itself as its value.
+     * 
+     * @param path the file to write.
+     * @param prefix the start of each key.
+     * @param count the number of keys, numbered from 0.
+     * @return the path written.
+     * @throws IOException if the file cannot be written.
+     */
+    static Path writeProperties(final Path path, final String prefix, final int count) throws IOException {
+        Properties properties = new Properties();
+        for (int i = 0; i < count; i++) {
+            properties.setProperty(prefix + i, prefix + i);
+        }
+        return store(path, properties);
+    }
+
+    /**
+     * write a properties file. The file is written beside its final location and then moved into place, so a reader
+     * never sees it partly written.
+     * 
+     * @param path the file to write.
+     * @param properties the properties to write.
+     * @return the path written.
+     * @throws IOException if the file cannot be written.
+     */
+    static Path store(final Path path, final Properties properties) throws IOException {
+        Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), "benchmark", ".tmp");
+        try (OutputStream stream = Files.newOutputStream(temporary)) {
+            properties.store(stream, null);
+        }
+        return Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * recursively delete a file or directory.
+     * 
+     * @param file the file or directory to delete.
+     */
+    static void delete(final File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * the position of a thread in the keys it reads.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        /**
+         * the next position to read.
+         */
+        private int position;
+
+        /**
+         * start each thread at a different key.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            position = (int) Thread.currentThread().getId() * STRIDE;
+        }
+
+        /**
+         * @param count the number of keys, which must be a power of two.
+         * @return the next position to read.
+         */
+        int next(final int count) {
+            return position++ & count - 1;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package net.parttimepolymath.properties.benchmark;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.parttimepolymath.cache.SimpleLRUCache;
+import net.parttimepolymath.properties.resolver.CacheResolver;
+import net.parttimepolymath.properties.resolver.CacheResolverImpl;
+
+/**
+ * compares the W-TinyLFU backed CacheResolverImpl with the SimpleLRU cache it replaced, with threads reading a skewed
+ * mix of keys. Each read that misses adds the key to the cache, as PropertyResolver does. The number of threads is
+ * chosen with -t when running the benchmark.
+ * 
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CacheBenchmark {
+    /**
+     * the number of distinct keys read.
+     */
+    private static final int KEY_COUNT = 4096;
+    /**
+     * the number of reads in the precomputed sequence, which must be a power of two.
+     */
+    private static final int SEQUENCE_LENGTH = 1 << 16;
+    /**
+     * the skew of the key distribution, where larger values make a few keys more popular.
+     */
+    private static final double SKEW = 3.0;
+    /**
+     * seed for the key sequence, so that every run reads the same keys.
+     */
+    private static final long SEED = 42;
+
+    /**
+     * which cache to measure.
+     */
+    @Param({ "TinyLFU", "SimpleLRU" })
+    private String implementation;
+
+    /**
+     * the size of the cache.
+     */
+    @Param({ "64", "1024" })
+    private int cacheSize;
+
+    /**
+     * the cache being measured.
+     */
+    private CacheResolver cache;
+
+    /**
+     * the keys.
+     */
+    private String[] keys;
+
+    /**
+     * the sequence of indexes into keys that is read, skewed towards low indexes.
+     */
+    private int[] sequence;
+
+    /**
+     * build the keys, the sequence and the cache.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = "benchmark.key." + i;
+        }
+        Random random = new Random(SEED);
+        sequence = new int[SEQUENCE_LENGTH];
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            sequence[i] = (int) (Math.pow(random.nextDouble(), SKEW) * KEY_COUNT);
+        }
+        cache = "SimpleLRU".equals(implementation) ? new SimpleLRUResolver(cacheSize) : new CacheResolverImpl(cacheSize);
+    }
+
+    /**
+     * read one key, adding it to the cache if it was missing.
+     * 
+     * @param cursor the position of this thread in the sequence.
+     * @return the value read.
+     */
+    @Benchmark
+    public String read(final Benchmarks.Cursor cursor) {
+        String key = keys[sequence[cursor.next(SEQUENCE_LENGTH)]];
+        String value = cache.get(key);
+        if (value == null) {
+            cache.touchCache(key, key);
+            value = key;
+        }
+        return value;
+    }
+
+    /**
+     * the cache resolver as it was before it used W-TinyLFU, backed by SimpleLRU.
+     */
+    private static final class SimpleLRUResolver implements CacheResolver {
+        /**
+         * the cache.
+         */
+        private final SimpleLRUCache<String, String> cache;
+
+        /**
+         * primary constructor.
+         * 
+         * @param size the size of the cache.
+         */
+        SimpleLRUResolver(final int size) {
+            cache = new SimpleLRUCache<>(size);
+        }
+
+        @Override
+        public String get(final String key) {
+            return cache.get(key);
+        }
+
+        @Override
+        public void touchCache(final String key, final String value) {
+            if (get(key) == null) {
+                cache.put(key, value);
+            }
+        }
+
+        @Override
+        public long getGeneration() {
+            return 0;
+        }
+
+        @Override
+        public void touchCache(final String key, final String value, final int source, final long lookupGeneration) {
+            touchCache(key, value);
+        }
+
+        @Override
+        public void invalidate(final Collection<String> keys) {
+            // SimpleLRU cannot forget entries, which is one reason it was replaced
+        }
+
+        @Override
+        public long getHitCount() {
+            return 0;
+        }
+
+        @Override
+        public long getMissCount() {
+            return 0;
+        }
+
+        @Override
+        public long getEvictionCount() {
+            return 0;
+        }
+
+        @Override
+        public void invalidateSource(final int source) {
+            // SimpleLRU cannot forget entries, which is one reason it was replaced
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package net.parttimepolymath.properties.benchmark;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.net.ServerSocketFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.parttimepolymath.properties.PropertySource;
+import net.parttimepolymath.properties.PropertySourceConfig;
+import net.parttimepolymath.properties.PropertySourceFactory;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * measures PropertySource.get() for keys held in Consul, using a local MockWebServer in place of Consul so that the
+ * cost measured is that of the client, the HTTP stack and the loopback interface rather than of a real agent. Keys are
+ * read from Consul as they are looked up, either without or with caching, or are read in a single request when the
+ * source is built and answered from memory. The number of threads is chosen with -t when running the benchmark.
+ * 
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConsulBenchmark {
+    /**
+     * the number of distinct keys read, which must be a power of two.
+     */
+    static final int KEY_COUNT = 256;
+    /**
+     * the prefix the keys are held under in Consul.
+     */
+    private static final String PREFIX = "bench";
+    /**
+     * the refresh period used when the values are prefetched, long enough not to refresh during a benchmark.
+     */
+    private static final long REFRESH_MILLIS = TimeUnit.HOURS.toMillis(1);
+    /**
+     * the Consul index reported by the server.
+     */
+    private static final String CONSUL_INDEX = "42";
+    /**
+     * the logger of the server, which is quietened so that logging each request is not part of what is measured. A
+     * reference is held so that the setting is not lost if the logger is collected.
+     */
+    private static final Logger SERVER_LOGGER = Logger.getLogger(MockWebServer.class.getName());
+
+    /**
+     * how keys are read: "onDemand" reads each key from Consul when looked up, "cached" does so through a cache, and
+     * "prefetched" reads every key in a single request when the source is built.
+     */
+    @Param({ "onDemand", "cached", "prefetched" })
+    private String mode;
+
+    /**
+     * the server standing in for Consul.
+     */
+    private MockWebServer server;
+
+    /**
+     * the source being measured.
+     */
+    private PropertySource source;
+
+    /**
+     * keys that are found.
+     */
+    private String[] hits;
+
+    /**
+     * keys that are not found.
+     */
+    private String[] misses;
+
+    /**
+     * makes server sockets whose connections send each write at once. Otherwise the server sends the headers and body
+     * of a response in separate packets, and the body waits on the client's delayed acknowledgement of the headers,
+     * which would swamp the cost being measured. The sockets are bound as those of the default factory would be.
+     */
+    private static final class NoDelayServerSocketFactory extends ServerSocketFactory {
+        /**
+         * the backlog used when none is given, where anything less than 1 means the default of the socket.
+         */
+        private static final int DEFAULT_BACKLOG = 0;
+
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new ServerSocket() {
+                @Override
+                public Socket accept() throws IOException {
+                    Socket socket = super.accept();
+                    socket.setTcpNoDelay(true);
+                    return socket;
+                }
+            };
+        }
+
+        @Override
+        public ServerSocket createServerSocket(final int port) throws IOException {
+            return createServerSocket(port, DEFAULT_BACKLOG, null);
+        }
+
+        @Override
+        public ServerSocket createServerSocket(final int port, final int backlog) throws IOException {
+            return createServerSocket(port, backlog, null);
+        }
+
+        @Override
+        public ServerSocket createServerSocket(final int port, final int backlog, final InetAddress address) throws IOException {
+            ServerSocket socket = createServerSocket();
+            try {
+                socket.bind(new InetSocketAddress(address, port), backlog);
+            } catch (IOException ioe) {
+                socket.close();
+                throw ioe;
+            }
+            return socket;
+        }
+    }
+
+    /**
+     * start the server and build the source.
+     * 
+     * @throws IOException if the server cannot be started.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        hits = new String[KEY_COUNT];
+        misses = new String[KEY_COUNT];
+        StringBuilder listing = new StringBuilder("[");
+        for (int i = 0; i < KEY_COUNT; i++) {
+            hits[i] = "benchmark.consul." + i;
+            misses[i] = "benchmark.missing." + i;
+            String value = Base64.getEncoder().encodeToString(hits[i].getBytes(StandardCharsets.UTF_8));
+            listing.append(i == 0 ? "" : ",").append(String.format("{\"Key\":\"%s/%s\",\"Value\":\"%s\"}", PREFIX, hits[i], value));
+        }
+        final String recursed = listing.append(']').toString();
+        final String rawStart = String.format("/v1/kv/%s/", PREFIX);
+        final String rawEnd = "?raw";
+        final String recursePath = rawStart + "?recurse";
+
+        SERVER_LOGGER.setLevel(java.util.logging.Level.WARNING);
+        server = new MockWebServer();
+        server.setServerSocketFactory(new NoDelayServerSocketFactory());
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) throws InterruptedException {
+                String path = request.getPath();
+                if (path.equals(recursePath)) {
+                    return new MockResponse().setResponseCode(200).setHeader("X-Consul-Index", CONSUL_INDEX).setBody(recursed);
+                }
+                if (path.startsWith(rawStart) && path.endsWith(rawEnd)) {
+                    String key = path.substring(rawStart.length(), path.length() - rawEnd.length());
+                    if (key.startsWith("benchmark.consul.")) {
+                        return new MockResponse().setResponseCode(200).setBody(key);
+                    }
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        server.start();
+
+        PropertySourceConfig.Builder builder = PropertySourceConfig.builder().usingConsul(server.getHostName(), server.getPort(),
+                PREFIX, "prefetched".equals(mode) ? REFRESH_MILLIS : 0);
+        if ("cached".equals(mode)) {
+            builder.withCaching();
+        }
+        source = PropertySourceFactory.build(builder.build());
+    }
+
+    /**
+     * close the source and stop the server.
+     * 
+     * @throws IOException if the server cannot be stopped.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        source.close();
+        server.shutdown();
+    }
+
+    /**
+     * @param cursor the position of this thread in the keys.
+     * @return the value read.
+     */
+    @Benchmark
+    public String hit(final Benchmarks.Cursor cursor) {
+        return source.get(hits[cursor.next(KEY_COUNT)]);
+    }
+
+    /**
+     * @param cursor the position of this thread in the keys.
+     * @return null, as the key is not found.
+     */
+    @Benchmark
+    public String miss(final Benchmarks.Cursor cursor) {
+        return source.get(misses[cursor.next(KEY_COUNT)]);
+    }
+}
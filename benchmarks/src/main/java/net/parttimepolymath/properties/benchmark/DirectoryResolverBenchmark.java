@@ -0,0 +1,134 @@
+package net.parttimepolymath.properties.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.parttimepolymath.properties.resolver.DirectoryResolver;
+
+/**
+ * measures how long a DirectoryResolver takes to search and load a tree of properties files, for different numbers of
+ * files and different degrees of parallelism.
+ * 
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DirectoryResolverBenchmark {
+    /**
+     * how many files are placed in each directory of the tree.
+     */
+    private static final int FILES_PER_DIRECTORY = 25;
+    /**
+     * how many subdirectories each directory of the tree has.
+     */
+    private static final int FAN_OUT = 4;
+    /**
+     * how many levels deep the tree is.
+     */
+    private static final int DEPTH = 4;
+    /**
+     * how many properties each file defines.
+     */
+    private static final int KEYS_PER_FILE = 20;
+
+    /**
+     * how many files are in the tree.
+     */
+    @Param({ "10", "100", "1000", "5000" })
+    private int fileCount;
+
+    /**
+     * the parallelism of the pool the resolver works on.
+     */
+    @Param({ "1", "2", "4", "8" })
+    private int parallelism;
+
+    /**
+     * the root of the tree.
+     */
+    private Path root;
+
+    /**
+     * the pool the resolver works on.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * build the tree of files, spreading them across the directories.
+     * 
+     * @throws IOException if the files cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("DirectoryResolverBenchmark");
+        pool = new ForkJoinPool(parallelism);
+        for (int i = 0; i < fileCount; i++) {
+            Path dir = directoryFor(i / FILES_PER_DIRECTORY);
+            Files.createDirectories(dir);
+            Benchmarks.writeProperties(dir.resolve(String.format("file%05d.properties", i)), "key.", KEYS_PER_FILE);
+        }
+    }
+
+    /**
+     * remove the tree and the pool.
+     * 
+     * @throws IOException if the files cannot be removed.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        Benchmarks.delete(root.toFile());
+    }
+
+    /**
+     * search and load the tree.
+     * 
+     * @return a value read from the resolver, so that the work is not optimised away.
+     */
+    @Benchmark
+    public String load() {
+        DirectoryResolver resolver = new DirectoryResolver(root.toString(), DEPTH, DirectoryResolver.DEFAULT_GLOB, pool);
+        try {
+            return resolver.get("key.0");
+        } finally {
+            resolver.close();
+        }
+    }
+
+    /**
+     * find the directory for a batch of files, using the digits of the batch number to pick a path through the tree.
+     * 
+     * @param batch the batch number.
+     * @return the directory, which may not yet exist.
+     */
+    private Path directoryFor(final int batch) {
+        Path dir = root;
+        int remaining = batch;
+        for (int level = 1; level < DEPTH && remaining > 0; level++) {
+            dir = dir.resolve("d" + remaining % FAN_OUT);
+            remaining /= FAN_OUT;
+        }
+        return dir;
+    }
+}
@@ -0,0 +1,102 @@
+package net.parttimepolymath.properties.benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.parttimepolymath.properties.PropertySource;
+import net.parttimepolymath.properties.PropertySourceConfig;
+import net.parttimepolymath.properties.PropertySourceFactory;
+import net.parttimepolymath.properties.resolver.FeatureFlag;
+
+/**
+ * compares the cost of checking a feature flag in different ways against reading a plain field: with getFlag() on a
+ * caching source, with FeatureFlag.isEnabled(), and by invoking the method handle of the flag held in a static final
+ * field, which the JIT treats as a constant. Each is run with one thread.
+ * 
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FeatureFlagBenchmark {
+    /**
+     * the key of the flag.
+     */
+    private static final String KEY = "benchmark.flag";
+    /**
+     * the source the flag is read from. The invoker must be in a static final field, so the source is built statically.
+     */
+    private static final PropertySource SOURCE;
+    /**
+     * the flag.
+     */
+    private static final FeatureFlag FLAG;
+    /**
+     * the invoker of the flag, held where the JIT can treat it as a constant.
+     */
+    private static final MethodHandle INVOKER;
+
+    static {
+        System.setProperty(KEY, "true");
+        SOURCE = PropertySourceFactory
+                .build(PropertySourceConfig.builder().withSystemSnapshot(0).withEnvironmentSnapshot().withCaching().build());
+        FLAG = SOURCE.flag(KEY, false);
+        INVOKER = FLAG.getInvoker();
+    }
+
+    /**
+     * a plain field holding the same value, as the baseline.
+     */
+    private boolean field = true;
+
+    /**
+     * @return the value of the plain field.
+     */
+    @Benchmark
+    @Threads(1)
+    public boolean field() {
+        return field;
+    }
+
+    /**
+     * @return the value read with getFlag().
+     */
+    @Benchmark
+    @Threads(1)
+    public boolean getFlag() {
+        return SOURCE.getFlag(KEY);
+    }
+
+    /**
+     * @return the value read with isEnabled().
+     */
+    @Benchmark
+    @Threads(1)
+    public boolean isEnabled() {
+        return FLAG.isEnabled();
+    }
+
+    /**
+     * @return the value read through the invoker.
+     * @throws Throwable never, as the invoker only returns a constant.
+     */
+    @Benchmark
+    @Threads(1)
+    public boolean invoker() throws Throwable {
+        return (boolean) INVOKER.invokeExact();
+    }
+}
@@ -0,0 +1,187 @@
+package net.parttimepolymath.properties.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.parttimepolymath.properties.PropertySource;
+import net.parttimepolymath.properties.PropertySourceConfig;
+import net.parttimepolymath.properties.resolver.FileResolver;
+import net.parttimepolymath.properties.resolver.PropertyResolver;
+import net.parttimepolymath.properties.resolver.Resolver;
+
+/**
+ * measures lookups while a background thread keeps rewriting and reloading the properties file being read. Lookups
+ * are made either on the FileResolver itself, or on a caching PropertySource in front of it, whose cache is
+ * invalidated by each reload. The number of threads making lookups is chosen with -t when running the benchmark.
+ * 
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileReloadBenchmark {
+    /**
+     * the number of distinct keys read, which must be a power of two.
+     */
+    static final int KEY_COUNT = 256;
+    /**
+     * how many keys change value in each rewrite of the file.
+     */
+    private static final int CHANGED_PER_RELOAD = 16;
+
+    /**
+     * the pause in milliseconds between reloads.
+     */
+    @Param({ "1", "100" })
+    private long reloadMillis;
+
+    /**
+     * what is read: "resolver" for the FileResolver itself, or "cachedSource" for a caching PropertySource.
+     */
+    @Param({ "resolver", "cachedSource" })
+    private String layer;
+
+    /**
+     * the directory holding the properties file.
+     */
+    private Path directory;
+
+    /**
+     * the properties file.
+     */
+    private Path file;
+
+    /**
+     * the resolver reading the file.
+     */
+    private FileResolver resolver;
+
+    /**
+     * the caching source in front of the resolver.
+     */
+    private PropertySource source;
+
+    /**
+     * the keys.
+     */
+    private String[] keys;
+
+    /**
+     * the thread rewriting and reloading the file.
+     */
+    private Thread writer;
+
+    /**
+     * set to stop the writer.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * write the file, build the resolver and source, and start the writer.
+     * 
+     * @throws IOException if the file cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("FileReloadBenchmark");
+        keys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = "benchmark.key." + i;
+        }
+        file = directory.resolve("reloaded.properties");
+        write(0);
+        resolver = new FileResolver(file);
+        source = new PropertyResolver(PropertySourceConfig.builder().withCaching().build(),
+                Collections.<Resolver> singletonList(resolver));
+        stopped = false;
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                rewrite();
+            }
+        }, "FileReloadBenchmark-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * stop the writer, close the source and resolver, and remove the file.
+     * 
+     * @throws InterruptedException if interrupted while waiting for the writer to stop.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        stopped = true;
+        writer.join();
+        source.close();
+        resolver.close();
+        Benchmarks.delete(directory.toFile());
+    }
+
+    /**
+     * rewrite the file with some values changed and reload it, until stopped.
+     */
+    private void rewrite() {
+        int generation = 0;
+        while (!stopped) {
+            try {
+                write(++generation);
+                resolver.reload();
+                Thread.sleep(reloadMillis);
+            } catch (IOException ioe) {
+                throw new IllegalStateException(ioe);
+            } catch (InterruptedException ie) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * write the file, changing the values of a few keys each generation.
+     * 
+     * @param generation the generation being written.
+     * @throws IOException if the file cannot be written.
+     */
+    private void write(final int generation) throws IOException {
+        Properties properties = new Properties();
+        int first = generation * CHANGED_PER_RELOAD % KEY_COUNT;
+        for (int i = 0; i < KEY_COUNT; i++) {
+            boolean changed = i >= first && i < first + CHANGED_PER_RELOAD;
+            properties.setProperty(keys[i], changed ? keys[i] + "." + generation : keys[i]);
+        }
+        Benchmarks.store(file, properties);
+    }
+
+    /**
+     * read one key.
+     * 
+     * @param cursor the position of this thread in the keys.
+     * @return the value read.
+     */
+    @Benchmark
+    public String read(final Benchmarks.Cursor cursor) {
+        String key = keys[cursor.next(KEY_COUNT)];
+        return "resolver".equals(layer) ? resolver.get(key) : source.get(key);
+    }
+}
@@ -0,0 +1,117 @@
+package net.parttimepolymath.properties.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.parttimepolymath.properties.PropertySource;
+import net.parttimepolymath.properties.PropertySourceConfig;
+import net.parttimepolymath.properties.PropertySourceFactory;
+import net.parttimepolymath.properties.resolver.PropertyKey;
+
+/**
+ * compares reading keys with PropertySource.get() against reading them through handles from PropertySource.key(). The
+ * source snapshots the system properties and environment, so every source reports its changes and handles hold their
+ * values.
+ * 
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class KeyHandleBenchmark {
+    /**
+     * whether the source caches values.
+     */
+    @Param({ "false", "true" })
+    private boolean cached;
+
+    /**
+     * the source being measured.
+     */
+    private PropertySource source;
+
+    /**
+     * the directory holding the properties file.
+     */
+    private Path directory;
+
+    /**
+     * keys that are found.
+     */
+    private String[] keys;
+
+    /**
+     * handles on the keys.
+     */
+    private PropertyKey<?>[] handles;
+
+    /**
+     * write the properties file, build the source and obtain the handles.
+     * 
+     * @throws IOException if the file cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("KeyHandleBenchmark");
+        Path file = Benchmarks.writeProperties(directory.resolve("file.properties"), "benchmark.hit.",
+                PropertySourceBenchmark.KEY_COUNT);
+        PropertySourceConfig.Builder builder = PropertySourceConfig.builder().withSystemSnapshot(0).withEnvironmentSnapshot()
+                .withFiles(file.toString());
+        if (cached) {
+            builder.withCaching();
+        }
+        source = PropertySourceFactory.build(builder.build());
+        keys = new String[PropertySourceBenchmark.KEY_COUNT];
+        handles = new PropertyKey<?>[PropertySourceBenchmark.KEY_COUNT];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "benchmark.hit." + i;
+            handles[i] = source.key(keys[i]);
+        }
+    }
+
+    /**
+     * close the source and remove the file.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        source.close();
+        Benchmarks.delete(directory.toFile());
+    }
+
+    /**
+     * @param cursor the position of this thread in the keys.
+     * @return the value read.
+     */
+    @Benchmark
+    public String get(final Benchmarks.Cursor cursor) {
+        return source.get(keys[cursor.next(PropertySourceBenchmark.KEY_COUNT)]);
+    }
+
+    /**
+     * @param cursor the position of this thread in the keys.
+     * @return the value read.
+     */
+    @Benchmark
+    public Object handle(final Benchmarks.Cursor cursor) {
+        return handles[cursor.next(PropertySourceBenchmark.KEY_COUNT)].get();
+    }
+}
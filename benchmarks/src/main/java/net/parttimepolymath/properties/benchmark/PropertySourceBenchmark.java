@@ -0,0 +1,157 @@
+package net.parttimepolymath.properties.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.parttimepolymath.properties.PropertySource;
+import net.parttimepolymath.properties.PropertySourceConfig;
+import net.parttimepolymath.properties.PropertySourceFactory;
+
+/**
+ * measures PropertySource.get() for keys that are found and keys that are not, for chains of resolvers of different
+ * lengths built by PropertySourceFactory, with and without caching. For the "files" and "full" chains, found keys are
+ * defined only in the last source of the chain, so every lookup that is not cached walks the whole chain. For the
+ * "minimal" chain they are System properties, which come first, so only missing keys walk the whole chain. The number
+ * of threads is chosen with -t when running the benchmark.
+ * 
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PropertySourceBenchmark {
+    /**
+     * the number of distinct keys read, which must be a power of two.
+     */
+    static final int KEY_COUNT = 256;
+    /**
+     * the number of properties files in the chain.
+     */
+    private static final int FILE_COUNT = 3;
+
+    /**
+     * the resolvers in the chain: "minimal" is the System and Environment resolvers that are always present, "files"
+     * adds three properties files, and "full" also adds a directory of properties files.
+     */
+    @Param({ "minimal", "files", "full" })
+    private String chain;
+
+    /**
+     * whether the source caches values.
+     */
+    @Param({ "false", "true" })
+    private boolean cached;
+
+    /**
+     * the source being measured.
+     */
+    private PropertySource source;
+
+    /**
+     * the directory holding the properties files.
+     */
+    private Path directory;
+
+    /**
+     * keys that are found.
+     */
+    private String[] hits;
+
+    /**
+     * keys that are not found.
+     */
+    private String[] misses;
+
+    /**
+     * write the properties files and build the source.
+     * 
+     * @throws IOException if the files cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("PropertySourceBenchmark");
+        hits = new String[KEY_COUNT];
+        misses = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            hits[i] = "benchmark.hit." + i;
+            misses[i] = "benchmark.miss." + i;
+        }
+        PropertySourceConfig.Builder builder = PropertySourceConfig.builder();
+        if (cached) {
+            builder.withCaching();
+        }
+        if (!"minimal".equals(chain)) {
+            List<String> files = new ArrayList<>();
+            for (int i = 0; i < FILE_COUNT; i++) {
+                String prefix = i == FILE_COUNT - 1 && "files".equals(chain) ? "benchmark.hit." : "benchmark.file" + i + ".";
+                files.add(Benchmarks.writeProperties(directory.resolve("file" + i + ".properties"), prefix, KEY_COUNT).toString());
+            }
+            builder.withFiles(files);
+        }
+        if ("full".equals(chain)) {
+            Path tree = Files.createDirectories(directory.resolve("tree"));
+            Benchmarks.writeProperties(tree.resolve("a.properties"), "benchmark.tree.", KEY_COUNT);
+            Benchmarks.writeProperties(tree.resolve("b.properties"), "benchmark.hit.", KEY_COUNT);
+            builder.withDirectory(tree.toString());
+        }
+        if ("minimal".equals(chain)) {
+            for (String key : hits) {
+                System.setProperty(key, key);
+            }
+        }
+        source = PropertySourceFactory.build(builder.build());
+    }
+
+    /**
+     * close the source and remove the files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        source.close();
+        if ("minimal".equals(chain)) {
+            for (String key : hits) {
+                System.clearProperty(key);
+            }
+        }
+        Benchmarks.delete(directory.toFile());
+    }
+
+    /**
+     * @param cursor the position of this thread in the keys.
+     * @return the value read.
+     */
+    @Benchmark
+    public String hit(final Benchmarks.Cursor cursor) {
+        return source.get(hits[cursor.next(KEY_COUNT)]);
+    }
+
+    /**
+     * @param cursor the position of this thread in the keys.
+     * @return null, as the key is not found.
+     */
+    @Benchmark
+    public String miss(final Benchmarks.Cursor cursor) {
+        return source.get(misses[cursor.next(KEY_COUNT)]);
+    }
+}
@@ -0,0 +1,122 @@
+package net.parttimepolymath.properties.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.parttimepolymath.properties.PropertySource;
+import net.parttimepolymath.properties.PropertySourceConfig;
+import net.parttimepolymath.properties.PropertySourceFactory;
+
+/**
+ * measures getNumber() and getFlag(), with and without caching, reading numbers and flags from a properties file. The
+ * number of threads is chosen with -t when running the benchmark.
+ * 
+ * @author robert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TypedValueBenchmark {
+    /**
+     * the number of distinct keys of each type read, which must be a power of two.
+     */
+    static final int KEY_COUNT = 256;
+
+    /**
+     * whether the source caches values.
+     */
+    @Param({ "false", "true" })
+    private boolean cached;
+
+    /**
+     * the source being measured.
+     */
+    private PropertySource source;
+
+    /**
+     * the directory holding the properties file.
+     */
+    private Path directory;
+
+    /**
+     * keys whose values are numbers.
+     */
+    private String[] numbers;
+
+    /**
+     * keys whose values are flags.
+     */
+    private String[] flags;
+
+    /**
+     * write the properties file and build the source.
+     * 
+     * @throws IOException if the file cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("TypedValueBenchmark");
+        numbers = new String[KEY_COUNT];
+        flags = new String[KEY_COUNT];
+        Properties properties = new Properties();
+        for (int i = 0; i < KEY_COUNT; i++) {
+            numbers[i] = "benchmark.number." + i;
+            flags[i] = "benchmark.flag." + i;
+            properties.setProperty(numbers[i], Integer.toString(i * KEY_COUNT));
+            properties.setProperty(flags[i], Boolean.toString(i % 2 == 0));
+        }
+        Path file = Benchmarks.store(directory.resolve("typed.properties"), properties);
+        PropertySourceConfig.Builder builder = PropertySourceConfig.builder().withFiles(file.toString());
+        if (cached) {
+            builder.withCaching();
+        }
+        source = PropertySourceFactory.build(builder.build());
+    }
+
+    /**
+     * close the source and remove the file.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        source.close();
+        Benchmarks.delete(directory.toFile());
+    }
+
+    /**
+     * @param cursor the position of this thread in the keys.
+     * @return the value read.
+     */
+    @Benchmark
+    public int number(final Benchmarks.Cursor cursor) {
+        return source.getNumber(numbers[cursor.next(KEY_COUNT)]);
+    }
+
+    /**
+     * @param cursor the position of this thread in the keys.
+     * @return the value read.
+     */
+    @Benchmark
+    public boolean flag(final Benchmarks.Cursor cursor) {
+        return source.getFlag(flags[cursor.next(KEY_COUNT)]);
+    }
+}
@@ -1,14 +1,25 @@
 package net.parttimepolymath.properties;
 
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+import net.parttimepolymath.properties.resolver.FeatureFlag;
+import net.parttimepolymath.properties.resolver.PropertyKey;
+import net.parttimepolymath.properties.resolver.PropertyListener;
+import net.parttimepolymath.properties.resolver.PropertySourceStatistics;
 import net.parttimepolymath.properties.resolver.Resolver;
 
 /**
  * This is the sole access point for properties. Implementations of this class should not be instantiated directly,
  * but instead obtained via the factory class.
+ * <p>
+ * The typed accessors, such as getNumber() and getFlag(), ignore white space around the value they parse.
  * 
  * @author robert
  */
-public interface PropertySource extends Resolver {
+public interface PropertySource extends Resolver, Closeable {
 
     /**
      * find a value for the specified key and try to treat it as a number.
@@ -45,4 +56,152 @@ public interface PropertySource extends Resolver {
      */
     boolean getFlag(String key, boolean defaultValue);
 
+    /**
+     * find a value for the specified key and try to treat it as a long.
+     * 
+     * @param key the key to look up. This is case sensitive.
+     * @param defaultValue the value to return if the key cannot be resolved.
+     * @return the discovered value, or defaultValue if it cannot be found or could not be parsed as a number.
+     */
+    long getLong(String key, long defaultValue);
+
+    /**
+     * find a value for the specified key and try to treat it as a double.
+     * 
+     * @param key the key to look up. This is case sensitive.
+     * @param defaultValue the value to return if the key cannot be resolved.
+     * @return the discovered value, or defaultValue if it cannot be found or could not be parsed as a number.
+     */
+    double getDouble(String key, double defaultValue);
+
+    /**
+     * find a value for the specified key and try to treat it as a duration. The value may be an ISO-8601 duration such
+     * as "PT30S", or a whole number followed by a unit of "ns", "us", "ms", "s", "m", "h" or "d", such as "500ms". A
+     * number without a unit is taken as milliseconds.
+     * 
+     * @param key the key to look up. This is case sensitive.
+     * @param defaultValue the value to return if the key cannot be resolved.
+     * @return the discovered value, or defaultValue if it cannot be found or could not be parsed as a duration.
+     */
+    Duration getDuration(String key, Duration defaultValue);
+
+    /**
+     * find a value for the specified key and try to treat it as a size in bytes. The value is a whole number followed
+     * by an optional unit of "k", "m", "g" or "t", optionally followed by "b" or "ib", such as "64k" or "10MB". Case is
+     * ignored and every unit is a power of 1024.
+     * 
+     * @param key the key to look up. This is case sensitive.
+     * @param defaultValue the value to return if the key cannot be resolved.
+     * @return the discovered value, or defaultValue if it cannot be found or could not be parsed as a size.
+     */
+    long getSize(String key, long defaultValue);
+
+    /**
+     * find a value for the specified key and try to treat it as the name of a constant of an enumeration. The name is
+     * matched exactly if possible, otherwise ignoring case.
+     * 
+     * @param key the key to look up. This is case sensitive.
+     * @param type the non-null class of the enumeration.
+     * @param defaultValue the value to return if the key cannot be resolved.
+     * @param <E> the type of the enumeration.
+     * @return the discovered value, or defaultValue if it cannot be found or does not name a constant.
+     */
+    <E extends Enum<E>> E getEnum(String key, Class<E> type, E defaultValue);
+
+    /**
+     * find a value for the specified key and treat it as a comma separated list. Each entry is trimmed, and empty
+     * entries are dropped.
+     * 
+     * @param key the key to look up. This is case sensitive.
+     * @return the discovered values, or an empty list if the key cannot be found. The list is unmodifiable.
+     */
+    List<String> getList(String key);
+
+    /**
+     * obtain a handle on the value of a key, for code that reads the same key many times. When every source reports
+     * its changes, the value is looked up once and held by the handle until a source reloads, so reading it costs no
+     * more than reading a field. Otherwise the key is looked up each time the handle is read.
+     * 
+     * @param key the key, which is case sensitive. If null or blank, the handle always reads null.
+     * @return a non-null handle on the value, which reads null if the key cannot be found.
+     */
+    PropertyKey<String> key(String key);
+
+    /**
+     * obtain a handle on the typed value of a key, for code that reads the same key many times. The raw value is only
+     * parsed again when it changes.
+     * 
+     * @param key the key, which is case sensitive. If null or blank, the handle always reads the default.
+     * @param parser the non-null function that converts the raw value. If it throws or returns null, the default is
+     *            used.
+     * @param defaultValue the value read if the key cannot be found or its value cannot be parsed, may be null.
+     * @param <T> the type of the value.
+     * @return a non-null handle on the value.
+     */
+    <T> PropertyKey<T> key(String key, Function<String, T> parser, T defaultValue);
+
+    /**
+     * obtain a feature flag, for a boolean that is checked far more often than it changes. The flag is kept up to date
+     * as sources reload, or if some source cannot report its changes, by resolving it again every second. It is
+     * resolved on the thread that delivers change notifications, so it changes shortly after a reload rather than
+     * during it. Asking for the same key and default again returns the same flag.
+     * 
+     * @param key the key, which is case sensitive. If null or blank, the flag always has the default value.
+     * @param defaultValue the value if the key cannot be found.
+     * @return a non-null flag.
+     */
+    FeatureFlag flag(String key, boolean defaultValue);
+
+    /**
+     * obtain a view of the keys starting with a prefix. Keys given to the view are relative to the prefix, so that with
+     * a prefix of "db.pool." looking up "size" finds "db.pool.size". The view sees changes to this source, and closing
+     * it has no effect.
+     * 
+     * @param prefix the prefix, which is case sensitive. If null or blank, the view sees every key.
+     * @return a non-null view of this source.
+     */
+    PropertySource withPrefix(String prefix);
+
+    /**
+     * register a listener to be told when the value resolved for a key changes. Changes are detected when a source
+     * reports that it has reloaded, which files and directories do when they are edited, and Consul does when
+     * prefetching or watching. Each change is reported once, even if several sources change the key together.
+     * 
+     * @param key the key to watch, which is case sensitive. Null or blank is ignored.
+     * @param listener the listener to tell. Null is ignored.
+     */
+    void addListener(String key, PropertyListener listener);
+
+    /**
+     * register a listener to be told when the value resolved for any key starting with a prefix changes, including
+     * keys that are added or removed.
+     * 
+     * @param prefix the prefix to watch, which is case sensitive. If null or blank, every key that can be listed is
+     *            watched.
+     * @param listener the listener to tell. Null is ignored.
+     */
+    void addPrefixListener(String prefix, PropertyListener listener);
+
+    /**
+     * stop telling a listener about changes, for every key and prefix it was registered for.
+     * 
+     * @param listener the listener to remove.
+     */
+    void removeListener(PropertyListener listener);
+
+    /**
+     * stop any background work being done by the sources, such as periodic refreshes. The source may still be used
+     * afterwards, but will no longer see changes.
+     */
+    @Override
+    void close();
+
+    /**
+     * obtain what has been recorded about lookups since this was built: how often the caches answered, and for each
+     * resolver in the chain how often it found keys, how long it took, and how often it reloaded.
+     * 
+     * @return a non-null snapshot of the statistics, which does not change as further lookups are made.
+     */
+    PropertySourceStatistics getStatistics();
+
 }
@@ -4,8 +4,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import net.jcip.annotations.ThreadSafe;
+import net.parttimepolymath.properties.consul.ConsulClientImpl;
+import net.parttimepolymath.properties.consul.ConsulTransport;
+import net.parttimepolymath.properties.resolver.DirectoryResolver;
 
 /**
  * simple class using a builder pattern to construct a configuration to pass to the property source factory.
@@ -17,16 +21,64 @@ public final class PropertySourceConfig {
     /**
      * default size of the cache.
      */
-    public static final int CACHE_SIZE = 64;
+    public static final int CACHE_SIZE = 1024;
+    /**
+     * default size of the negative cache.
+     */
+    public static final int NEGATIVE_CACHE_SIZE = 1024;
+    /**
+     * default time to live, in milliseconds, of an entry in the negative cache.
+     */
+    public static final long NEGATIVE_CACHE_TTL = 30000;
+    /**
+     * default period, in milliseconds, at which a snapshot of the system properties is checked for changes.
+     */
+    public static final long SYSTEM_SNAPSHOT_REFRESH = 1000;
 
     /**
      * will local caching be used?
      */
     private boolean useCache;
+    /**
+     * the maximum number of resolved values cached.
+     */
+    private int cacheSize = CACHE_SIZE;
+    /**
+     * how long in milliseconds a resolved value is cached, 0 if until it is invalidated.
+     */
+    private long cacheTtl;
+    /**
+     * the maximum number of absent keys remembered, 0 if negative caching is not used.
+     */
+    private int negativeCacheSize;
+    /**
+     * how long in milliseconds an absent key is remembered.
+     */
+    private long negativeCacheTtl;
+    /**
+     * are the system properties copied, rather than read on each lookup?
+     */
+    private boolean systemSnapshot;
+    /**
+     * the period in milliseconds at which the copy of the system properties is checked for changes, 0 if never.
+     */
+    private long systemSnapshotRefresh;
+    /**
+     * is the environment copied, rather than read on each lookup?
+     */
+    private boolean environmentSnapshot;
+    /**
+     * can environment variables also be found by their relaxed names?
+     */
+    private boolean relaxedEnvironmentNames;
     /**
      * the list of files used for the file resolver.
      */
     private List<String> files;
+    /**
+     * should file content be checksummed to avoid parsing unchanged files again?
+     */
+    private boolean useFileChecksums;
     /**
      * the base class used to define the root of the resource search.
      */
@@ -40,6 +92,14 @@ public final class PropertySourceConfig {
      * the path to use for the directory resolver.
      */
     private String directory;
+    /**
+     * how many levels of directory the directory resolver searches, 1 being just the directory itself.
+     */
+    private int directoryDepth = 1;
+    /**
+     * the glob that the names of files used by the directory resolver must match.
+     */
+    private String directoryGlob = DirectoryResolver.DEFAULT_GLOB;
 
     /**
      * the host or IP address for Consul.
@@ -56,6 +116,57 @@ public final class PropertySourceConfig {
      */
     private String consulPrefix;
 
+    /**
+     * the period in milliseconds at which everything under the Consul prefix is re-read, 0 to read each key on demand.
+     */
+    private long consulRefresh;
+
+    /**
+     * the longest time in seconds a Consul blocking query is held open, 0 if the prefix is not watched.
+     */
+    private long consulWatch;
+
+    /**
+     * the connections and settings used to talk to Consul, or null to use the shared transport.
+     */
+    private ConsulTransport consulTransport;
+
+    /**
+     * the file values read from Consul are saved to, or null if they are not saved.
+     */
+    private String consulSnapshot;
+
+    /**
+     * the time in milliseconds allowed to connect to Consul.
+     */
+    private long consulConnectTimeout;
+
+    /**
+     * the time in milliseconds allowed between reads of a response from Consul.
+     */
+    private long consulReadTimeout;
+
+    /**
+     * the number of consecutive failed requests to Consul after which requests stop for a while, 0 if they never stop.
+     */
+    private int consulFailureThreshold;
+
+    /**
+     * the pause in milliseconds, once requests to Consul have stopped, before each check of whether it has recovered.
+     */
+    private long consulOpenMillis;
+
+    /**
+     * the executor that property change notifications are delivered on, or null to use a background thread belonging to
+     * the PropertySource.
+     */
+    private Executor listenerExecutor;
+
+    /**
+     * the name the statistics of the PropertySource are registered with JMX under, or null if they are not registered.
+     */
+    private String jmxName;
+
     /**
      * private constructor to prevent direct construction.
      */
@@ -73,10 +184,70 @@ public final class PropertySourceConfig {
     /**
      * get the cache size.
      * 
-     * @return 0 if we are not using the cache, the default size otherwise.
+     * @return 0 if we are not using the cache, the configured size otherwise.
      */
     public int getCacheSize() {
-        return useCache ? CACHE_SIZE : 0;
+        return useCache ? cacheSize : 0;
+    }
+
+    /**
+     * @return how long in milliseconds a resolved value is cached, 0 if it is cached until a source reports a change.
+     */
+    public long getCacheTtl() {
+        return cacheTtl;
+    }
+
+    /**
+     * @return true if absent keys will be remembered.
+     */
+    public boolean isUseNegativeCache() {
+        return negativeCacheSize > 0;
+    }
+
+    /**
+     * get the negative cache size.
+     * 
+     * @return 0 if we are not using the negative cache, the configured size otherwise.
+     */
+    public int getNegativeCacheSize() {
+        return negativeCacheSize;
+    }
+
+    /**
+     * @return the time in milliseconds that an absent key is remembered, 0 if we are not using the negative cache.
+     */
+    public long getNegativeCacheTtl() {
+        return negativeCacheTtl;
+    }
+
+    /**
+     * @return true if the system properties are copied when the PropertySource is built, rather than read on each
+     *         lookup.
+     */
+    public boolean isSystemSnapshot() {
+        return systemSnapshot;
+    }
+
+    /**
+     * @return the period in milliseconds at which the copy of the system properties is checked for changes, or 0 if it
+     *         is not checked.
+     */
+    public long getSystemSnapshotRefresh() {
+        return systemSnapshotRefresh;
+    }
+
+    /**
+     * @return true if the environment is copied when the PropertySource is built, rather than read on each lookup.
+     */
+    public boolean isEnvironmentSnapshot() {
+        return environmentSnapshot;
+    }
+
+    /**
+     * @return true if environment variables can also be found by their relaxed names.
+     */
+    public boolean isRelaxedEnvironmentNames() {
+        return relaxedEnvironmentNames;
     }
 
     /**
@@ -86,6 +257,13 @@ public final class PropertySourceConfig {
         return files;
     }
 
+    /**
+     * @return true if file content is checksummed so that files which are touched but unchanged are not parsed again.
+     */
+    public boolean isUseFileChecksums() {
+        return useFileChecksums;
+    }
+
     /**
      * @return the resourceClass
      */
@@ -108,6 +286,20 @@ public final class PropertySourceConfig {
         return directory;
     }
 
+    /**
+     * @return the directoryDepth
+     */
+    public int getDirectoryDepth() {
+        return directoryDepth;
+    }
+
+    /**
+     * @return the directoryGlob
+     */
+    public String getDirectoryGlob() {
+        return directoryGlob;
+    }
+
     /**
      * @return the consulHost
      */
@@ -129,6 +321,82 @@ public final class PropertySourceConfig {
         return consulPrefix;
     }
 
+    /**
+     * @return the period in milliseconds at which everything under the Consul prefix is re-read, or 0 if each key is
+     *         read from Consul on demand.
+     */
+    public long getConsulRefresh() {
+        return consulRefresh;
+    }
+
+    /**
+     * @return the longest time in seconds a Consul blocking query watching the prefix is held open, or 0 if the prefix
+     *         is not watched.
+     */
+    public long getConsulWatch() {
+        return consulWatch;
+    }
+
+    /**
+     * @return the connections and settings used to talk to Consul, or null to use the shared transport.
+     */
+    public ConsulTransport getConsulTransport() {
+        return consulTransport;
+    }
+
+    /**
+     * @return the path of the file values read from Consul are saved to, or null if they are not saved.
+     */
+    public String getConsulSnapshot() {
+        return consulSnapshot;
+    }
+
+    /**
+     * @return the time in milliseconds allowed to connect to Consul.
+     */
+    public long getConsulConnectTimeout() {
+        return consulConnectTimeout;
+    }
+
+    /**
+     * @return the time in milliseconds allowed between reads of a response from Consul.
+     */
+    public long getConsulReadTimeout() {
+        return consulReadTimeout;
+    }
+
+    /**
+     * @return the number of consecutive failed requests to Consul after which requests stop for a while, or 0 if they
+     *         never stop.
+     */
+    public int getConsulFailureThreshold() {
+        return consulFailureThreshold;
+    }
+
+    /**
+     * @return the pause in milliseconds, once requests to Consul have stopped, before each check of whether it has
+     *         recovered.
+     */
+    public long getConsulOpenMillis() {
+        return consulOpenMillis;
+    }
+
+    /**
+     * @return the executor that property change notifications are delivered on, or null to use a background thread
+     *         belonging to the PropertySource.
+     */
+    public Executor getListenerExecutor() {
+        return listenerExecutor;
+    }
+
+    /**
+     * @return the name the statistics of the PropertySource are registered with JMX under, or null if they are not
+     *         registered.
+     */
+    public String getJmxName() {
+        return jmxName;
+    }
+
     /**
      * obtain a builder to construct a config instance with.
      * 
@@ -158,6 +426,10 @@ public final class PropertySourceConfig {
             instance.useCache = false;
             instance.files = Collections.emptyList();
             instance.resources = Collections.emptyList();
+            instance.consulConnectTimeout = ConsulTransport.DEFAULT_CONNECT_TIMEOUT;
+            instance.consulReadTimeout = ConsulTransport.DEFAULT_READ_TIMEOUT;
+            instance.consulFailureThreshold = ConsulClientImpl.DEFAULT_FAILURE_THRESHOLD;
+            instance.consulOpenMillis = ConsulClientImpl.DEFAULT_OPEN_MILLIS;
         }
 
         /**
@@ -166,7 +438,113 @@ public final class PropertySourceConfig {
          * @return the Builder instance.
          */
         public Builder withCaching() {
-            instance.useCache = true;
+            return withCaching(CACHE_SIZE);
+        }
+
+        /**
+         * specify that local caching of recently resolved properties is done, holding up to the given number of values.
+         * The values kept are those read most often.
+         * 
+         * @param size the maximum number of values to cache. If less than 1, caching is not used.
+         * @return the Builder instance.
+         */
+        public Builder withCaching(final int size) {
+            return withCaching(size, 0);
+        }
+
+        /**
+         * specify that local caching of recently resolved properties is done, holding up to the given number of values
+         * for no longer than the given time. Cached values are also dropped as soon as the source they came from
+         * reports a change, so the time to live only matters for sources that cannot report changes, such as Consul
+         * when it is not prefetched.
+         * 
+         * @param size the maximum number of values to cache. If less than 1, caching is not used.
+         * @param ttlMillis how long in milliseconds to cache a value. If less than 1, values are cached until a change
+         *            is reported.
+         * @return the Builder instance.
+         */
+        public Builder withCaching(final int size, final long ttlMillis) {
+            instance.useCache = size > 0;
+            instance.cacheSize = size > 0 ? size : CACHE_SIZE;
+            instance.cacheTtl = Math.max(0, ttlMillis);
+            return this;
+        }
+
+        /**
+         * specify that keys which could not be resolved are remembered for a while, so that repeated lookups for them
+         * do not have to search every source again. Uses the default size and time to live.
+         * 
+         * @return the Builder instance.
+         */
+        public Builder withNegativeCaching() {
+            return withNegativeCaching(NEGATIVE_CACHE_SIZE, NEGATIVE_CACHE_TTL);
+        }
+
+        /**
+         * specify that keys which could not be resolved are remembered for a while, so that repeated lookups for them
+         * do not have to search every source again. Remembered keys are forgotten early if a source reloads.
+         * 
+         * @param size the maximum number of absent keys to remember. If less than 1, negative caching is not used.
+         * @param ttlMillis how long in milliseconds to remember an absent key. If less than 1, negative caching is not used.
+         * @return the Builder instance.
+         */
+        public Builder withNegativeCaching(final int size, final long ttlMillis) {
+            if (size < 1 || ttlMillis < 1) {
+                instance.negativeCacheSize = 0;
+                instance.negativeCacheTtl = 0;
+            } else {
+                instance.negativeCacheSize = size;
+                instance.negativeCacheTtl = ttlMillis;
+            }
+            return this;
+        }
+
+        /**
+         * specify that the system properties are copied when the PropertySource is built, so that lookups do not read
+         * the synchronised system properties. The copy is checked for changes at the default period.
+         * 
+         * @return the Builder instance.
+         */
+        public Builder withSystemSnapshot() {
+            return withSystemSnapshot(SYSTEM_SNAPSHOT_REFRESH);
+        }
+
+        /**
+         * specify that the system properties are copied when the PropertySource is built, so that lookups do not read
+         * the synchronised system properties. Properties set later are seen once the copy is next checked, and
+         * listeners are told about them.
+         * 
+         * @param refreshMillis the period in milliseconds at which the copy is checked for changes. If less than 1, it
+         *            is never checked, so properties set later are not seen.
+         * @return the Builder instance.
+         */
+        public Builder withSystemSnapshot(final long refreshMillis) {
+            instance.systemSnapshot = true;
+            instance.systemSnapshotRefresh = Math.max(0, refreshMillis);
+            return this;
+        }
+
+        /**
+         * specify that the environment is copied when the PropertySource is built. Variables can only be found by
+         * their actual names.
+         * 
+         * @return the Builder instance.
+         */
+        public Builder withEnvironmentSnapshot() {
+            return withEnvironmentSnapshot(false);
+        }
+
+        /**
+         * specify that the environment is copied when the PropertySource is built. The environment does not change
+         * while the process runs, so nothing is lost by this.
+         * 
+         * @param relaxedNames if true, each variable can also be found by its name in lower case with underscores
+         *            replaced by dots, so that A_B_C can be found as a.b.c.
+         * @return the Builder instance.
+         */
+        public Builder withEnvironmentSnapshot(final boolean relaxedNames) {
+            instance.environmentSnapshot = true;
+            instance.relaxedEnvironmentNames = relaxedNames;
             return this;
         }
 
@@ -193,6 +571,18 @@ public final class PropertySourceConfig {
             return withFiles(Arrays.asList(files));
         }
 
+        /**
+         * specify that when the modification time of a properties file changes, its content is checksummed and it is
+         * only parsed again if the content has really changed. This trades some extra reading for less parsing when
+         * files are frequently touched without being changed.
+         * 
+         * @return the Builder instance.
+         */
+        public Builder withFileChecksums() {
+            instance.useFileChecksums = true;
+            return this;
+        }
+
         /**
          * specify a directory containing *.properties files that will be used.
          * 
@@ -204,6 +594,22 @@ public final class PropertySourceConfig {
             return this;
         }
 
+        /**
+         * specify the root of a tree of directories containing files that will be used. The tree is searched and the
+         * files are parsed in parallel.
+         * 
+         * @param path the path to the root directory, which is assumed to be a good path pointing at a directory.
+         * @param maxDepth how many levels of directory to search, 1 being just the root directory itself.
+         * @param glob the glob that the names of the files to use must match, such as "*.properties".
+         * @return the Builder instance.
+         */
+        public Builder withDirectoryTree(final String path, final int maxDepth, final String glob) {
+            instance.directory = path;
+            instance.directoryDepth = maxDepth;
+            instance.directoryGlob = glob;
+            return this;
+        }
+
         /**
          * specify a class that will be used as the reference point for resolving resource property files.
          * 
@@ -252,14 +658,135 @@ public final class PropertySourceConfig {
          * @return the Builder instance.
          */
         public Builder usingConsul(final String host, int port, String prefix) {
+            return usingConsul(host, port, prefix, 0);
+        }
+
+        /**
+         * Include Consul in the resolution chain, reading everything under the prefix in a single request and answering
+         * lookups from memory. The values are re-read in the background with the specified period.
+         * 
+         * @param host the target host name or IP Address of the Consul service. All parameters are ignored if host is null.
+         * @param port the port to lookup (8500 is the default for Consul)
+         * @param prefix the base prefix for lookups. May be null or empty.
+         * @param refreshMillis the period in milliseconds at which the values are re-read. If less than 1, each key is
+         *            instead read from Consul when it is looked up.
+         * @return the Builder instance.
+         */
+        public Builder usingConsul(final String host, final int port, final String prefix, final long refreshMillis) {
             if (host != null) {
                 instance.consulHost = host;
                 instance.consulPort = port;
                 instance.consulPrefix = prefix;
+                instance.consulRefresh = refreshMillis < 1 ? 0 : refreshMillis;
             }
             return this;
         }
 
+        /**
+         * Watch everything under the Consul prefix with blocking queries, so that changes are seen as soon as they are
+         * made without polling. Lookups are answered from memory. This takes precedence over any refresh period, and
+         * is ignored unless usingConsul() is also specified.
+         * 
+         * @param waitSeconds the longest time in seconds Consul should hold each blocking query open. Consul caps this at
+         *            600. If less than 1, the prefix is not watched.
+         * @return the Builder instance.
+         */
+        public Builder withConsulWatch(final long waitSeconds) {
+            instance.consulWatch = waitSeconds < 1 ? 0 : waitSeconds;
+            return this;
+        }
+
+        /**
+         * save the values read from Consul to a local file each time they change, and start from that file when next
+         * constructed. Lookups are then answered as soon as the PropertySource is built, even if Consul cannot be
+         * reached, while Consul is read in the background. Ignored unless usingConsul() is also specified with a
+         * refresh period, or withConsulWatch() is specified.
+         * 
+         * @param path the path of the file to save to. If null or blank, values are not saved.
+         * @return the Builder instance.
+         */
+        public Builder withConsulSnapshot(final String path) {
+            instance.consulSnapshot = path == null || path.isEmpty() ? null : path;
+            return this;
+        }
+
+        /**
+         * talk to Consul using the supplied transport, rather than the transport shared by default. A transport can
+         * be shared by several property sources, which then share its connections. Its timeouts are used unless
+         * withConsulTimeouts() is called afterwards. Ignored unless usingConsul() is also specified.
+         * 
+         * @param transport the transport to use. If null, the shared transport is used.
+         * @return the Builder instance.
+         */
+        public Builder withConsulTransport(final ConsulTransport transport) {
+            instance.consulTransport = transport;
+            ConsulTransport timeouts = transport == null ? ConsulTransport.shared() : transport;
+            instance.consulConnectTimeout = timeouts.getConnectTimeout();
+            instance.consulReadTimeout = timeouts.getReadTimeout();
+            return this;
+        }
+
+        /**
+         * set how long to wait for Consul before treating a request as failed. Ignored unless usingConsul() is also
+         * specified.
+         * 
+         * @param connectMillis the time in milliseconds allowed to connect. If less than 1, the default is used.
+         * @param readMillis the time in milliseconds allowed between reads of a response. If less than 1, the default
+         *            is used.
+         * @return the Builder instance.
+         */
+        public Builder withConsulTimeouts(final long connectMillis, final long readMillis) {
+            instance.consulConnectTimeout = connectMillis < 1 ? ConsulTransport.DEFAULT_CONNECT_TIMEOUT : connectMillis;
+            instance.consulReadTimeout = readMillis < 1 ? ConsulTransport.DEFAULT_READ_TIMEOUT : readMillis;
+            return this;
+        }
+
+        /**
+         * set when to stop making requests to Consul because it appears to be down. After the given number of
+         * consecutive failures, lookups are answered with the values last read from Consul without waiting, and a
+         * background check is made after each pause until Consul answers again. Ignored unless usingConsul() is also
+         * specified.
+         * 
+         * @param failureThreshold the number of consecutive failures after which requests stop. If less than 1,
+         *            requests never stop, although values last read are still used when a request fails.
+         * @param openMillis the pause in milliseconds before each check of whether Consul has recovered. If less than
+         *            1, the default is used.
+         * @return the Builder instance.
+         */
+        public Builder withConsulCircuitBreaker(final int failureThreshold, final long openMillis) {
+            instance.consulFailureThreshold = failureThreshold < 1 ? 0 : failureThreshold;
+            instance.consulOpenMillis = openMillis < 1 ? ConsulClientImpl.DEFAULT_OPEN_MILLIS : openMillis;
+            return this;
+        }
+
+        /**
+         * deliver property change notifications on the supplied executor, rather than on a background thread belonging to
+         * the PropertySource. Notifications are still delivered one at a time, in order. Feature flags are also resolved
+         * again on this executor, and finding which values changed may block on a source such as Consul.
+         * 
+         * @param executor the executor to use. If null, the PropertySource's own thread is used.
+         * @return the Builder instance.
+         */
+        public Builder withListenerExecutor(final Executor executor) {
+            instance.listenerExecutor = executor;
+            return this;
+        }
+
+        /**
+         * register the statistics of the PropertySource with the platform MBean server, as
+         * net.parttimepolymath.properties:type=PropertySource,name=<i>name</i>, so that they can be read with any JMX
+         * client. They are unregistered when the PropertySource is closed. Statistics are always kept, and can be read
+         * with getStatistics() whether or not they are registered.
+         * 
+         * @param name the name to register under, which should be unique within the JVM. If null or blank, the
+         *            statistics are not registered.
+         * @return the Builder instance.
+         */
+        public Builder withJmx(final String name) {
+            instance.jmxName = name == null || name.isEmpty() ? null : name;
+            return this;
+        }
+
         /**
          * return the constructed instances of the configuration.
          * 
@@ -1,17 +1,24 @@
 package net.parttimepolymath.properties;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
 import net.jcip.annotations.ThreadSafe;
+import net.parttimepolymath.properties.consul.ConsulClient;
+import net.parttimepolymath.properties.consul.ConsulClientImpl;
+import net.parttimepolymath.properties.consul.ConsulTransport;
 import net.parttimepolymath.properties.resolver.ConsulResolver;
 import net.parttimepolymath.properties.resolver.DirectoryResolver;
 import net.parttimepolymath.properties.resolver.EnvironmentResolver;
+import net.parttimepolymath.properties.resolver.EnvironmentSnapshotResolver;
 import net.parttimepolymath.properties.resolver.FileResolver;
 import net.parttimepolymath.properties.resolver.PropertyResolver;
 import net.parttimepolymath.properties.resolver.Resolver;
 import net.parttimepolymath.properties.resolver.ResourceResolver;
 import net.parttimepolymath.properties.resolver.SystemResolver;
+import net.parttimepolymath.properties.resolver.SystemSnapshotResolver;
 
 /**
  * helper class for building a PropertySource instance.
@@ -39,25 +46,39 @@ public final class PropertySourceFactory {
         List<Resolver> resolvers = new ArrayList<>();
 
         if (config.getConsulHost() != null) {
-            resolvers.add(new ConsulResolver(config.getConsulHost(), config.getConsulPort(), config.getConsulPrefix()));
+            ConsulTransport transport = config.getConsulTransport() == null ? ConsulTransport.shared() : config.getConsulTransport();
+            ConsulClient client = new ConsulClientImpl(config.getConsulHost(), config.getConsulPort(),
+                    transport.withTimeouts(config.getConsulConnectTimeout(), config.getConsulReadTimeout()),
+                    config.getConsulFailureThreshold(), config.getConsulOpenMillis());
+            Path snapshot = config.getConsulSnapshot() == null ? null : Paths.get(config.getConsulSnapshot());
+            resolvers.add(new ConsulResolver(client, config.getConsulPrefix(), config.getConsulRefresh(), config.getConsulWatch(),
+                    snapshot));
         }
 
-        resolvers.add(new SystemResolver());
+        if (config.isSystemSnapshot()) {
+            resolvers.add(new SystemSnapshotResolver(config.getSystemSnapshotRefresh()));
+        } else {
+            resolvers.add(new SystemResolver());
+        }
 
-        resolvers.add(new EnvironmentResolver());
+        if (config.isEnvironmentSnapshot()) {
+            resolvers.add(new EnvironmentSnapshotResolver(config.isRelaxedEnvironmentNames()));
+        } else {
+            resolvers.add(new EnvironmentResolver());
+        }
 
         if (!config.getFiles().isEmpty()) {
-            resolvers.add(new FileResolver(config.getFiles()));
+            resolvers.add(new FileResolver(config.getFiles(), config.isUseFileChecksums()));
         }
 
         if (config.getDirectory() != null) {
-            resolvers.add(new DirectoryResolver(config.getDirectory()));
+            resolvers.add(new DirectoryResolver(config.getDirectory(), config.getDirectoryDepth(), config.getDirectoryGlob()));
         }
 
         if (config.getResourceClass() != null) {
             resolvers.add(new ResourceResolver(config.getResourceClass(), config.getResources()));
         }
 
-        return new PropertyResolver(config.getCacheSize(), resolvers);
+        return new PropertyResolver(config, resolvers);
     }
 }
@@ -0,0 +1,186 @@
+package net.parttimepolymath.properties.consul;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * stops requests being made to a service that appears to be down. After a number of consecutive failures the circuit
+ * opens, and requests are refused without being attempted. While open, a probe is run in the background after each
+ * pause, and the circuit closes again as soon as a probe succeeds. Callers never wait for a probe.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+final class CircuitBreaker {
+    /**
+     * the states the circuit can be in.
+     */
+    enum State {
+        /**
+         * requests are allowed.
+         */
+        CLOSED,
+        /**
+         * requests are refused, and a probe is waiting to run.
+         */
+        OPEN,
+        /**
+         * requests are refused, and a probe is running.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * logging instance.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * the executor shared by every circuit breaker to run probes. The thread is a daemon, so it never keeps the JVM
+     * alive.
+     */
+    private static final ScheduledExecutorService PROBES;
+
+    static {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, "PropertySource-ConsulProbe");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        PROBES = executor;
+    }
+
+    /**
+     * the number of consecutive failures that opens the circuit, or 0 if it never opens.
+     */
+    private final int failureThreshold;
+    /**
+     * the pause in milliseconds before each probe while the circuit is open.
+     */
+    private final long openMillis;
+    /**
+     * the check run to see if the service has recovered, which returns true if it has.
+     */
+    private final BooleanSupplier probe;
+    /**
+     * the executor probes are run on.
+     */
+    private final ScheduledExecutorService scheduler;
+    /**
+     * the number of consecutive failures seen while closed.
+     */
+    private final AtomicInteger failures = new AtomicInteger();
+    /**
+     * the current state.
+     */
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    /**
+     * the task that runs a probe.
+     */
+    private final Runnable prober = new Runnable() {
+        @Override
+        public void run() {
+            runProbe();
+        }
+    };
+
+    /**
+     * primary constructor.
+     * 
+     * @param threshold the number of consecutive failures that opens the circuit. If less than 1, it never opens.
+     * @param pauseMillis the pause in milliseconds before each probe while the circuit is open.
+     * @param theProbe the non-null check run to see if the service has recovered.
+     */
+    CircuitBreaker(final int threshold, final long pauseMillis, final BooleanSupplier theProbe) {
+        this(threshold, pauseMillis, theProbe, PROBES);
+    }
+
+    /**
+     * constructor used for testing, to supply the executor probes are run on.
+     * 
+     * @param threshold the number of consecutive failures that opens the circuit. If less than 1, it never opens.
+     * @param pauseMillis the pause in milliseconds before each probe while the circuit is open.
+     * @param theProbe the non-null check run to see if the service has recovered.
+     * @param theScheduler the non-null executor to run probes on.
+     */
+    CircuitBreaker(final int threshold, final long pauseMillis, final BooleanSupplier theProbe,
+            final ScheduledExecutorService theScheduler) {
+        failureThreshold = Math.max(0, threshold);
+        openMillis = Math.max(0, pauseMillis);
+        probe = theProbe;
+        scheduler = theScheduler;
+    }
+
+    /**
+     * @return true if a request may be made, false if the circuit is open.
+     */
+    boolean allowRequest() {
+        return state.get() == State.CLOSED;
+    }
+
+    /**
+     * note that a request succeeded.
+     */
+    void recordSuccess() {
+        failures.set(0);
+    }
+
+    /**
+     * note that a request failed, opening the circuit if there have been too many consecutive failures.
+     */
+    void recordFailure() {
+        if (failureThreshold > 0 && failures.incrementAndGet() >= failureThreshold
+                && state.compareAndSet(State.CLOSED, State.OPEN)) {
+            LOGGER.warn("opening circuit after {} consecutive failures", failureThreshold);
+            scheduler.schedule(prober, openMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * run a probe, closing the circuit if it succeeds and scheduling another if it does not.
+     */
+    private void runProbe() {
+        state.set(State.HALF_OPEN);
+        boolean recovered = false;
+        try {
+            recovered = probe.getAsBoolean();
+        } catch (RuntimeException re) {
+            LOGGER.debug("probe failed", re);
+        }
+        if (recovered) {
+            LOGGER.info("closing circuit after a successful probe");
+            failures.set(0);
+            state.set(State.CLOSED);
+        } else {
+            state.set(State.OPEN);
+            scheduler.schedule(prober, openMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the current state.
+     */
+    State getState() {
+        return state.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CircuitBreaker [state=%s, failures=%s, failureThreshold=%s, openMillis=%s]", state.get(),
+                failures.get(), failureThreshold, openMillis);
+    }
+}
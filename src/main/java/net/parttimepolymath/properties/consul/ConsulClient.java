@@ -1,10 +1,21 @@
 package net.parttimepolymath.properties.consul;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Facade for dealing with Consul. The only thing we support is fetching a simple value from a key/value query, using
  * something like "http://{host}:{port}/v1/kv/{prefix}/{key}?raw", where "key" will be the final part of a hierarchical
  * key, and "prefix" is the rest of the key (and obviously optional if the key is not multi-level). The intention is that
  * we interpret the key hierarchy to represent some sort of name space.
+ * <p>
+ * Only getValue() must be implemented. The other methods have defaults built on it, which make a request per key and
+ * cannot list keys, so an implementation that can read many values at once should override them. An implementation
+ * that can tell a key that does not exist from a read that failed should also override fetchValue() and
+ * fetchValueAsync(), so that a PropertySource can count the failures and does not treat them as missing keys.
  * 
  * @author robert
  */
@@ -17,4 +28,120 @@ public interface ConsulClient {
      * @return null if not found, or no key provided, otherwise the retrieved value.
      */
     String getValue(String prefix, String key);
+
+    /**
+     * get a value for a given key without blocking the calling thread. By default this calls getValue() and returns a
+     * future that is already complete.
+     * 
+     * @param prefix the first part of the hierarchical key. May be null or blank.
+     * @param key the key to search for, being the last part of the hierarchical key.
+     * @return a non-null future completed with null if not found, or no key provided, otherwise the retrieved value.
+     */
+    default CompletableFuture<String> getValueAsync(final String prefix, final String key) {
+        return CompletableFuture.completedFuture(getValue(prefix, key));
+    }
+
+    /**
+     * get a value for a given key, reporting a failed read rather than answering as if the key did not exist. By
+     * default this calls getValue(), which cannot report failures.
+     * 
+     * @param prefix the first part of the hierarchical key. May be null or blank.
+     * @param key the key to search for, being the last part of the hierarchical key.
+     * @return null if not found, or no key provided, otherwise the retrieved value.
+     * @throws ConsulUnavailableException if the value could not be read.
+     */
+    default String fetchValue(final String prefix, final String key) {
+        return getValue(prefix, key);
+    }
+
+    /**
+     * get a value for a given key without blocking the calling thread, reporting a failed read rather than answering
+     * as if the key did not exist. By default this calls getValueAsync(), which cannot report failures.
+     * 
+     * @param prefix the first part of the hierarchical key. May be null or blank.
+     * @param key the key to search for, being the last part of the hierarchical key.
+     * @return a non-null future completed with null if not found, or no key provided, otherwise the retrieved value, or
+     *         completed exceptionally with a ConsulUnavailableException if the value could not be read.
+     */
+    default CompletableFuture<String> fetchValueAsync(final String prefix, final String key) {
+        return getValueAsync(prefix, key);
+    }
+
+    /**
+     * get every value found under a prefix, in a single request. By default keys cannot be listed, so an empty
+     * snapshot at index 0 is returned.
+     * 
+     * @param prefix the first part of the hierarchical key. May be null or blank, in which case everything is fetched.
+     * @return null if the values could not be retrieved, otherwise the values found, keyed by the part of the key after
+     *         the prefix.
+     */
+    default KeyValueSnapshot getValues(final String prefix) {
+        return new KeyValueSnapshot(Collections.<String, String> emptyMap(), 0);
+    }
+
+    /**
+     * get every value found under a prefix using a Consul blocking query. The request does not complete until
+     * something under the prefix changes after the supplied index, or the wait time passes. Implementations should
+     * abandon the request and return null if the calling thread is interrupted while waiting. By default this calls
+     * getValues(prefix), which does not block.
+     * 
+     * @param prefix the first part of the hierarchical key. May be null or blank, in which case everything is fetched.
+     * @param index the index returned by a previous read. If less than 1, the read does not block.
+     * @param waitSeconds the longest time Consul should hold the request open. If less than 1, the read does not block.
+     * @return null if the values could not be retrieved, otherwise the values found and the index they were read at.
+     */
+    default KeyValueSnapshot getValues(final String prefix, final long index, final long waitSeconds) {
+        return getValues(prefix);
+    }
+
+    /**
+     * get the values of several keys in as few requests as possible. By default each key is read with fetchValue(), and
+     * null is returned if any of them could not be read.
+     * 
+     * @param prefix the first part of the hierarchical keys. May be null or blank.
+     * @param keys the keys to search for, being the last part of each hierarchical key. Null or blank keys are ignored.
+     * @return null if the values could not be retrieved, otherwise the values found, keyed by the part of the key after
+     *         the prefix. Keys that do not exist are omitted.
+     */
+    default Map<String, String> getValues(final String prefix, final Collection<String> keys) {
+        Map<String, String> result = new HashMap<>();
+        for (String key : keys) {
+            if (key != null && !key.isEmpty() && !result.containsKey(key)) {
+                String value;
+                try {
+                    value = fetchValue(prefix, key);
+                } catch (ConsulUnavailableException cue) {
+                    return null;
+                }
+                if (value != null) {
+                    result.put(key, value);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * get the value of every key that starts with the given text, in a single request. By default the values are
+     * picked out of those returned by getValues(prefix).
+     * 
+     * @param prefix the first part of the hierarchical keys. May be null or blank.
+     * @param keyStart the start of the last part of the keys to search for. May be null or blank, in which case
+     *            everything under the prefix is fetched.
+     * @return null if the values could not be retrieved, otherwise the values found, keyed by the part of the key after
+     *         the prefix.
+     */
+    default Map<String, String> getValuesStartingWith(final String prefix, final String keyStart) {
+        KeyValueSnapshot snapshot = getValues(prefix);
+        if (snapshot == null) {
+            return null;
+        }
+        Map<String, String> result = new HashMap<>();
+        for (Map.Entry<String, String> entry : snapshot.getValues().entrySet()) {
+            if (keyStart == null || entry.getKey().startsWith(keyStart)) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
 }
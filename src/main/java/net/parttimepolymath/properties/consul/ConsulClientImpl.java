@@ -1,12 +1,34 @@
 package net.parttimepolymath.properties.consul;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
 
 /**
@@ -28,6 +50,55 @@ public final class ConsulClientImpl implements ConsulClient {
      * the default target host;
      */
     public static final String DEFAULT_HOST = "localhost";
+    /**
+     * the default number of consecutive failed requests after which requests stop being made for a while.
+     */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    /**
+     * the default pause in milliseconds, once requests have stopped, before checking in the background whether Consul
+     * has recovered.
+     */
+    public static final long DEFAULT_OPEN_MILLIS = 30000;
+    /**
+     * the most last-known-good values remembered for use while Consul is unavailable.
+     */
+    static final int MAX_STALE_VALUES = 4096;
+    /**
+     * the response header carrying the Consul index.
+     */
+    static final String INDEX_HEADER = "X-Consul-Index";
+    /**
+     * the HTTP status returned when nothing exists under a key.
+     */
+    private static final int NOT_FOUND = 404;
+    /**
+     * Consul adds up to wait/16 of jitter to a blocking query, so the read timeout must allow for that.
+     */
+    private static final int JITTER_DIVISOR = 16;
+    /**
+     * extra seconds allowed on top of the wait time and jitter before a blocking query is considered to have failed.
+     */
+    private static final long WAIT_MARGIN = 10;
+    /**
+     * the most operations Consul accepts in a single transaction.
+     */
+    static final int MAX_TRANSACTION_SIZE = 64;
+    /**
+     * the HTTP status returned when some operations in a transaction fail.
+     */
+    private static final int CONFLICT = 409;
+    /**
+     * the media type of a transaction request.
+     */
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    /**
+     * the largest character that must be written as a unicode escape in JSON.
+     */
+    private static final char LAST_CONTROL = 0x1f;
+    /**
+     * the number of prefixes whose urls are remembered. Beyond this, the one used least recently is forgotten.
+     */
+    private static final int PREFIX_LIMIT = 64;
     /**
      * the target host.
      */
@@ -37,10 +108,53 @@ public final class ConsulClientImpl implements ConsulClient {
      */
     private final int port;
 
+    /**
+     * the connections and settings used to talk to Consul.
+     */
+    private final ConsulTransport transport;
     /**
      * the HTTP client implementation.
      */
-    private final OkHttpClient client = new OkHttpClient();
+    private final OkHttpClient client;
+    /**
+     * the start of every key/value url, up to and including "/v1/kv/".
+     */
+    private final String kvRoot;
+    /**
+     * the query string for reading a single value.
+     */
+    private final String rawQuery;
+    /**
+     * the query string for reading everything beneath a prefix.
+     */
+    private final String recurseQuery;
+    /**
+     * the url for transactions.
+     */
+    private final String txnUrl;
+    /**
+     * the url checked to see whether Consul has recovered.
+     */
+    private final String leaderUrl;
+    /**
+     * the start of the url of each key beneath a prefix, by prefix, so that urls are not built from scratch on every
+     * lookup. The empty prefix stands for no prefix.
+     */
+    private final LruCache<String, String> prefixUrls = new LruCache<>(PREFIX_LIMIT);
+    /**
+     * stops requests being made while Consul appears to be down.
+     */
+    private final CircuitBreaker breaker;
+    /**
+     * the last value successfully read for each single value url, used while Consul is unavailable.
+     */
+    private final ConcurrentMap<String, String> lastKnown = new ConcurrentHashMap<>();
+
+    /**
+     * the reads of single values that have been sent but not yet answered, by url. Callers wanting a value that is
+     * already being read wait for that read rather than sending another.
+     */
+    private final ConcurrentMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
 
     /**
      * Primary constructor.
@@ -49,29 +163,575 @@ public final class ConsulClientImpl implements ConsulClient {
      * @param thePort the target port - defaults to 8500 if zero.
      */
     public ConsulClientImpl(final String theHost, final int thePort) {
+        this(theHost, thePort, ConsulTransport.shared(), DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS);
+    }
+
+    /**
+     * constructor specifying how to talk to Consul, and how to behave when it is unavailable. Once a number of
+     * consecutive requests have failed, no more are made until a check made in the background finds that Consul has
+     * recovered. Meanwhile, and whenever a request fails, the last value successfully read for a key is returned.
+     * 
+     * @param theHost the target host - defaults to 'localhost' if null.
+     * @param thePort the target port - defaults to 8500 if zero.
+     * @param theTransport the connections, timeouts and consistency mode to use - defaults to the shared transport if
+     *            null. Blocking queries are allowed longer than its read timeout, in proportion to their wait time.
+     * @param failureThreshold the number of consecutive failed requests after which requests stop. If less than 1,
+     *            requests are always made.
+     * @param openMillis the pause in milliseconds before each background check of whether Consul has recovered.
+     */
+    public ConsulClientImpl(final String theHost, final int thePort, final ConsulTransport theTransport,
+            final int failureThreshold, final long openMillis) {
         host = theHost == null ? DEFAULT_HOST : theHost;
         port = thePort == 0 ? DEFAULT_PORT : thePort;
+        transport = theTransport == null ? ConsulTransport.shared() : theTransport;
+        client = transport.getClient();
+        String root = "http://" + host + ":" + port + "/v1/";
+        String consistency = transport.getConsistency().getParameter();
+        String mode = consistency.isEmpty() ? "" : "&" + consistency;
+        kvRoot = root + "kv/";
+        rawQuery = "?raw" + mode;
+        recurseQuery = "?recurse" + mode;
+        txnUrl = root + "txn" + (consistency.isEmpty() ? "" : "?" + consistency);
+        leaderUrl = root + "status/leader";
+        breaker = new CircuitBreaker(failureThreshold, openMillis, new BooleanSupplier() {
+            @Override
+            public boolean getAsBoolean() {
+                return probe();
+            }
+        });
+    }
+
+    /**
+     * check whether Consul is answering requests.
+     * 
+     * @return true if Consul answered successfully.
+     */
+    private boolean probe() {
+        Request request = new Request.Builder().url(leaderUrl).build();
+        try (Response response = client.newCall(request).execute()) {
+            return response.isSuccessful();
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the circuit breaker guarding requests.
+     */
+    CircuitBreaker getBreaker() {
+        return breaker;
     }
 
+    /**
+     * get a value for a given key. If Consul cannot be reached, or requests have stopped because it appears to be down,
+     * the last value successfully read is returned.
+     * 
+     * @param prefix the first part of the hierarchical key. May be null or blank.
+     * @param key the key to search for, being the last part of the hierarchical key.
+     * @return null if not found, or no key provided, otherwise the retrieved value.
+     */
     @Override
     public String getValue(final String prefix, final String key) {
+        try {
+            return fetchValue(prefix, key);
+        } catch (ConsulUnavailableException cue) {
+            return cue.getLastKnown();
+        }
+    }
+
+    /**
+     * get a value for a given key, reporting a failed read. If a request for the same key is already in flight,
+     * whether made by this method or by fetchValueAsync(), this waits for its answer rather than making another
+     * request.
+     * 
+     * @param prefix the first part of the hierarchical key. May be null or blank.
+     * @param key the key to search for, being the last part of the hierarchical key.
+     * @return null if not found, or no key provided, otherwise the retrieved value.
+     * @throws ConsulUnavailableException if Consul cannot be reached, or requests have stopped because it appears to be
+     *             down. This carries the last value successfully read.
+     */
+    @Override
+    public String fetchValue(final String prefix, final String key) {
         if (key == null || key.isEmpty()) {
             return null;
         }
 
         String url = constructUrl(prefix, key);
-        Request request = new Request.Builder().url(url).build();
+        if (!breaker.allowRequest()) {
+            throw new ConsulUnavailableException(url, lastKnown.get(url));
+        }
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(url, call);
+        if (existing != null) {
+            LOGGER.debug("waiting for the request in flight for {}", url);
+            try {
+                return existing.join();
+            } catch (CompletionException ce) {
+                throw ce.getCause() instanceof ConsulUnavailableException ? (ConsulUnavailableException) ce.getCause() : ce;
+            }
+        }
+        String value = null;
+        ConsulUnavailableException failure = null;
         try {
-            Response response = client.newCall(request).execute();
-            if (!response.isSuccessful()) {
-                LOGGER.debug("Unexpected response " + response);
+            value = readValue(url);
+        } catch (ConsulUnavailableException cue) {
+            failure = cue;
+            throw cue;
+        } finally {
+            complete(url, call, value, failure);
+        }
+        return value;
+    }
+
+    /**
+     * read a single value.
+     * 
+     * @param url the GET url for the value.
+     * @return null if not found, otherwise the retrieved value.
+     * @throws ConsulUnavailableException if the read failed.
+     */
+    private String readValue(final String url) {
+        Request request = new Request.Builder().url(url).build();
+        try (Response response = client.newCall(request).execute()) {
+            return readValue(url, response);
+        } catch (IOException ioe) {
+            LOGGER.debug("IOException while retrieving {}", url);
+            throw failed(url);
+        }
+    }
+
+    /**
+     * interpret the response to a read of a single value, noting whether it succeeded.
+     * 
+     * @param url the GET url for the value.
+     * @param response the non-null response, which the caller closes.
+     * @return null if not found, otherwise the retrieved value.
+     * @throws IOException if the body of the response cannot be read.
+     * @throws ConsulUnavailableException if Consul answered with an error.
+     */
+    private String readValue(final String url, final Response response) throws IOException {
+        if (response.isSuccessful()) {
+            return succeeded(url, response.body().string());
+        }
+        if (response.code() == NOT_FOUND) {
+            return succeeded(url, null);
+        }
+        LOGGER.debug("Unexpected response {}", response);
+        throw failed(url);
+    }
+
+    /**
+     * note that a single value was read, and remember it for use if later reads fail.
+     * 
+     * @param url the GET url for the value.
+     * @param value the value read, or null if there is none.
+     * @return the value.
+     */
+    private String succeeded(final String url, final String value) {
+        breaker.recordSuccess();
+        remember(url, value);
+        return value;
+    }
+
+    /**
+     * remember the value last read from a url, so long as not too many are remembered already.
+     * 
+     * @param url the GET url for the value.
+     * @param value the value read, or null if there is none.
+     */
+    private void remember(final String url, final String value) {
+        if (value == null) {
+            lastKnown.remove(url);
+        } else if (lastKnown.size() < MAX_STALE_VALUES || lastKnown.containsKey(url)) {
+            lastKnown.put(url, value);
+        }
+    }
+
+    /**
+     * note that a read of a single value failed.
+     * 
+     * @param url the GET url for the value.
+     * @return the non-null exception to report the failure with, carrying the last value read from the url.
+     */
+    private ConsulUnavailableException failed(final String url) {
+        breaker.recordFailure();
+        return new ConsulUnavailableException(url, lastKnown.get(url));
+    }
+
+    /**
+     * get a value for a given key without blocking the calling thread. As with getValue(), the last value read is used
+     * if Consul is unavailable.
+     * 
+     * @param prefix the first part of the hierarchical key. May be null or blank.
+     * @param key the key to search for, being the last part of the hierarchical key.
+     * @return a non-null future completed with null if not found, or no key provided, otherwise the retrieved value.
+     */
+    @Override
+    public CompletableFuture<String> getValueAsync(final String prefix, final String key) {
+        return fetchValueAsync(prefix, key).exceptionally(new Function<Throwable, String>() {
+            @Override
+            public String apply(final Throwable failure) {
+                Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                if (cause instanceof ConsulUnavailableException) {
+                    return ((ConsulUnavailableException) cause).getLastKnown();
+                }
+                throw failure instanceof CompletionException ? (CompletionException) failure : new CompletionException(failure);
+            }
+        });
+    }
+
+    /**
+     * get a value for a given key without blocking the calling thread, reporting a failed read. The request is made on
+     * OkHttp's dispatcher threads, and concurrent requests for the same key share a single call. The future is
+     * completed on a dispatcher thread, so work chained to it should be brief.
+     * 
+     * @param prefix the first part of the hierarchical key. May be null or blank.
+     * @param key the key to search for, being the last part of the hierarchical key.
+     * @return a non-null future completed with null if not found, or no key provided, otherwise the retrieved value, or
+     *         completed exceptionally with a ConsulUnavailableException, carrying the last value read, if Consul cannot
+     *         be reached or appears to be down.
+     */
+    @Override
+    public CompletableFuture<String> fetchValueAsync(final String prefix, final String key) {
+        if (key == null || key.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final String url = constructUrl(prefix, key);
+        if (!breaker.allowRequest()) {
+            CompletableFuture<String> unavailable = new CompletableFuture<>();
+            unavailable.completeExceptionally(new ConsulUnavailableException(url, lastKnown.get(url)));
+            return unavailable;
+        }
+        final CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(url, call);
+        if (existing != null) {
+            return existing.thenApply(Function.<String> identity());
+        }
+        client.newCall(new Request.Builder().url(url).build()).enqueue(new Callback() {
+            @Override
+            public void onFailure(final Call failed, final IOException ioe) {
+                LOGGER.debug("IOException while retrieving {}", url);
+                complete(url, call, null, failed(url));
+            }
+
+            @Override
+            public void onResponse(final Call answered, final Response response) {
+                String value = null;
+                ConsulUnavailableException failure = null;
+                try {
+                    value = readValue(url, response);
+                } catch (IOException ioe) {
+                    LOGGER.debug("IOException while retrieving {}", url);
+                    failure = failed(url);
+                } catch (ConsulUnavailableException cue) {
+                    failure = cue;
+                } finally {
+                    response.close();
+                }
+                complete(url, call, value, failure);
+            }
+        });
+        // callers each get their own dependent future, so that one cancelling does not affect the others
+        return call.thenApply(Function.<String> identity());
+    }
+
+    /**
+     * finish a read of a single value, so that later reads of the same key make a new call.
+     * 
+     * @param url the url read.
+     * @param call the future shared by the callers waiting for the read.
+     * @param value the value read, or null if there is none.
+     * @param failure the reason the value could not be read, or null if it was read.
+     */
+    private void complete(final String url, final CompletableFuture<String> call, final String value,
+            final ConsulUnavailableException failure) {
+        inFlight.remove(url, call);
+        if (failure == null) {
+            call.complete(value);
+        } else {
+            call.completeExceptionally(failure);
+        }
+    }
+
+    @Override
+    public KeyValueSnapshot getValues(final String prefix) {
+        return readValues(client, prefix, constructRecurseUrl(prefix, ""));
+    }
+
+    @Override
+    public KeyValueSnapshot getValues(final String prefix, final long index, final long waitSeconds) {
+        if (index < 1 || waitSeconds < 1) {
+            return getValues(prefix);
+        }
+        long timeout = waitSeconds + waitSeconds / JITTER_DIVISOR + WAIT_MARGIN;
+        return readValues(transport.getBlockingClient(timeout), prefix,
+                constructRecurseUrl(prefix, "") + "&index=" + index + "&wait=" + waitSeconds + "s");
+    }
+
+    /**
+     * get the values of several keys in as few requests as possible. While requests have stopped because Consul
+     * appears to be down, null is returned without making a request; the last values read for the keys can still be
+     * had one at a time from getValue().
+     * 
+     * @param prefix the first part of the hierarchical keys. May be null or blank.
+     * @param keys the keys to search for, being the last part of each hierarchical key. Null or blank keys are ignored.
+     * @return null if the values could not be retrieved, otherwise the values found, keyed by the part of the key after
+     *         the prefix. Keys that do not exist are omitted.
+     */
+    @Override
+    public Map<String, String> getValues(final String prefix, final Collection<String> keys) {
+        List<String> wanted = new ArrayList<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            if (key != null && !key.isEmpty()) {
+                wanted.add(key);
+            }
+        }
+        if (!breaker.allowRequest()) {
+            return null;
+        }
+        Map<String, String> result = new HashMap<>();
+        for (int from = 0; from < wanted.size(); from += MAX_TRANSACTION_SIZE) {
+            List<String> batch = wanted.subList(from, Math.min(wanted.size(), from + MAX_TRANSACTION_SIZE));
+            if (!readTransaction(prefix, new ArrayList<>(batch), result)) {
+                breaker.recordFailure();
                 return null;
             }
-            return response.body().string();
+        }
+        breaker.recordSuccess();
+        for (String key : wanted) {
+            remember(constructUrl(prefix, key), result.get(key));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, String> getValuesStartingWith(final String prefix, final String keyStart) {
+        KeyValueSnapshot values = readValues(client, prefix, constructRecurseUrl(prefix, keyStart == null ? "" : keyStart));
+        return values == null ? null : values.getValues();
+    }
+
+    /**
+     * read a batch of keys in a single transaction. Consul fails the whole transaction if any key does not exist, in
+     * which case the missing keys are dropped and the transaction is tried again with the rest.
+     * 
+     * @param prefix the prefix of the keys, which may be null or blank.
+     * @param batch the non-empty list of keys to read, which is modified.
+     * @param result the map to add the values found to.
+     * @return true if the batch was read, false if the values could not be retrieved.
+     */
+    private boolean readTransaction(final String prefix, final List<String> batch, final Map<String, String> result) {
+        while (!batch.isEmpty()) {
+            Request request = new Request.Builder().url(txnUrl).put(RequestBody.create(JSON, transactionBody(prefix, batch))).build();
+            List<Integer> failed = new ArrayList<>();
+            try (Response response = client.newCall(request).execute()) {
+                if (response.code() != CONFLICT && !response.isSuccessful()) {
+                    LOGGER.debug("Unexpected response {}", response);
+                    return false;
+                }
+                result.putAll(KeyValueReader.readTransaction(new BufferedReader(response.body().charStream()), keyPrefix(prefix), failed));
+                if (response.code() != CONFLICT) {
+                    return true;
+                }
+            } catch (IOException ioe) {
+                LOGGER.debug("IOException while retrieving {}", txnUrl);
+                return false;
+            }
+            if (!removeFailed(batch, failed)) {
+                LOGGER.debug("Transaction failed without identifying the missing keys");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * remove the keys whose operations failed.
+     * 
+     * @param batch the keys in the transaction.
+     * @param failed the positions of the operations that failed.
+     * @return true if at least one key was removed.
+     */
+    private static boolean removeFailed(final List<String> batch, final List<Integer> failed) {
+        boolean removed = false;
+        for (int index : new TreeSet<>(failed).descendingSet()) {
+            if (index >= 0 && index < batch.size()) {
+                batch.remove(index);
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * build the JSON body of a transaction that reads a list of keys.
+     * 
+     * @param prefix the prefix of the keys, which may be null or blank.
+     * @param keys the keys to read.
+     * @return the JSON body.
+     */
+    static String transactionBody(final String prefix, final List<String> keys) {
+        StringBuilder builder = new StringBuilder("[");
+        for (String key : keys) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append("{\"KV\":{\"Verb\":\"get\",\"Key\":\"");
+            escape(keyPrefix(prefix) + key, builder);
+            builder.append("\"}}");
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * write a string into JSON, escaping it as necessary.
+     * 
+     * @param value the string to write.
+     * @param builder the builder to write to.
+     */
+    private static void escape(final String value, final StringBuilder builder) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c <= LAST_CONTROL) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+    }
+
+    /**
+     * read and decode everything under a prefix.
+     * 
+     * @param httpClient the client to make the request with.
+     * @param prefix the prefix being read, which may be null or blank.
+     * @param url the recursive read url.
+     * @return the values read, or null if they could not be read or Consul appears to be down.
+     */
+    private KeyValueSnapshot readValues(final OkHttpClient httpClient, final String prefix, final String url) {
+        if (!breaker.allowRequest()) {
+            return null;
+        }
+        Request request = new Request.Builder().url(url).build();
+        try (Response response = execute(httpClient.newCall(request))) {
+            long index = parseIndex(response.header(INDEX_HEADER));
+            if (response.code() == NOT_FOUND) {
+                breaker.recordSuccess();
+                return new KeyValueSnapshot(Collections.<String, String> emptyMap(), index);
+            }
+            if (response.isSuccessful()) {
+                KeyValueSnapshot values = new KeyValueSnapshot(
+                        KeyValueReader.read(new BufferedReader(response.body().charStream()), keyPrefix(prefix)), index);
+                breaker.recordSuccess();
+                return values;
+            }
+            LOGGER.debug("Unexpected response {}", response);
         } catch (IOException ioe) {
+            if (Thread.currentThread().isInterrupted()) {
+                // the caller gave up, which says nothing about whether Consul is working
+                LOGGER.debug("Abandoned retrieving {}", url);
+                return null;
+            }
             LOGGER.debug("IOException while retrieving {}", url);
-            return null;
         }
+        breaker.recordFailure();
+        return null;
+    }
+
+    /**
+     * make a request, waiting for the response in a way that can be interrupted. A blocking query may be held open for
+     * minutes, and a thread blocked reading a socket does not notice being interrupted, so instead the request is made
+     * asynchronously and the calling thread waits for the result. If it is interrupted while waiting, the request is
+     * cancelled and its connection closed.
+     * 
+     * @param call the non-null call to make.
+     * @return the non-null response, which the caller closes.
+     * @throws IOException if the request fails, or InterruptedIOException if the calling thread is interrupted.
+     */
+    private static Response execute(final Call call) throws IOException {
+        final CompletableFuture<Response> result = new CompletableFuture<>();
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(final Call failed, final IOException ioe) {
+                result.completeExceptionally(ioe);
+            }
+
+            @Override
+            public void onResponse(final Call answered, final Response response) {
+                result.complete(response);
+            }
+        });
+        try {
+            return result.get();
+        } catch (InterruptedException ie) {
+            call.cancel();
+            // a response that arrives anyway is not wanted
+            result.thenAccept(new Consumer<Response>() {
+                @Override
+                public void accept(final Response response) {
+                    response.close();
+                }
+            });
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for " + call.request().url());
+        } catch (ExecutionException ee) {
+            throw ee.getCause() instanceof IOException ? (IOException) ee.getCause() : new IOException(ee.getCause());
+        }
+    }
+
+    /**
+     * parse the Consul index header.
+     * 
+     * @param header the header value, may be null.
+     * @return the index, or 0 if it could not be determined.
+     */
+    static long parseIndex(final String header) {
+        if (header == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException nfe) {
+            return 0;
+        }
+    }
+
+    /**
+     * the prefix as it appears at the start of keys beneath it.
+     * 
+     * @param prefix the prefix, which may be null or blank.
+     * @return the prefix with a trailing '/', or an empty string if there is no prefix.
+     */
+    private static String keyPrefix(final String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return "";
+        }
+        return prefix.endsWith("/") ? prefix : prefix + "/";
+    }
+
+    /**
+     * find the start of the url of each key beneath a prefix.
+     * 
+     * @param prefix the prefix, which may be null or blank.
+     * @return the url up to and including the prefix and its trailing '/'.
+     */
+    private String prefixUrl(final String prefix) {
+        String name = prefix == null ? "" : prefix;
+        String url = prefixUrls.get(name);
+        return url == null ? prefixUrls.putIfAbsent(name, kvRoot + keyPrefix(name)) : url;
+    }
+
+    /**
+     * construct the target GET url for reading everything under a prefix that starts with some text.
+     * 
+     * @param prefix the prefix to read beneath, which may be null or blank.
+     * @param keyStart the non-null start of the keys to read, which may be blank to read everything.
+     * @return a Consul GET url.
+     */
+    private String constructRecurseUrl(final String prefix, final String keyStart) {
+        return prefixUrl(prefix) + keyStart + recurseQuery;
     }
 
     /**
@@ -81,12 +741,8 @@ public final class ConsulClientImpl implements ConsulClient {
      * @param key the key, assumed to be non-blank and non-null;
      * @return a Consul GET url.
      */
-    private String constructUrl(final String prefix, final String key) {
-        if (prefix == null || prefix.isEmpty()) {
-            return String.format("http://%s:%d/v1/kv/%s?raw", host, port, key);
-        } else {
-            return String.format("http://%s:%d/v1/kv/%s/%s?raw", host, port, prefix, key);
-        }
+    String constructUrl(final String prefix, final String key) {
+        return prefixUrl(prefix) + key + rawQuery;
     }
 
     /*
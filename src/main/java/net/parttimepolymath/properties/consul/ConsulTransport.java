@@ -0,0 +1,299 @@
+package net.parttimepolymath.properties.consul;
+
+import java.util.concurrent.TimeUnit;
+
+import net.jcip.annotations.ThreadSafe;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * the HTTP connections, threads and settings used to talk to Consul. A transport is meant to be shared: every client
+ * using the same transport shares one pool of kept-alive connections and one set of threads for asynchronous calls,
+ * however many there are. Unless one is supplied, clients use the transport returned by shared(). Responses are
+ * compressed with gzip whenever Consul offers to, and decompressed transparently.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+public final class ConsulTransport {
+    /**
+     * the default time in milliseconds allowed to connect to Consul.
+     */
+    public static final long DEFAULT_CONNECT_TIMEOUT = 10000;
+    /**
+     * the default time in milliseconds allowed between reads of a response from Consul.
+     */
+    public static final long DEFAULT_READ_TIMEOUT = 10000;
+    /**
+     * the default number of idle connections kept alive.
+     */
+    public static final int DEFAULT_MAX_IDLE = 5;
+    /**
+     * the default time in milliseconds an idle connection is kept alive.
+     */
+    public static final long DEFAULT_KEEP_ALIVE = 300000;
+    /**
+     * the default number of asynchronous requests that may be in flight to one host at once.
+     */
+    public static final int DEFAULT_MAX_REQUESTS = 64;
+    /**
+     * the number of clients for blocking queries remembered. Beyond this, the one used least recently is forgotten.
+     */
+    private static final int BLOCKING_LIMIT = 16;
+
+    /**
+     * how consistent the values read from Consul must be.
+     */
+    public enum Consistency {
+        /**
+         * reads are answered by the leader, which may very rarely return a value that has just been replaced.
+         */
+        DEFAULT(""),
+        /**
+         * reads may be answered by any server, so values may be slightly out of date, but the leader is not involved.
+         */
+        STALE("stale"),
+        /**
+         * the leader checks it is still the leader before answering each read, which is slower but never out of date.
+         */
+        CONSISTENT("consistent");
+
+        /**
+         * the query parameter that requests this mode, blank for the default.
+         */
+        private final String parameter;
+
+        /**
+         * primary constructor.
+         * 
+         * @param theParameter the non-null query parameter.
+         */
+        Consistency(final String theParameter) {
+            parameter = theParameter;
+        }
+
+        /**
+         * @return the query parameter that requests this mode, blank for the default.
+         */
+        public String getParameter() {
+            return parameter;
+        }
+    }
+
+    /**
+     * the HTTP client, whose pool and dispatcher are shared with any transports derived from this one.
+     */
+    private final OkHttpClient client;
+    /**
+     * how consistent values must be.
+     */
+    private final Consistency consistency;
+    /**
+     * clients for blocking queries, by read timeout in seconds.
+     */
+    private final LruCache<Long, OkHttpClient> blockingClients = new LruCache<>(BLOCKING_LIMIT);
+
+    /**
+     * primary constructor.
+     * 
+     * @param theClient the non-null HTTP client.
+     * @param theConsistency the non-null consistency mode.
+     */
+    private ConsulTransport(final OkHttpClient theClient, final Consistency theConsistency) {
+        client = theClient;
+        consistency = theConsistency;
+    }
+
+    /**
+     * @return the transport shared by every client that is not given one, using the default settings.
+     */
+    public static ConsulTransport shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * obtain a builder to construct a transport with.
+     * 
+     * @return a non-null ConsulTransport.Builder
+     */
+    public static Builder builder() {
+        return new ConsulTransport.Builder();
+    }
+
+    /**
+     * obtain a transport with different timeouts, which shares this transport's connections and threads.
+     * 
+     * @param connectMillis the time in milliseconds allowed to connect. If less than 1, the default is used.
+     * @param readMillis the time in milliseconds allowed between reads of a response. If less than 1, the default is
+     *            used.
+     * @return this transport if the timeouts are unchanged, otherwise a new transport.
+     */
+    public ConsulTransport withTimeouts(final long connectMillis, final long readMillis) {
+        long connect = connectMillis < 1 ? DEFAULT_CONNECT_TIMEOUT : connectMillis;
+        long read = readMillis < 1 ? DEFAULT_READ_TIMEOUT : readMillis;
+        if (connect == getConnectTimeout() && read == getReadTimeout()) {
+            return this;
+        }
+        return new ConsulTransport(client.newBuilder().connectTimeout(connect, TimeUnit.MILLISECONDS)
+                .readTimeout(read, TimeUnit.MILLISECONDS).build(), consistency);
+    }
+
+    /**
+     * @return the time in milliseconds allowed to connect to Consul.
+     */
+    public long getConnectTimeout() {
+        return client.connectTimeoutMillis();
+    }
+
+    /**
+     * @return the time in milliseconds allowed between reads of a response from Consul.
+     */
+    public long getReadTimeout() {
+        return client.readTimeoutMillis();
+    }
+
+    /**
+     * @return how consistent the values read from Consul must be.
+     */
+    public Consistency getConsistency() {
+        return consistency;
+    }
+
+    /**
+     * @return the HTTP client for ordinary requests.
+     */
+    OkHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * obtain a HTTP client for blocking queries, sharing this transport's connections and threads.
+     * 
+     * @param readSeconds the time in seconds allowed between reads of a response.
+     * @return the non-null client.
+     */
+    OkHttpClient getBlockingClient(final long readSeconds) {
+        OkHttpClient blocking = blockingClients.get(readSeconds);
+        if (blocking == null) {
+            blocking = blockingClients.putIfAbsent(readSeconds, client.newBuilder().readTimeout(readSeconds, TimeUnit.SECONDS).build());
+        }
+        return blocking;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConsulTransport [connectTimeout=%s, readTimeout=%s, consistency=%s]", getConnectTimeout(),
+                getReadTimeout(), consistency);
+    }
+
+    /**
+     * holder for the shared transport, so that it is only created if it is used.
+     */
+    private static final class Shared {
+        /**
+         * the transport shared by every client that is not given one.
+         */
+        private static final ConsulTransport INSTANCE = builder().build();
+    }
+
+    /**
+     * utility class to perform the actual construction. Ideally this is not constructed directly, instead use
+     * ConsulTransport.builder()
+     * 
+     * @author robert
+     */
+    public static final class Builder {
+        /**
+         * the time in milliseconds allowed to connect.
+         */
+        private long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+        /**
+         * the time in milliseconds allowed between reads of a response.
+         */
+        private long readTimeout = DEFAULT_READ_TIMEOUT;
+        /**
+         * the number of idle connections kept alive.
+         */
+        private int maxIdle = DEFAULT_MAX_IDLE;
+        /**
+         * the time in milliseconds an idle connection is kept alive.
+         */
+        private long keepAlive = DEFAULT_KEEP_ALIVE;
+        /**
+         * the number of asynchronous requests that may be in flight to one host at once.
+         */
+        private int maxRequests = DEFAULT_MAX_REQUESTS;
+        /**
+         * how consistent values must be.
+         */
+        private Consistency consistency = Consistency.DEFAULT;
+
+        /**
+         * set how long to wait for Consul before treating a request as failed.
+         * 
+         * @param connectMillis the time in milliseconds allowed to connect. If less than 1, the default is used.
+         * @param readMillis the time in milliseconds allowed between reads of a response. If less than 1, the default
+         *            is used.
+         * @return the Builder instance.
+         */
+        public Builder withTimeouts(final long connectMillis, final long readMillis) {
+            connectTimeout = connectMillis < 1 ? DEFAULT_CONNECT_TIMEOUT : connectMillis;
+            readTimeout = readMillis < 1 ? DEFAULT_READ_TIMEOUT : readMillis;
+            return this;
+        }
+
+        /**
+         * set how many idle connections are kept open for reuse, and for how long.
+         * 
+         * @param maxIdleConnections the number of idle connections kept alive. If less than 0, the default is used.
+         * @param keepAliveMillis the time in milliseconds an idle connection is kept alive. If less than 1, the
+         *            default is used.
+         * @return the Builder instance.
+         */
+        public Builder withConnectionPool(final int maxIdleConnections, final long keepAliveMillis) {
+            maxIdle = maxIdleConnections < 0 ? DEFAULT_MAX_IDLE : maxIdleConnections;
+            keepAlive = keepAliveMillis < 1 ? DEFAULT_KEEP_ALIVE : keepAliveMillis;
+            return this;
+        }
+
+        /**
+         * set how many asynchronous requests may be in flight at once. Further requests wait until one finishes.
+         * 
+         * @param maxRequestsPerHost the number of requests to one host. If less than 1, the default is used.
+         * @return the Builder instance.
+         */
+        public Builder withMaxRequests(final int maxRequestsPerHost) {
+            maxRequests = maxRequestsPerHost < 1 ? DEFAULT_MAX_REQUESTS : maxRequestsPerHost;
+            return this;
+        }
+
+        /**
+         * set how consistent the values read must be. Reading stale values spreads reads across every Consul server
+         * rather than sending them all to the leader.
+         * 
+         * @param mode the consistency mode. If null, the default is used.
+         * @return the Builder instance.
+         */
+        public Builder withConsistency(final Consistency mode) {
+            consistency = mode == null ? Consistency.DEFAULT : mode;
+            return this;
+        }
+
+        /**
+         * return the constructed transport.
+         * 
+         * @return the non-null transport.
+         */
+        public ConsulTransport build() {
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(Math.max(dispatcher.getMaxRequests(), maxRequests));
+            dispatcher.setMaxRequestsPerHost(maxRequests);
+            OkHttpClient client = new OkHttpClient.Builder().connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                    .readTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                    .connectionPool(new ConnectionPool(maxIdle, keepAlive, TimeUnit.MILLISECONDS)).dispatcher(dispatcher)
+                    .build();
+            return new ConsulTransport(client, consistency);
+        }
+    }
+}
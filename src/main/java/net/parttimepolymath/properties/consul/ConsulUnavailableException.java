@@ -0,0 +1,38 @@
+package net.parttimepolymath.properties.consul;
+
+/**
+ * thrown when a value could not be read because Consul did not answer, answered with an error, or appears to be down.
+ * This says nothing about whether the key exists, so the value last read for the key, if any, is carried instead. As
+ * it is expected whenever Consul is unavailable, it does not record a stack trace.
+ * 
+ * @author robert
+ */
+public final class ConsulUnavailableException extends RuntimeException {
+    /**
+     * serialisation version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * the value last read for the key, or null if there is none.
+     */
+    private final String lastKnown;
+
+    /**
+     * primary constructor.
+     * 
+     * @param url the url that could not be read.
+     * @param theLastKnown the value last read for the key, or null if there is none.
+     */
+    public ConsulUnavailableException(final String url, final String theLastKnown) {
+        super(String.format("unable to read %s from Consul", url), null, false, false);
+        lastKnown = theLastKnown;
+    }
+
+    /**
+     * @return the value last read for the key, or null if there is none.
+     */
+    public String getLastKnown() {
+        return lastKnown;
+    }
+}
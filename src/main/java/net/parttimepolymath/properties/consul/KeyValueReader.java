@@ -0,0 +1,427 @@
+package net.parttimepolymath.properties.consul;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * decoder for the JSON returned by a recursive Consul key/value read, which looks like
+ * <code>[{"Key":"prefix/key","Value":"base64==","ModifyIndex":12,...},...]</code>. Only the Key and Value fields are
+ * kept, everything else is skipped as it is read, so the response is never held in memory as a whole.
+ * <p>
+ * The response to a transaction, which looks like
+ * <code>{"Results":[{"KV":{"Key":"prefix/key","Value":"base64==",...}},...],"Errors":[{"OpIndex":0,"What":"..."}]}</code>
+ * can be decoded in the same way.
+ * 
+ * @author robert
+ */
+@NotThreadSafe
+final class KeyValueReader {
+    /**
+     * the field holding the key.
+     */
+    private static final String KEY_FIELD = "Key";
+    /**
+     * the field holding the base64 encoded value.
+     */
+    private static final String VALUE_FIELD = "Value";
+    /**
+     * the field of a transaction response holding the results of the operations.
+     */
+    private static final String RESULTS_FIELD = "Results";
+    /**
+     * the field of a transaction response holding the errors of the operations that failed.
+     */
+    private static final String ERRORS_FIELD = "Errors";
+    /**
+     * the field of a transaction result holding a key/value object.
+     */
+    private static final String KV_FIELD = "KV";
+    /**
+     * the field of a transaction error holding the position of the operation that failed.
+     */
+    private static final String OP_INDEX_FIELD = "OpIndex";
+    /**
+     * radix of a decimal number.
+     */
+    private static final int DECIMAL = 10;
+    /**
+     * length of a unicode escape sequence.
+     */
+    private static final int UNICODE_LENGTH = 4;
+    /**
+     * radix of a unicode escape sequence.
+     */
+    private static final int HEX = 16;
+
+    /**
+     * the source of characters.
+     */
+    private final Reader reader;
+    /**
+     * the character read ahead, or -2 if nothing has been read ahead.
+     */
+    private int peeked = -2;
+
+    /**
+     * private constructor, use read().
+     * 
+     * @param source the source of characters.
+     */
+    private KeyValueReader(final Reader source) {
+        reader = source;
+    }
+
+    /**
+     * decode a recursive Consul response.
+     * 
+     * @param source the non-null source of the JSON.
+     * @param prefix the prefix, including any trailing '/', which is removed from each key. May be empty.
+     * @return a non-null map of the values found, keyed by the part of the key after the prefix. Folders, keys with
+     *         no value, and keys that do not start with the prefix are omitted.
+     * @throws IOException if the source cannot be read or is not in the expected form.
+     */
+    static Map<String, String> read(final Reader source, final String prefix) throws IOException {
+        return new KeyValueReader(source).readArray(prefix);
+    }
+
+    /**
+     * decode the response to a Consul transaction.
+     * 
+     * @param source the non-null source of the JSON.
+     * @param prefix the prefix, including any trailing '/', which is removed from each key. May be empty.
+     * @param failed a collection to which the position of each operation that failed is added.
+     * @return a non-null map of the values found, keyed by the part of the key after the prefix.
+     * @throws IOException if the source cannot be read or is not in the expected form.
+     */
+    static Map<String, String> readTransaction(final Reader source, final String prefix, final Collection<Integer> failed)
+            throws IOException {
+        return new KeyValueReader(source).readTransactionObject(prefix, failed);
+    }
+
+    /**
+     * read the top level transaction response object.
+     * 
+     * @param prefix the prefix to remove from each key.
+     * @param failed a collection to which the position of each operation that failed is added.
+     * @return the values found.
+     * @throws IOException if the source cannot be read or is not in the expected form.
+     */
+    private Map<String, String> readTransactionObject(final String prefix, final Collection<Integer> failed) throws IOException {
+        Map<String, String> result = new HashMap<>();
+        expect('{');
+        if (peek() == '}') {
+            next();
+            return result;
+        }
+        do {
+            String field = readString();
+            expect(':');
+            if (RESULTS_FIELD.equals(field) && peek() == '[') {
+                readResults(prefix, result);
+            } else if (ERRORS_FIELD.equals(field) && peek() == '[') {
+                readErrors(failed);
+            } else {
+                skipValue();
+            }
+        } while (separator('}'));
+        return result;
+    }
+
+    /**
+     * read the array of transaction results, each of which may hold a key/value object.
+     * 
+     * @param prefix the prefix to remove from each key.
+     * @param result the map to add to.
+     * @throws IOException if the source cannot be read or is not in the expected form.
+     */
+    private void readResults(final String prefix, final Map<String, String> result) throws IOException {
+        expect('[');
+        if (peek() == ']') {
+            next();
+            return;
+        }
+        do {
+            expect('{');
+            if (peek() == '}') {
+                next();
+                continue;
+            }
+            do {
+                String field = readString();
+                expect(':');
+                if (KV_FIELD.equals(field) && peek() == '{') {
+                    readEntry(prefix, result);
+                } else {
+                    skipValue();
+                }
+            } while (separator('}'));
+        } while (separator(']'));
+    }
+
+    /**
+     * read the array of transaction errors.
+     * 
+     * @param failed a collection to which the position of each operation that failed is added.
+     * @throws IOException if the source cannot be read or is not in the expected form.
+     */
+    private void readErrors(final Collection<Integer> failed) throws IOException {
+        expect('[');
+        if (peek() == ']') {
+            next();
+            return;
+        }
+        do {
+            expect('{');
+            if (peek() == '}') {
+                next();
+                continue;
+            }
+            do {
+                String field = readString();
+                expect(':');
+                if (OP_INDEX_FIELD.equals(field)) {
+                    failed.add(readInt());
+                } else {
+                    skipValue();
+                }
+            } while (separator('}'));
+        } while (separator(']'));
+    }
+
+    /**
+     * read a non-negative whole number.
+     * 
+     * @return the number read.
+     * @throws IOException if the source cannot be read or is not in the expected form.
+     */
+    private int readInt() throws IOException {
+        int c = peek();
+        if (c < '0' || c > '9') {
+            throw new IOException(String.format("Expected a number but found '%s'", (char) c));
+        }
+        int value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * DECIMAL + c - '0';
+            next();
+            c = peek();
+        }
+        return value;
+    }
+
+    /**
+     * read the top level array of key/value objects.
+     * 
+     * @param prefix the prefix to remove from each key.
+     * @return the values found.
+     * @throws IOException if the source cannot be read or is not in the expected form.
+     */
+    private Map<String, String> readArray(final String prefix) throws IOException {
+        Map<String, String> result = new HashMap<>();
+        expect('[');
+        if (peek() == ']') {
+            next();
+            return result;
+        }
+        do {
+            readEntry(prefix, result);
+        } while (separator(']'));
+        return result;
+    }
+
+    /**
+     * read a single key/value object, adding it to the result if it is useful.
+     * 
+     * @param prefix the prefix to remove from the key.
+     * @param result the map to add to.
+     * @throws IOException if the source cannot be read or is not in the expected form.
+     */
+    private void readEntry(final String prefix, final Map<String, String> result) throws IOException {
+        String key = null;
+        String value = null;
+        expect('{');
+        if (peek() == '}') {
+            next();
+            return;
+        }
+        do {
+            String field = readString();
+            expect(':');
+            if (KEY_FIELD.equals(field)) {
+                key = readString();
+            } else if (VALUE_FIELD.equals(field) && peek() == '"') {
+                value = readString();
+            } else {
+                skipValue();
+            }
+        } while (separator('}'));
+
+        if (key != null && value != null && key.startsWith(prefix) && key.length() > prefix.length() && !key.endsWith("/")) {
+            result.put(key.substring(prefix.length()), new String(Base64.getDecoder().decode(value), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * skip over a value of any type.
+     * 
+     * @throws IOException if the source cannot be read or is not in the expected form.
+     */
+    private void skipValue() throws IOException {
+        int c = peek();
+        if (c == '"') {
+            readString();
+        } else if (c == '{' || c == '[') {
+            int close = c == '{' ? '}' : ']';
+            next();
+            if (peek() == close) {
+                next();
+                return;
+            }
+            do {
+                if (close == '}') {
+                    readString();
+                    expect(':');
+                }
+                skipValue();
+            } while (separator(close));
+        } else {
+            // number, true, false or null - consume up to the next structural character
+            while (c != ',' && c != '}' && c != ']') {
+                if (c == -1) {
+                    throw new IOException("Unexpected end of input");
+                }
+                next();
+                c = peek();
+            }
+        }
+    }
+
+    /**
+     * read a string, handling escapes.
+     * 
+     * @return the string read.
+     * @throws IOException if the source cannot be read or is not in the expected form.
+     */
+    private String readString() throws IOException {
+        expect('"');
+        StringBuilder builder = new StringBuilder();
+        for (;;) {
+            int c = reader.read();
+            if (c == -1) {
+                throw new IOException("Unterminated string");
+            } else if (c == '"') {
+                return builder.toString();
+            } else if (c == '\\') {
+                builder.append(readEscape());
+            } else {
+                builder.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * read the remainder of an escape sequence.
+     * 
+     * @return the escaped character.
+     * @throws IOException if the source cannot be read or is not in the expected form.
+     */
+    private char readEscape() throws IOException {
+        int c = reader.read();
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                char[] hex = new char[UNICODE_LENGTH];
+                for (int i = 0; i < UNICODE_LENGTH; i++) {
+                    int h = reader.read();
+                    if (h == -1) {
+                        throw new IOException("Unterminated escape");
+                    }
+                    hex[i] = (char) h;
+                }
+                try {
+                    return (char) Integer.parseInt(new String(hex), HEX);
+                } catch (NumberFormatException nfe) {
+                    throw new IOException("Bad unicode escape", nfe);
+                }
+            case -1:
+                throw new IOException("Unterminated escape");
+            default:
+                return (char) c;
+        }
+    }
+
+    /**
+     * consume a ',' or the closing character of the current structure.
+     * 
+     * @param close the closing character.
+     * @return true if there are more elements to read, false if the structure was closed.
+     * @throws IOException if the source cannot be read or is not in the expected form.
+     */
+    private boolean separator(final int close) throws IOException {
+        int c = next();
+        if (c == ',') {
+            return true;
+        }
+        if (c == close) {
+            return false;
+        }
+        throw new IOException(String.format("Expected ',' or '%s' but found '%s'", (char) close, (char) c));
+    }
+
+    /**
+     * consume the next non-whitespace character, which must be the one expected.
+     * 
+     * @param expected the expected character.
+     * @throws IOException if the source cannot be read or is not in the expected form.
+     */
+    private void expect(final int expected) throws IOException {
+        int c = next();
+        if (c != expected) {
+            throw new IOException(String.format("Expected '%s' but found '%s'", (char) expected, (char) c));
+        }
+    }
+
+    /**
+     * consume the next non-whitespace character.
+     * 
+     * @return the character, or -1 at the end of input.
+     * @throws IOException if the source cannot be read.
+     */
+    private int next() throws IOException {
+        int c = peek();
+        peeked = -2;
+        return c;
+    }
+
+    /**
+     * look at the next non-whitespace character without consuming it.
+     * 
+     * @return the character, or -1 at the end of input.
+     * @throws IOException if the source cannot be read.
+     */
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            int c;
+            do {
+                c = reader.read();
+            } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+            peeked = c;
+        }
+        return peeked;
+    }
+}
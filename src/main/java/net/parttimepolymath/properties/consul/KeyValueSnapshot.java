@@ -0,0 +1,58 @@
+package net.parttimepolymath.properties.consul;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * the set of key/value pairs found under a prefix in Consul, as at a particular Consul index.
+ * 
+ * @author robert
+ */
+@Immutable
+public final class KeyValueSnapshot {
+    /**
+     * the values, keyed by the part of the key after the prefix.
+     */
+    private final Map<String, String> values;
+    /**
+     * the Consul modify index the values were read at, or 0 if unknown.
+     */
+    private final long index;
+
+    /**
+     * primary constructor.
+     * 
+     * @param theValues the non-null values, keyed by the part of the key after the prefix. This is copied.
+     * @param theIndex the Consul index the values were read at, 0 if unknown.
+     */
+    public KeyValueSnapshot(final Map<String, String> theValues, final long theIndex) {
+        values = Collections.unmodifiableMap(new HashMap<>(theValues));
+        index = theIndex;
+    }
+
+    /**
+     * @return the non-null, unmodifiable values, keyed by the part of the key after the prefix.
+     */
+    public Map<String, String> getValues() {
+        return values;
+    }
+
+    /**
+     * @return the Consul index the values were read at, or 0 if unknown.
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("KeyValueSnapshot [size=%s, index=%s]", values.size(), index);
+    }
+}
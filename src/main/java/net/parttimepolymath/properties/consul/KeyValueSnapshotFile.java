@@ -0,0 +1,220 @@
+package net.parttimepolymath.properties.consul;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * reads and writes a KeyValueSnapshot as a compact binary file, so that values read from Consul survive a restart.
+ * The file holds a marker and format version, the Consul index the values were read at, the prefix they were read
+ * from, the number of entries, each key and value as a length followed by UTF-8 bytes, and finally a CRC32 of
+ * everything before it. A file that is damaged, of another version, or for another prefix is ignored.
+ * <p>
+ * Files are written to a temporary file beside the target, flushed to disk, and then moved into place, so a reader
+ * never sees a partly written file. They are read by mapping them into memory.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+public final class KeyValueSnapshotFile {
+    /**
+     * logging instance.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeyValueSnapshotFile.class);
+    /**
+     * marker at the start of every snapshot file, "PSKV".
+     */
+    static final int MAGIC = 0x50534B56;
+    /**
+     * the version of the file format written.
+     */
+    static final int VERSION = 1;
+    /**
+     * the length in bytes of the checksum at the end of the file.
+     */
+    private static final int CHECKSUM_LENGTH = Long.BYTES;
+
+    /**
+     * private constructor to prevent construction.
+     */
+    private KeyValueSnapshotFile() {
+
+    }
+
+    /**
+     * write a snapshot to a file, replacing any snapshot already there.
+     * 
+     * @param file the non-null file to write. Its directory is created if necessary.
+     * @param prefix the prefix the values were read from, may be null or blank.
+     * @param snapshot the non-null snapshot to write.
+     * @throws IOException if the file cannot be written, in which case any existing file is left as it was.
+     */
+    public static void write(final Path file, final String prefix, final KeyValueSnapshot snapshot) throws IOException {
+        byte[] content = encode(prefix, snapshot);
+        Path target = file.toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * read a snapshot from a file.
+     * 
+     * @param file the non-null file to read.
+     * @param prefix the prefix the values must have been read from, may be null or blank.
+     * @return the snapshot, or null if there is no file, or it cannot be read, is damaged, or is for another prefix.
+     */
+    public static KeyValueSnapshot read(final Path file, final String prefix) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                LOGGER.warn("ignoring snapshot {} of {} bytes", file, size);
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            KeyValueSnapshot snapshot = decode(buffer, prefix);
+            if (snapshot == null) {
+                LOGGER.warn("ignoring snapshot {}, which is damaged or not for prefix {}", file, prefix);
+            }
+            return snapshot;
+        } catch (NoSuchFileException nsfe) {
+            LOGGER.debug("no snapshot at {}", file);
+            return null;
+        } catch (IOException ioe) {
+            LOGGER.warn("unable to read snapshot {}", file, ioe);
+            return null;
+        }
+    }
+
+    /**
+     * encode a snapshot.
+     * 
+     * @param prefix the prefix the values were read from, may be null or blank.
+     * @param snapshot the non-null snapshot.
+     * @return the content of the file.
+     * @throws IOException never, as the content is built in memory.
+     */
+    static byte[] encode(final String prefix, final KeyValueSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(snapshot.getIndex());
+            writeString(out, prefix == null ? "" : prefix);
+            out.writeInt(snapshot.getValues().size());
+            for (Map.Entry<String, String> entry : snapshot.getValues().entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(bytes.toByteArray());
+            out.writeLong(checksum.getValue());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * decode a snapshot.
+     * 
+     * @param buffer the non-null content of the file, positioned at its start.
+     * @param prefix the prefix the values must have been read from, may be null or blank.
+     * @return the snapshot, or null if the content is damaged or for another prefix.
+     */
+    static KeyValueSnapshot decode(final ByteBuffer buffer, final String prefix) {
+        if (buffer.remaining() < CHECKSUM_LENGTH) {
+            return null;
+        }
+        ByteBuffer content = buffer.duplicate();
+        content.limit(content.limit() - CHECKSUM_LENGTH);
+        CRC32 checksum = new CRC32();
+        checksum.update(content.duplicate());
+        if (checksum.getValue() != buffer.getLong(content.limit())) {
+            return null;
+        }
+        try {
+            if (content.getInt() != MAGIC || content.getInt() != VERSION) {
+                return null;
+            }
+            long index = content.getLong();
+            if (!readString(content).equals(prefix == null ? "" : prefix)) {
+                return null;
+            }
+            int count = content.getInt();
+            if (count < 0) {
+                return null;
+            }
+            Map<String, String> values = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                values.put(readString(content), readString(content));
+            }
+            return content.hasRemaining() ? null : new KeyValueSnapshot(values, index);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * write a string as its length in bytes followed by its UTF-8 encoding.
+     * 
+     * @param out the stream to write to.
+     * @param value the non-null string.
+     * @throws IOException if the stream cannot be written.
+     */
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+    }
+
+    /**
+     * read a string written by writeString().
+     * 
+     * @param buffer the buffer to read from.
+     * @return the string.
+     * @throws BufferUnderflowException if the buffer ends too soon.
+     * @throws IllegalArgumentException if the length is negative.
+     */
+    private static String readString(final ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("bad string length " + length);
+        }
+        byte[] encoded = new byte[length];
+        buffer.get(encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+}
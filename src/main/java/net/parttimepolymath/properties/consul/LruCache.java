@@ -0,0 +1,84 @@
+package net.parttimepolymath.properties.consul;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * small cache which, once full, forgets the entry used least recently. It is meant for remembering things that are
+ * costly to build and of which only a few are normally in use, such as the url of each prefix. Access is synchronised,
+ * which is cheap beside the request to Consul that each use accompanies.
+ * 
+ * @author robert
+ * @param <K> the type of the keys.
+ * @param <V> the type of the values.
+ */
+@ThreadSafe
+final class LruCache<K, V> {
+    /**
+     * the initial capacity of the map.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * the load factor of the map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * the entries, in order of use, least recent first.
+     */
+    @GuardedBy("this")
+    private final Map<K, V> entries;
+
+    /**
+     * primary constructor.
+     * 
+     * @param capacity the largest number of entries held. If less than 1, 1 is used.
+     */
+    LruCache(final int capacity) {
+        final int maximumSize = Math.max(1, capacity);
+        entries = new LinkedHashMap<K, V>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * find the value for a key, counting it as a use.
+     * 
+     * @param key the key.
+     * @return the value, or null if the key is not held.
+     */
+    synchronized V get(final K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * add an entry unless there is already a value for the key.
+     * 
+     * @param key the key.
+     * @param value the non-null value.
+     * @return the value now held for the key.
+     */
+    synchronized V putIfAbsent(final K key, final V value) {
+        V existing = entries.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        entries.put(key, value);
+        return value;
+    }
+
+    /**
+     * @return the number of entries held.
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+}
@@ -1,17 +1,71 @@
 package net.parttimepolymath.properties.resolver;
 
+import java.util.Collection;
+
 /**
- * resolver that looks in it's own LRU cache for a match.
+ * resolver that looks in it's own cache for a match.
+ * <p>
+ * Each cached value is tagged with the position in the resolver chain of the source it came from, so that it can be
+ * invalidated when that source reloads. To avoid caching a value that was read just before an invalidation, a lookup
+ * should read the generation before consulting the sources, and pass it back when caching the value it found.
  * 
  * @author robert
  */
 public interface CacheResolver extends Resolver {
     /**
      * touch an item in the cache to keep it fresh. Note that this may add to the cache if it was not previously present.
+     * The item is treated as coming from the last source in the chain, so it is invalidated if any source reloads.
      * 
      * @param key the key of the item of interest.
      * @param value the value of the item. If the key was not already in the cache, this is the value stored.
      */
     void touchCache(String key, String value);
 
+    /**
+     * obtain the current generation, which should be read before starting a lookup and passed to touchCache().
+     * 
+     * @return the current generation.
+     */
+    long getGeneration();
+
+    /**
+     * cache a value found by a lookup.
+     * 
+     * @param key the key of the item.
+     * @param value the value found.
+     * @param source the position in the chain of the source the value came from.
+     * @param lookupGeneration the generation read before the lookup started. If the cache has been invalidated since
+     *            then, the value is not cached.
+     */
+    void touchCache(String key, String value, int source, long lookupGeneration);
+
+    /**
+     * forget the cached values of some keys.
+     * 
+     * @param keys the keys to forget. If null, every key is forgotten.
+     */
+    void invalidate(Collection<String> keys);
+
+    /**
+     * forget every value that came from a source, or from a source after it in the chain, as the source may now hide
+     * values from those after it.
+     * 
+     * @param source the position in the chain of the source.
+     */
+    void invalidateSource(int source);
+
+    /**
+     * @return the number of lookups answered from the cache.
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of lookups that the cache could not answer.
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of values evicted to keep the cache within its size.
+     */
+    long getEvictionCount();
 }
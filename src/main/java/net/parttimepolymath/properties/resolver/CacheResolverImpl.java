@@ -1,23 +1,27 @@
 package net.parttimepolymath.properties.resolver;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
+import net.jcip.annotations.Immutable;
 import net.jcip.annotations.ThreadSafe;
-import net.parttimepolymath.cache.SimpleLRUCache;
 
 /**
- * resolver that looks in it's own LRU cache for a match.
+ * resolver that looks in it's own cache for a match. The cache uses the W-TinyLFU policy, so it keeps the values that
+ * are read most often, and reads do not block each other.
+ * <p>
+ * Values are invalidated precisely: by key when a source reports which keys changed, or by source when it cannot say,
+ * in which case every value tagged with an earlier epoch of that source, or of any source after it, is treated as
+ * absent. Values may also be given a time to live, which bounds how stale a value from a source that cannot report
+ * changes at all can become.
  * 
  * @author robert
  */
 @ThreadSafe
 public final class CacheResolverImpl implements CacheResolver {
-    /**
-     * logging instance.
-     */
-    private static final Logger LOGGER = LoggerFactory.getLogger(CacheResolverImpl.class);
-
     /**
      * default size of the cache.
      */
@@ -25,27 +29,209 @@ public final class CacheResolverImpl implements CacheResolver {
     /**
      * the cache instance which is used.
      */
-    private final SimpleLRUCache<String, String> cache;
+    private final TinyLfuCache<String, CachedValue> cache;
+    /**
+     * time to live of a value, in nanoseconds, or 0 if values do not expire.
+     */
+    private final long ttl;
+    /**
+     * the current epoch of each source. A cached value is only valid while the epoch of its source is unchanged.
+     */
+    private final AtomicLongArray epochs;
+    /**
+     * bumped on every invalidation so that lookups which started before an invalidation do not cache stale values.
+     */
+    private final AtomicLong generation = new AtomicLong();
+    /**
+     * count of lookups answered from the cache. This is striped, as every cached lookup updates it.
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * count of lookups not answered from the cache.
+     */
+    private final LongAdder misses = new LongAdder();
 
     /**
-     * create an instance with an internal cache of the specified size.
+     * create an instance with an internal cache of the specified size, whose values do not expire.
      * 
      * @param cacheSize the size of the internal cache. If less than 1, defaults to 16.
      */
     public CacheResolverImpl(final int cacheSize) {
-        cache = new SimpleLRUCache<>(cacheSize < 1 ? DEFAULT : cacheSize);
+        this(cacheSize, 0, 1);
+    }
+
+    /**
+     * create an instance with an internal cache of the specified size.
+     * 
+     * @param cacheSize the size of the internal cache. If less than 1, defaults to 16.
+     * @param ttlMillis how long in milliseconds a value is kept. If less than 1, values do not expire.
+     * @param sources the number of sources in the chain. If less than 1, 1 is used.
+     */
+    public CacheResolverImpl(final int cacheSize, final long ttlMillis, final int sources) {
+        cache = new TinyLfuCache<>(cacheSize < 1 ? DEFAULT : cacheSize);
+        ttl = ttlMillis < 1 ? 0 : TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        epochs = new AtomicLongArray(Math.max(1, sources));
     }
 
     @Override
     public String get(final String key) {
-        LOGGER.debug("attempting get({})", key);
-        return cache.get(key);
+        CachedValue entry = cache.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (ttl > 0 && System.nanoTime() - entry.expiry >= 0 || entry.epoch != epochs.get(entry.source)) {
+            cache.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
     }
 
     @Override
     public void touchCache(final String key, final String value) {
-        if (get(key) == null) {
-            cache.put(key, value);
+        store(key, value, epochs.length() - 1, generation.get(), true);
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    @Override
+    public void touchCache(final String key, final String value, final int source, final long lookupGeneration) {
+        store(key, value, source, lookupGeneration, false);
+    }
+
+    /**
+     * cache a value.
+     * 
+     * @param key the key of the item.
+     * @param value the value to cache.
+     * @param source the position in the chain of the source the value came from.
+     * @param lookupGeneration the generation read before the value was found.
+     * @param onlyIfAbsent if true, a value already cached for the key is left in place.
+     */
+    private void store(final String key, final String value, final int source, final long lookupGeneration,
+            final boolean onlyIfAbsent) {
+        if (key == null || value == null || lookupGeneration != generation.get()) {
+            return;
+        }
+        int position = Math.min(Math.max(0, source), epochs.length() - 1);
+        long epoch = epochs.get(position);
+        CachedValue current = cache.peek(key);
+        if (current != null && (onlyIfAbsent || ttl == 0 && current.isSame(value, position, epoch))) {
+            // nothing would change, so do not allocate a new entry
+            return;
+        }
+        CachedValue entry = new CachedValue(value, position, epoch, ttl > 0 ? System.nanoTime() + ttl : 0);
+        if (onlyIfAbsent) {
+            if (cache.putIfAbsent(key, entry) != null) {
+                return;
+            }
+        } else {
+            cache.put(key, entry);
+        }
+        if (lookupGeneration != generation.get()) {
+            // invalidated while caching, and the invalidation may not have seen this entry
+            cache.remove(key, entry);
+        }
+    }
+
+    @Override
+    public void invalidate(final Collection<String> keys) {
+        generation.incrementAndGet();
+        if (keys == null) {
+            cache.clear();
+        } else {
+            for (String key : keys) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public void invalidateSource(final int source) {
+        // the generation must move first, so that a lookup which sees a new epoch also sees the new generation
+        generation.incrementAndGet();
+        for (int i = Math.max(0, source); i < epochs.length(); i++) {
+            epochs.incrementAndGet(i);
+        }
+    }
+
+    /**
+     * @return the largest number of values held.
+     */
+    public int getCacheSize() {
+        return cache.getMaximumSize();
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheResolverImpl [cache=%s, ttl=%sms]", cache, TimeUnit.NANOSECONDS.toMillis(ttl));
+    }
+
+    /**
+     * a cached value, tagged with where it came from and when it expires.
+     */
+    @Immutable
+    private static final class CachedValue {
+        /**
+         * the value.
+         */
+        private final String value;
+        /**
+         * the position in the chain of the source the value came from.
+         */
+        private final int source;
+        /**
+         * the epoch of the source when the value was cached.
+         */
+        private final long epoch;
+        /**
+         * the System.nanoTime() at which the value expires, if values expire.
+         */
+        private final long expiry;
+
+        /**
+         * primary constructor.
+         * 
+         * @param theValue the value.
+         * @param theSource the position in the chain of the source the value came from.
+         * @param theEpoch the epoch of the source when the value was cached.
+         * @param theExpiry the System.nanoTime() at which the value expires.
+         */
+        CachedValue(final String theValue, final int theSource, final long theEpoch, final long theExpiry) {
+            value = theValue;
+            source = theSource;
+            epoch = theEpoch;
+            expiry = theExpiry;
+        }
+
+        /**
+         * @param theValue the value.
+         * @param theSource the position in the chain of the source the value came from.
+         * @param theEpoch the epoch of the source.
+         * @return true if this entry holds the same value from the same epoch of the same source.
+         */
+        boolean isSame(final String theValue, final int theSource, final long theEpoch) {
+            return source == theSource && epoch == theEpoch && value.equals(theValue);
         }
     }
 }
@@ -0,0 +1,334 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * keeps track of the listeners registered on a PropertySource, and tells them when the value resolved for a key they
+ * are interested in changes. Each listener remembers the values it was last told about, so after a reload only keys
+ * whose resolved value really changed are reported, once each.
+ * <p>
+ * Resolving the values again may block, for instance on a request to Consul, so the thread that reports a reload only
+ * queues the keys that may have changed. The values are resolved, compared and reported on the supplied executor, one
+ * reload at a time and in the order the reloads were reported.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+final class ChangeNotifier {
+    /**
+     * logging instance.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeNotifier.class);
+
+    /**
+     * the source whose values are watched.
+     */
+    private final Resolver source;
+    /**
+     * the executor notifications are delivered on.
+     */
+    private final Executor executor;
+    /**
+     * the registered listeners. Registration is rare compared to notification, so copy-on-write suits.
+     */
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+    /**
+     * work waiting to be done on the executor, in order.
+     */
+    @GuardedBy("this")
+    private final Queue<Runnable> queue = new ArrayDeque<>();
+    /**
+     * true while a task is working through the queue.
+     */
+    @GuardedBy("this")
+    private boolean draining;
+    /**
+     * the task that works through the queue until it is empty.
+     */
+    private final Runnable drainer = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * primary constructor.
+     * 
+     * @param theSource the non-null source whose values are watched.
+     * @param theExecutor the non-null executor to deliver notifications on.
+     */
+    ChangeNotifier(final Resolver theSource, final Executor theExecutor) {
+        source = theSource;
+        executor = theExecutor;
+    }
+
+    /**
+     * register a listener for changes to a single key.
+     * 
+     * @param key the key to watch. Null or blank is ignored.
+     * @param listener the listener to tell. Null is ignored.
+     */
+    void addKeyListener(final String key, final PropertyListener listener) {
+        if (key == null || key.isEmpty() || listener == null) {
+            return;
+        }
+        Map<String, String> known = new HashMap<>();
+        String value = source.get(key);
+        if (value != null) {
+            known.put(key, value);
+        }
+        registrations.add(new Registration(listener, key, false, known));
+    }
+
+    /**
+     * register a listener for changes to every key starting with a prefix.
+     * 
+     * @param prefix the prefix to watch. If null or blank, every key is watched.
+     * @param listener the listener to tell. Null is ignored.
+     */
+    void addPrefixListener(final String prefix, final PropertyListener listener) {
+        if (listener == null) {
+            return;
+        }
+        String start = prefix == null ? "" : prefix;
+        registrations.add(new Registration(listener, start, true, new HashMap<>(source.getByPrefix(start))));
+    }
+
+    /**
+     * remove every registration of a listener.
+     * 
+     * @param listener the listener to remove.
+     */
+    void remove(final PropertyListener listener) {
+        for (Registration registration : registrations) {
+            if (registration.listener.equals(listener)) {
+                registrations.remove(registration);
+            }
+        }
+    }
+
+    /**
+     * @return the number of registrations.
+     */
+    int size() {
+        return registrations.size();
+    }
+
+    /**
+     * queue a check of which watched keys have changed after a reload. The check, and telling listeners about the
+     * changes, happen on the executor.
+     * 
+     * @param keys the keys that may have changed, which must not be modified afterwards, or null if any key may have
+     *            changed.
+     */
+    void changed(final Collection<String> keys) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Registration registration : registrations) {
+                    registration.check(keys);
+                }
+            }
+        });
+    }
+
+    /**
+     * queue work to be done on the executor, after anything already queued, starting the executor on the queue if it
+     * is not already working through it.
+     * 
+     * @param task the non-null work to do.
+     */
+    void execute(final Runnable task) {
+        synchronized (this) {
+            queue.add(task);
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        try {
+            executor.execute(drainer);
+        } catch (RejectedExecutionException ree) {
+            LOGGER.warn("unable to check for or deliver property change notifications", ree);
+            synchronized (this) {
+                queue.clear();
+                draining = false;
+            }
+        }
+    }
+
+    /**
+     * do the queued work until there is none left. Work that fails does not prevent later work being done.
+     */
+    private void drain() {
+        while (true) {
+            Runnable task;
+            synchronized (this) {
+                task = queue.poll();
+                if (task == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch (RuntimeException re) {
+                LOGGER.warn("failed to check for or deliver property changes", re);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ChangeNotifier [registrations=%s]", registrations.size());
+    }
+
+    /**
+     * a change to the value resolved for a key.
+     */
+    private static final class Change {
+        /**
+         * the key that changed.
+         */
+        private final String key;
+        /**
+         * the value before the change, may be null.
+         */
+        private final String oldValue;
+        /**
+         * the value after the change, may be null.
+         */
+        private final String newValue;
+
+        /**
+         * primary constructor.
+         * 
+         * @param theKey the non-null key that changed.
+         * @param theOldValue the value before the change, may be null.
+         * @param theNewValue the value after the change, may be null.
+         */
+        Change(final String theKey, final String theOldValue, final String theNewValue) {
+            key = theKey;
+            oldValue = theOldValue;
+            newValue = theNewValue;
+        }
+    }
+
+    /**
+     * a listener, what it is watching, and the values it was last told about.
+     */
+    private final class Registration {
+        /**
+         * the listener to tell.
+         */
+        private final PropertyListener listener;
+        /**
+         * the key or prefix watched.
+         */
+        private final String target;
+        /**
+         * true if the target is a prefix, false if it is a single key.
+         */
+        private final boolean prefix;
+        /**
+         * the values last reported, by key. Keys that could not be resolved are absent.
+         */
+        @GuardedBy("this")
+        private final Map<String, String> known;
+
+        /**
+         * primary constructor.
+         * 
+         * @param theListener the non-null listener to tell.
+         * @param theTarget the non-null key or prefix watched.
+         * @param isPrefix true if the target is a prefix.
+         * @param theKnown the values currently resolved for the watched keys.
+         */
+        Registration(final PropertyListener theListener, final String theTarget, final boolean isPrefix,
+                final Map<String, String> theKnown) {
+            listener = theListener;
+            target = theTarget;
+            prefix = isPrefix;
+            known = theKnown;
+        }
+
+        /**
+         * compare the current values of the watched keys with those last reported, remember the current values, and
+         * tell the listener about any changes. This is only called from the queue, so the listener is told about
+         * changes in the order they were found.
+         * 
+         * @param keys the keys that may have changed, or null if any key may have changed.
+         */
+        synchronized void check(final Collection<String> keys) {
+            Map<String, String> current = new HashMap<>();
+            Set<String> candidates = new LinkedHashSet<>();
+            if (!prefix) {
+                if (keys == null || keys.contains(target)) {
+                    candidates.add(target);
+                    current.put(target, source.get(target));
+                }
+            } else if (keys == null) {
+                current.putAll(source.getByPrefix(target));
+                candidates.addAll(known.keySet());
+                candidates.addAll(current.keySet());
+            } else {
+                for (String key : keys) {
+                    if (key != null && key.startsWith(target)) {
+                        candidates.add(key);
+                        current.put(key, source.get(key));
+                    }
+                }
+            }
+            List<Change> changes = new ArrayList<>();
+            for (String key : candidates) {
+                String before = known.get(key);
+                String after = current.get(key);
+                if (!Objects.equals(before, after)) {
+                    changes.add(new Change(key, before, after));
+                    if (after == null) {
+                        known.remove(key);
+                    } else {
+                        known.put(key, after);
+                    }
+                }
+            }
+            if (!changes.isEmpty()) {
+                report(changes);
+            }
+        }
+
+        /**
+         * tell the listener about changes. A listener that throws does not prevent later changes being reported.
+         * 
+         * @param changes the non-null changes to report.
+         */
+        void report(final List<Change> changes) {
+            for (Change change : changes) {
+                try {
+                    listener.changed(change.key, change.oldValue, change.newValue);
+                } catch (RuntimeException re) {
+                    LOGGER.warn("listener {} failed on change to {}", listener, change.key, re);
+                }
+            }
+        }
+    }
+}
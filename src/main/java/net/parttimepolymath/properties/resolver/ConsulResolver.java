@@ -1,26 +1,62 @@
 package net.parttimepolymath.properties.resolver;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.jcip.annotations.ThreadSafe;
 import net.parttimepolymath.properties.consul.ConsulClient;
 import net.parttimepolymath.properties.consul.ConsulClientImpl;
+import net.parttimepolymath.properties.consul.ConsulUnavailableException;
+import net.parttimepolymath.properties.consul.KeyValueSnapshot;
+import net.parttimepolymath.properties.consul.KeyValueSnapshotFile;
 
 /**
  * resolver which attempts to read from Consul. The only thing we support is fetching a simple value from a key/value query,
  * using something like "http://{host}:{port}/v1/kv/{prefix}/{key}?raw", where "key" will be the final part of a hierarchical
  * key, and "prefix" is the rest of the key (and obviously optional if the key is not multi-level). The intention is that
  * we interpret the key hierarchy to represent some sort of name space.
+ * <p>
+ * If a refresh period is supplied, the resolver instead reads everything under the prefix in a single request, answers
+ * lookups from memory, and re-reads the prefix in the background at that period. If a watch time is supplied, a background
+ * thread instead holds a Consul blocking query open on the prefix, so changes are seen as soon as they are made and an
+ * idle process makes no requests other than renewing the blocking query.
+ * <p>
+ * When prefetching or watching, the values can also be saved to a local snapshot file each time they change. On the
+ * next start the file is read instead of waiting for Consul, so lookups are answered straight away, and even if
+ * Consul cannot be reached. The first read from Consul is then made in the background, and replaces the saved values
+ * if Consul's index shows they are out of date.
  * 
  * @author robert
  */
 @ThreadSafe
-public final class ConsulResolver implements Resolver {
+public final class ConsulResolver implements ReloadableResolver, Closeable {
     /**
      * logging instance.
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(ConsulResolver.class);
+    /**
+     * initial pause in milliseconds before retrying a failed blocking query.
+     */
+    private static final long MIN_BACKOFF = 1000;
+    /**
+     * longest pause in milliseconds before retrying a failed blocking query.
+     */
+    private static final long MAX_BACKOFF = 60000;
     /**
      * The client facade used to talk to Consul.
      */
@@ -29,6 +65,39 @@ public final class ConsulResolver implements Resolver {
      * the optional key prefix.
      */
     private final String prefix;
+    /**
+     * the values read from Consul if prefetching or watching, otherwise null.
+     */
+    private volatile KeyValueSnapshot snapshot;
+    /**
+     * the values in the snapshot sorted by key, for prefix queries.
+     */
+    private volatile PrefixIndex index = PrefixIndex.EMPTY;
+    /**
+     * the thread the background refresh runs on, or null if not prefetching. Refreshes block on Consul, so they are not
+     * run on the shared scheduler.
+     */
+    private final ScheduledExecutorService refresher;
+    /**
+     * the thread running blocking queries, or null if not watching.
+     */
+    private final Thread watcher;
+    /**
+     * the longest time in seconds a blocking query is held open.
+     */
+    private final long watchSeconds;
+    /**
+     * set when the resolver is closed, to stop the watcher and any refresh in progress.
+     */
+    private volatile boolean closed;
+    /**
+     * the listeners to tell about reloads.
+     */
+    private final ReloadSupport reloadSupport = new ReloadSupport();
+    /**
+     * the file the values are saved to each time they change, or null if they are not saved.
+     */
+    private final Path snapshotFile;
 
     /**
      * primary constructor.
@@ -38,8 +107,20 @@ public final class ConsulResolver implements Resolver {
      * @param keyPrefix the prefix of the key hierarchy, allowed to be null or blank.
      */
     public ConsulResolver(final String host, int port, final String keyPrefix) {
-        prefix = keyPrefix;
-        consulClient = new ConsulClientImpl(host, port);
+        this(new ConsulClientImpl(host, port), keyPrefix);
+    }
+
+    /**
+     * prefetching constructor.
+     * 
+     * @param host the host to target, assumed to be non-null and non-blank.
+     * @param port the port to target, assumed to be a useful port.
+     * @param keyPrefix the prefix of the key hierarchy, allowed to be null or blank.
+     * @param refreshMillis if greater than zero, everything under the prefix is read at construction and then re-read
+     *            with this period in milliseconds. Otherwise each lookup is a request to Consul.
+     */
+    public ConsulResolver(final String host, int port, final String keyPrefix, final long refreshMillis) {
+        this(new ConsulClientImpl(host, port), keyPrefix, refreshMillis);
     }
 
     /**
@@ -68,14 +149,341 @@ public final class ConsulResolver implements Resolver {
      * @param keyPrefix the prefix of the key hierarchy, allowed to be null or blank.
      */
     public ConsulResolver(final ConsulClient client, final String keyPrefix) {
+        this(client, keyPrefix, 0);
+    }
+
+    /**
+     * alternate prefetching constructor, primarily intended for testing.
+     * 
+     * @param client a ConsulClient to inject.
+     * @param keyPrefix the prefix of the key hierarchy, allowed to be null or blank.
+     * @param refreshMillis if greater than zero, everything under the prefix is read at construction and then re-read
+     *            with this period in milliseconds. Otherwise each lookup is a request to Consul.
+     */
+    public ConsulResolver(final ConsulClient client, final String keyPrefix, final long refreshMillis) {
+        this(client, keyPrefix, refreshMillis, 0);
+    }
+
+    /**
+     * watching constructor.
+     * 
+     * @param host the host to target, assumed to be non-null and non-blank.
+     * @param port the port to target, assumed to be a useful port.
+     * @param keyPrefix the prefix of the key hierarchy, allowed to be null or blank.
+     * @param refreshMillis if greater than zero and not watching, everything under the prefix is re-read with this
+     *            period in milliseconds.
+     * @param watchTime if greater than zero, everything under the prefix is read at construction and then watched with
+     *            blocking queries held open for up to this many seconds. This takes precedence over refreshMillis.
+     */
+    public ConsulResolver(final String host, final int port, final String keyPrefix, final long refreshMillis, final long watchTime) {
+        this(new ConsulClientImpl(host, port), keyPrefix, refreshMillis, watchTime);
+    }
+
+    /**
+     * alternate watching constructor, primarily intended for testing.
+     * 
+     * @param client a ConsulClient to inject.
+     * @param keyPrefix the prefix of the key hierarchy, allowed to be null or blank.
+     * @param refreshMillis if greater than zero and not watching, everything under the prefix is re-read with this
+     *            period in milliseconds.
+     * @param watchTime if greater than zero, everything under the prefix is read at construction and then watched with
+     *            blocking queries held open for up to this many seconds. This takes precedence over refreshMillis.
+     */
+    public ConsulResolver(final ConsulClient client, final String keyPrefix, final long refreshMillis, final long watchTime) {
+        this(client, keyPrefix, refreshMillis, watchTime, null);
+    }
+
+    /**
+     * alternate constructor which also saves the values to a local snapshot file. If the file exists when constructed,
+     * its values are used straight away, and Consul is first read in the background rather than before the
+     * constructor returns.
+     * 
+     * @param client a ConsulClient to inject.
+     * @param keyPrefix the prefix of the key hierarchy, allowed to be null or blank.
+     * @param refreshMillis if greater than zero and not watching, everything under the prefix is re-read with this
+     *            period in milliseconds.
+     * @param watchTime if greater than zero, everything under the prefix is read at construction and then watched with
+     *            blocking queries held open for up to this many seconds. This takes precedence over refreshMillis.
+     * @param theSnapshotFile the file to save values to, or null if they are not saved. Ignored unless prefetching or
+     *            watching.
+     */
+    public ConsulResolver(final ConsulClient client, final String keyPrefix, final long refreshMillis, final long watchTime,
+            final Path theSnapshotFile) {
         prefix = keyPrefix;
         consulClient = client;
+        watchSeconds = watchTime;
+        snapshotFile = watchTime > 0 || refreshMillis > 0 ? theSnapshotFile : null;
+        boolean restored = restore(watchTime > 0 || refreshMillis > 0);
+        if (watchTime > 0) {
+            if (!restored) {
+                refresh();
+            }
+            refresher = null;
+            watcher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    watch();
+                }
+            }, "PropertySource-ConsulWatcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        } else if (refreshMillis > 0) {
+            if (!restored) {
+                refresh();
+            }
+            watcher = null;
+            refresher = Scheduler.dedicated("PropertySource-ConsulRefresh");
+            refresher.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    refresh();
+                }
+            }, restored ? 0 : refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        } else {
+            watcher = null;
+            refresher = null;
+        }
+    }
+
+    /**
+     * start with the values saved in the snapshot file if there are any, otherwise with no values.
+     * 
+     * @param prefetching true if prefetching or watching. If false, nothing is done.
+     * @return true if values were read from the snapshot file.
+     */
+    private boolean restore(final boolean prefetching) {
+        if (!prefetching) {
+            return false;
+        }
+        KeyValueSnapshot saved = snapshotFile == null ? null : KeyValueSnapshotFile.read(snapshotFile, prefix);
+        if (saved == null) {
+            snapshot = new KeyValueSnapshot(Collections.<String, String> emptyMap(), 0);
+            return false;
+        }
+        LOGGER.info("using {} saved in {} until Consul is read", saved, snapshotFile);
+        index = new PrefixIndex(saved.getValues());
+        snapshot = saved;
+        return true;
+    }
+
+    /**
+     * re-read everything under the prefix. If Consul cannot be reached the previously read values are kept. Listeners
+     * are told only if the values have changed. Does nothing if this resolver is neither prefetching nor watching.
+     */
+    public void refresh() {
+        if (snapshot != null) {
+            long started = System.nanoTime();
+            update(consulClient.getValues(prefix), started);
+        }
+    }
+
+    /**
+     * run blocking queries until closed. Each query is made with the index of the last snapshot seen, so returns as
+     * soon as something under the prefix changes. Failures are retried with an increasing pause.
+     */
+    private void watch() {
+        long backoff = MIN_BACKOFF;
+        while (!closed) {
+            KeyValueSnapshot latest = consulClient.getValues(prefix, snapshot.getIndex(), watchSeconds);
+            // the time spent waiting for a change is not part of the reload
+            update(latest, System.nanoTime());
+            // without an index the query cannot block, so treat that like a failure rather than spinning
+            if (latest == null || latest.getIndex() < 1) {
+                LOGGER.debug("blocking query failed, retrying in {}ms", backoff);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            } else {
+                backoff = MIN_BACKOFF;
+            }
+        }
+    }
+
+    /**
+     * swap in a newly read snapshot, saving it to the snapshot file if there is one. Synchronized so that concurrent
+     * refreshes cannot save an older snapshot over a newer one. Once the resolver is closed, nothing is done.
+     * 
+     * @param latest the snapshot read, or null if the read failed.
+     * @param started the System.nanoTime() at which the reload started.
+     */
+    private synchronized void update(final KeyValueSnapshot latest, final long started) {
+        if (closed) {
+            return;
+        }
+        KeyValueSnapshot current = snapshot;
+        if (latest == null) {
+            LOGGER.debug("unable to refresh from Consul, keeping {}", current);
+            return;
+        }
+        if (latest.getIndex() == current.getIndex() && latest.getIndex() != 0) {
+            return;
+        }
+        // an index that goes backwards means Consul's state was reset; take the new snapshot so that the next
+        // blocking query starts again from the new index
+        index = new PrefixIndex(latest.getValues());
+        snapshot = latest;
+        save(latest);
+        Set<String> changed = ReloadSupport.changedKeys(current.getValues(), latest.getValues());
+        if (!changed.isEmpty()) {
+            reloadSupport.fire(new ReloadEvent(this, changed, System.nanoTime() - started));
+        }
     }
 
+    /**
+     * save a snapshot to the snapshot file, if there is one. Failure is logged rather than thrown, as the values are
+     * still in use.
+     * 
+     * @param latest the non-null snapshot to save.
+     */
+    private void save(final KeyValueSnapshot latest) {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            KeyValueSnapshotFile.write(snapshotFile, prefix, latest);
+        } catch (IOException ioe) {
+            LOGGER.warn("unable to save {} to {}", latest, snapshotFile, ioe);
+        }
+    }
+
+    /**
+     * @return true if the prefix is prefetched or watched, so that every change to a value is reported to listeners.
+     */
+    boolean isPrefetching() {
+        return refresher != null || watcher != null;
+    }
+
+    /**
+     * @return the Consul index of the values in use, or 0 if unknown or not prefetching.
+     */
+    public long getIndex() {
+        KeyValueSnapshot current = snapshot;
+        return current == null ? 0 : current.getIndex();
+    }
+
+    /**
+     * find the value for a key. Unless the prefix has been prefetched, the value is read from Consul.
+     * 
+     * @param key the key to look up.
+     * @return the value, or null if it cannot be found.
+     * @throws ResolverUnavailableException if Consul cannot be reached, carrying the value the client last read.
+     */
     @Override
     public String get(String key) {
-        LOGGER.debug("attempting get({})", key);
-        return consulClient.getValue(prefix, key);
+        KeyValueSnapshot current = snapshot;
+        if (current != null) {
+            return key == null ? null : current.getValues().get(key);
+        }
+        try {
+            return consulClient.fetchValue(prefix, key);
+        } catch (ConsulUnavailableException cue) {
+            throw new ResolverUnavailableException(cue, cue.getLastKnown());
+        }
+    }
+
+    /**
+     * find the value for a key without blocking. Unless the prefix has been prefetched, the value is read from Consul
+     * on OkHttp's dispatcher threads, and concurrent reads of the same key share a single request.
+     * 
+     * @param key the key to look up.
+     * @return a non-null future completed with the value, or null if it cannot be found, or completed exceptionally
+     *         with a ResolverUnavailableException, carrying the value the client last read, if Consul cannot be reached.
+     */
+    @Override
+    public CompletableFuture<String> getAsync(final String key) {
+        LOGGER.debug("attempting getAsync({})", key);
+        if (snapshot != null) {
+            return CompletableFuture.completedFuture(get(key));
+        }
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        consulClient.fetchValueAsync(prefix, key).whenComplete(new BiConsumer<String, Throwable>() {
+            @Override
+            public void accept(final String value, final Throwable failure) {
+                if (failure == null) {
+                    result.complete(value);
+                    return;
+                }
+                Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                if (cause instanceof ConsulUnavailableException) {
+                    result.completeExceptionally(
+                            new ResolverUnavailableException(cause, ((ConsulUnavailableException) cause).getLastKnown()));
+                } else {
+                    result.completeExceptionally(cause);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * find the values of several keys. Unless the prefix has been prefetched, this is done in as few requests to Consul
+     * as possible, rather than one per key.
+     * 
+     * @param keys the non-null keys to look up.
+     * @return a non-null map of the values found.
+     * @throws ResolverUnavailableException if Consul cannot be reached. The values the client last read can still be
+     *             had one key at a time from get().
+     */
+    @Override
+    public Map<String, String> getAll(final Collection<String> keys) {
+        LOGGER.debug("attempting getAll({})", keys);
+        if (snapshot != null) {
+            return ReloadableResolver.super.getAll(keys);
+        }
+        Map<String, String> values = consulClient.getValues(prefix, keys);
+        if (values == null) {
+            throw new ResolverUnavailableException(String.format("unable to read %s from Consul", keys));
+        }
+        return values;
+    }
+
+    /**
+     * find every key starting with a prefix. Unless the prefix has been prefetched, this is a single recursive read of
+     * the keys in Consul starting with the prefix.
+     * 
+     * @param keyStart the start of the keys to find, which is case sensitive. If null or blank, everything is found.
+     * @return a non-null map of the values found. Empty if Consul cannot be reached.
+     */
+    @Override
+    public SortedMap<String, String> getByPrefix(final String keyStart) {
+        LOGGER.debug("attempting getByPrefix({})", keyStart);
+        if (snapshot != null) {
+            return index.subtree(keyStart);
+        }
+        Map<String, String> values = consulClient.getValuesStartingWith(prefix, keyStart);
+        return values == null ? Collections.<String, String> emptySortedMap()
+                : Collections.unmodifiableSortedMap(new TreeMap<>(values));
+    }
+
+    @Override
+    public void addReloadListener(final ReloadListener listener) {
+        reloadSupport.add(listener);
+    }
+
+    @Override
+    public void removeReloadListener(final ReloadListener listener) {
+        reloadSupport.remove(listener);
+    }
+
+    /**
+     * stop any background refresh. The watcher or refresh thread is interrupted, abandoning any request in flight, and
+     * once this returns the values are no longer changed, saved or reported to listeners.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
     }
 
     /*
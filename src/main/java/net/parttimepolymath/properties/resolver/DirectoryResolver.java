@@ -1,86 +1,303 @@
 package net.parttimepolymath.properties.resolver;
 
-import java.io.File;
-import java.io.FileFilter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 
 /**
  * resolver which searches for *.properties files in a specified directory. It delegates responsibility to an internal
  * FileResolver.
+ * <p>
+ * The directory is watched, so properties files that are later added to or removed from it are added to or removed from
+ * the properties available, and changes to the files are picked up. Only the files that are added or changed are parsed.
+ * If the directory cannot be watched, it is instead rescanned periodically, and if a watched directory is deleted, it is
+ * rescanned every second until it can be watched again.
+ * <p>
+ * Optionally, subdirectories can be searched as well, down to a maximum depth, and a glob other than "*.properties" can
+ * be used to select files by name. Subdirectories are searched, and files parsed, in parallel on a fork/join pool. Unless
+ * one is supplied, a small pool belonging to the library is used rather than the common pool, as the work blocks on the
+ * file system. Where files define the same key, the file with the greater absolute path wins, so the result does not
+ * depend on the order the work completes in.
  * 
  * @author robert
  */
 @ThreadSafe
-public final class DirectoryResolver implements Resolver {
+public final class DirectoryResolver implements ReloadableResolver, SnapshotResolver, Closeable {
     /**
      * logging instance.
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryResolver.class);
 
     /**
-     * filter to match properties files.
+     * the default glob, which selects properties files.
      */
-    private static final FileFilter FILTER = new FileFilter() {
+    public static final String DEFAULT_GLOB = "*.properties";
+
+    /**
+     * time in ms to wait after a change is reported before acting on it, so that a burst of changes is handled at once.
+     */
+    private static final long SETTLE_DELAY = 50;
+
+    /**
+     * delegate resolver.
+     */
+    private final SnapshotResolver fileResolver;
+    /**
+     * the directory being searched, or null if it is not a usable directory.
+     */
+    private final Path directory;
+    /**
+     * how many levels of directory are searched, 1 being just the directory itself.
+     */
+    private final int maxDepth;
+    /**
+     * matches the names of files to use.
+     */
+    private final PathMatcher matcher;
+    /**
+     * the pool that directories are searched on.
+     */
+    private final ForkJoinPool pool;
+    /**
+     * should the directories be watched?
+     */
+    private final boolean watch;
+    /**
+     * the matching files currently found, keyed and so ordered by absolute path.
+     */
+    @GuardedBy("files")
+    private final TreeMap<String, Path> files = new TreeMap<>();
+    /**
+     * the version of the matching files, which increases each time files are added or removed.
+     */
+    @GuardedBy("files")
+    private long filesVersion;
+    /**
+     * the directories currently registered with the file watcher.
+     */
+    @GuardedBy("files")
+    private final Set<Path> watchedDirectories = new HashSet<>();
+    /**
+     * paths reported as changed but not yet acted on.
+     */
+    private final Set<Path> pendingChanges = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+    /**
+     * directories the file watcher has stopped watching but which have not yet been acted on.
+     */
+    private final Set<Path> lostDirectories = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+    /**
+     * set while the pending changes are scheduled to be acted on.
+     */
+    private final AtomicBoolean updatePending = new AtomicBoolean();
+    /**
+     * the periodic rescan used if the directory cannot be watched, otherwise null.
+     */
+    @GuardedBy("files")
+    private ScheduledFuture<?> pollTask;
+    /**
+     * set when the resolver is closed, after which no directory is watched or polled again.
+     */
+    @GuardedBy("files")
+    private boolean closed;
+    /**
+     * the period of the rescan used if the directory cannot be watched.
+     */
+    private final long pollPeriod;
+    /**
+     * the listeners to tell about reloads.
+     */
+    private final ReloadSupport reloadSupport = new ReloadSupport();
+    /**
+     * the listener registered with the file watcher.
+     */
+    private final FileWatcher.Listener watchListener = new FileWatcher.Listener() {
+        @Override
+        public void changed(final Path path) {
+            pendingChanges.add(path);
+            scheduleUpdate();
+        }
+
         @Override
-        public boolean accept(final File pathname) {
-            return pathname.isFile() && pathname.getName().endsWith(".properties");
+        public void invalidated(final Path dir) {
+            lostDirectories.add(dir);
+            pendingChanges.add(dir);
+            scheduleUpdate();
         }
     };
 
     /**
-     * delegate resolver.
+     * construct using the path to the directory. If the supplied path does not resolve to a directory this resolver will
+     * silently do nothing. If the directory does not have *.properties files in it, this resolver will find nothing
+     * until some are added.
+     * 
+     * @param path what we hope is a valid path to a directory.
      */
-    private final Resolver fileResolver;
+    public DirectoryResolver(final String path) {
+        this(path, 1, DEFAULT_GLOB);
+    }
 
     /**
-     * construct using the path to the directory. If the supplied path does not resolve to a directory, or the directory
-     * does not have *.properties files in it, this resolver will silently do nothing
+     * construct using the path to the root of a tree of directories.
      * 
      * @param path what we hope is a valid path to a directory.
+     * @param depth how many levels of directory to search, 1 being just the directory itself. Values less than 1 are
+     *            treated as 1.
+     * @param glob the glob that the names of files to use must match, such as "*.properties". If null, DEFAULT_GLOB is
+     *            used.
      */
-    public DirectoryResolver(final String path) {
-        List<String> files = findFiles(path);
-        if (files.isEmpty()) {
-            fileResolver = new NullResolver();
-        } else {
-            fileResolver = new FileResolver(files);
-        }
+    public DirectoryResolver(final String path, final int depth, final String glob) {
+        this(path, depth, glob, DiscoveryPool.INSTANCE);
+    }
+
+    /**
+     * construct using the path to the root of a tree of directories, searching and parsing on a specific pool. This is
+     * primarily intended for testing and measurement.
+     * 
+     * @param path what we hope is a valid path to a directory.
+     * @param depth how many levels of directory to search, 1 being just the directory itself. Values less than 1 are
+     *            treated as 1.
+     * @param glob the glob that the names of files to use must match, such as "*.properties". If null, DEFAULT_GLOB is
+     *            used.
+     * @param forkJoinPool the non-null pool to search and parse on.
+     */
+    public DirectoryResolver(final String path, final int depth, final String glob, final ForkJoinPool forkJoinPool) {
+        this(path, depth, glob, forkJoinPool, true, FileResolver.REFRESH_INTERVAL);
     }
 
     /**
-     * attempt to find *.properties under the supplied path. If the path is not a resolvable directory, this
-     * will automatically be an empty list. Note that this does not recurse into subdirectories, however the
-     * result list will be sorted according to string collation rules.
+     * primary constructor.
      * 
-     * @param path what we assume to be a valid representation of a resolvable directory.
-     * @return a non-null but possibly empty list of valid paths to discovered properties files.
+     * @param path what we hope is a valid path to a directory.
+     * @param depth how many levels of directory to search, 1 being just the directory itself.
+     * @param glob the glob that the names of files to use must match. If null, DEFAULT_GLOB is used.
+     * @param forkJoinPool the non-null pool to search and parse on.
+     * @param watchDirectories if true, the file watcher is used to detect changes where possible.
+     * @param pollMillis the period at which the directories are rescanned if they are not being watched.
      */
-    private List<String> findFiles(final String path) {
+    DirectoryResolver(final String path, final int depth, final String glob, final ForkJoinPool forkJoinPool,
+            final boolean watchDirectories, final long pollMillis) {
+        maxDepth = Math.max(1, depth);
+        matcher = FileSystems.getDefault().getPathMatcher("glob:" + (glob == null ? DEFAULT_GLOB : glob));
+        pool = forkJoinPool;
+        watch = watchDirectories;
+        pollPeriod = pollMillis;
+
         if (!isGoodPath(path)) {
-            return Collections.emptyList();
+            directory = null;
+            fileResolver = new NullResolver();
+            return;
         }
 
-        List<String> result = new ArrayList<>();
+        directory = Paths.get(path).toAbsolutePath().normalize();
+        Set<Path> directories = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+        for (Path file : findFiles(directories)) {
+            files.put(file.toString(), file);
+        }
+        FileResolver delegate = new FileResolver(new ArrayList<>(files.values()), false, false, 0, pool);
+        delegate.addReloadListener(new ReloadListener() {
+            @Override
+            public void reloaded(final ReloadEvent event) {
+                reloadSupport.fire(new ReloadEvent(DirectoryResolver.this, event.getChangedKeys(), event.getDurationNanos()));
+            }
+        });
+        fileResolver = delegate;
 
-        for (File file : new File(path).listFiles(FILTER)) {
-            result.add(file.getAbsolutePath());
+        synchronized (files) {
+            watchDirectories(directories);
         }
+    }
 
-        Collections.sort(result);
+    /**
+     * find the matching files beneath the directory.
+     * 
+     * @param directories a set to which each directory searched is added.
+     * @return a non-null but possibly empty list of the matching files, sorted by path.
+     */
+    private List<Path> findFiles(final Set<Path> directories) {
+        List<Path> result = pool.invoke(new DiscoveryTask(directory, 1, directories));
+        Collections.sort(result, new Comparator<Path>() {
+            @Override
+            public int compare(final Path left, final Path right) {
+                return left.toString().compareTo(right.toString());
+            }
+        });
         return result;
     }
 
+    /**
+     * bring the set of watched directories up to date, falling back to polling if any cannot be watched. Polling stops
+     * again once every directory is watched.
+     * 
+     * @param directories the directories that should be watched.
+     */
+    @GuardedBy("files")
+    private void watchDirectories(final Set<Path> directories) {
+        if (closed) {
+            return;
+        }
+        boolean watching = watch;
+        for (Path dir : directories) {
+            if (watching && !watchedDirectories.contains(dir)) {
+                watching = FileWatcher.getInstance().register(dir, watchListener);
+                if (watching) {
+                    watchedDirectories.add(dir);
+                }
+            }
+        }
+        for (Path dir : new ArrayList<>(watchedDirectories)) {
+            if (!directories.contains(dir)) {
+                FileWatcher.getInstance().unregister(dir, watchListener);
+                watchedDirectories.remove(dir);
+            }
+        }
+        if (watching) {
+            if (pollTask != null) {
+                LOGGER.debug("watching [{}] again", directory);
+                pollTask.cancel(false);
+                pollTask = null;
+            }
+        } else if (pollTask == null) {
+            // if watching is possible, a directory has gone away, so keep trying until it comes back
+            long period = watch && FileWatcher.getInstance().isAvailable() ? Math.min(pollPeriod, FileWatcher.RETRY_INTERVAL) : pollPeriod;
+            LOGGER.debug("polling [{}] every {}ms", directory, period);
+            pollTask = Scheduler.get().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    rescan();
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
     /**
      * does the parameter represent a resolvable directory?
      * 
@@ -100,10 +317,243 @@ public final class DirectoryResolver implements Resolver {
         }
     }
 
+    /**
+     * is this a file we should use?
+     * 
+     * @param path the path to check.
+     * @return true if the path's name matches the glob.
+     */
+    private boolean isMatch(final Path path) {
+        Path name = path.getFileName();
+        return name != null && matcher.matches(name);
+    }
+
+    /**
+     * arrange for the pending changes to be acted on shortly, unless that is already arranged.
+     */
+    private void scheduleUpdate() {
+        if (updatePending.compareAndSet(false, true)) {
+            Scheduler.get().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    updatePending.set(false);
+                    update();
+                }
+            }, SETTLE_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * act on the paths reported as changed. Only those paths are examined; the directories are only searched again if
+     * a directory has been added or removed, or the watcher reports that changes may have been lost.
+     */
+    private void update() {
+        List<Path> changes = new ArrayList<>(pendingChanges);
+        pendingChanges.removeAll(changes);
+        boolean reshaped = false;
+        synchronized (files) {
+            for (Path path : changes) {
+                if (lostDirectories.remove(path)) {
+                    // no longer watched, so the rescan should try to register it again
+                    watchedDirectories.remove(path);
+                    reshaped = true;
+                }
+                // a directory added, removed or overflowing means the tree has changed shape, or events were lost
+                reshaped |= watchedDirectories.contains(path) || Files.isDirectory(path);
+            }
+        }
+        if (reshaped) {
+            rescan();
+            return;
+        }
+        boolean membershipChanged = false;
+        List<Path> latest = null;
+        long version;
+        synchronized (files) {
+            for (Path path : changes) {
+                if (!isMatch(path)) {
+                    continue;
+                }
+                if (Files.isRegularFile(path)) {
+                    membershipChanged |= files.put(path.toString(), path) == null;
+                } else {
+                    membershipChanged |= files.remove(path.toString()) != null;
+                }
+            }
+            if (membershipChanged) {
+                latest = new ArrayList<>(files.values());
+                filesVersion++;
+            }
+            version = filesVersion;
+        }
+        refreshDelegate(latest, version);
+    }
+
+    /**
+     * search the directories again, and bring the set of files up to date with what is found.
+     */
+    void rescan() {
+        if (directory == null) {
+            return;
+        }
+        Set<Path> directories = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+        List<Path> found = findFiles(directories);
+        List<Path> latest = null;
+        long version;
+        synchronized (files) {
+            if (!found.equals(new ArrayList<>(files.values()))) {
+                files.clear();
+                for (Path file : found) {
+                    files.put(file.toString(), file);
+                }
+                latest = found;
+                filesVersion++;
+            }
+            version = filesVersion;
+            watchDirectories(directories);
+        }
+        refreshDelegate(latest, version);
+    }
+
+    /**
+     * tell the delegate about a change. The lock on files is not held, so that reloading and telling listeners do not
+     * hold up other changes; the version stops an older set of files replacing a newer one.
+     * 
+     * @param latest the matching files if files have been added or removed, or null if files may only have been
+     *            modified.
+     * @param version the version of the matching files.
+     */
+    private void refreshDelegate(final List<Path> latest, final long version) {
+        FileResolver delegate = (FileResolver) fileResolver;
+        if (latest != null) {
+            LOGGER.debug("[{}] now has {} matching files", directory, latest.size());
+            delegate.setPaths(latest, version);
+        } else {
+            delegate.reload();
+        }
+    }
+
     @Override
     public String get(final String key) {
-        LOGGER.debug("attempting get({})", key);
         return fileResolver.get(key);
     }
 
+    @Override
+    public Map<String, String> getSnapshot() {
+        return fileResolver.getSnapshot();
+    }
+
+    @Override
+    public void addReloadListener(final ReloadListener listener) {
+        reloadSupport.add(listener);
+    }
+
+    @Override
+    public void removeReloadListener(final ReloadListener listener) {
+        reloadSupport.remove(listener);
+    }
+
+    /**
+     * stop watching the directories.
+     */
+    @Override
+    public void close() {
+        synchronized (files) {
+            closed = true;
+            for (Path dir : watchedDirectories) {
+                FileWatcher.getInstance().unregister(dir, watchListener);
+            }
+            watchedDirectories.clear();
+            if (pollTask != null) {
+                pollTask.cancel(false);
+                pollTask = null;
+            }
+        }
+    }
+
+    /**
+     * holder for the pool used when none is supplied, so that it is only created if it is used. Its threads are daemon
+     * threads, and stop when they have been idle for a while.
+     */
+    private static final class DiscoveryPool {
+        /**
+         * the most threads the pool uses.
+         */
+        private static final int MAX_PARALLELISM = 4;
+        /**
+         * the pool used by every resolver that is not given one.
+         */
+        private static final ForkJoinPool INSTANCE = new ForkJoinPool(
+                Math.min(MAX_PARALLELISM, Runtime.getRuntime().availableProcessors()), new ForkJoinWorkerThreadFactory() {
+                    @Override
+                    public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        thread.setName("PropertySource-Discovery-" + thread.getPoolIndex());
+                        return thread;
+                    }
+                }, null, false);
+    }
+
+    /**
+     * searches a single directory, forking a task for each subdirectory that is within the maximum depth.
+     */
+    private final class DiscoveryTask extends RecursiveTask<List<Path>> {
+        /**
+         * serialisation version.
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * the directory to search.
+         */
+        private final Path dir;
+        /**
+         * the depth of the directory, 1 being the root.
+         */
+        private final int depth;
+        /**
+         * the set to add each directory searched to.
+         */
+        private final Set<Path> directories;
+
+        /**
+         * primary constructor.
+         * 
+         * @param theDir the directory to search.
+         * @param theDepth the depth of the directory, 1 being the root.
+         * @param theDirectories the set to add each directory searched to.
+         */
+        DiscoveryTask(final Path theDir, final int theDepth, final Set<Path> theDirectories) {
+            dir = theDir;
+            depth = theDepth;
+            directories = theDirectories;
+        }
+
+        @Override
+        protected List<Path> compute() {
+            directories.add(dir);
+            List<Path> result = new ArrayList<>();
+            List<DiscoveryTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path entry : stream) {
+                    if (Files.isDirectory(entry)) {
+                        if (depth < maxDepth) {
+                            DiscoveryTask subtask = new DiscoveryTask(entry, depth + 1, directories);
+                            subtask.fork();
+                            subtasks.add(subtask);
+                        }
+                    } else if (isMatch(entry) && Files.isRegularFile(entry)) {
+                        result.add(entry.toAbsolutePath().normalize());
+                    }
+                }
+            } catch (NoSuchFileException nsfe) {
+                LOGGER.debug("[{}] does not exist", dir);
+            } catch (IOException ioe) {
+                LOGGER.warn("Error searching [{}]", dir);
+            }
+            for (DiscoveryTask subtask : subtasks) {
+                result.addAll(subtask.join());
+            }
+            return result;
+        }
+    }
 }
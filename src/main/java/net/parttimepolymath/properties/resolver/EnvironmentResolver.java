@@ -1,5 +1,10 @@
 package net.parttimepolymath.properties.resolver;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,11 +21,21 @@ public final class EnvironmentResolver implements Resolver {
      * logging instance.
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(EnvironmentResolver.class);
+    /**
+     * a copy of the environment, which does not change while the process runs. Looking a key up in the map returned by
+     * System.getenv() allocates on every call, which this avoids.
+     */
+    private final Map<String, String> environment = Collections.unmodifiableMap(new HashMap<>(System.getenv()));
 
     @Override
     public String get(final String key) {
-        LOGGER.debug("attempting get({})", key);
-        return key == null ? null : System.getenv().get(key);
+        return key == null ? null : environment.get(key);
+    }
+
+    @Override
+    public SortedMap<String, String> getByPrefix(final String prefix) {
+        LOGGER.debug("attempting getByPrefix({})", prefix);
+        return PrefixIndex.scan(environment, prefix);
     }
 
 }
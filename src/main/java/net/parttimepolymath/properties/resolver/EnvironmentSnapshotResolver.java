@@ -0,0 +1,90 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * resolver which takes a copy of the runtime environment when it is built. The environment does not change while the
+ * process runs, so the copy never needs refreshing. As it is a SnapshotResolver, a PropertyResolver merges it with the
+ * resolvers around it.
+ * <p>
+ * Optionally, each variable can also be found by a relaxed name, which is its name in lower case with underscores
+ * replaced by dots, so that A_B_C can be found as a.b.c. Relaxed names are worked out once, when the copy is taken,
+ * and a variable whose actual name matches takes precedence over one found by a relaxed name.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+public final class EnvironmentSnapshotResolver implements SnapshotResolver {
+    /**
+     * the copy of the environment, including any relaxed names.
+     */
+    private final Map<String, String> environment;
+
+    /**
+     * create an instance which finds variables only by their actual names.
+     */
+    public EnvironmentSnapshotResolver() {
+        this(false);
+    }
+
+    /**
+     * create an instance from the runtime environment.
+     * 
+     * @param relaxedNames if true, each variable can also be found by its relaxed name.
+     */
+    public EnvironmentSnapshotResolver(final boolean relaxedNames) {
+        this(System.getenv(), relaxedNames);
+    }
+
+    /**
+     * primary constructor.
+     * 
+     * @param variables the non-null variables to copy.
+     * @param relaxedNames if true, each variable can also be found by its relaxed name.
+     */
+    EnvironmentSnapshotResolver(final Map<String, String> variables, final boolean relaxedNames) {
+        Map<String, String> result = new HashMap<>();
+        if (relaxedNames) {
+            // in name order, so that if two variables have the same relaxed name, the same one is always used
+            for (Map.Entry<String, String> entry : new TreeMap<>(variables).entrySet()) {
+                String relaxed = relax(entry.getKey());
+                if (!result.containsKey(relaxed)) {
+                    result.put(relaxed, entry.getValue());
+                }
+            }
+        }
+        result.putAll(variables);
+        environment = Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * work out the relaxed name of a variable.
+     * 
+     * @param name the non-null name of the variable.
+     * @return the name in lower case, with underscores replaced by dots.
+     */
+    static String relax(final String name) {
+        return name.toLowerCase(Locale.ROOT).replace('_', '.');
+    }
+
+    @Override
+    public String get(final String key) {
+        return key == null ? null : environment.get(key);
+    }
+
+    @Override
+    public Map<String, String> getSnapshot() {
+        return environment;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EnvironmentSnapshotResolver [keys=%s]", environment.size());
+    }
+}
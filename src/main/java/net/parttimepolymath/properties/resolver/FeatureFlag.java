@@ -0,0 +1,131 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+
+import net.jcip.annotations.ThreadSafe;
+import net.parttimepolymath.properties.PropertySource;
+
+/**
+ * a boolean property that is read far more often than it changes, obtained with PropertySource.flag(). The value is
+ * kept up to date by the PropertySource, and can be read in two ways:
+ * <ul>
+ * <li>isEnabled(), which is a volatile read;</li>
+ * <li>the method handle from getInvoker(). Held in a static final field and called with invokeExact(), the JIT treats
+ * the value as a constant, so a check of the flag costs nothing at all. When the value changes, code compiled with the
+ * old value is thrown away and compiled again.</li>
+ * </ul>
+ * The value is interpreted as by PropertySource.getFlag(), so anything other than "true", ignoring case and surrounding
+ * white space, is false.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+public final class FeatureFlag {
+    /**
+     * the type of the invoker, which takes nothing and returns the value.
+     */
+    private static final MethodType TYPE = MethodType.methodType(boolean.class);
+    /**
+     * target of the call site while the value is true.
+     */
+    private static final MethodHandle TRUE = MethodHandles.constant(boolean.class, true);
+    /**
+     * target of the call site while the value is false.
+     */
+    private static final MethodHandle FALSE = MethodHandles.constant(boolean.class, false);
+
+    /**
+     * the source the value is resolved from.
+     */
+    private final PropertySource source;
+    /**
+     * the key.
+     */
+    private final String name;
+    /**
+     * the value used if the key cannot be found.
+     */
+    private final boolean defaultValue;
+    /**
+     * the call site whose target returns the value as a constant.
+     */
+    private final MutableCallSite site = new MutableCallSite(TYPE);
+    /**
+     * invokes the current target of the call site.
+     */
+    private final MethodHandle invoker = site.dynamicInvoker();
+    /**
+     * the current value, which is only changed while holding the lock on this flag.
+     */
+    private volatile boolean value;
+
+    /**
+     * primary constructor. The value is resolved straight away.
+     * 
+     * @param theSource the non-null source to resolve the value from.
+     * @param theName the key, may be null.
+     * @param theDefault the value used if the key cannot be found.
+     */
+    FeatureFlag(final PropertySource theSource, final String theName, final boolean theDefault) {
+        source = theSource;
+        name = theName;
+        defaultValue = theDefault;
+        value = theSource.getFlag(theName, theDefault);
+        site.setTarget(value ? TRUE : FALSE);
+        MutableCallSite.syncAll(new MutableCallSite[] { site });
+    }
+
+    /**
+     * @return the key this is a handle on, which may be null.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the value used if the key cannot be found.
+     */
+    public boolean getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * @return the current value.
+     */
+    public boolean isEnabled() {
+        return value;
+    }
+
+    /**
+     * obtain a method handle of type ()boolean which returns the current value. For the JIT to treat the value as a
+     * constant, the handle must be held in a static final field and called with invokeExact(), as in
+     * <code>(boolean) FLAG.invokeExact()</code>.
+     * 
+     * @return the non-null invoker.
+     */
+    public MethodHandle getInvoker() {
+        return invoker;
+    }
+
+    /**
+     * resolve the value again, and if it has changed, retarget the call site so that code compiled with the old value
+     * is discarded. The call site is retargeted first, so that once isEnabled() returns the new value, so does the
+     * invoker.
+     */
+    synchronized void refresh() {
+        boolean latest = source.getFlag(name, defaultValue);
+        if (latest != value) {
+            site.setTarget(latest ? TRUE : FALSE);
+            MutableCallSite.syncAll(new MutableCallSite[] { site });
+            value = latest;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FeatureFlag [name=%s, value=%s]", name, value);
+    }
+}
@@ -1,55 +1,166 @@
 package net.parttimepolymath.properties.resolver;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 
 /**
  * resolver which looks in a specified file(s). Note that if there are duplicated keys across different files,
- * there is no particular guarantee of which value is used, but it will probably be the last one found.
+ * the value from the file latest in the list is used.
+ * <p>
+ * The files are loaded at construction, and reloaded when the file system reports a change in a directory holding one
+ * of them. Any change in the directory counts, so that a file replaced by swapping a symbolic link elsewhere in the
+ * directory, as Kubernetes does for mounted ConfigMaps and Secrets, is still seen. In case a change is lost, the files
+ * are also reloaded every REFRESH_INTERVAL while they are watched. If the file system cannot report changes, the files
+ * are instead reloaded periodically, and if a directory holding them is deleted, they are reloaded every second until
+ * it can be watched again. Each reload builds a new immutable
+ * snapshot which replaces the previous one in a single step, so lookups never take a lock and never see a partially
+ * loaded set of properties. Only files whose modification time or size has changed are parsed again, and if checksums
+ * are in use, a file whose content is unchanged is not parsed again even if it has been touched.
  * 
  * @author robert
  */
 @ThreadSafe
-public final class FileResolver implements Resolver {
+public final class FileResolver implements ReloadableResolver, SnapshotResolver, Closeable {
     /**
      * logging instance.
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(FileResolver.class);
     /**
-     * time in ms after which a reload will be done.
+     * time in ms after which a reload will be done if the files are watched, in case a change was not reported.
      */
-    private static final long REFRESH_INTERVAL = 60000;
+    static final long REFRESH_INTERVAL = 60000;
     /**
-     * the set of files being referenced. Note that this is the set of files discovered
-     * at the time of construction, not at the time of load.
+     * time in ms to wait after a change is reported before reloading, so that a burst of changes causes one reload.
      */
-    private final List<Path> paths;
+    private static final long SETTLE_DELAY = 50;
     /**
-     * the set of properties discovered during load.
+     * a file modified within this many ms of being read may be modified again without its modification time changing,
+     * so its modification time and size are not trusted until it is read again.
      */
-    private final Properties properties = new Properties();
+    private static final long RACY_WINDOW = 2000;
     /**
-     * when were the files last loaded?
+     * when a pool is supplied, files are checked in parallel if there are more than this many.
      */
-    private long lastRefreshed;
+    private static final int PARALLEL_THRESHOLD = 4;
     /**
-     * resource lock to allow for double-lock idiom while loading the files.
+     * the set of files being referenced, in increasing order of precedence. This is replaced, never modified.
      */
-    private final Lock resourceLock = new ReentrantLock();
+    @GuardedBy("reloadLock")
+    private List<Path> paths;
+    /**
+     * the version of the set of files last given to setPaths(), so that an older set never replaces a newer one.
+     */
+    @GuardedBy("reloadLock")
+    private long pathsVersion;
+    /**
+     * the directories registered with the file watcher.
+     */
+    private final Set<Path> watchedDirectories = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+    /**
+     * directories that were being watched but went away, and are waiting to be registered again.
+     */
+    @GuardedBy("lostDirectories")
+    private final Set<Path> lostDirectories = new HashSet<>();
+    /**
+     * the periodic attempt to register the lost directories again, which also reloads the files, or null if no
+     * directories are lost.
+     */
+    @GuardedBy("lostDirectories")
+    private ScheduledFuture<?> retryTask;
+    /**
+     * set when the resolver is closed, after which no directory is registered again.
+     */
+    @GuardedBy("lostDirectories")
+    private boolean closed;
+    /**
+     * should file content be checksummed to avoid parsing files that have been touched but not changed?
+     */
+    private final boolean useChecksums;
+    /**
+     * what was found in each file at the last load.
+     */
+    @GuardedBy("reloadLock")
+    private final Map<Path, FileState> states = new HashMap<>();
+    /**
+     * the pool used to check and parse files in parallel, or null to do so on the reloading thread.
+     */
+    private final ForkJoinPool pool;
+    /**
+     * the number of times a file has been parsed.
+     */
+    private final AtomicLong parseCount = new AtomicLong();
+    /**
+     * the set of properties discovered during the last load. This is never modified, only replaced.
+     */
+    private volatile Map<String, String> properties = Collections.emptyMap();
+    /**
+     * lock to ensure reloads happen one at a time, so that an older snapshot never replaces a newer one.
+     */
+    private final Object reloadLock = new Object();
+    /**
+     * set while a reload has been scheduled but not yet started.
+     */
+    private final AtomicBoolean reloadPending = new AtomicBoolean();
+    /**
+     * the periodic reload, which is slow if the files are watched, or null if there is none.
+     */
+    @GuardedBy("reloadLock")
+    private ScheduledFuture<?> pollTask;
+    /**
+     * the listeners to tell about reloads.
+     */
+    private final ReloadSupport reloadSupport = new ReloadSupport();
+    /**
+     * the listener registered with the file watcher.
+     */
+    private final FileWatcher.Listener watchListener = new FileWatcher.Listener() {
+        @Override
+        public void changed(final Path path) {
+            // any change in the directory, as a file may be changed by replacing a link it resolves through
+            if (watchedDirectories.contains(path) || watchedDirectories.contains(path.getParent())) {
+                scheduleReload();
+            }
+        }
+
+        @Override
+        public void invalidated(final Path directory) {
+            if (watchedDirectories.remove(directory)) {
+                lose(directory);
+            }
+        }
+    };
 
     /**
      * specify a set of file paths to use. Any unresolvable paths are ignored.
@@ -66,66 +177,456 @@ public final class FileResolver implements Resolver {
      * @param files a non-null list of file paths to use.
      */
     public FileResolver(final List<String> files) {
-        this.paths = new ArrayList<>();
+        this(files, false);
+    }
+
+    /**
+     * specify a list of file paths to use. Any unresolvable paths are ignored.
+     * 
+     * @param files a non-null list of file paths to use.
+     * @param checksums if true, the content of a file whose modification time has changed is checksummed, and the file
+     *            is only parsed again if the content has changed.
+     */
+    public FileResolver(final List<String> files, final boolean checksums) {
+        this(toPaths(files), checksums, true, REFRESH_INTERVAL);
+    }
+
+    /**
+     * specify a set of paths to use. It is assumed that all paths are resolvable.
+     * 
+     * @param files a set of paths to use.
+     */
+    public FileResolver(final Path... files) {
+        this(Arrays.asList(files), false, true, REFRESH_INTERVAL);
+    }
+
+    /**
+     * constructor which checks and parses files on the reloading thread.
+     * 
+     * @param files the non-null list of paths to use.
+     * @param checksums if true, file content is checksummed to avoid parsing unchanged files.
+     * @param watch if true, the file watcher is used to detect changes where possible.
+     * @param pollMillis the period at which the files are reloaded if they are not being watched. If less than 1, the
+     *            files are never polled, and the owner of this resolver is responsible for calling reload().
+     */
+    FileResolver(final List<Path> files, final boolean checksums, final boolean watch, final long pollMillis) {
+        this(files, checksums, watch, pollMillis, null);
+    }
+
+    /**
+     * primary constructor.
+     * 
+     * @param files the non-null list of paths to use.
+     * @param checksums if true, file content is checksummed to avoid parsing unchanged files.
+     * @param watch if true, the file watcher is used to detect changes where possible.
+     * @param pollMillis the period at which the files are reloaded if they are not being watched. If less than 1, the
+     *            files are never polled, and the owner of this resolver is responsible for calling reload().
+     * @param forkJoinPool the pool used to check and parse files in parallel, or null to do so on the reloading thread.
+     */
+    FileResolver(final List<Path> files, final boolean checksums, final boolean watch, final long pollMillis,
+            final ForkJoinPool forkJoinPool) {
+        this.paths = new ArrayList<>(files);
+        this.useChecksums = checksums;
+        this.pool = forkJoinPool;
+        reload();
+        if (!watch && pollMillis < 1) {
+            return;
+        }
+
+        boolean watching = watch;
+        for (Path path : paths) {
+            Path parent = path.toAbsolutePath().normalize().getParent();
+            if (watching && parent != null && watchedDirectories.add(parent)) {
+                watching = FileWatcher.getInstance().register(parent, watchListener);
+            }
+        }
+        long period = watching ? REFRESH_INTERVAL : pollMillis;
+        if (period > 0) {
+            LOGGER.debug("polling files every {}ms", period);
+            synchronized (reloadLock) {
+                pollTask = Scheduler.get().scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        reload();
+                    }
+                }, period, period, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * convert strings to paths, ignoring any that are not valid.
+     * 
+     * @param files the non-null list of file paths.
+     * @return the valid paths.
+     */
+    private static List<Path> toPaths(final List<String> files) {
+        List<Path> result = new ArrayList<>();
         for (String path : files) {
             try {
-                this.paths.add(Paths.get(path));
+                result.add(Paths.get(path));
             } catch (InvalidPathException ipe) {
                 LOGGER.warn("Invalid path [{}] supplied", path);
             }
         }
+        return result;
     }
 
     /**
-     * specify a set of paths to use. It is assumed that all paths are resolvable.
-     * 
-     * @param files a set of paths to use.
+     * arrange for a reload shortly, unless one is already arranged.
      */
-    public FileResolver(final Path... files) {
-        this.paths = new ArrayList<>(Arrays.asList(files));
+    private void scheduleReload() {
+        if (reloadPending.compareAndSet(false, true)) {
+            Scheduler.get().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    reloadPending.set(false);
+                    reload();
+                }
+            }, SETTLE_DELAY, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
-     * find the files and load the contents.
+     * start trying to register a directory that can no longer be watched, reloading the files each time until it is
+     * registered again.
+     * 
+     * @param directory the directory that is no longer watched.
      */
-    private void doLoad() {
-        LOGGER.debug("loading from files");
-        if (reloadDue()) {
-            resourceLock.lock();
-            try {
-                if (reloadDue()) {
-                    properties.clear();
-                    for (Path path : paths) {
-                        try {
-                            Properties props = new Properties();
-                            props.load(Files.newInputStream(path));
-                            properties.putAll(props);
-                        } catch (IOException ioe) {
-                            LOGGER.warn("Error loading from [{}]", path);
-                        }
+    private void lose(final Path directory) {
+        synchronized (lostDirectories) {
+            if (closed) {
+                return;
+            }
+            lostDirectories.add(directory);
+            if (retryTask == null) {
+                retryTask = Scheduler.get().scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        rewatch();
                     }
-                    lastRefreshed = System.currentTimeMillis();
+                }, FileWatcher.RETRY_INTERVAL, FileWatcher.RETRY_INTERVAL, TimeUnit.MILLISECONDS);
+            }
+        }
+        scheduleReload();
+    }
+
+    /**
+     * try to register the lost directories again, then reload, so that changes made while they were not watched are
+     * picked up.
+     */
+    private void rewatch() {
+        synchronized (lostDirectories) {
+            if (closed) {
+                return;
+            }
+            for (Iterator<Path> iterator = lostDirectories.iterator(); iterator.hasNext();) {
+                Path directory = iterator.next();
+                if (FileWatcher.getInstance().register(directory, watchListener)) {
+                    watchedDirectories.add(directory);
+                    iterator.remove();
                 }
-            } finally {
-                resourceLock.unlock();
+            }
+            if (lostDirectories.isEmpty()) {
+                LOGGER.debug("watching files again");
+                retryTask.cancel(false);
+                retryTask = null;
             }
         }
+        reload();
     }
 
     /**
-     * is a reload from files due?
+     * replace the set of files being referenced, and reload. Files that were already referenced and have not changed
+     * are not parsed again. Note that the new files are not watched, so the caller is responsible for calling reload()
+     * when they change.
+     * <p>
+     * Callers may hand over sets of files from several threads at once, so each set carries a version, and a set older
+     * than the one already in use is ignored.
      * 
-     * @return true if it is.
+     * @param files the non-null list of paths to use, in increasing order of precedence.
+     * @param version the version of the set of files, which increases each time the set changes.
      */
-    private boolean reloadDue() {
-        return System.currentTimeMillis() - lastRefreshed > REFRESH_INTERVAL;
+    void setPaths(final List<Path> files, final long version) {
+        synchronized (reloadLock) {
+            if (version <= pathsVersion) {
+                return;
+            }
+            paths = new ArrayList<>(files);
+            pathsVersion = version;
+        }
+        reload();
+    }
+
+    /**
+     * reload any files that have changed. Listeners are told which keys have changed, if any.
+     */
+    public void reload() {
+        Set<String> changed;
+        long started = System.nanoTime();
+        synchronized (reloadLock) {
+            LOGGER.debug("loading from files");
+            Map<Path, FileState> latest = new HashMap<>();
+            FileState[] refreshed = new FileState[paths.size()];
+            if (pool != null && paths.size() > PARALLEL_THRESHOLD) {
+                pool.invoke(new RefreshTask(paths, refreshed, 0, paths.size()));
+            } else {
+                new RefreshTask(paths, refreshed, 0, paths.size()).compute();
+            }
+            for (int i = 0; i < refreshed.length; i++) {
+                latest.put(paths.get(i), refreshed[i]);
+            }
+            states.clear();
+            states.putAll(latest);
+
+            // merge in list order, so that later files take precedence
+            Map<String, String> merged = new HashMap<>();
+            for (Path path : paths) {
+                merged.putAll(latest.get(path).values);
+            }
+            changed = ReloadSupport.changedKeys(properties, merged);
+            if (!changed.isEmpty()) {
+                properties = Collections.unmodifiableMap(merged);
+            }
+        }
+        if (!changed.isEmpty()) {
+            reloadSupport.fire(new ReloadEvent(this, changed, System.nanoTime() - started));
+        }
+    }
+
+    /**
+     * bring what is known about a single file up to date, parsing it only if necessary.
+     * 
+     * @param path the file to check.
+     * @param previous what was found at the last load, or null if this is the first load.
+     * @return the non-null current state of the file.
+     */
+    private FileState refresh(final Path path, final FileState previous) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException ioe) {
+            return FileState.MISSING;
+        }
+        long modified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+        // a file reached through a link that now resolves elsewhere is a different file, even if its time and size match
+        Object fileKey = attributes.fileKey();
+        if (previous != null && previous.modified == modified && previous.size == size && Objects.equals(previous.fileKey, fileKey)
+                && previous.checked - modified > RACY_WINDOW) {
+            return previous;
+        }
+        long checked = System.currentTimeMillis();
+
+        byte[] content;
+        try {
+            content = Files.readAllBytes(path);
+        } catch (IOException ioe) {
+            LOGGER.warn("Error loading from [{}]", path);
+            return FileState.MISSING;
+        }
+        long checksum = useChecksums ? checksum(content) : 0;
+        if (useChecksums && previous != null && previous.checksum == checksum && previous.size == content.length) {
+            LOGGER.debug("[{}] touched but unchanged", path);
+            return new FileState(modified, size, fileKey, checksum, checked, previous.values);
+        }
+        LOGGER.debug("parsing [{}]", path);
+        parseCount.incrementAndGet();
+        return new FileState(modified, size, fileKey, checksum, checked, parse(path, content));
+    }
+
+    /**
+     * checksum some content.
+     * 
+     * @param content the content.
+     * @return the checksum.
+     */
+    private static long checksum(final byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        return crc.getValue();
+    }
+
+    /**
+     * parse the content of a properties file.
+     * 
+     * @param path the file the content came from.
+     * @param content the content.
+     * @return the properties found, empty if the content could not be parsed.
+     */
+    private static Map<String, String> parse(final Path path, final byte[] content) {
+        Map<String, String> result = new HashMap<>();
+        Properties props = new Properties();
+        try (InputStream stream = new ByteArrayInputStream(content)) {
+            props.load(stream);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warn("Error loading from [{}]", path);
+            return result;
+        }
+        for (String name : props.stringPropertyNames()) {
+            result.put(name, props.getProperty(name));
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of times a file has been parsed.
+     */
+    long getParseCount() {
+        return parseCount.get();
     }
 
     @Override
     public String get(final String key) {
-        LOGGER.debug("attempting get({})", key);
-        doLoad();
-        return properties.getProperty(key);
+        return key == null ? null : properties.get(key);
+    }
+
+    @Override
+    public Map<String, String> getSnapshot() {
+        return properties;
+    }
+
+    @Override
+    public void addReloadListener(final ReloadListener listener) {
+        reloadSupport.add(listener);
+    }
+
+    @Override
+    public void removeReloadListener(final ReloadListener listener) {
+        reloadSupport.remove(listener);
+    }
+
+    /**
+     * stop watching or polling the files. The last loaded properties remain available.
+     */
+    @Override
+    public void close() {
+        synchronized (lostDirectories) {
+            closed = true;
+            lostDirectories.clear();
+            if (retryTask != null) {
+                retryTask.cancel(false);
+                retryTask = null;
+            }
+        }
+        for (Path directory : watchedDirectories) {
+            FileWatcher.getInstance().unregister(directory, watchListener);
+        }
+        synchronized (reloadLock) {
+            if (pollTask != null) {
+                pollTask.cancel(false);
+                pollTask = null;
+            }
+        }
+    }
+
+    /**
+     * brings the state of a range of files up to date, splitting the range across the pool if it is large. Each file's
+     * state is written to its own slot in the result, so the order of the files is preserved.
+     */
+    private final class RefreshTask extends RecursiveAction {
+        /**
+         * serialisation version.
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * the files to bring up to date.
+         */
+        private final List<Path> files;
+        /**
+         * where to put the state of each file.
+         */
+        private final FileState[] result;
+        /**
+         * the first index in the range, inclusive.
+         */
+        private final int from;
+        /**
+         * the last index in the range, exclusive.
+         */
+        private final int to;
+
+        /**
+         * primary constructor.
+         * 
+         * @param theFiles the files to bring up to date.
+         * @param theResult where to put the state of each file.
+         * @param theFrom the first index in the range, inclusive.
+         * @param theTo the last index in the range, exclusive.
+         */
+        RefreshTask(final List<Path> theFiles, final FileState[] theResult, final int theFrom, final int theTo) {
+            files = theFiles;
+            result = theResult;
+            from = theFrom;
+            to = theTo;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    Path path = files.get(i);
+                    result[i] = refresh(path, states.get(path));
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RefreshTask(files, result, from, middle), new RefreshTask(files, result, middle, to));
+            }
+        }
     }
 
+    /**
+     * what was found in a single file at the last load.
+     */
+    private static final class FileState {
+        /**
+         * the state of a file that does not exist or could not be read.
+         */
+        static final FileState MISSING = new FileState(-1, -1, null, 0, 0, Collections.<String, String> emptyMap());
+
+        /**
+         * the modification time in milliseconds.
+         */
+        private final long modified;
+        /**
+         * the size in bytes.
+         */
+        private final long size;
+        /**
+         * the key identifying the file on the file system, or null if the file system has none.
+         */
+        private final Object fileKey;
+        /**
+         * the checksum of the content, or 0 if checksums are not in use.
+         */
+        private final long checksum;
+        /**
+         * when, in milliseconds, the file was read.
+         */
+        private final long checked;
+        /**
+         * the properties found in the file.
+         */
+        private final Map<String, String> values;
+
+        /**
+         * primary constructor.
+         * 
+         * @param theModified the modification time in milliseconds.
+         * @param theSize the size in bytes.
+         * @param theFileKey the key identifying the file on the file system, may be null.
+         * @param theChecksum the checksum of the content.
+         * @param theChecked when, in milliseconds, the file was read.
+         * @param theValues the properties found in the file.
+         */
+        FileState(final long theModified, final long theSize, final Object theFileKey, final long theChecksum,
+                final long theChecked, final Map<String, String> theValues) {
+            modified = theModified;
+            size = theSize;
+            fileKey = theFileKey;
+            checksum = theChecksum;
+            checked = theChecked;
+            values = theValues;
+        }
+    }
 }
@@ -0,0 +1,232 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * a single WatchService, and the single daemon thread that services it, shared by every resolver that wants to know
+ * when files change. Listeners register interest in a directory and are told the path of each entry in that directory
+ * that is created, modified or deleted. If a watched directory goes away, it stops being watched and its listeners are
+ * told, so that they can fall back to polling until it can be registered again.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+final class FileWatcher {
+    /**
+     * logging instance.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileWatcher.class);
+
+    /**
+     * the shared instance.
+     */
+    private static final FileWatcher INSTANCE = new FileWatcher();
+    /**
+     * time in ms between attempts to register a directory again after it has stopped being watched.
+     */
+    static final long RETRY_INTERVAL = 1000;
+
+    /**
+     * classes that implement this are told about changes in a watched directory.
+     */
+    interface Listener {
+        /**
+         * called on the watcher thread when something in a watched directory changes. Implementations should return
+         * quickly.
+         * 
+         * @param path the path of the entry that changed, or the directory itself if events were lost and anything in
+         *            it may have changed.
+         */
+        void changed(Path path);
+
+        /**
+         * called on the watcher thread when a watched directory can no longer be watched, usually because it has been
+         * deleted. The directory is no longer registered, so nothing more will be reported about it until it is
+         * registered again. Implementations should return quickly.
+         * 
+         * @param directory the absolute, normalised path of the directory.
+         */
+        void invalidated(Path directory);
+    }
+
+    /**
+     * the watch service, or null if watching is not available on this platform.
+     */
+    private final WatchService watchService;
+    /**
+     * the watched directories and their listeners.
+     */
+    @GuardedBy("this")
+    private final Map<Path, List<Listener>> listeners = new HashMap<>();
+    /**
+     * the watch key for each watched directory.
+     */
+    @GuardedBy("this")
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    /**
+     * the thread servicing the watch service, started when the first directory is registered.
+     */
+    @GuardedBy("this")
+    private Thread thread;
+
+    /**
+     * private constructor, use getInstance().
+     */
+    private FileWatcher() {
+        WatchService service = null;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.info("File watching is not available, falling back to polling");
+        }
+        watchService = service;
+    }
+
+    /**
+     * @return the shared instance.
+     */
+    static FileWatcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return true if directories can be watched on this platform.
+     */
+    boolean isAvailable() {
+        return watchService != null;
+    }
+
+    /**
+     * start telling a listener about changes in a directory.
+     * 
+     * @param directory the directory to watch.
+     * @param listener the listener to tell.
+     * @return true if the directory is being watched, false if it cannot be, in which case the caller should poll.
+     */
+    synchronized boolean register(final Path directory, final Listener listener) {
+        if (watchService == null) {
+            return false;
+        }
+        Path dir = directory.toAbsolutePath().normalize();
+        List<Listener> registered = listeners.get(dir);
+        if (registered == null) {
+            try {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                keys.put(key, dir);
+            } catch (IOException | UnsupportedOperationException | ClosedWatchServiceException e) {
+                LOGGER.debug("Unable to watch [{}]", dir);
+                return false;
+            }
+            registered = new CopyOnWriteArrayList<>();
+            listeners.put(dir, registered);
+        }
+        registered.add(listener);
+        if (thread == null) {
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    service();
+                }
+            }, "PropertySource-FileWatcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return true;
+    }
+
+    /**
+     * stop telling a listener about changes in a directory. When a directory has no listeners left it is no longer
+     * watched.
+     * 
+     * @param directory the directory that was registered.
+     * @param listener the listener that was registered.
+     */
+    synchronized void unregister(final Path directory, final Listener listener) {
+        Path dir = directory.toAbsolutePath().normalize();
+        List<Listener> registered = listeners.get(dir);
+        if (registered != null) {
+            registered.remove(listener);
+            if (registered.isEmpty()) {
+                listeners.remove(dir);
+                for (Map.Entry<WatchKey, Path> entry : keys.entrySet()) {
+                    if (entry.getValue().equals(dir)) {
+                        entry.getKey().cancel();
+                        keys.remove(entry.getKey());
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * wait for and dispatch events until the watch service is closed.
+     */
+    private void service() {
+        for (;;) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir;
+            List<Listener> registered;
+            synchronized (this) {
+                dir = keys.get(key);
+                registered = dir == null ? null : listeners.get(dir);
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (registered != null) {
+                    Path changed = event.kind() == StandardWatchEventKinds.OVERFLOW ? dir : dir.resolve((Path) event.context());
+                    for (Listener listener : registered) {
+                        try {
+                            listener.changed(changed);
+                        } catch (RuntimeException re) {
+                            LOGGER.warn("File watch listener [{}] failed", listener, re);
+                        }
+                    }
+                }
+            }
+            if (!key.reset()) {
+                // the directory has gone away, so forget it and tell its listeners, who can register it again
+                synchronized (this) {
+                    keys.remove(key);
+                    if (dir != null && listeners.get(dir) == registered) {
+                        listeners.remove(dir);
+                    } else {
+                        registered = null;
+                    }
+                }
+                if (registered != null) {
+                    LOGGER.debug("[{}] can no longer be watched", dir);
+                    for (Listener listener : registered) {
+                        try {
+                            listener.invalidated(dir);
+                        } catch (RuntimeException re) {
+                            LOGGER.warn("File watch listener [{}] failed", listener, re);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
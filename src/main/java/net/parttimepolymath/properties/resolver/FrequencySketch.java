@@ -0,0 +1,151 @@
+package net.parttimepolymath.properties.resolver;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * approximate count of how often keys have been seen recently, used by TinyLfuCache to decide which entries are worth
+ * keeping. This is a count-min sketch of 4-bit counters: each key maps to four counters, and its frequency is the
+ * smallest of them. Once enough keys have been counted, every counter is halved, so that the counts favour recent
+ * history.
+ * 
+ * @author robert
+ */
+@NotThreadSafe
+final class FrequencySketch {
+    /**
+     * the largest value a counter can hold.
+     */
+    static final int MAX_FREQUENCY = 15;
+    /**
+     * the number of counters each key maps to.
+     */
+    private static final int DEPTH = 4;
+    /**
+     * the number of bits in a counter.
+     */
+    private static final int COUNTER_BITS = 4;
+    /**
+     * the number of counters packed into each long.
+     */
+    private static final int COUNTERS_PER_SLOT = Long.SIZE / COUNTER_BITS;
+    /**
+     * mask that clears the top bit of each counter, applied after shifting all counters right to halve them.
+     */
+    private static final long HALVING_MASK = 0x7777777777777777L;
+    /**
+     * how many times the capacity may be counted before the counters are halved.
+     */
+    private static final int SAMPLE_FACTOR = 10;
+    /**
+     * the smallest number of slots used.
+     */
+    private static final int MINIMUM_SLOTS = 8;
+    /**
+     * a distinct multiplier for each of the counters a key maps to.
+     */
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    /**
+     * multiplier used to spread hash codes, derived from the golden ratio.
+     */
+    private static final int GOLDEN_RATIO = 0x9e3779b9;
+
+    /**
+     * the counters, packed sixteen to a long.
+     */
+    private final long[] table;
+    /**
+     * the number of counts after which the counters are halved.
+     */
+    private final int sampleSize;
+    /**
+     * the number of counts since the counters were last halved.
+     */
+    private int additions;
+
+    /**
+     * primary constructor.
+     * 
+     * @param capacity the number of entries in the cache that this sketch serves.
+     */
+    FrequencySketch(final int capacity) {
+        int slots = Math.max(MINIMUM_SLOTS, Integer.highestOneBit(Math.max(1, capacity) - 1) << 1);
+        table = new long[slots];
+        sampleSize = (int) Math.min(Integer.MAX_VALUE, (long) SAMPLE_FACTOR * Math.max(1, capacity));
+    }
+
+    /**
+     * count one sighting of a key.
+     * 
+     * @param key the non-null key.
+     */
+    void increment(final Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            long position = position(hash, i);
+            int slot = (int) (position >>> Integer.SIZE);
+            int shift = (int) position;
+            if ((table[slot] >>> shift & MAX_FREQUENCY) < MAX_FREQUENCY) {
+                table[slot] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            halve();
+        }
+    }
+
+    /**
+     * estimate how often a key has been seen recently.
+     * 
+     * @param key the non-null key.
+     * @return the estimate, between 0 and MAX_FREQUENCY.
+     */
+    int frequency(final Object key) {
+        int hash = spread(key.hashCode());
+        int result = MAX_FREQUENCY;
+        for (int i = 0; i < DEPTH; i++) {
+            long position = position(hash, i);
+            int count = (int) (table[(int) (position >>> Integer.SIZE)] >>> (int) position & MAX_FREQUENCY);
+            result = Math.min(result, count);
+        }
+        return result;
+    }
+
+    /**
+     * halve every counter, so that old sightings count for less than new ones.
+     */
+    private void halve() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = table[i] >>> 1 & HALVING_MASK;
+        }
+        additions /= 2;
+    }
+
+    /**
+     * find one of the counters for a key.
+     * 
+     * @param hash the spread hash of the key.
+     * @param depth which of the key's counters to find.
+     * @return the index of the slot in the upper 32 bits, and the bit offset of the counter within it in the lower.
+     */
+    private long position(final int hash, final int depth) {
+        long mixed = (hash + SEEDS[depth]) * SEEDS[depth];
+        mixed ^= mixed >>> Integer.SIZE;
+        int slot = (int) mixed & table.length - 1;
+        int counter = (int) (mixed >>> (Integer.SIZE + COUNTER_BITS * depth)) & COUNTERS_PER_SLOT - 1;
+        return (long) slot << Integer.SIZE | counter * COUNTER_BITS;
+    }
+
+    /**
+     * improve the distribution of a hash code.
+     * 
+     * @param hashCode the hash code of a key.
+     * @return the improved hash.
+     */
+    private static int spread(final int hashCode) {
+        int hash = hashCode * GOLDEN_RATIO;
+        return hash ^ hash >>> (Integer.SIZE / 2);
+    }
+}
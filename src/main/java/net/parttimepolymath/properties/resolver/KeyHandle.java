@@ -0,0 +1,128 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.util.function.Function;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * the PropertyKey handed out by PropertyResolver. The value is held along with the generation of the PropertyResolver
+ * it was resolved at, and is only resolved again once the generation moves on, which happens each time a source
+ * reloads. Reading a held value is therefore two volatile reads, with no hashing of the key and no allocation.
+ * <p>
+ * If some source cannot report its changes, the generation is not usable and the key is resolved on every read, but
+ * the raw value is only parsed again if it has changed.
+ * 
+ * @author robert
+ * @param <T> the type of the value.
+ */
+@ThreadSafe
+final class KeyHandle<T> implements PropertyKey<T> {
+    /**
+     * the source the key is resolved from.
+     */
+    private final PropertyResolver source;
+    /**
+     * the key.
+     */
+    private final String name;
+    /**
+     * converts the raw value.
+     */
+    private final Function<String, T> parser;
+    /**
+     * the value used if the key cannot be found or its value cannot be parsed.
+     */
+    private final T defaultValue;
+    /**
+     * the value last resolved, or null if the key has not been resolved yet.
+     */
+    private volatile Slot<T> slot;
+
+    /**
+     * primary constructor.
+     * 
+     * @param theSource the non-null source to resolve the key from.
+     * @param theName the key, may be null.
+     * @param theParser the non-null parser for the raw value.
+     * @param theDefault the value used if the key cannot be found or its value cannot be parsed, may be null.
+     */
+    KeyHandle(final PropertyResolver theSource, final String theName, final Function<String, T> theParser, final T theDefault) {
+        source = theSource;
+        name = theName;
+        parser = theParser;
+        defaultValue = theDefault;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public T get() {
+        // the generation must be read before resolving, so that a value resolved during a reload is not held past it
+        long generation = source.getGeneration();
+        Slot<T> current = slot;
+        if (current != null && generation != PropertyResolver.UNSTABLE && current.generation == generation) {
+            return current.value;
+        }
+        String raw = source.get(name);
+        if (current != null && (raw == null ? current.raw == null : raw.equals(current.raw))) {
+            if (current.generation != generation) {
+                slot = new Slot<>(generation, raw, current.value);
+            }
+            return current.value;
+        }
+        T value = defaultValue;
+        if (raw != null) {
+            try {
+                T parsed = parser.apply(raw);
+                value = parsed == null ? defaultValue : parsed;
+            } catch (RuntimeException re) {
+                value = defaultValue;
+            }
+        }
+        slot = new Slot<>(generation, raw, value);
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PropertyKey [name=%s]", name);
+    }
+
+    /**
+     * a resolved value and the generation it was resolved at.
+     * 
+     * @param <T> the type of the value.
+     */
+    @Immutable
+    private static final class Slot<T> {
+        /**
+         * the generation of the source when the value was resolved.
+         */
+        private final long generation;
+        /**
+         * the raw value, or null if the key could not be found.
+         */
+        private final String raw;
+        /**
+         * the value.
+         */
+        private final T value;
+
+        /**
+         * primary constructor.
+         * 
+         * @param theGeneration the generation of the source when the value was resolved.
+         * @param theRaw the raw value, or null if the key could not be found.
+         * @param theValue the value.
+         */
+        Slot(final long theGeneration, final String theRaw, final T theValue) {
+            generation = theGeneration;
+            raw = theRaw;
+            value = theValue;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * records durations into buckets whose bounds are powers of two nanoseconds, so that recording a duration is a couple
+ * of striped increments, with no locking or allocation. Percentiles are reported as the upper bound of the bucket
+ * they fall in, so are accurate to within a factor of two.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+final class LatencyHistogram {
+    /**
+     * the number of buckets. Bucket 0 holds durations of 0, and bucket n holds durations from 2^(n-1) up to 2^n - 1
+     * nanoseconds. The last bucket also holds anything longer, from about nine minutes.
+     */
+    static final int BUCKETS = 40;
+    /**
+     * the median.
+     */
+    private static final double P50 = 0.5;
+    /**
+     * the 90th percentile.
+     */
+    private static final double P90 = 0.9;
+    /**
+     * the 99th percentile.
+     */
+    private static final double P99 = 0.99;
+
+    /**
+     * the number of durations recorded in each bucket.
+     */
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    /**
+     * the sum of the durations recorded.
+     */
+    private final LongAdder total = new LongAdder();
+    /**
+     * the longest duration recorded.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * primary constructor.
+     */
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * record a duration.
+     * 
+     * @param nanos the duration in nanoseconds. If less than 0, 0 is recorded.
+     */
+    void record(final long nanos) {
+        long duration = Math.max(0, nanos);
+        counts[bucket(duration)].increment();
+        total.add(duration);
+        long longest = max.get();
+        while (duration > longest && !max.compareAndSet(longest, duration)) {
+            longest = max.get();
+        }
+    }
+
+    /**
+     * @return a summary of the durations recorded so far. Durations recorded while the summary is made may or may not
+     *         be included.
+     */
+    LatencySummary summarise() {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            count += snapshot[i];
+        }
+        long longest = max.get();
+        return new LatencySummary(count, total.sum(), longest, percentile(snapshot, count, P50, longest),
+                percentile(snapshot, count, P90, longest), percentile(snapshot, count, P99, longest));
+    }
+
+    /**
+     * find the bucket a duration belongs in.
+     * 
+     * @param nanos the non-negative duration in nanoseconds.
+     * @return the index of the bucket.
+     */
+    static int bucket(final long nanos) {
+        return Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /**
+     * estimate a percentile from bucket counts.
+     * 
+     * @param snapshot the number of durations in each bucket.
+     * @param count the total of the counts.
+     * @param fraction the percentile as a fraction, greater than 0 and at most 1.
+     * @param longest the longest duration recorded, which bounds the estimate.
+     * @return the upper bound of the bucket holding the percentile, or 0 if nothing was recorded.
+     */
+    private static long percentile(final long[] snapshot, final long count, final double fraction, final long longest) {
+        long rank = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(longest, i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1);
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,115 @@
+package net.parttimepolymath.properties.resolver;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * summary of a set of recorded durations. Percentiles are estimates, accurate to within a factor of two, and never
+ * more than the longest duration recorded.
+ * 
+ * @author robert
+ */
+@Immutable
+public final class LatencySummary {
+    /**
+     * the number of durations recorded.
+     */
+    private final long count;
+    /**
+     * the sum of the durations, in nanoseconds.
+     */
+    private final long totalNanos;
+    /**
+     * the longest duration, in nanoseconds.
+     */
+    private final long maxNanos;
+    /**
+     * the estimated median, in nanoseconds.
+     */
+    private final long p50Nanos;
+    /**
+     * the estimated 90th percentile, in nanoseconds.
+     */
+    private final long p90Nanos;
+    /**
+     * the estimated 99th percentile, in nanoseconds.
+     */
+    private final long p99Nanos;
+
+    /**
+     * primary constructor.
+     * 
+     * @param theCount the number of durations recorded.
+     * @param total the sum of the durations, in nanoseconds.
+     * @param max the longest duration, in nanoseconds.
+     * @param p50 the estimated median, in nanoseconds.
+     * @param p90 the estimated 90th percentile, in nanoseconds.
+     * @param p99 the estimated 99th percentile, in nanoseconds.
+     */
+    LatencySummary(final long theCount, final long total, final long max, final long p50, final long p90, final long p99) {
+        count = theCount;
+        totalNanos = total;
+        maxNanos = max;
+        p50Nanos = p50;
+        p90Nanos = p90;
+        p99Nanos = p99;
+    }
+
+    /**
+     * @return the number of durations recorded.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the sum of the durations, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return the mean duration in nanoseconds, or 0 if none were recorded.
+     */
+    public long getMeanNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * @return the longest duration, in nanoseconds.
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @return the estimated median, in nanoseconds.
+     */
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    /**
+     * @return the estimated 90th percentile, in nanoseconds.
+     */
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    /**
+     * @return the estimated 99th percentile, in nanoseconds.
+     */
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("LatencySummary [count=%s, mean=%sns, p50=%sns, p90=%sns, p99=%sns, max=%sns]", count, getMeanNanos(),
+                p50Nanos, p90Nanos, p99Nanos, maxNanos);
+    }
+}
@@ -0,0 +1,120 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * resolver which merges the content of several SnapshotResolvers into a single map, so that a lookup across all of
+ * them is a single probe. Earlier resolvers take precedence over later ones, exactly as if they were consulted in turn.
+ * The merged map, and a sorted index of it for prefix queries, are rebuilt only when one of the resolvers reports a
+ * reload, and listeners are told about the reload once the rebuilt map is in place.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+final class MergedResolver implements SnapshotResolver, ReloadableResolver {
+    /**
+     * logging instance.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MergedResolver.class);
+
+    /**
+     * the resolvers being merged, in order of precedence.
+     */
+    private final List<SnapshotResolver> resolvers;
+    /**
+     * the merged content. This is never modified, only replaced.
+     */
+    private volatile Map<String, String> merged;
+    /**
+     * the merged content sorted by key, for prefix queries. This is rebuilt along with the merged content.
+     */
+    private volatile PrefixIndex index = PrefixIndex.EMPTY;
+    /**
+     * the listeners to tell about reloads.
+     */
+    private final ReloadSupport reloadSupport = new ReloadSupport();
+
+    /**
+     * primary constructor.
+     * 
+     * @param theResolvers the non-null list of resolvers to merge, in order of precedence.
+     */
+    MergedResolver(final List<SnapshotResolver> theResolvers) {
+        resolvers = Collections.unmodifiableList(new ArrayList<>(theResolvers));
+        ReloadListener rebuilder = new ReloadListener() {
+            @Override
+            public void reloaded(final ReloadEvent event) {
+                long started = System.nanoTime();
+                rebuild();
+                reloadSupport.fire(new ReloadEvent(MergedResolver.this, event.getChangedKeys(),
+                        event.getDurationNanos() + System.nanoTime() - started));
+            }
+        };
+        for (SnapshotResolver resolver : resolvers) {
+            if (resolver instanceof ReloadableResolver) {
+                ((ReloadableResolver) resolver).addReloadListener(rebuilder);
+            }
+        }
+        rebuild();
+    }
+
+    /**
+     * merge the current content of the resolvers. This is serialised so that an older merge never replaces a newer one.
+     */
+    private synchronized void rebuild() {
+        Map<String, String> result = new HashMap<>();
+        for (int i = resolvers.size() - 1; i >= 0; i--) {
+            result.putAll(resolvers.get(i).getSnapshot());
+        }
+        LOGGER.debug("merged {} resolvers into {} keys", resolvers.size(), result.size());
+        index = new PrefixIndex(result);
+        merged = Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * @return the resolvers being merged, in order of precedence.
+     */
+    List<SnapshotResolver> getResolvers() {
+        return resolvers;
+    }
+
+    @Override
+    public String get(final String key) {
+        return key == null ? null : merged.get(key);
+    }
+
+    @Override
+    public SortedMap<String, String> getByPrefix(final String prefix) {
+        return index.subtree(prefix);
+    }
+
+    @Override
+    public Map<String, String> getSnapshot() {
+        return merged;
+    }
+
+    @Override
+    public void addReloadListener(final ReloadListener listener) {
+        reloadSupport.add(listener);
+    }
+
+    @Override
+    public void removeReloadListener(final ReloadListener listener) {
+        reloadSupport.remove(listener);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MergedResolver [resolvers=%s, keys=%s]", resolvers.size(), merged.size());
+    }
+}
@@ -0,0 +1,159 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * bounded cache of keys that recently could not be resolved anywhere in the chain, so that repeated lookups for absent
+ * keys do not have to walk the whole chain each time. Entries expire after a fixed time to live, and the whole cache
+ * can be invalidated when a resolver reloads.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+public final class NegativeCache {
+    /**
+     * the maximum number of keys remembered, zero if the cache is disabled.
+     */
+    private final int size;
+    /**
+     * time to live of an entry, in nanoseconds.
+     */
+    private final long ttl;
+    /**
+     * map of absent key to the System.nanoTime() at which that entry expires.
+     */
+    private final TinyLfuCache<String, Long> cache;
+    /**
+     * bumped on every invalidation so that lookups which started before an invalidation do not record stale misses.
+     */
+    private final AtomicLong generation = new AtomicLong();
+    /**
+     * count of lookups answered from this cache.
+     */
+    private final AtomicLong hits = new AtomicLong();
+    /**
+     * count of lookups not answered from this cache.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * primary constructor.
+     * 
+     * @param cacheSize the maximum number of absent keys to remember. If less than 1, the cache is disabled.
+     * @param ttlMillis how long, in milliseconds, a key is remembered as absent. If less than 1, the cache is disabled.
+     */
+    public NegativeCache(final int cacheSize, final long ttlMillis) {
+        size = cacheSize < 1 || ttlMillis < 1 ? 0 : cacheSize;
+        ttl = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        cache = size == 0 ? null : new TinyLfuCache<String, Long>(size);
+    }
+
+    /**
+     * @return true if this cache is in use.
+     */
+    public boolean isEnabled() {
+        return size > 0;
+    }
+
+    /**
+     * is the key known to be absent?
+     * 
+     * @param key the key to check.
+     * @return true if the key was recently found to be absent and that has not since been invalidated.
+     */
+    public boolean isAbsent(final String key) {
+        if (size == 0 || key == null) {
+            return false;
+        }
+        Long expiry = cache.get(key);
+        if (expiry != null && System.nanoTime() - expiry < 0) {
+            hits.incrementAndGet();
+            return true;
+        }
+        misses.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * obtain the current generation, which should be read before starting a lookup and passed to recordAbsent().
+     * 
+     * @return the current generation.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * remember that a key could not be resolved.
+     * 
+     * @param key the key that could not be resolved.
+     * @param lookupGeneration the generation read before the lookup started. If the cache has been invalidated since
+     *            then the key is not recorded, as the lookup may have missed a value that arrived during the reload.
+     */
+    public void recordAbsent(final String key, final long lookupGeneration) {
+        if (size == 0 || key == null) {
+            return;
+        }
+        if (lookupGeneration == generation.get()) {
+            cache.put(key, System.nanoTime() + ttl);
+            if (lookupGeneration != generation.get()) {
+                // invalidated while recording, and the invalidation may not have seen this entry
+                cache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * forget every remembered absent key.
+     */
+    public void invalidate() {
+        if (size > 0) {
+            generation.incrementAndGet();
+            cache.clear();
+        }
+    }
+
+    /**
+     * forget that some keys were absent. Lookups already in progress will not record any key as absent.
+     * 
+     * @param keys the keys to forget. If null, every key is forgotten.
+     */
+    public void invalidate(final Collection<String> keys) {
+        if (keys == null) {
+            invalidate();
+        } else if (size > 0) {
+            generation.incrementAndGet();
+            for (String key : keys) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * @return the number of lookups answered by this cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that this cache could not answer.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("NegativeCache [size=%s, ttl=%sms, hits=%s, misses=%s]", size, TimeUnit.NANOSECONDS.toMillis(ttl),
+                hits.get(), misses.get());
+    }
+}
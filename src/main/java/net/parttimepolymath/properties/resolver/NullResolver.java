@@ -1,23 +1,22 @@
 package net.parttimepolymath.properties.resolver;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * resolver which always succesfully does not find a result.
  * 
  * @author robert
  */
-public final class NullResolver implements Resolver {
-    /**
-     * logging instance.
-     */
-    private static final Logger LOGGER = LoggerFactory.getLogger(NullResolver.class);
-
+public final class NullResolver implements SnapshotResolver {
     @Override
     public String get(final String key) {
-        LOGGER.debug("attempting get({})", key);
         return null;
     }
 
+    @Override
+    public Map<String, String> getSnapshot() {
+        return Collections.emptyMap();
+    }
+
 }
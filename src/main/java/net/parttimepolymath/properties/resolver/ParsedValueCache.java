@@ -0,0 +1,99 @@
+package net.parttimepolymath.properties.resolver;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * remembers the typed value parsed from the raw value of each key, so that a value is only parsed again when its raw
+ * value changes. Reading a remembered value does no parsing and allocates nothing. Values that could not be parsed are
+ * remembered as well, so repeatedly reading a bad value does not repeatedly fail to parse it. The number of keys
+ * remembered is bounded, and when there are too many, those read least often recently are forgotten.
+ * 
+ * @author robert
+ * @param <T> the type of the parsed values.
+ */
+@ThreadSafe
+final class ParsedValueCache<T> {
+    /**
+     * the largest number of keys remembered.
+     */
+    static final int LIMIT = 1024;
+
+    /**
+     * the parser used.
+     */
+    private final ValueParser<T> parser;
+    /**
+     * the remembered values, by key.
+     */
+    private final TinyLfuCache<String, Entry<T>> entries = new TinyLfuCache<>(LIMIT);
+
+    /**
+     * primary constructor.
+     * 
+     * @param theParser the non-null parser to use.
+     */
+    ParsedValueCache(final ValueParser<T> theParser) {
+        parser = theParser;
+    }
+
+    /**
+     * obtain the typed value for a key.
+     * 
+     * @param key the key whose value this is.
+     * @param raw the current raw value of the key, may be null.
+     * @return the parsed value, or null if the raw value is null or could not be parsed.
+     */
+    T get(final String key, final String raw) {
+        if (key == null || raw == null) {
+            return null;
+        }
+        Entry<T> entry = entries.get(key);
+        if (entry != null && raw.equals(entry.raw)) {
+            return entry.value;
+        }
+        T value;
+        try {
+            value = parser.parse(raw);
+        } catch (IllegalArgumentException iae) {
+            value = null;
+        }
+        entries.put(key, new Entry<>(raw, value));
+        return value;
+    }
+
+    /**
+     * @return the number of keys remembered.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * a raw value and the value parsed from it.
+     * 
+     * @param <T> the type of the parsed value.
+     */
+    @Immutable
+    private static final class Entry<T> {
+        /**
+         * the raw value.
+         */
+        private final String raw;
+        /**
+         * the parsed value, null if it could not be parsed.
+         */
+        private final T value;
+
+        /**
+         * primary constructor.
+         * 
+         * @param theRaw the non-null raw value.
+         * @param theValue the parsed value, null if it could not be parsed.
+         */
+        Entry(final String theRaw, final T theValue) {
+            raw = theRaw;
+            value = theValue;
+        }
+    }
+}
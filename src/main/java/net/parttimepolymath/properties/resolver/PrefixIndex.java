@@ -0,0 +1,97 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * sorted copy of a set of key/value pairs, so that every key starting with a given prefix can be found with a range
+ * query rather than by examining every key. The keys starting with a prefix are exactly those from the prefix itself
+ * up to, but not including, the smallest string that is greater than the prefix and does not start with it.
+ * 
+ * @author robert
+ */
+@Immutable
+final class PrefixIndex {
+    /**
+     * an index with nothing in it.
+     */
+    static final PrefixIndex EMPTY = new PrefixIndex(Collections.<String, String> emptyMap());
+
+    /**
+     * the indexed content, which is never modified.
+     */
+    private final NavigableMap<String, String> entries;
+
+    /**
+     * primary constructor.
+     * 
+     * @param content the non-null content to index. This is copied.
+     */
+    PrefixIndex(final Map<String, String> content) {
+        entries = Collections.unmodifiableNavigableMap(new TreeMap<>(content));
+    }
+
+    /**
+     * find every key starting with a prefix.
+     * 
+     * @param prefix the prefix, which may be null or blank to obtain every key.
+     * @return a non-null, unmodifiable view of the keys starting with the prefix and their values, in key order.
+     */
+    SortedMap<String, String> subtree(final String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return entries;
+        }
+        String limit = successor(prefix);
+        return limit == null ? entries.tailMap(prefix, true) : entries.subMap(prefix, true, limit, false);
+    }
+
+    /**
+     * find every key starting with a prefix by examining each entry in turn, for content that is not worth indexing.
+     * 
+     * @param content the non-null content to examine.
+     * @param prefix the prefix, which may be null or blank to obtain every key.
+     * @return a non-null, unmodifiable map of the keys starting with the prefix and their values, in key order.
+     */
+    static SortedMap<String, String> scan(final Map<String, String> content, final String prefix) {
+        SortedMap<String, String> result = new TreeMap<>();
+        for (Map.Entry<String, String> entry : content.entrySet()) {
+            if (prefix == null || entry.getKey().startsWith(prefix)) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return Collections.unmodifiableSortedMap(result);
+    }
+
+    /**
+     * @return the number of keys indexed.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * find the smallest string that is greater than every string starting with the prefix.
+     * 
+     * @param prefix the non-blank prefix.
+     * @return the successor, or null if there is none because the prefix is made up entirely of the largest character.
+     */
+    static String successor(final String prefix) {
+        for (int i = prefix.length() - 1; i >= 0; i--) {
+            char c = prefix.charAt(i);
+            if (c != Character.MAX_VALUE) {
+                return prefix.substring(0, i) + (char) (c + 1);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PrefixIndex [keys=%s]", entries.size());
+    }
+}
@@ -0,0 +1,258 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import net.jcip.annotations.ThreadSafe;
+import net.parttimepolymath.properties.PropertySource;
+
+/**
+ * view of the keys of a PropertySource that start with a prefix, which are looked up relative to the prefix. The
+ * full key for each relative key is remembered, so that repeatedly reading a key does not build the full key again.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+final class PrefixedPropertySource implements PropertySource {
+    /**
+     * the largest number of full keys remembered. Beyond this, those used least often recently are forgotten.
+     */
+    static final int LIMIT = 1024;
+
+    /**
+     * the source being viewed.
+     */
+    private final PropertySource parent;
+    /**
+     * the prefix added to every key.
+     */
+    private final String prefix;
+    /**
+     * the full key for each relative key that has been used.
+     */
+    private final TinyLfuCache<String, String> fullKeys = new TinyLfuCache<>(LIMIT);
+    /**
+     * the listeners registered on the source being viewed on behalf of each listener registered on this view.
+     */
+    private final ConcurrentMap<PropertyListener, List<PropertyListener>> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * primary constructor.
+     * 
+     * @param theParent the non-null source to view.
+     * @param thePrefix the non-null prefix, which may be blank.
+     */
+    PrefixedPropertySource(final PropertySource theParent, final String thePrefix) {
+        parent = theParent;
+        prefix = thePrefix;
+    }
+
+    /**
+     * find the full key for a relative key.
+     * 
+     * @param key the relative key, may be null.
+     * @return the full key, or null if the relative key is null or blank.
+     */
+    String fullKey(final String key) {
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+        String full = fullKeys.get(key);
+        if (full == null) {
+            full = prefix + key;
+            fullKeys.put(key, full);
+        }
+        return full;
+    }
+
+    /**
+     * @return the prefix added to every key.
+     */
+    String getPrefix() {
+        return prefix;
+    }
+
+    @Override
+    public String get(final String key) {
+        return parent.get(fullKey(key));
+    }
+
+    @Override
+    public CompletableFuture<String> getAsync(final String key) {
+        return parent.getAsync(fullKey(key));
+    }
+
+    @Override
+    public Map<String, String> getAll(final Collection<String> keys) {
+        Map<String, String> relativeKeys = new HashMap<>();
+        for (String key : keys) {
+            String full = fullKey(key);
+            if (full != null) {
+                relativeKeys.put(full, key);
+            }
+        }
+        Map<String, String> result = new HashMap<>();
+        for (Map.Entry<String, String> entry : parent.getAll(relativeKeys.keySet()).entrySet()) {
+            result.put(relativeKeys.get(entry.getKey()), entry.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    public SortedMap<String, String> getByPrefix(final String keyStart) {
+        SortedMap<String, String> result = new TreeMap<>();
+        for (Map.Entry<String, String> entry : parent.getByPrefix(prefix + (keyStart == null ? "" : keyStart)).entrySet()) {
+            result.put(entry.getKey().substring(prefix.length()), entry.getValue());
+        }
+        return Collections.unmodifiableSortedMap(result);
+    }
+
+    @Override
+    public PropertySource withPrefix(final String keyStart) {
+        return parent.withPrefix(prefix + (keyStart == null ? "" : keyStart));
+    }
+
+    @Override
+    public int getNumber(final String key) {
+        return parent.getNumber(fullKey(key));
+    }
+
+    @Override
+    public int getNumber(final String key, final int defaultValue) {
+        return parent.getNumber(fullKey(key), defaultValue);
+    }
+
+    @Override
+    public boolean getFlag(final String key) {
+        return parent.getFlag(fullKey(key));
+    }
+
+    @Override
+    public boolean getFlag(final String key, final boolean defaultValue) {
+        return parent.getFlag(fullKey(key), defaultValue);
+    }
+
+    @Override
+    public long getLong(final String key, final long defaultValue) {
+        return parent.getLong(fullKey(key), defaultValue);
+    }
+
+    @Override
+    public double getDouble(final String key, final double defaultValue) {
+        return parent.getDouble(fullKey(key), defaultValue);
+    }
+
+    @Override
+    public Duration getDuration(final String key, final Duration defaultValue) {
+        return parent.getDuration(fullKey(key), defaultValue);
+    }
+
+    @Override
+    public long getSize(final String key, final long defaultValue) {
+        return parent.getSize(fullKey(key), defaultValue);
+    }
+
+    @Override
+    public <E extends Enum<E>> E getEnum(final String key, final Class<E> type, final E defaultValue) {
+        return parent.getEnum(fullKey(key), type, defaultValue);
+    }
+
+    @Override
+    public List<String> getList(final String key) {
+        return parent.getList(fullKey(key));
+    }
+
+    @Override
+    public void addListener(final String key, final PropertyListener listener) {
+        if (key != null && !key.isEmpty() && listener != null) {
+            parent.addListener(fullKey(key), relativeListener(listener));
+        }
+    }
+
+    @Override
+    public void addPrefixListener(final String keyStart, final PropertyListener listener) {
+        if (listener != null) {
+            parent.addPrefixListener(prefix + (keyStart == null ? "" : keyStart), relativeListener(listener));
+        }
+    }
+
+    @Override
+    public void removeListener(final PropertyListener listener) {
+        List<PropertyListener> registered = listener == null ? null : listeners.remove(listener);
+        if (registered != null) {
+            for (PropertyListener relative : registered) {
+                parent.removeListener(relative);
+            }
+        }
+    }
+
+    /**
+     * wrap a listener so that it is told keys relative to the prefix, and remember the wrapper so that it can be
+     * removed later.
+     * 
+     * @param listener the non-null listener to wrap.
+     * @return the non-null wrapper to register with the source being viewed.
+     */
+    private PropertyListener relativeListener(final PropertyListener listener) {
+        PropertyListener relative = new PropertyListener() {
+            @Override
+            public void changed(final String key, final String oldValue, final String newValue) {
+                listener.changed(key.substring(prefix.length()), oldValue, newValue);
+            }
+        };
+        List<PropertyListener> registered = listeners.get(listener);
+        if (registered == null) {
+            listeners.putIfAbsent(listener, new CopyOnWriteArrayList<PropertyListener>());
+            registered = listeners.get(listener);
+        }
+        registered.add(relative);
+        return relative;
+    }
+
+    /**
+     * does nothing, as the source being viewed belongs to someone else.
+     */
+    @Override
+    public void close() {
+        // the parent is closed by its owner
+    }
+
+    @Override
+    public PropertyKey<String> key(final String key) {
+        return parent.key(fullKey(key));
+    }
+
+    @Override
+    public <T> PropertyKey<T> key(final String key, final Function<String, T> parser, final T defaultValue) {
+        return parent.key(fullKey(key), parser, defaultValue);
+    }
+
+    @Override
+    public FeatureFlag flag(final String key, final boolean defaultValue) {
+        return parent.flag(fullKey(key), defaultValue);
+    }
+
+    /**
+     * @return the statistics of the source being viewed, which include lookups made through this view.
+     */
+    @Override
+    public PropertySourceStatistics getStatistics() {
+        return parent.getStatistics();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PrefixedPropertySource [prefix=%s, parent=%s]", prefix, parent);
+    }
+}
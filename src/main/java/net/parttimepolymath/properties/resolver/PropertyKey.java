@@ -0,0 +1,23 @@
+package net.parttimepolymath.properties.resolver;
+
+/**
+ * a handle on the value of a single key in a PropertySource, obtained with PropertySource.key(). A handle is meant to
+ * be obtained once and read many times: when every source in the PropertySource reports its changes, the value is
+ * looked up once and then held by the handle until a source reloads, so reading it does no lookup at all.
+ * 
+ * @author robert
+ * @param <T> the type of the value.
+ */
+public interface PropertyKey<T> {
+    /**
+     * @return the key this is a handle on, which may be null.
+     */
+    String getName();
+
+    /**
+     * obtain the current value of the key.
+     * 
+     * @return the value, or the default if the key cannot be found or its value could not be parsed.
+     */
+    T get();
+}
@@ -0,0 +1,19 @@
+package net.parttimepolymath.properties.resolver;
+
+/**
+ * classes that implement this can be told when the value a PropertySource resolves for a key changes.
+ * 
+ * @author robert
+ */
+public interface PropertyListener {
+    /**
+     * called after the value resolved for a key has changed. This is called at most once per key each time a source
+     * reloads, on the executor configured for the PropertySource, and calls to the same listener are never made
+     * concurrently.
+     * 
+     * @param key the non-null key whose value changed.
+     * @param oldValue the value previously resolved, or null if the key could not be resolved.
+     * @param newValue the value now resolved, or null if the key can no longer be resolved.
+     */
+    void changed(String key, String oldValue, String newValue);
+}
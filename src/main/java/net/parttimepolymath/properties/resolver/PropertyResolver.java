@@ -1,17 +1,51 @@
 package net.parttimepolymath.properties.resolver;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 import net.parttimepolymath.properties.PropertySource;
+import net.parttimepolymath.properties.PropertySourceConfig;
 
 /**
  * container class for implementing the hierarchy of locations.
+ * <p>
+ * Consecutive resolvers whose entire content is available as a map, such as files, directories and resources, are
+ * merged into a single map when the instance is created, so that looking a key up across them is a single probe, and
+ * a prefix query across them is a single range query of a sorted index. The merged map and its index are rebuilt
+ * whenever one of them reloads.
+ * <p>
+ * Hits, misses, errors, latencies and reloads are recorded for each resolver in the chain, and can be read with
+ * getStatistics(), or through JMX if a name is configured with PropertySourceConfig.Builder.withJmx().
  * 
  * @author robert
  */
@@ -22,13 +56,110 @@ public final class PropertyResolver implements PropertySource {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(PropertyResolver.class);
     /**
-     * the set of resolvers that this class delegates to.
+     * the generation reported when some source cannot report its changes, so that key handles cannot hold values.
      */
-    private final List<Resolver> resolverChain = new ArrayList<>();
+    static final long UNSTABLE = -1;
+    /**
+     * the period in milliseconds at which feature flags are resolved again if some source cannot report its changes.
+     */
+    static final long FLAG_REFRESH = 1000;
+    /**
+     * the feature flags handed out whose default is false, by key.
+     */
+    private final ConcurrentMap<String, FeatureFlag> flagsOff = new ConcurrentHashMap<>();
+    /**
+     * the feature flags handed out whose default is true, by key.
+     */
+    private final ConcurrentMap<String, FeatureFlag> flagsOn = new ConcurrentHashMap<>();
+    /**
+     * lock guarding the periodic refresh of feature flags.
+     */
+    private final Object flagLock = new Object();
+    /**
+     * the periodic refresh of feature flags, or null if there is none.
+     */
+    @GuardedBy("flagLock")
+    private ScheduledFuture<?> flagRefresh;
+    /**
+     * set while a periodic refresh of every feature flag is queued, so that a slow listener executor does not collect
+     * more than one.
+     */
+    private final AtomicBoolean flagRefreshPending = new AtomicBoolean();
+    /**
+     * the resolvers supplied to this class, in order of precedence.
+     */
+    private final List<Resolver> resolvers = new ArrayList<>();
+    /**
+     * the resolvers that this class delegates to, after the cache, with runs of SnapshotResolvers merged.
+     */
+    private final List<Resolver> resolverChain;
+    /**
+     * true if every resolver in the chain reports its changes, so that a value stays current until a reload.
+     */
+    private final boolean stable;
+    /**
+     * bumped each time a source reloads, once the caches have been invalidated, so that key handles know to resolve
+     * their values again.
+     */
+    private final AtomicLong generation = new AtomicLong();
+    /**
+     * what has been recorded about each resolver in the chain, by position.
+     */
+    private final ResolverMetrics[] metrics;
+    /**
+     * the registration of the statistics with JMX, or null if they are not registered.
+     */
+    private final PropertySourceMonitor monitor;
     /**
      * the cache of discovered values.
      */
     private final CacheResolver cacheResolver;
+    /**
+     * the cache of keys that could not be discovered.
+     */
+    private final NegativeCache negativeCache;
+    /**
+     * the listeners told about changes to resolved values.
+     */
+    private final ChangeNotifier changeNotifier;
+    /**
+     * the thread change notifications are delivered on if no executor was supplied, otherwise null. Listeners are code
+     * supplied by the caller and may be slow, and finding which values changed may block on a source such as Consul,
+     * so neither is done on the shared scheduler.
+     */
+    private final ExecutorService listenerThread;
+    /**
+     * values parsed by getNumber().
+     */
+    private final ParsedValueCache<Integer> integers = new ParsedValueCache<>(ValueParsers.INTEGER);
+    /**
+     * values parsed by getFlag().
+     */
+    private final ParsedValueCache<Boolean> booleans = new ParsedValueCache<>(ValueParsers.BOOLEAN);
+    /**
+     * values parsed by getLong().
+     */
+    private final ParsedValueCache<Long> longs = new ParsedValueCache<>(ValueParsers.LONG);
+    /**
+     * values parsed by getDouble().
+     */
+    private final ParsedValueCache<Double> doubles = new ParsedValueCache<>(ValueParsers.DOUBLE);
+    /**
+     * values parsed by getDuration().
+     */
+    private final ParsedValueCache<Duration> durations = new ParsedValueCache<>(ValueParsers.DURATION);
+    /**
+     * values parsed by getSize().
+     */
+    private final ParsedValueCache<Long> sizes = new ParsedValueCache<>(ValueParsers.SIZE);
+    /**
+     * values parsed by getList().
+     */
+    private final ParsedValueCache<List<String>> lists = new ParsedValueCache<>(ValueParsers.LIST);
+    /**
+     * values parsed by getEnum(), by the class of the enumeration.
+     */
+    private final ConcurrentMap<Class<?>, ParsedValueCache<?>> enums = new ConcurrentHashMap<>();
 
     /**
      * create an instance using the defined set of individual resolvers.
@@ -47,8 +178,47 @@ public final class PropertyResolver implements PropertySource {
      * @param resolvers the non-null list of resolvers to use.
      */
     public PropertyResolver(final int cacheSize, final List<Resolver> resolvers) {
+        this(cacheSize, 0, new NegativeCache(0, 0), null, null, resolvers);
+    }
+
+    /**
+     * create an instance using the supplied configuration and list of individual resolvers.
+     * 
+     * @param config the non-null configuration, which defines the caching used.
+     * @param resolvers the non-null list of resolvers to use.
+     */
+    public PropertyResolver(final PropertySourceConfig config, final List<Resolver> resolvers) {
+        this(config.getCacheSize(), config.getCacheTtl(), new NegativeCache(config.getNegativeCacheSize(), config.getNegativeCacheTtl()),
+                config.getListenerExecutor(), config.getJmxName(), resolvers);
+    }
+
+    /**
+     * create an instance using the defined list of individual resolvers.
+     * 
+     * @param cacheSize if greater than zero, local result caching will be used.
+     * @param cacheTtl how long in milliseconds a value is cached. If less than 1, values stay cached until invalidated.
+     * @param theNegativeCache the non-null cache of absent keys, which may be disabled.
+     * @param listenerExecutor the executor to deliver change notifications on, or null to use a thread belonging to this
+     *            instance.
+     * @param jmxName the name to register the statistics with JMX under, or null if they are not registered.
+     * @param theResolvers the non-null list of resolvers to use.
+     */
+    private PropertyResolver(final int cacheSize, final long cacheTtl, final NegativeCache theNegativeCache,
+            final Executor listenerExecutor, final String jmxName, final List<Resolver> theResolvers) {
+        resolvers.addAll(theResolvers);
+        resolverChain = compile(resolvers);
+        boolean reporting = true;
+        for (Resolver resolver : resolverChain) {
+            reporting &= reportsChanges(resolver);
+        }
+        stable = reporting;
+        metrics = new ResolverMetrics[resolverChain.size()];
+        for (int i = 0; i < metrics.length; i++) {
+            metrics[i] = new ResolverMetrics(resolverChain.get(i).getClass().getSimpleName());
+        }
+
         if (cacheSize > 0) {
-            cacheResolver = new CacheResolverImpl(cacheSize);
+            cacheResolver = new CacheResolverImpl(cacheSize, cacheTtl, resolverChain.size());
         } else {
             cacheResolver = new CacheResolver() {
                 @Override
@@ -61,48 +231,533 @@ public final class PropertyResolver implements PropertySource {
                     // silently do nothing
                 }
 
+                @Override
+                public long getGeneration() {
+                    return 0;
+                }
+
+                @Override
+                public void touchCache(final String key, final String value, final int source, final long lookupGeneration) {
+                    // silently do nothing
+                }
+
+                @Override
+                public void invalidate(final Collection<String> keys) {
+                    // silently do nothing
+                }
+
+                @Override
+                public void invalidateSource(final int source) {
+                    // silently do nothing
+                }
+
+                @Override
+                public long getHitCount() {
+                    return 0;
+                }
+
+                @Override
+                public long getMissCount() {
+                    return 0;
+                }
+
+                @Override
+                public long getEvictionCount() {
+                    return 0;
+                }
             };
         }
-        resolverChain.add(cacheResolver);
-        resolverChain.addAll(resolvers);
+
+        negativeCache = theNegativeCache;
+        listenerThread = listenerExecutor == null ? Scheduler.dedicated("PropertySource-Listeners") : null;
+        changeNotifier = new ChangeNotifier(this, listenerExecutor == null ? listenerThread : listenerExecutor);
+        for (int i = 0; i < resolverChain.size(); i++) {
+            if (resolverChain.get(i) instanceof ReloadableResolver) {
+                ((ReloadableResolver) resolverChain.get(i)).addReloadListener(new Invalidator(i));
+            }
+        }
+
+        if (jmxName == null) {
+            monitor = null;
+        } else {
+            monitor = new PropertySourceMonitor(this, jmxName);
+            monitor.register();
+        }
+    }
+
+    /**
+     * build the chain of resolvers to consult, replacing each run of consecutive SnapshotResolvers, even a run of one,
+     * with a single MergedResolver.
+     * 
+     * @param source the non-null list of resolvers, in order of precedence.
+     * @return a non-null list of resolvers to consult, in order of precedence.
+     */
+    private static List<Resolver> compile(final List<Resolver> source) {
+        List<Resolver> chain = new ArrayList<>();
+        List<SnapshotResolver> run = new ArrayList<>();
+        for (Resolver resolver : source) {
+            if (resolver instanceof SnapshotResolver) {
+                run.add((SnapshotResolver) resolver);
+            } else {
+                closeRun(run, chain);
+                chain.add(resolver);
+            }
+        }
+        closeRun(run, chain);
+        LOGGER.debug("compiled {} resolvers into a chain of {}", source.size(), chain.size());
+        return Collections.unmodifiableList(chain);
+    }
+
+    /**
+     * decide whether every change to the values of a resolver in the chain is reported to its listeners.
+     * 
+     * @param resolver the non-null resolver.
+     * @return true if the resolver reports all changes, or its values never change.
+     */
+    private static boolean reportsChanges(final Resolver resolver) {
+        if (resolver instanceof MergedResolver || resolver instanceof EnvironmentResolver) {
+            return true;
+        }
+        return resolver instanceof ConsulResolver && ((ConsulResolver) resolver).isPrefetching();
+    }
+
+    /**
+     * add a run of SnapshotResolvers to the chain as a single merged resolver, and empty the run.
+     * 
+     * @param run the non-null, possibly empty, run of resolvers.
+     * @param chain the non-null chain to add to.
+     */
+    private static void closeRun(final List<SnapshotResolver> run, final List<Resolver> chain) {
+        if (!run.isEmpty()) {
+            chain.add(new MergedResolver(run));
+        }
+        run.clear();
+    }
+
+    /**
+     * @return the resolvers consulted after the cache, in order of precedence.
+     */
+    List<Resolver> getResolverChain() {
+        return resolverChain;
     }
 
     @Override
     public String get(final String key) {
-        LOGGER.debug("attempting get({})", key);
-        for (Resolver resolver : resolverChain) {
-            String value = resolver.get(key);
+        String cached = cacheResolver.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (negativeCache.isAbsent(key)) {
+            return null;
+        }
+
+        long generation = negativeCache.getGeneration();
+        long cacheGeneration = cacheResolver.getGeneration();
+        boolean failed = false;
+        long started = System.nanoTime();
+        for (int i = 0; i < resolverChain.size(); i++) {
+            String value;
+            try {
+                value = resolverChain.get(i).get(key);
+            } catch (ResolverUnavailableException rue) {
+                long finished = System.nanoTime();
+                metrics[i].recordError(finished - started);
+                if (rue.getFallback() != null) {
+                    return rue.getFallback();
+                }
+                failed = true;
+                started = finished;
+                continue;
+            } catch (RuntimeException re) {
+                metrics[i].recordError(System.nanoTime() - started);
+                throw re;
+            }
+            // each resolver is timed from the end of the one before, to read the clock once per resolver
+            long finished = System.nanoTime();
+            metrics[i].recordLookup(finished - started, value != null);
             if (value != null) {
-                cacheResolver.touchCache(key, value);
+                if (!failed) {
+                    cacheResolver.touchCache(key, value, i, cacheGeneration);
+                }
                 return value;
             }
+            started = finished;
+        }
+        if (!failed) {
+            negativeCache.recordAbsent(key, generation);
         }
         return null;
     }
 
+    /**
+     * find the value for a key without blocking on remote resolvers. Cached values, and values found in local
+     * resolvers, are returned in a future that is already complete. Otherwise the chain is walked as each remote
+     * resolver answers, and the future is completed on the thread that delivered the answer.
+     * 
+     * @param key the key to look up. This is case sensitive.
+     * @return a non-null future completed with the discovered value, or null if it cannot be found.
+     */
     @Override
-    public int getNumber(final String key, final int defaultValue) {
-        String value = get(key);
-
-        if (value == null) {
-            return defaultValue;
+    public CompletableFuture<String> getAsync(final String key) {
+        LOGGER.debug("attempting getAsync({})", key);
+        String cached = cacheResolver.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        if (negativeCache.isAbsent(key)) {
+            return CompletableFuture.completedFuture(null);
         }
+        return resolveAsync(key, 0, negativeCache.getGeneration(), cacheResolver.getGeneration(), false);
+    }
 
+    /**
+     * ask a resolver in the chain for a value, moving on to the next if it cannot be found.
+     * 
+     * @param key the key to look up.
+     * @param position the position in the chain of the resolver to ask.
+     * @param generation the negative cache generation when the lookup started.
+     * @param cacheGeneration the cache generation when the lookup started.
+     * @param failed true if an earlier resolver could not be asked, in which case nothing found is cached.
+     * @return a non-null future completed with the discovered value, or null if it cannot be found.
+     */
+    private CompletableFuture<String> resolveAsync(final String key, final int position, final long generation,
+            final long cacheGeneration, final boolean failed) {
+        if (position >= resolverChain.size()) {
+            if (!failed) {
+                negativeCache.recordAbsent(key, generation);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+        final ResolverMetrics recorder = metrics[position];
+        final long started = System.nanoTime();
+        CompletableFuture<String> answer;
         try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException nfe) {
-            return defaultValue;
+            answer = resolverChain.get(position).getAsync(key);
+        } catch (ResolverUnavailableException rue) {
+            recorder.recordError(System.nanoTime() - started);
+            return resolveUnavailable(key, position, generation, cacheGeneration, rue);
+        } catch (RuntimeException re) {
+            recorder.recordError(System.nanoTime() - started);
+            throw re;
         }
+        return answer.handle(new BiFunction<String, Throwable, CompletableFuture<String>>() {
+            @Override
+            public CompletableFuture<String> apply(final String value, final Throwable failure) {
+                if (failure != null) {
+                    recorder.recordError(System.nanoTime() - started);
+                    Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                    if (cause instanceof ResolverUnavailableException) {
+                        return resolveUnavailable(key, position, generation, cacheGeneration, (ResolverUnavailableException) cause);
+                    }
+                    CompletableFuture<String> error = new CompletableFuture<>();
+                    error.completeExceptionally(cause);
+                    return error;
+                }
+                recorder.recordLookup(System.nanoTime() - started, value != null);
+                if (value == null) {
+                    return resolveAsync(key, position + 1, generation, cacheGeneration, failed);
+                }
+                if (!failed) {
+                    cacheResolver.touchCache(key, value, position, cacheGeneration);
+                }
+                return CompletableFuture.completedFuture(value);
+            }
+        }).thenCompose(Function.<CompletableFuture<String>> identity());
     }
 
+    /**
+     * carry on a lookup after a resolver in the chain could not be asked, using the value it last found if it has one,
+     * and otherwise moving on to the next resolver without caching what is found.
+     * 
+     * @param key the key to look up.
+     * @param position the position in the chain of the resolver that could not be asked.
+     * @param generation the negative cache generation when the lookup started.
+     * @param cacheGeneration the cache generation when the lookup started.
+     * @param unavailable the non-null report from the resolver.
+     * @return a non-null future completed with the discovered value, or null if it cannot be found.
+     */
+    private CompletableFuture<String> resolveUnavailable(final String key, final int position, final long generation,
+            final long cacheGeneration, final ResolverUnavailableException unavailable) {
+        if (unavailable.getFallback() != null) {
+            return CompletableFuture.completedFuture(unavailable.getFallback());
+        }
+        return resolveAsync(key, position + 1, generation, cacheGeneration, true);
+    }
+
+    /**
+     * find the values of several keys, asking each resolver in the chain once for all of the keys not yet found rather
+     * than walking the chain once per key.
+     * 
+     * @param keys the non-null keys to look up. Null keys are ignored.
+     * @return a non-null map of the values found. Keys that cannot be found are omitted.
+     */
     @Override
-    public boolean getFlag(final String key, final boolean defaultValue) {
-        String value = get(key);
+    public Map<String, String> getAll(final Collection<String> keys) {
+        LOGGER.debug("attempting getAll({})", keys);
+        Map<String, String> result = new HashMap<>();
+        Set<String> pending = new LinkedHashSet<>();
+        for (String key : keys) {
+            if (key == null || result.containsKey(key)) {
+                continue;
+            }
+            String cached = cacheResolver.get(key);
+            if (cached != null) {
+                result.put(key, cached);
+            } else if (!negativeCache.isAbsent(key)) {
+                pending.add(key);
+            }
+        }
+
+        long generation = negativeCache.getGeneration();
+        long cacheGeneration = cacheResolver.getGeneration();
+        Set<String> failed = new HashSet<>();
+        for (int i = 0; i < resolverChain.size() && !pending.isEmpty(); i++) {
+            int asked = pending.size();
+            long started = System.nanoTime();
+            Map<String, String> found;
+            boolean answered = true;
+            try {
+                found = resolverChain.get(i).getAll(pending);
+            } catch (ResolverUnavailableException rue) {
+                metrics[i].recordError(System.nanoTime() - started);
+                answered = false;
+                found = getEach(i, pending, failed);
+            } catch (RuntimeException re) {
+                metrics[i].recordError(System.nanoTime() - started);
+                throw re;
+            }
+            long elapsed = System.nanoTime() - started;
+            for (Map.Entry<String, String> entry : found.entrySet()) {
+                if (entry.getValue() != null && pending.remove(entry.getKey())) {
+                    if (!failed.contains(entry.getKey())) {
+                        cacheResolver.touchCache(entry.getKey(), entry.getValue(), i, cacheGeneration);
+                    }
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
+            if (answered) {
+                metrics[i].recordBatch(elapsed, asked - pending.size(), pending.size());
+            }
+        }
+        for (String key : pending) {
+            if (!failed.contains(key)) {
+                negativeCache.recordAbsent(key, generation);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * look keys up one at a time in a resolver that could not answer for them together, so that each key can fall back
+     * to the value the resolver last found for it.
+     * 
+     * @param position the position in the chain of the resolver to ask.
+     * @param keys the non-null keys to look up.
+     * @param failed the non-null set to add the keys the resolver could not be asked about to.
+     * @return a non-null map of the values found, including fallback values.
+     */
+    private Map<String, String> getEach(final int position, final Collection<String> keys, final Set<String> failed) {
+        Map<String, String> found = new HashMap<>();
+        for (String key : keys) {
+            String value;
+            try {
+                value = resolverChain.get(position).get(key);
+            } catch (ResolverUnavailableException rue) {
+                failed.add(key);
+                value = rue.getFallback();
+            }
+            if (value != null) {
+                found.put(key, value);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * find every key starting with a prefix across the chain. Each resolver is asked once, from the lowest precedence
+     * to the highest, so that where several define the same key the value from the highest precedence resolver wins.
+     * Merged file, directory and resource content answers from a sorted index with a single range query.
+     * 
+     * @param prefix the prefix, which is case sensitive. If null or blank, every key that can be listed is found.
+     * @return a non-null, unmodifiable map of the keys found and their values, in key order.
+     */
+    @Override
+    public SortedMap<String, String> getByPrefix(final String prefix) {
+        LOGGER.debug("attempting getByPrefix({})", prefix);
+        SortedMap<String, String> result = new TreeMap<>();
+        for (int i = resolverChain.size() - 1; i >= 0; i--) {
+            result.putAll(resolverChain.get(i).getByPrefix(prefix));
+        }
+        return Collections.unmodifiableSortedMap(result);
+    }
+
+    @Override
+    public PropertyKey<String> key(final String key) {
+        return key(key, Function.<String> identity(), null);
+    }
+
+    @Override
+    public <T> PropertyKey<T> key(final String key, final Function<String, T> parser, final T defaultValue) {
+        return new KeyHandle<>(this, key, parser, defaultValue);
+    }
+
+    @Override
+    public FeatureFlag flag(final String key, final boolean defaultValue) {
+        if (key == null || key.isEmpty()) {
+            return new FeatureFlag(this, null, defaultValue);
+        }
+        ConcurrentMap<String, FeatureFlag> flags = defaultValue ? flagsOn : flagsOff;
+        FeatureFlag flag = flags.get(key);
+        if (flag == null) {
+            flags.putIfAbsent(key, new FeatureFlag(this, key, defaultValue));
+            flag = flags.get(key);
+            // a reload between resolving the flag and adding it would not have refreshed it
+            flag.refresh();
+            if (!stable) {
+                scheduleFlagRefresh();
+            }
+        }
+        return flag;
+    }
+
+    /**
+     * start resolving feature flags periodically, unless that has already started or this has been closed. The shared
+     * scheduler only queues each refresh, as resolving the flags may block.
+     */
+    private void scheduleFlagRefresh() {
+        synchronized (flagLock) {
+            if (flagRefresh == null) {
+                LOGGER.debug("refreshing feature flags every {}ms", FLAG_REFRESH);
+                flagRefresh = Scheduler.get().scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (flagRefreshPending.compareAndSet(false, true)) {
+                            changeNotifier.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    flagRefreshPending.set(false);
+                                    refreshFlags(null);
+                                }
+                            });
+                        }
+                    }
+                }, FLAG_REFRESH, FLAG_REFRESH, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * queue feature flags to be resolved again on the thread that delivers change notifications, as resolving them may
+     * block on a source such as Consul.
+     * 
+     * @param keys the keys whose values may have changed, or null if any may have.
+     */
+    private void queueFlagRefresh(final Collection<String> keys) {
+        if (flagsOff.isEmpty() && flagsOn.isEmpty()) {
+            return;
+        }
+        changeNotifier.execute(new Runnable() {
+            @Override
+            public void run() {
+                refreshFlags(keys);
+            }
+        });
+    }
+
+    /**
+     * resolve feature flags again.
+     * 
+     * @param keys the keys whose values may have changed, or null if any may have.
+     */
+    private void refreshFlags(final Collection<String> keys) {
+        if (keys == null) {
+            for (FeatureFlag flag : flagsOff.values()) {
+                flag.refresh();
+            }
+            for (FeatureFlag flag : flagsOn.values()) {
+                flag.refresh();
+            }
+            return;
+        }
+        for (String key : keys) {
+            FeatureFlag flag = flagsOff.get(key);
+            if (flag != null) {
+                flag.refresh();
+            }
+            flag = flagsOn.get(key);
+            if (flag != null) {
+                flag.refresh();
+            }
+        }
+    }
+
+    /**
+     * @return the current generation, which changes each time a source reloads, or UNSTABLE if some source cannot
+     *         report its changes.
+     */
+    long getGeneration() {
+        return stable ? generation.get() : UNSTABLE;
+    }
+
+    @Override
+    public PropertySource withPrefix(final String prefix) {
+        return new PrefixedPropertySource(this, prefix == null ? "" : prefix);
+    }
+
+    /**
+     * obtain the cache of keys that could not be resolved, which can be inspected for hit and miss counts.
+     * 
+     * @return the non-null negative cache, which will be disabled if negative caching is not in use.
+     */
+    public NegativeCache getNegativeCache() {
+        return negativeCache;
+    }
 
-        if (value == null) {
-            return defaultValue;
+    @Override
+    public PropertySourceStatistics getStatistics() {
+        List<ResolverStatistics> statistics = new ArrayList<>(metrics.length);
+        for (int i = 0; i < metrics.length; i++) {
+            statistics.add(metrics[i].snapshot(i));
+        }
+        return new PropertySourceStatistics(cacheResolver.getHitCount(), cacheResolver.getMissCount(), cacheResolver.getEvictionCount(),
+                negativeCache.getHitCount(), negativeCache.getMissCount(), statistics);
+    }
+
+    @Override
+    public void close() {
+        if (monitor != null) {
+            monitor.unregister();
+        }
+        synchronized (flagLock) {
+            if (flagRefresh != null) {
+                flagRefresh.cancel(false);
+                flagRefresh = null;
+            }
         }
-        return Boolean.parseBoolean(value);
+        for (Resolver resolver : resolvers) {
+            if (resolver instanceof Closeable) {
+                try {
+                    ((Closeable) resolver).close();
+                } catch (IOException ioe) {
+                    LOGGER.warn("Error closing [{}]", resolver);
+                }
+            }
+        }
+        if (listenerThread != null) {
+            listenerThread.shutdown();
+        }
+    }
+
+    @Override
+    public int getNumber(final String key, final int defaultValue) {
+        Integer value = integers.get(key, get(key));
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public boolean getFlag(final String key, final boolean defaultValue) {
+        Boolean value = booleans.get(key, get(key));
+        return value == null ? defaultValue : value;
     }
 
     @Override
@@ -115,4 +770,108 @@ public final class PropertyResolver implements PropertySource {
         return getFlag(key, false);
     }
 
+    @Override
+    public long getLong(final String key, final long defaultValue) {
+        Long value = longs.get(key, get(key));
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public double getDouble(final String key, final double defaultValue) {
+        Double value = doubles.get(key, get(key));
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Duration getDuration(final String key, final Duration defaultValue) {
+        Duration value = durations.get(key, get(key));
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public long getSize(final String key, final long defaultValue) {
+        Long value = sizes.get(key, get(key));
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public <E extends Enum<E>> E getEnum(final String key, final Class<E> type, final E defaultValue) {
+        E value = enumCache(type).get(key, get(key));
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * find the cache of values parsed for an enumeration, creating it if need be.
+     * 
+     * @param type the non-null class of the enumeration.
+     * @param <E> the type of the enumeration.
+     * @return the non-null cache.
+     */
+    @SuppressWarnings("unchecked")
+    private <E extends Enum<E>> ParsedValueCache<E> enumCache(final Class<E> type) {
+        ParsedValueCache<?> cache = enums.get(type);
+        if (cache == null) {
+            enums.putIfAbsent(type, new ParsedValueCache<>(ValueParsers.forEnum(type)));
+            cache = enums.get(type);
+        }
+        return (ParsedValueCache<E>) cache;
+    }
+
+    @Override
+    public List<String> getList(final String key) {
+        List<String> value = lists.get(key, get(key));
+        return value == null ? Collections.<String> emptyList() : value;
+    }
+
+    @Override
+    public void addListener(final String key, final PropertyListener listener) {
+        changeNotifier.addKeyListener(key, listener);
+    }
+
+    @Override
+    public void addPrefixListener(final String prefix, final PropertyListener listener) {
+        changeNotifier.addPrefixListener(prefix, listener);
+    }
+
+    @Override
+    public void removeListener(final PropertyListener listener) {
+        changeNotifier.remove(listener);
+    }
+
+    /**
+     * keeps the caches correct when a source in the chain reloads, then tells listeners about any values that have
+     * changed as a result.
+     */
+    private final class Invalidator implements ReloadListener {
+        /**
+         * the position in the chain of the source.
+         */
+        private final int source;
+
+        /**
+         * primary constructor.
+         * 
+         * @param position the position in the chain of the source.
+         */
+        Invalidator(final int position) {
+            source = position;
+        }
+
+        @Override
+        public void reloaded(final ReloadEvent event) {
+            LOGGER.debug("invalidating caches after {}", event);
+            metrics[source].recordReload(event.getDurationNanos());
+            if (event.getChangedKeys() == null) {
+                cacheResolver.invalidateSource(source);
+            } else {
+                cacheResolver.invalidate(event.getChangedKeys());
+            }
+            negativeCache.invalidate(event.getChangedKeys());
+            // only once the caches are invalidated, so that a key handle cannot resolve a stale value from them
+            generation.incrementAndGet();
+            // flags and listeners are queued only now, so that they resolve values after the caches are invalidated
+            queueFlagRefresh(event.getChangedKeys());
+            changeNotifier.changed(event.getChangedKeys());
+        }
+    }
 }
@@ -0,0 +1,41 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.util.List;
+
+/**
+ * the statistics of a PropertySource as exposed through JMX. Register a PropertySource by building it with
+ * PropertySourceConfig.Builder.withJmx().
+ * 
+ * @author robert
+ */
+public interface PropertySourceMXBean {
+    /**
+     * @return the number of lookups answered by the cache of values.
+     */
+    long getCacheHitCount();
+
+    /**
+     * @return the number of lookups not answered by the cache of values.
+     */
+    long getCacheMissCount();
+
+    /**
+     * @return the number of values evicted from the cache to keep it within its size.
+     */
+    long getCacheEvictionCount();
+
+    /**
+     * @return the number of lookups answered by the cache of absent keys.
+     */
+    long getNegativeCacheHitCount();
+
+    /**
+     * @return the number of lookups not answered by the cache of absent keys.
+     */
+    long getNegativeCacheMissCount();
+
+    /**
+     * @return the statistics of each resolver in the chain, in order of precedence.
+     */
+    List<ResolverStatistics> getResolvers();
+}
@@ -0,0 +1,157 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import net.parttimepolymath.properties.PropertySource;
+
+/**
+ * exposes the statistics of a PropertySource through the platform MBean server. Failure to register or unregister is
+ * logged rather than thrown, as the PropertySource works just as well without it.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+final class PropertySourceMonitor implements PropertySourceMXBean {
+    /**
+     * logging instance.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PropertySourceMonitor.class);
+    /**
+     * the JMX domain registered under.
+     */
+    static final String DOMAIN = "net.parttimepolymath.properties";
+
+    /**
+     * the source whose statistics are exposed.
+     */
+    private final PropertySource source;
+    /**
+     * the name registered under, or null if the name was not valid.
+     */
+    private final ObjectName objectName;
+    /**
+     * true while this is registered, so that closing a source whose registration failed does not unregister another
+     * source registered under the same name.
+     */
+    @GuardedBy("this")
+    private boolean registered;
+
+    /**
+     * primary constructor. This does not register the monitor.
+     * 
+     * @param theSource the non-null source whose statistics are exposed.
+     * @param name the non-null name to register under.
+     */
+    PropertySourceMonitor(final PropertySource theSource, final String name) {
+        source = theSource;
+        objectName = objectName(name);
+    }
+
+    /**
+     * build the name to register under.
+     * 
+     * @param name the non-null name of the source.
+     * @return the name, or null if it could not be built.
+     */
+    private static ObjectName objectName(final String name) {
+        try {
+            return new ObjectName(DOMAIN + ":type=PropertySource,name=" + ObjectName.quote(name));
+        } catch (JMException jme) {
+            LOGGER.warn("unable to build a JMX name from {}", name, jme);
+            return null;
+        }
+    }
+
+    /**
+     * @return the name registered under, or null if the name was not valid.
+     */
+    ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * register with the platform MBean server.
+     * 
+     * @return true if registered.
+     */
+    synchronized boolean register() {
+        if (objectName == null) {
+            return false;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            registered = true;
+            LOGGER.debug("registered {}", objectName);
+            return true;
+        } catch (JMException jme) {
+            LOGGER.warn("unable to register {}", objectName, jme);
+            return false;
+        }
+    }
+
+    /**
+     * unregister from the platform MBean server, if registered.
+     */
+    synchronized void unregister() {
+        if (!registered) {
+            return;
+        }
+        registered = false;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+            LOGGER.debug("unregistered {}", objectName);
+        } catch (JMException jme) {
+            LOGGER.warn("unable to unregister {}", objectName, jme);
+        }
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        return source.getStatistics().getCacheHitCount();
+    }
+
+    @Override
+    public long getCacheMissCount() {
+        return source.getStatistics().getCacheMissCount();
+    }
+
+    @Override
+    public long getCacheEvictionCount() {
+        return source.getStatistics().getCacheEvictionCount();
+    }
+
+    @Override
+    public long getNegativeCacheHitCount() {
+        return source.getStatistics().getNegativeCacheHitCount();
+    }
+
+    @Override
+    public long getNegativeCacheMissCount() {
+        return source.getStatistics().getNegativeCacheMissCount();
+    }
+
+    @Override
+    public List<ResolverStatistics> getResolvers() {
+        return source.getStatistics().getResolvers();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("PropertySourceMonitor [objectName=%s]", objectName);
+    }
+}
@@ -0,0 +1,114 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * what has been recorded about the lookups made on a PropertySource since it was built: how often its caches answered,
+ * and for each resolver in its chain, how often it found keys, how long it took, and how often it reloaded.
+ * 
+ * @author robert
+ */
+@Immutable
+public final class PropertySourceStatistics {
+    /**
+     * count of lookups answered by the cache of values.
+     */
+    private final long cacheHitCount;
+    /**
+     * count of lookups not answered by the cache of values.
+     */
+    private final long cacheMissCount;
+    /**
+     * count of values evicted from the cache to keep it within its size.
+     */
+    private final long cacheEvictionCount;
+    /**
+     * count of lookups answered by the cache of absent keys.
+     */
+    private final long negativeCacheHitCount;
+    /**
+     * count of lookups not answered by the cache of absent keys.
+     */
+    private final long negativeCacheMissCount;
+    /**
+     * the statistics of each resolver in the chain, in order of precedence.
+     */
+    private final List<ResolverStatistics> resolvers;
+
+    /**
+     * primary constructor.
+     * 
+     * @param cacheHits count of lookups answered by the cache of values.
+     * @param cacheMisses count of lookups not answered by the cache of values.
+     * @param cacheEvictions count of values evicted from the cache.
+     * @param negativeHits count of lookups answered by the cache of absent keys.
+     * @param negativeMisses count of lookups not answered by the cache of absent keys.
+     * @param theResolvers the non-null statistics of each resolver in the chain, in order of precedence. This is copied.
+     */
+    PropertySourceStatistics(final long cacheHits, final long cacheMisses, final long cacheEvictions, final long negativeHits,
+            final long negativeMisses, final List<ResolverStatistics> theResolvers) {
+        cacheHitCount = cacheHits;
+        cacheMissCount = cacheMisses;
+        cacheEvictionCount = cacheEvictions;
+        negativeCacheHitCount = negativeHits;
+        negativeCacheMissCount = negativeMisses;
+        resolvers = Collections.unmodifiableList(new ArrayList<>(theResolvers));
+    }
+
+    /**
+     * @return the number of lookups answered by the cache of values, 0 if caching is not in use.
+     */
+    public long getCacheHitCount() {
+        return cacheHitCount;
+    }
+
+    /**
+     * @return the number of lookups not answered by the cache of values, 0 if caching is not in use.
+     */
+    public long getCacheMissCount() {
+        return cacheMissCount;
+    }
+
+    /**
+     * @return the number of values evicted from the cache to keep it within its size, 0 if caching is not in use.
+     */
+    public long getCacheEvictionCount() {
+        return cacheEvictionCount;
+    }
+
+    /**
+     * @return the number of lookups answered by the cache of absent keys, 0 if negative caching is not in use.
+     */
+    public long getNegativeCacheHitCount() {
+        return negativeCacheHitCount;
+    }
+
+    /**
+     * @return the number of lookups not answered by the cache of absent keys, 0 if negative caching is not in use.
+     */
+    public long getNegativeCacheMissCount() {
+        return negativeCacheMissCount;
+    }
+
+    /**
+     * @return the non-null, unmodifiable statistics of each resolver in the chain, in order of precedence.
+     */
+    public List<ResolverStatistics> getResolvers() {
+        return resolvers;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("PropertySourceStatistics [cacheHits=%s, cacheMisses=%s, cacheEvictions=%s, negativeHits=%s, "
+                + "negativeMisses=%s, resolvers=%s]", cacheHitCount, cacheMissCount, cacheEvictionCount, negativeCacheHitCount,
+                negativeCacheMissCount, resolvers);
+    }
+}
@@ -0,0 +1,97 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * notification that a resolver has reloaded the data it resolves lookups from.
+ * 
+ * @author robert
+ */
+@Immutable
+public final class ReloadEvent {
+    /**
+     * the resolver which reloaded.
+     */
+    private final Resolver source;
+    /**
+     * the keys whose values were added, changed or removed, or null if not known.
+     */
+    private final Set<String> changedKeys;
+    /**
+     * how long the reload took in nanoseconds, or 0 if not known.
+     */
+    private final long durationNanos;
+
+    /**
+     * constructor for when it is not known which keys changed.
+     * 
+     * @param theSource the resolver which reloaded, assumed to be non-null.
+     */
+    public ReloadEvent(final Resolver theSource) {
+        source = theSource;
+        changedKeys = null;
+        durationNanos = 0;
+    }
+
+    /**
+     * constructor for when it is known which keys changed.
+     * 
+     * @param theSource the resolver which reloaded, assumed to be non-null.
+     * @param keys the keys whose values were added, changed or removed. This is copied. If null, it is not known
+     *            which keys changed.
+     */
+    public ReloadEvent(final Resolver theSource, final Set<String> keys) {
+        this(theSource, keys, 0);
+    }
+
+    /**
+     * constructor for when it is known which keys changed, and how long the reload took.
+     * 
+     * @param theSource the resolver which reloaded, assumed to be non-null.
+     * @param keys the keys whose values were added, changed or removed. This is copied. If null, it is not known
+     *            which keys changed.
+     * @param duration how long the reload took in nanoseconds. If less than 0, 0 is used.
+     */
+    public ReloadEvent(final Resolver theSource, final Set<String> keys, final long duration) {
+        source = theSource;
+        changedKeys = keys == null ? null : Collections.unmodifiableSet(new HashSet<>(keys));
+        durationNanos = Math.max(0, duration);
+    }
+
+    /**
+     * @return the resolver which reloaded.
+     */
+    public Resolver getSource() {
+        return source;
+    }
+
+    /**
+     * @return the unmodifiable set of keys whose values were added, changed or removed, or null if it is not known which
+     *         keys changed, in which case any key may have changed.
+     */
+    public Set<String> getChangedKeys() {
+        return changedKeys;
+    }
+
+    /**
+     * @return how long the reload took in nanoseconds, or 0 if not known.
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("ReloadEvent [source=%s, changed=%s, duration=%sus]", source,
+                changedKeys == null ? "unknown" : changedKeys.size(), TimeUnit.NANOSECONDS.toMicros(durationNanos));
+    }
+}
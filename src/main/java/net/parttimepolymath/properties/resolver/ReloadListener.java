@@ -0,0 +1,16 @@
+package net.parttimepolymath.properties.resolver;
+
+/**
+ * classes that implement this can be told when a resolver has reloaded.
+ * 
+ * @author robert
+ */
+public interface ReloadListener {
+    /**
+     * called after a resolver has reloaded. Implementations should return quickly, as this is called on the thread
+     * that performed the reload.
+     * 
+     * @param event the non-null description of the reload.
+     */
+    void reloaded(ReloadEvent event);
+}
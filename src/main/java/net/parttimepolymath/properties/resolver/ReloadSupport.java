@@ -0,0 +1,87 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * helper used by reloadable resolvers to keep track of, and notify, their listeners.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+final class ReloadSupport {
+    /**
+     * logging instance.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReloadSupport.class);
+
+    /**
+     * the registered listeners. Registration is rare compared to notification, so copy-on-write suits.
+     */
+    private final List<ReloadListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * register a listener.
+     * 
+     * @param listener the listener to add. Null is ignored.
+     */
+    void add(final ReloadListener listener) {
+        if (listener != null) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * remove a listener.
+     * 
+     * @param listener the listener to remove.
+     */
+    void remove(final ReloadListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * find which keys differ between two versions of a set of values.
+     * 
+     * @param before the non-null values before a reload.
+     * @param after the non-null values after a reload.
+     * @return the non-null set of keys that were added, removed, or whose value changed.
+     */
+    static Set<String> changedKeys(final Map<String, String> before, final Map<String, String> after) {
+        Set<String> result = new HashSet<>();
+        for (Map.Entry<String, String> entry : after.entrySet()) {
+            if (!entry.getValue().equals(before.get(entry.getKey()))) {
+                result.add(entry.getKey());
+            }
+        }
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key)) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * tell every listener about a reload. A listener that throws does not prevent the others being told.
+     * 
+     * @param event the non-null event to send.
+     */
+    void fire(final ReloadEvent event) {
+        for (ReloadListener listener : listeners) {
+            try {
+                listener.reloaded(event);
+            } catch (RuntimeException re) {
+                LOGGER.warn("Reload listener [{}] failed", listener, re);
+            }
+        }
+    }
+}
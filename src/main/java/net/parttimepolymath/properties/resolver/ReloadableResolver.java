@@ -0,0 +1,22 @@
+package net.parttimepolymath.properties.resolver;
+
+/**
+ * resolver whose data may change over time, and which will tell interested parties when it does.
+ * 
+ * @author robert
+ */
+public interface ReloadableResolver extends Resolver {
+    /**
+     * register a listener to be told about reloads.
+     * 
+     * @param listener the non-null listener to add.
+     */
+    void addReloadListener(ReloadListener listener);
+
+    /**
+     * stop telling a listener about reloads.
+     * 
+     * @param listener the listener to remove. Ignored if it was not registered.
+     */
+    void removeReloadListener(ReloadListener listener);
+}
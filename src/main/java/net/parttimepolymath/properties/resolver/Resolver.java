@@ -1,5 +1,12 @@
 package net.parttimepolymath.properties.resolver;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * classes that implement this will attempt to resolve the lookup.
  * 
@@ -11,6 +18,50 @@ public interface Resolver {
      * 
      * @param key the key to look up. This is case sensitive.
      * @return the discovered value, or null if it cannot be found. Also null if the key is null or blank.
+     * @throws ResolverUnavailableException if the resolver could not be asked, as distinct from the key not existing.
      */
     String get(String key);
+
+    /**
+     * find the value for the specified key without blocking the calling thread on remote calls. By default the value
+     * is found with get(), and the future returned is already complete; resolvers that make remote calls should
+     * instead complete the future when the call is answered.
+     * 
+     * @param key the key to look up. This is case sensitive.
+     * @return a non-null future completed with the discovered value, or null if it cannot be found, or completed
+     *         exceptionally with a ResolverUnavailableException if the resolver could not be asked.
+     */
+    default CompletableFuture<String> getAsync(final String key) {
+        return CompletableFuture.completedFuture(get(key));
+    }
+
+    /**
+     * find the values for several keys. By default each key is looked up in turn, but resolvers that can find many
+     * keys more cheaply than one at a time should do so.
+     * 
+     * @param keys the non-null keys to look up. Null keys are ignored.
+     * @return a non-null map of the values found. Keys that cannot be found are omitted.
+     * @throws ResolverUnavailableException if the resolver could not be asked about the keys.
+     */
+    default Map<String, String> getAll(final Collection<String> keys) {
+        Map<String, String> result = new HashMap<>();
+        for (String key : keys) {
+            String value = key == null ? null : get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * find every key starting with a prefix, along with its value. Resolvers that have no way to list their keys find
+     * nothing.
+     * 
+     * @param prefix the prefix, which is case sensitive. If null or blank, every key the resolver can list is found.
+     * @return a non-null, unmodifiable map of the keys found and their values, in key order.
+     */
+    default SortedMap<String, String> getByPrefix(final String prefix) {
+        return Collections.emptySortedMap();
+    }
 }
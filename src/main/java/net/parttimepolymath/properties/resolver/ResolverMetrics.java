@@ -0,0 +1,113 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * the counters and latencies recorded by PropertyResolver for one resolver in its chain. Counters are striped, so
+ * that threads recording at the same time do not contend, and nothing is allocated when recording.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+final class ResolverMetrics {
+    /**
+     * the name of the resolver.
+     */
+    private final String name;
+    /**
+     * count of keys the resolver found.
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * count of keys the resolver did not find.
+     */
+    private final LongAdder misses = new LongAdder();
+    /**
+     * count of requests to the resolver that failed with an exception.
+     */
+    private final LongAdder errors = new LongAdder();
+    /**
+     * count of reloads of the resolver that changed its values.
+     */
+    private final LongAdder reloads = new LongAdder();
+    /**
+     * how long requests to the resolver took.
+     */
+    private final LatencyHistogram lookupLatency = new LatencyHistogram();
+    /**
+     * how long reloads of the resolver took.
+     */
+    private final LatencyHistogram reloadLatency = new LatencyHistogram();
+
+    /**
+     * primary constructor.
+     * 
+     * @param theName the non-null name of the resolver.
+     */
+    ResolverMetrics(final String theName) {
+        name = theName;
+    }
+
+    /**
+     * record a request for a single key.
+     * 
+     * @param nanos how long the request took, in nanoseconds.
+     * @param found true if the key was found.
+     */
+    void recordLookup(final long nanos, final boolean found) {
+        if (found) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        lookupLatency.record(nanos);
+    }
+
+    /**
+     * record a request for several keys.
+     * 
+     * @param nanos how long the request took, in nanoseconds.
+     * @param found the number of keys found.
+     * @param missing the number of keys not found.
+     */
+    void recordBatch(final long nanos, final int found, final int missing) {
+        hits.add(found);
+        misses.add(missing);
+        lookupLatency.record(nanos);
+    }
+
+    /**
+     * record a request that failed with an exception.
+     * 
+     * @param nanos how long the request took before failing, in nanoseconds.
+     */
+    void recordError(final long nanos) {
+        errors.increment();
+        lookupLatency.record(nanos);
+    }
+
+    /**
+     * record a reload that changed the values of the resolver.
+     * 
+     * @param nanos how long the reload took in nanoseconds, or 0 if not known.
+     */
+    void recordReload(final long nanos) {
+        reloads.increment();
+        if (nanos > 0) {
+            reloadLatency.record(nanos);
+        }
+    }
+
+    /**
+     * take a copy of what has been recorded so far.
+     * 
+     * @param position the position of the resolver in the chain.
+     * @return the non-null statistics.
+     */
+    ResolverStatistics snapshot(final int position) {
+        return new ResolverStatistics(name, position, hits.sum(), misses.sum(), errors.sum(), reloads.sum(), lookupLatency.summarise(),
+                reloadLatency.summarise());
+    }
+}
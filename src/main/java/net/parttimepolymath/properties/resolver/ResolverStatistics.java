@@ -0,0 +1,136 @@
+package net.parttimepolymath.properties.resolver;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * what has been recorded about one resolver in the chain of a PropertySource since it was built. Lookups answered by
+ * the cache, or by the cache of absent keys, never reach a resolver, so are not counted here.
+ * 
+ * @author robert
+ */
+@Immutable
+public final class ResolverStatistics {
+    /**
+     * the name of the resolver.
+     */
+    private final String name;
+    /**
+     * the position of the resolver in the chain, 0 being consulted first.
+     */
+    private final int position;
+    /**
+     * count of keys the resolver found.
+     */
+    private final long hitCount;
+    /**
+     * count of keys the resolver did not find.
+     */
+    private final long missCount;
+    /**
+     * count of requests to the resolver that failed with an exception.
+     */
+    private final long errorCount;
+    /**
+     * count of reloads of the resolver that changed its values.
+     */
+    private final long reloadCount;
+    /**
+     * how long requests to the resolver took.
+     */
+    private final LatencySummary lookupLatency;
+    /**
+     * how long reloads of the resolver took.
+     */
+    private final LatencySummary reloadLatency;
+
+    /**
+     * primary constructor.
+     * 
+     * @param theName the name of the resolver.
+     * @param thePosition the position of the resolver in the chain.
+     * @param hits count of keys the resolver found.
+     * @param misses count of keys the resolver did not find.
+     * @param errors count of requests to the resolver that failed with an exception.
+     * @param reloads count of reloads of the resolver that changed its values.
+     * @param lookups how long requests to the resolver took.
+     * @param reloadTimes how long reloads of the resolver took.
+     */
+    ResolverStatistics(final String theName, final int thePosition, final long hits, final long misses, final long errors,
+            final long reloads, final LatencySummary lookups, final LatencySummary reloadTimes) {
+        name = theName;
+        position = thePosition;
+        hitCount = hits;
+        missCount = misses;
+        errorCount = errors;
+        reloadCount = reloads;
+        lookupLatency = lookups;
+        reloadLatency = reloadTimes;
+    }
+
+    /**
+     * @return the name of the resolver, which is the simple name of its class. Consecutive file, directory and
+     *         resource resolvers are merged into a single MergedResolver.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the position of the resolver in the chain, 0 being consulted first.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the number of keys the resolver found.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of keys the resolver was asked for but did not find.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of requests to the resolver that failed with an exception.
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return the number of reloads of the resolver that changed its values.
+     */
+    public long getReloadCount() {
+        return reloadCount;
+    }
+
+    /**
+     * @return how long requests to the resolver took. A request for several keys at once is a single request.
+     */
+    public LatencySummary getLookupLatency() {
+        return lookupLatency;
+    }
+
+    /**
+     * @return how long reloads of the resolver took, for those reloads whose duration is known.
+     */
+    public LatencySummary getReloadLatency() {
+        return reloadLatency;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("ResolverStatistics [name=%s, position=%s, hits=%s, misses=%s, errors=%s, reloads=%s, lookups=%s, "
+                + "reloadTimes=%s]", name, position, hitCount, missCount, errorCount, reloadCount, lookupLatency, reloadLatency);
+    }
+}
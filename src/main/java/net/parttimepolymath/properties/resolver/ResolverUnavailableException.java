@@ -0,0 +1,49 @@
+package net.parttimepolymath.properties.resolver;
+
+/**
+ * thrown by a resolver that could not be asked for a value, such as one backed by Consul while Consul is down. This
+ * says nothing about whether the key exists, so a PropertyResolver counts it as an error rather than a miss, and does
+ * not remember the key as absent. The value the resolver last found for the key, if any, is carried as a fallback. As
+ * it is expected whenever the resolver is unavailable, it does not record a stack trace.
+ * 
+ * @author robert
+ */
+public final class ResolverUnavailableException extends RuntimeException {
+    /**
+     * serialisation version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * the value last found for the key, or null if there is none.
+     */
+    private final String fallback;
+
+    /**
+     * constructor for when there is no single value to fall back to.
+     * 
+     * @param message the description of why the resolver could not be asked.
+     */
+    public ResolverUnavailableException(final String message) {
+        super(message, null, false, false);
+        fallback = null;
+    }
+
+    /**
+     * primary constructor.
+     * 
+     * @param cause the non-null reason the resolver could not be asked.
+     * @param theFallback the value last found for the key, or null if there is none.
+     */
+    public ResolverUnavailableException(final Throwable cause, final String theFallback) {
+        super(cause.getMessage(), cause, false, false);
+        fallback = theFallback;
+    }
+
+    /**
+     * @return the value last found for the key, or null if there is none.
+     */
+    public String getFallback() {
+        return fallback;
+    }
+}
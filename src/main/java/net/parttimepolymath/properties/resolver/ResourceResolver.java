@@ -3,7 +3,10 @@ package net.parttimepolymath.properties.resolver;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.slf4j.Logger;
@@ -17,7 +20,7 @@ import net.jcip.annotations.ThreadSafe;
  * @author robert
  */
 @ThreadSafe
-public final class ResourceResolver implements Resolver {
+public final class ResourceResolver implements SnapshotResolver {
     /**
      * logging instance.
      */
@@ -26,7 +29,7 @@ public final class ResourceResolver implements Resolver {
     /**
      * a static set of properties that have been discovered.
      */
-    private final Properties properties = new Properties();
+    private final Map<String, String> properties;
 
     /**
      * Primary constructor.
@@ -35,6 +38,7 @@ public final class ResourceResolver implements Resolver {
      * @param paths a non-null list of paths, specifying resources relative to the class per the semantics of Class.getResourceAsStream()
      */
     public ResourceResolver(@SuppressWarnings("rawtypes") final Class clazz, final List<String> paths) {
+        Map<String, String> found = new HashMap<>();
         for (String path : paths) {
             InputStream stream = clazz.getResourceAsStream(path);
             if (stream != null) {
@@ -44,9 +48,12 @@ public final class ResourceResolver implements Resolver {
                 } catch (IOException e) {
                     LOGGER.warn("Error loading from [{}]", path);
                 }
-                properties.putAll(props);
+                for (String name : props.stringPropertyNames()) {
+                    found.put(name, props.getProperty(name));
+                }
             }
         }
+        properties = Collections.unmodifiableMap(found);
     }
 
     /**
@@ -61,8 +68,12 @@ public final class ResourceResolver implements Resolver {
 
     @Override
     public String get(final String key) {
-        LOGGER.debug("attempting get({})", key);
-        return properties.getProperty(key);
+        return key == null ? null : properties.get(key);
+    }
+
+    @Override
+    public Map<String, String> getSnapshot() {
+        return properties;
     }
 
 }
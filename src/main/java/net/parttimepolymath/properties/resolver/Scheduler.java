@@ -0,0 +1,80 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * holder for the executor shared by resolvers that need to do work in the background, such as periodic refreshes. The
+ * threads are daemons, so they never keep the JVM alive.
+ * <p>
+ * The shared executor has only a couple of threads, so it must only be given short tasks that do not block, such as
+ * reloading local files. Work that may block for a long time, such as a request to Consul, or that runs code supplied
+ * by the caller, such as delivering change notifications, is given a dedicated executor instead.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+final class Scheduler {
+    /**
+     * the number of threads in the shared pool.
+     */
+    private static final int THREADS = 2;
+
+    /**
+     * the shared executor.
+     */
+    private static final ScheduledExecutorService EXECUTOR;
+
+    static {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(THREADS, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, "PropertySource-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        EXECUTOR = executor;
+    }
+
+    /**
+     * private constructor to prevent instantiation.
+     */
+    private Scheduler() {
+
+    }
+
+    /**
+     * @return the shared executor.
+     */
+    static ScheduledExecutorService get() {
+        return EXECUTOR;
+    }
+
+    /**
+     * create an executor with a single daemon thread, for work that must not hold up the shared executor. The caller
+     * owns the executor, and should shut it down when it is no longer needed.
+     * 
+     * @param name the non-null name of the thread.
+     * @return a non-null executor.
+     */
+    static ScheduledExecutorService dedicated(final String name) {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
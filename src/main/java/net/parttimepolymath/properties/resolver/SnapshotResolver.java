@@ -0,0 +1,32 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * resolver whose entire content can be provided as a map. Resolvers like this can be merged, so that a lookup across
+ * several of them is a single probe of one map.
+ * 
+ * @author robert
+ */
+public interface SnapshotResolver extends Resolver {
+    /**
+     * obtain the current content of the resolver. If the resolver is also a ReloadableResolver, the content may be
+     * replaced later, but the map returned is never modified.
+     * 
+     * @return a non-null, unmodifiable map of the content.
+     */
+    Map<String, String> getSnapshot();
+
+    /**
+     * find every key starting with a prefix by examining the whole snapshot. Within a PropertyResolver, the snapshot
+     * is instead indexed once each time it changes.
+     * 
+     * @param prefix the prefix, which is case sensitive. If null or blank, every key is found.
+     * @return a non-null, unmodifiable map of the keys found and their values, in key order.
+     */
+    @Override
+    default SortedMap<String, String> getByPrefix(final String prefix) {
+        return PrefixIndex.scan(getSnapshot(), prefix);
+    }
+}
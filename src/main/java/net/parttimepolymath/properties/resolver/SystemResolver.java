@@ -1,5 +1,10 @@
 package net.parttimepolymath.properties.resolver;
 
+import java.util.Collections;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,8 +24,21 @@ public class SystemResolver implements Resolver {
 
     @Override
     public final String get(final String key) {
-        LOGGER.debug("attempting get({})", key);
         return key == null || key.isEmpty() ? null : System.getProperty(key);
     }
 
+    @Override
+    public final SortedMap<String, String> getByPrefix(final String prefix) {
+        LOGGER.debug("attempting getByPrefix({})", prefix);
+        Properties properties = System.getProperties();
+        SortedMap<String, String> result = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key);
+            if (value != null && (prefix == null || key.startsWith(prefix))) {
+                result.put(key, value);
+            }
+        }
+        return Collections.unmodifiableSortedMap(result);
+    }
+
 }
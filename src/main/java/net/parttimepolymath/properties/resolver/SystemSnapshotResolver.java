@@ -0,0 +1,142 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * resolver which takes a copy of the JRE system properties, so that lookups probe an immutable map rather than the
+ * synchronised system properties. As it is a SnapshotResolver, a PropertyResolver merges it with the resolvers after it.
+ * <p>
+ * Properties set after the copy is taken are not seen until it is refreshed, either explicitly with refresh(), or by a
+ * periodic check. A refresh that finds a change replaces the copy and tells listeners which keys changed.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+public final class SystemSnapshotResolver implements SnapshotResolver, ReloadableResolver, Closeable {
+    /**
+     * logging instance.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SystemSnapshotResolver.class);
+    /**
+     * the copy of the system properties taken at the last refresh. This is never modified, only replaced.
+     */
+    private volatile Map<String, String> properties = Collections.emptyMap();
+    /**
+     * lock to ensure refreshes happen one at a time, so that an older copy never replaces a newer one.
+     */
+    private final Object refreshLock = new Object();
+    /**
+     * the periodic refresh, or null if there is none.
+     */
+    @GuardedBy("refreshLock")
+    private ScheduledFuture<?> refreshTask;
+    /**
+     * the listeners to tell about changes.
+     */
+    private final ReloadSupport reloadSupport = new ReloadSupport();
+
+    /**
+     * create an instance which is only refreshed when refresh() is called.
+     */
+    public SystemSnapshotResolver() {
+        this(0);
+    }
+
+    /**
+     * primary constructor.
+     * 
+     * @param refreshMillis the period in milliseconds at which the system properties are checked for changes. If less
+     *            than 1, they are only checked when refresh() is called.
+     */
+    public SystemSnapshotResolver(final long refreshMillis) {
+        refresh();
+        if (refreshMillis > 0) {
+            synchronized (refreshLock) {
+                refreshTask = Scheduler.get().scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        refresh();
+                    }
+                }, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * take a new copy of the system properties, and if it differs from the last, replace it and tell listeners which
+     * keys changed.
+     */
+    public void refresh() {
+        Set<String> changed;
+        long started = System.nanoTime();
+        synchronized (refreshLock) {
+            Properties system = System.getProperties();
+            Map<String, String> latest = new HashMap<>();
+            for (String key : system.stringPropertyNames()) {
+                String value = system.getProperty(key);
+                if (value != null) {
+                    latest.put(key, value);
+                }
+            }
+            changed = ReloadSupport.changedKeys(properties, latest);
+            if (!changed.isEmpty()) {
+                properties = Collections.unmodifiableMap(latest);
+            }
+        }
+        if (!changed.isEmpty()) {
+            LOGGER.debug("{} system properties changed", changed.size());
+            reloadSupport.fire(new ReloadEvent(this, changed, System.nanoTime() - started));
+        }
+    }
+
+    @Override
+    public String get(final String key) {
+        return key == null ? null : properties.get(key);
+    }
+
+    @Override
+    public Map<String, String> getSnapshot() {
+        return properties;
+    }
+
+    @Override
+    public void addReloadListener(final ReloadListener listener) {
+        reloadSupport.add(listener);
+    }
+
+    @Override
+    public void removeReloadListener(final ReloadListener listener) {
+        reloadSupport.remove(listener);
+    }
+
+    /**
+     * stop the periodic refresh. The last copy remains available, and can still be refreshed explicitly.
+     */
+    @Override
+    public void close() {
+        synchronized (refreshLock) {
+            if (refreshTask != null) {
+                refreshTask.cancel(false);
+                refreshTask = null;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SystemSnapshotResolver [keys=%s]", properties.size());
+    }
+}
@@ -0,0 +1,584 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * bounded cache using the W-TinyLFU policy, built for many threads reading at once.
+ * <p>
+ * Entries are held in a ConcurrentHashMap, so reads never block. The eviction policy is kept apart from the map and
+ * guarded by a single lock, which readers never wait for: each read is recorded in one of several striped, lossy
+ * buffers, and the buffers are replayed against the policy by whichever thread next finds the lock free. Losing an
+ * occasional read from a full buffer only makes the policy slightly less precise.
+ * <p>
+ * The policy admits new entries into a small LRU window. Entries leaving the window join the probation segment of an
+ * LRU main area, and are promoted to its protected segment if read again. When the cache is full, the entry most
+ * recently moved out of the window is compared with the least recently used entry on probation, and whichever has been
+ * seen less often recently, according to a FrequencySketch, is evicted. This keeps frequently read entries in the
+ * cache even when a burst of one-off reads passes through it.
+ * 
+ * @author robert
+ * @param <K> the type of the keys.
+ * @param <V> the type of the values.
+ */
+@ThreadSafe
+final class TinyLfuCache<K, V> {
+    /**
+     * the percentage of the capacity given to the window.
+     */
+    private static final int WINDOW_PERCENT = 1;
+    /**
+     * the percentage of the main area given to the protected segment.
+     */
+    private static final int PROTECTED_PERCENT = 80;
+    /**
+     * one hundred percent.
+     */
+    private static final int ALL = 100;
+    /**
+     * the number of reads each buffer holds, which must be a power of two.
+     */
+    private static final int BUFFER_SIZE = 16;
+    /**
+     * the largest number of read buffers used.
+     */
+    private static final int MAXIMUM_BUFFERS = 64;
+
+    /**
+     * the largest number of entries held.
+     */
+    private final int maximumSize;
+    /**
+     * the largest number of entries in the window.
+     */
+    private final int windowMaximum;
+    /**
+     * the largest number of entries in the protected segment.
+     */
+    private final int protectedMaximum;
+    /**
+     * the entries, by key.
+     */
+    private final ConcurrentMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    /**
+     * guards the policy: the segments, the sketch and the position of every node.
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    /**
+     * recent reads not yet applied to the policy, striped by thread.
+     */
+    private final ReadBuffer<K, V>[] readBuffers;
+    /**
+     * how often keys have been seen recently.
+     */
+    @GuardedBy("evictionLock")
+    private final FrequencySketch sketch;
+    /**
+     * the admission window, in LRU order.
+     */
+    @GuardedBy("evictionLock")
+    private final Segment<K, V> window = new Segment<>();
+    /**
+     * the probation segment of the main area, in LRU order.
+     */
+    @GuardedBy("evictionLock")
+    private final Segment<K, V> probation = new Segment<>();
+    /**
+     * the protected segment of the main area, in LRU order.
+     */
+    @GuardedBy("evictionLock")
+    private final Segment<K, V> protectedSegment = new Segment<>();
+    /**
+     * the number of entries evicted to keep within the maximum size. Only written while holding the eviction lock.
+     */
+    private volatile long evictions;
+
+    /**
+     * primary constructor.
+     * 
+     * @param capacity the largest number of entries held. If less than 1, 1 is used.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TinyLfuCache(final int capacity) {
+        maximumSize = Math.max(1, capacity);
+        windowMaximum = Math.max(1, maximumSize * WINDOW_PERCENT / ALL);
+        protectedMaximum = (maximumSize - windowMaximum) * PROTECTED_PERCENT / ALL;
+        sketch = new FrequencySketch(maximumSize);
+        int buffers = Math.min(MAXIMUM_BUFFERS, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1);
+        readBuffers = new ReadBuffer[buffers];
+        for (int i = 0; i < buffers; i++) {
+            readBuffers[i] = new ReadBuffer<>();
+        }
+    }
+
+    /**
+     * @return the largest number of entries held.
+     */
+    int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return the number of entries evicted to keep within the maximum size. Entries that are removed or replaced are
+     *         not counted.
+     */
+    long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of entries held. This may briefly exceed the maximum while an entry is being added.
+     */
+    int size() {
+        return data.size();
+    }
+
+    /**
+     * find the value for a key.
+     * 
+     * @param key the key, may be null.
+     * @return the value, or null if the key is null or not in the cache.
+     */
+    V get(final K key) {
+        if (key == null) {
+            return null;
+        }
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        recordRead(node);
+        return node.value;
+    }
+
+    /**
+     * find the value for a key without counting it as a read, so that it does not affect what is kept.
+     * 
+     * @param key the key, may be null.
+     * @return the value, or null if the key is null or not in the cache.
+     */
+    V peek(final K key) {
+        if (key == null) {
+            return null;
+        }
+        Node<K, V> node = data.get(key);
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * add an entry, replacing any value already held for the key.
+     * 
+     * @param key the non-null key.
+     * @param value the non-null value.
+     */
+    void put(final K key, final V value) {
+        put(key, value, false);
+    }
+
+    /**
+     * add an entry unless there is already a value for the key. This is atomic.
+     * 
+     * @param key the non-null key.
+     * @param value the non-null value.
+     * @return the value already held, or null if the entry was added.
+     */
+    V putIfAbsent(final K key, final V value) {
+        return put(key, value, true);
+    }
+
+    /**
+     * add or update an entry.
+     * 
+     * @param key the non-null key.
+     * @param value the non-null value.
+     * @param onlyIfAbsent if true, an existing value is left in place.
+     * @return the value already held, or null if there was none.
+     */
+    private V put(final K key, final V value, final boolean onlyIfAbsent) {
+        Node<K, V> node = null;
+        while (true) {
+            // look first, so that updating a key already held does not allocate a node
+            Node<K, V> existing = data.get(key);
+            if (existing == null) {
+                if (node == null) {
+                    node = new Node<>(key, value);
+                }
+                existing = data.putIfAbsent(key, node);
+                if (existing == null) {
+                    afterInsert(node);
+                    return null;
+                }
+            }
+            V previous = existing.value;
+            if (!onlyIfAbsent) {
+                existing.value = value;
+            }
+            recordRead(existing);
+            if (data.get(key) == existing) {
+                return previous;
+            }
+            // the existing entry was evicted while we were updating it, so try again
+        }
+    }
+
+    /**
+     * remove the entry for a key.
+     * 
+     * @param key the key, may be null.
+     */
+    void remove(final K key) {
+        if (key == null) {
+            return;
+        }
+        Node<K, V> node = data.remove(key);
+        if (node != null) {
+            evictionLock.lock();
+            try {
+                unlink(node);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * remove the entry for a key, but only if it still holds the given value.
+     * 
+     * @param key the key, may be null.
+     * @param value the value expected, compared by identity.
+     */
+    void remove(final K key, final V value) {
+        if (key == null) {
+            return;
+        }
+        Node<K, V> node = data.get(key);
+        if (node != null && node.value == value && data.remove(key, node)) {
+            evictionLock.lock();
+            try {
+                unlink(node);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * remove every entry. The frequency history is kept.
+     */
+    void clear() {
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            for (K key : data.keySet()) {
+                Node<K, V> node = data.remove(key);
+                if (node != null) {
+                    unlink(node);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * record that a node has been read, applying the buffered reads to the policy if this fills a buffer.
+     * 
+     * @param node the node read.
+     */
+    private void recordRead(final Node<K, V> node) {
+        ReadBuffer<K, V> buffer = readBuffers[(int) Thread.currentThread().getId() & readBuffers.length - 1];
+        if (buffer.offer(node) && evictionLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * admit a newly added node into the policy, evicting entries if the cache is over capacity.
+     * 
+     * @param node the node added.
+     */
+    private void afterInsert(final Node<K, V> node) {
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            sketch.increment(node.key);
+            if (data.get(node.key) == node && node.segment == null) {
+                window.addLast(node);
+                evict();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * apply the buffered reads to the policy.
+     */
+    @GuardedBy("evictionLock")
+    private void drainReadBuffers() {
+        for (ReadBuffer<K, V> buffer : readBuffers) {
+            for (int i = 0; i < BUFFER_SIZE; i++) {
+                Node<K, V> node = buffer.poll(i);
+                if (node != null) {
+                    onRead(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * apply a single read to the policy.
+     * 
+     * @param node the node that was read.
+     */
+    @GuardedBy("evictionLock")
+    private void onRead(final Node<K, V> node) {
+        sketch.increment(node.key);
+        if (node.segment == window || node.segment == protectedSegment) {
+            node.segment.moveToLast(node);
+        } else if (node.segment == probation) {
+            probation.remove(node);
+            protectedSegment.addLast(node);
+            if (protectedSegment.size > protectedMaximum) {
+                Node<K, V> demoted = protectedSegment.first();
+                protectedSegment.remove(demoted);
+                probation.addLast(demoted);
+            }
+        }
+    }
+
+    /**
+     * move entries out of the window, and evict entries until the cache is within capacity.
+     */
+    @GuardedBy("evictionLock")
+    private void evict() {
+        while (window.size > windowMaximum) {
+            Node<K, V> node = window.first();
+            window.remove(node);
+            probation.addLast(node);
+        }
+        while (window.size + probation.size + protectedSegment.size > maximumSize) {
+            if (probation.size == 0) {
+                Node<K, V> demoted = protectedSegment.first();
+                protectedSegment.remove(demoted);
+                probation.addLast(demoted);
+            }
+            Node<K, V> victim = probation.first();
+            Node<K, V> candidate = probation.last();
+            if (candidate != victim && sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evict(victim);
+            } else {
+                evict(candidate);
+            }
+        }
+    }
+
+    /**
+     * remove a node from the cache and the policy.
+     * 
+     * @param node the node to remove.
+     */
+    @GuardedBy("evictionLock")
+    private void evict(final Node<K, V> node) {
+        unlink(node);
+        if (data.remove(node.key, node)) {
+            evictions++;
+        }
+    }
+
+    /**
+     * remove a node from whichever segment it is in, if any.
+     * 
+     * @param node the node to remove.
+     */
+    @GuardedBy("evictionLock")
+    private void unlink(final Node<K, V> node) {
+        if (node.segment != null) {
+            node.segment.remove(node);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TinyLfuCache [maximumSize=%s, size=%s]", maximumSize, data.size());
+    }
+
+    /**
+     * an entry in the cache.
+     * 
+     * @param <K> the type of the key.
+     * @param <V> the type of the value.
+     */
+    private static final class Node<K, V> {
+        /**
+         * the key.
+         */
+        private final K key;
+        /**
+         * the value.
+         */
+        private volatile V value;
+        /**
+         * the segment the node is in, or null if it is in none.
+         */
+        @GuardedBy("evictionLock")
+        private Segment<K, V> segment;
+        /**
+         * the previous node in the segment.
+         */
+        @GuardedBy("evictionLock")
+        private Node<K, V> previous;
+        /**
+         * the next node in the segment.
+         */
+        @GuardedBy("evictionLock")
+        private Node<K, V> next;
+
+        /**
+         * primary constructor.
+         * 
+         * @param theKey the key.
+         * @param theValue the value.
+         */
+        Node(final K theKey, final V theValue) {
+            key = theKey;
+            value = theValue;
+        }
+    }
+
+    /**
+     * a doubly linked list of nodes, from least to most recently used.
+     * 
+     * @param <K> the type of the keys.
+     * @param <V> the type of the values.
+     */
+    private static final class Segment<K, V> {
+        /**
+         * the least recently used node, or null if the segment is empty.
+         */
+        private Node<K, V> head;
+        /**
+         * the most recently used node, or null if the segment is empty.
+         */
+        private Node<K, V> tail;
+        /**
+         * the number of nodes in the segment.
+         */
+        private int size;
+
+        /**
+         * @return the least recently used node, or null if the segment is empty.
+         */
+        Node<K, V> first() {
+            return head;
+        }
+
+        /**
+         * @return the most recently used node, or null if the segment is empty.
+         */
+        Node<K, V> last() {
+            return tail;
+        }
+
+        /**
+         * add a node as the most recently used.
+         * 
+         * @param node a node that is not in any segment.
+         */
+        void addLast(final Node<K, V> node) {
+            node.segment = this;
+            node.previous = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        /**
+         * remove a node.
+         * 
+         * @param node a node in this segment.
+         */
+        void remove(final Node<K, V> node) {
+            if (node.previous == null) {
+                head = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.segment = null;
+            node.previous = null;
+            node.next = null;
+            size--;
+        }
+
+        /**
+         * make a node the most recently used.
+         * 
+         * @param node a node in this segment.
+         */
+        void moveToLast(final Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    /**
+     * a lossy ring of recently read nodes. When it wraps around, older reads that have not been drained are lost.
+     * 
+     * @param <K> the type of the keys.
+     * @param <V> the type of the values.
+     */
+    private static final class ReadBuffer<K, V> {
+        /**
+         * the nodes read.
+         */
+        private final AtomicReferenceArray<Node<K, V>> slots = new AtomicReferenceArray<>(BUFFER_SIZE);
+        /**
+         * the number of reads offered.
+         */
+        private final AtomicLong writes = new AtomicLong();
+
+        /**
+         * record a read.
+         * 
+         * @param node the node read.
+         * @return true if this read filled the buffer, so that it should be drained.
+         */
+        boolean offer(final Node<K, V> node) {
+            long index = writes.getAndIncrement();
+            slots.lazySet((int) index & BUFFER_SIZE - 1, node);
+            return (index & BUFFER_SIZE - 1) == BUFFER_SIZE - 1;
+        }
+
+        /**
+         * take a read from the buffer.
+         * 
+         * @param index the slot to take from.
+         * @return the node read, or null if the slot was empty.
+         */
+        Node<K, V> poll(final int index) {
+            return slots.getAndSet(index, null);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package net.parttimepolymath.properties.resolver;
+
+/**
+ * converts the raw string value of a property into a typed value.
+ * 
+ * @author robert
+ * @param <T> the type produced.
+ */
+interface ValueParser<T> {
+    /**
+     * parse a raw value.
+     * 
+     * @param raw the non-null raw value.
+     * @return the non-null parsed value.
+     * @throws IllegalArgumentException if the raw value cannot be parsed.
+     */
+    T parse(String raw);
+}
@@ -0,0 +1,238 @@
+package net.parttimepolymath.properties.resolver;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * the parsers used by the typed accessors of PropertyResolver. Every parser ignores white space around the value, which
+ * is easily left at the end of a line in a properties file.
+ * 
+ * @author robert
+ */
+@ThreadSafe
+final class ValueParsers {
+    /**
+     * the multiplier between successive byte size units.
+     */
+    private static final long KILO = 1024;
+
+    /**
+     * parses an int.
+     */
+    static final ValueParser<Integer> INTEGER = new ValueParser<Integer>() {
+        @Override
+        public Integer parse(final String raw) {
+            return Integer.valueOf(raw.trim());
+        }
+    };
+
+    /**
+     * parses a long.
+     */
+    static final ValueParser<Long> LONG = new ValueParser<Long>() {
+        @Override
+        public Long parse(final String raw) {
+            return Long.valueOf(raw.trim());
+        }
+    };
+
+    /**
+     * parses a double.
+     */
+    static final ValueParser<Double> DOUBLE = new ValueParser<Double>() {
+        @Override
+        public Double parse(final String raw) {
+            return Double.valueOf(raw.trim());
+        }
+    };
+
+    /**
+     * parses a boolean, where anything other than "true", ignoring case, is false.
+     */
+    static final ValueParser<Boolean> BOOLEAN = new ValueParser<Boolean>() {
+        @Override
+        public Boolean parse(final String raw) {
+            return Boolean.valueOf(raw.trim());
+        }
+    };
+
+    /**
+     * parses a duration, see parseDuration().
+     */
+    static final ValueParser<Duration> DURATION = new ValueParser<Duration>() {
+        @Override
+        public Duration parse(final String raw) {
+            return parseDuration(raw);
+        }
+    };
+
+    /**
+     * parses a size in bytes, see parseSize().
+     */
+    static final ValueParser<Long> SIZE = new ValueParser<Long>() {
+        @Override
+        public Long parse(final String raw) {
+            return parseSize(raw);
+        }
+    };
+
+    /**
+     * parses a comma separated list, see parseList().
+     */
+    static final ValueParser<List<String>> LIST = new ValueParser<List<String>>() {
+        @Override
+        public List<String> parse(final String raw) {
+            return parseList(raw);
+        }
+    };
+
+    /**
+     * private constructor to prevent instantiation.
+     */
+    private ValueParsers() {
+
+    }
+
+    /**
+     * create a parser for an enumeration, which matches the name of a constant exactly or, failing that, ignoring case.
+     * 
+     * @param type the non-null class of the enumeration.
+     * @param <E> the type of the enumeration.
+     * @return a non-null parser.
+     */
+    static <E extends Enum<E>> ValueParser<E> forEnum(final Class<E> type) {
+        return new ValueParser<E>() {
+            @Override
+            public E parse(final String raw) {
+                String name = raw.trim();
+                for (E constant : type.getEnumConstants()) {
+                    if (constant.name().equals(name)) {
+                        return constant;
+                    }
+                }
+                for (E constant : type.getEnumConstants()) {
+                    if (constant.name().equalsIgnoreCase(name)) {
+                        return constant;
+                    }
+                }
+                throw new IllegalArgumentException(String.format("[%s] is not a %s", raw, type.getSimpleName()));
+            }
+        };
+    }
+
+    /**
+     * parse a duration. This may either be an ISO-8601 duration such as "PT30S", or a whole number followed by an optional
+     * unit of "ns", "us", "ms", "s", "m", "h" or "d", such as "500ms" or "30 s". A number without a unit is taken as
+     * milliseconds.
+     * 
+     * @param raw the non-null value to parse.
+     * @return the non-null duration.
+     * @throws IllegalArgumentException if the value cannot be parsed.
+     */
+    static Duration parseDuration(final String raw) {
+        String value = raw.trim().toLowerCase(Locale.ROOT);
+        if (value.startsWith("p") || value.startsWith("-p")) {
+            try {
+                return Duration.parse(value);
+            } catch (DateTimeParseException dtpe) {
+                throw new IllegalArgumentException(String.format("[%s] is not a duration", raw), dtpe);
+            }
+        }
+        int split = unitStart(value);
+        long amount = Long.parseLong(value.substring(0, split).trim());
+        switch (value.substring(split)) {
+        case "ns":
+            return Duration.ofNanos(amount);
+        case "us":
+            return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(amount));
+        case "":
+        case "ms":
+            return Duration.ofMillis(amount);
+        case "s":
+            return Duration.ofSeconds(amount);
+        case "m":
+            return Duration.ofMinutes(amount);
+        case "h":
+            return Duration.ofHours(amount);
+        case "d":
+            return Duration.ofDays(amount);
+        default:
+            throw new IllegalArgumentException(String.format("[%s] is not a duration", raw));
+        }
+    }
+
+    /**
+     * parse a size in bytes. This is a whole number followed by an optional unit of "b", "k", "m", "g" or "t", which
+     * may be followed by "b" or "ib", such as "512", "64k", "10MB" or "2 GiB". Case is ignored, and every unit is a
+     * power of 1024.
+     * 
+     * @param raw the non-null value to parse.
+     * @return the size in bytes, which is not negative.
+     * @throws IllegalArgumentException if the value cannot be parsed, is negative or is too large.
+     */
+    static long parseSize(final String raw) {
+        String value = raw.trim().toLowerCase(Locale.ROOT);
+        int split = unitStart(value);
+        long amount = Long.parseLong(value.substring(0, split).trim());
+        if (amount < 0) {
+            throw new IllegalArgumentException(String.format("[%s] is a negative size", raw));
+        }
+        String unit = value.substring(split);
+        if (unit.endsWith("ib")) {
+            unit = unit.substring(0, unit.length() - 2);
+        } else if (unit.length() > 1 && unit.endsWith("b")) {
+            unit = unit.substring(0, unit.length() - 1);
+        }
+        int power = "bkmgt".indexOf(unit);
+        if (unit.length() > 1 || power < 0) {
+            throw new IllegalArgumentException(String.format("[%s] is not a size", raw));
+        }
+        try {
+            long result = amount;
+            for (int i = 0; i < power; i++) {
+                result = Math.multiplyExact(result, KILO);
+            }
+            return result;
+        } catch (ArithmeticException ae) {
+            throw new IllegalArgumentException(String.format("[%s] is too large", raw), ae);
+        }
+    }
+
+    /**
+     * parse a comma separated list. Each entry is trimmed, and empty entries are dropped.
+     * 
+     * @param raw the non-null value to parse.
+     * @return a non-null, unmodifiable and possibly empty list.
+     */
+    static List<String> parseList(final String raw) {
+        List<String> result = new ArrayList<>();
+        for (String entry : raw.split(",")) {
+            String trimmed = entry.trim();
+            if (!trimmed.isEmpty()) {
+                result.add(trimmed);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * find where the unit starts in a number followed by a unit.
+     * 
+     * @param value the trimmed value.
+     * @return the index of the first letter, or the length of the value if there is none.
+     */
+    private static int unitStart(final String value) {
+        int index = 0;
+        while (index < value.length() && !Character.isLetter(value.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+}
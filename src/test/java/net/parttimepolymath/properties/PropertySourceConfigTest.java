@@ -4,13 +4,18 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.junit.Test;
 
+import net.parttimepolymath.properties.consul.ConsulClientImpl;
+import net.parttimepolymath.properties.consul.ConsulTransport;
+
 public class PropertySourceConfigTest {
     @Test
     public void testConstruction() {
@@ -29,12 +34,48 @@ public class PropertySourceConfigTest {
         assertEquals(PropertySourceConfig.CACHE_SIZE, configTwo.getCacheSize());
     }
 
+    @Test
+    public void testCacheSize() {
+        assertEquals(5000, PropertySourceConfig.builder().withCaching(5000).build().getCacheSize());
+        assertEquals(0, PropertySourceConfig.builder().withCaching(0).build().getCacheSize());
+        assertFalse(PropertySourceConfig.builder().withCaching(-1).build().isUseCache());
+        assertEquals(0, PropertySourceConfig.builder().withCaching(10).build().getCacheTtl());
+        assertEquals(500, PropertySourceConfig.builder().withCaching(10, 500).build().getCacheTtl());
+    }
+
+    @Test
+    public void testNegativeCaching() {
+        PropertySourceConfig configOne = PropertySourceConfig.builder().build();
+        PropertySourceConfig configTwo = PropertySourceConfig.builder().withNegativeCaching().build();
+        PropertySourceConfig configThree = PropertySourceConfig.builder().withNegativeCaching(10, 500).build();
+        PropertySourceConfig configFour = PropertySourceConfig.builder().withNegativeCaching(10, 0).build();
+
+        assertFalse(configOne.isUseNegativeCache());
+        assertEquals(0, configOne.getNegativeCacheSize());
+        assertTrue(configTwo.isUseNegativeCache());
+        assertEquals(PropertySourceConfig.NEGATIVE_CACHE_SIZE, configTwo.getNegativeCacheSize());
+        assertEquals(PropertySourceConfig.NEGATIVE_CACHE_TTL, configTwo.getNegativeCacheTtl());
+        assertEquals(10, configThree.getNegativeCacheSize());
+        assertEquals(500, configThree.getNegativeCacheTtl());
+        assertFalse(configFour.isUseNegativeCache());
+    }
+
     @Test
     public void testDirectory() {
         PropertySourceConfig configOne = PropertySourceConfig.builder().build();
         PropertySourceConfig configTwo = PropertySourceConfig.builder().withDirectory("/tmp").build();
         assertNull(configOne.getDirectory());
         assertEquals("/tmp", configTwo.getDirectory());
+        assertEquals(1, configTwo.getDirectoryDepth());
+        assertEquals("*.properties", configTwo.getDirectoryGlob());
+    }
+
+    @Test
+    public void testDirectoryTree() {
+        PropertySourceConfig config = PropertySourceConfig.builder().withDirectoryTree("/tmp", 3, "*.conf").build();
+        assertEquals("/tmp", config.getDirectory());
+        assertEquals(3, config.getDirectoryDepth());
+        assertEquals("*.conf", config.getDirectoryGlob());
     }
 
     @Test
@@ -48,6 +89,12 @@ public class PropertySourceConfigTest {
         assertFalse(configThree.getFiles().isEmpty());
     }
 
+    @Test
+    public void testFileChecksums() {
+        assertFalse(PropertySourceConfig.builder().build().isUseFileChecksums());
+        assertTrue(PropertySourceConfig.builder().withFileChecksums().build().isUseFileChecksums());
+    }
+
     @Test
     public void testNullFileList() {
         PropertySourceConfig config = PropertySourceConfig.builder().withFiles((List<String>) null).build();
@@ -60,6 +107,114 @@ public class PropertySourceConfigTest {
         assertEquals("192.168.99.100", config.getConsulHost());
         assertEquals(8500, config.getConsulPort());
         assertEquals("fred/mary/jane", config.getConsulPrefix());
+        assertEquals(0, config.getConsulRefresh());
+    }
+
+    @Test
+    public void testConsulRefresh() {
+        PropertySourceConfig config = PropertySourceConfig.builder().usingConsul("192.168.99.100", 8500, "fred", 30000).build();
+        assertEquals(30000, config.getConsulRefresh());
+        config = PropertySourceConfig.builder().usingConsul("192.168.99.100", 8500, "fred", -5).build();
+        assertEquals(0, config.getConsulRefresh());
+    }
+
+    @Test
+    public void testConsulWatch() {
+        assertEquals(0, PropertySourceConfig.builder().build().getConsulWatch());
+        assertEquals(300, PropertySourceConfig.builder().withConsulWatch(300).build().getConsulWatch());
+        assertEquals(0, PropertySourceConfig.builder().withConsulWatch(-1).build().getConsulWatch());
+    }
+
+    @Test
+    public void testConsulTimeouts() {
+        PropertySourceConfig config = PropertySourceConfig.builder().build();
+        assertEquals(ConsulTransport.DEFAULT_CONNECT_TIMEOUT, config.getConsulConnectTimeout());
+        assertEquals(ConsulTransport.DEFAULT_READ_TIMEOUT, config.getConsulReadTimeout());
+
+        config = PropertySourceConfig.builder().withConsulTimeouts(500, 2000).build();
+        assertEquals(500, config.getConsulConnectTimeout());
+        assertEquals(2000, config.getConsulReadTimeout());
+
+        config = PropertySourceConfig.builder().withConsulTimeouts(0, -1).build();
+        assertEquals(ConsulTransport.DEFAULT_CONNECT_TIMEOUT, config.getConsulConnectTimeout());
+        assertEquals(ConsulTransport.DEFAULT_READ_TIMEOUT, config.getConsulReadTimeout());
+    }
+
+    @Test
+    public void testConsulSnapshot() {
+        assertNull(PropertySourceConfig.builder().build().getConsulSnapshot());
+        assertEquals("/var/cache/app/consul.snapshot",
+                PropertySourceConfig.builder().withConsulSnapshot("/var/cache/app/consul.snapshot").build().getConsulSnapshot());
+        assertNull(PropertySourceConfig.builder().withConsulSnapshot("").build().getConsulSnapshot());
+        assertNull(PropertySourceConfig.builder().withConsulSnapshot(null).build().getConsulSnapshot());
+    }
+
+    @Test
+    public void testConsulTransport() {
+        assertNull(PropertySourceConfig.builder().build().getConsulTransport());
+
+        ConsulTransport transport = ConsulTransport.builder().withTimeouts(100, 200).build();
+        PropertySourceConfig config = PropertySourceConfig.builder().withConsulTransport(transport).build();
+        assertSame(transport, config.getConsulTransport());
+        assertEquals(100, config.getConsulConnectTimeout());
+        assertEquals(200, config.getConsulReadTimeout());
+
+        config = PropertySourceConfig.builder().withConsulTransport(transport).withConsulTimeouts(300, 400).build();
+        assertSame(transport, config.getConsulTransport());
+        assertEquals(300, config.getConsulConnectTimeout());
+        assertEquals(400, config.getConsulReadTimeout());
+    }
+
+    @Test
+    public void testConsulCircuitBreaker() {
+        PropertySourceConfig config = PropertySourceConfig.builder().build();
+        assertEquals(ConsulClientImpl.DEFAULT_FAILURE_THRESHOLD, config.getConsulFailureThreshold());
+        assertEquals(ConsulClientImpl.DEFAULT_OPEN_MILLIS, config.getConsulOpenMillis());
+
+        config = PropertySourceConfig.builder().withConsulCircuitBreaker(3, 5000).build();
+        assertEquals(3, config.getConsulFailureThreshold());
+        assertEquals(5000, config.getConsulOpenMillis());
+
+        config = PropertySourceConfig.builder().withConsulCircuitBreaker(-1, 0).build();
+        assertEquals(0, config.getConsulFailureThreshold());
+        assertEquals(ConsulClientImpl.DEFAULT_OPEN_MILLIS, config.getConsulOpenMillis());
+    }
+
+    @Test
+    public void testListenerExecutor() {
+        Executor executor = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        };
+        assertNull(PropertySourceConfig.builder().build().getListenerExecutor());
+        assertSame(executor, PropertySourceConfig.builder().withListenerExecutor(executor).build().getListenerExecutor());
+    }
+
+    @Test
+    public void testJmx() {
+        assertNull(PropertySourceConfig.builder().build().getJmxName());
+        assertNull(PropertySourceConfig.builder().withJmx("").build().getJmxName());
+        assertEquals("app", PropertySourceConfig.builder().withJmx("app").build().getJmxName());
+    }
+
+    @Test
+    public void testSnapshots() {
+        PropertySourceConfig config = PropertySourceConfig.builder().build();
+        assertFalse(config.isSystemSnapshot());
+        assertFalse(config.isEnvironmentSnapshot());
+        assertFalse(config.isRelaxedEnvironmentNames());
+
+        config = PropertySourceConfig.builder().withSystemSnapshot().withEnvironmentSnapshot().build();
+        assertTrue(config.isSystemSnapshot());
+        assertEquals(PropertySourceConfig.SYSTEM_SNAPSHOT_REFRESH, config.getSystemSnapshotRefresh());
+        assertTrue(config.isEnvironmentSnapshot());
+        assertFalse(config.isRelaxedEnvironmentNames());
+
+        config = PropertySourceConfig.builder().withSystemSnapshot(-1).withEnvironmentSnapshot(true).build();
+        assertEquals(0, config.getSystemSnapshotRefresh());
+        assertTrue(config.isRelaxedEnvironmentNames());
     }
 
     @Test
@@ -1,6 +1,7 @@
 package net.parttimepolymath.properties;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 
@@ -18,4 +19,16 @@ public class PropertySourceFactoryTest {
         assertThat(result, instanceOf(PropertyResolver.class));
     }
 
+    @Test
+    public void testSnapshots() {
+        PropertySource result = PropertySourceFactory
+                .build(PropertySourceConfig.builder().withSystemSnapshot(0).withEnvironmentSnapshot(true).build());
+        try {
+            assertEquals(System.getProperty("java.class.path"), result.get("java.class.path"));
+            assertEquals(System.getenv("PATH"), result.get("path"));
+        } finally {
+            result.close();
+        }
+    }
+
 }
@@ -0,0 +1,114 @@
+package net.parttimepolymath.properties.consul;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+    private ScheduledExecutorService scheduler;
+    private final AtomicBoolean healthy = new AtomicBoolean();
+    private final AtomicInteger probes = new AtomicInteger();
+    private final BooleanSupplier probe = new BooleanSupplier() {
+        @Override
+        public boolean getAsBoolean() {
+            probes.incrementAndGet();
+            return healthy.get();
+        }
+    };
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testOpens() {
+        CircuitBreaker instance = new CircuitBreaker(3, 60000, probe, scheduler);
+        assertTrue(instance.allowRequest());
+        instance.recordFailure();
+        instance.recordFailure();
+        instance.recordSuccess();
+        instance.recordFailure();
+        instance.recordFailure();
+        assertTrue(instance.allowRequest());
+        instance.recordFailure();
+        assertFalse(instance.allowRequest());
+        assertEquals(CircuitBreaker.State.OPEN, instance.getState());
+        assertEquals(0, probes.get());
+    }
+
+    @Test
+    public void testNeverOpens() {
+        CircuitBreaker instance = new CircuitBreaker(0, 1, probe, scheduler);
+        for (int i = 0; i < 100; i++) {
+            instance.recordFailure();
+        }
+        assertTrue(instance.allowRequest());
+    }
+
+    @Test
+    public void testProbe() throws Exception {
+        CircuitBreaker instance = new CircuitBreaker(1, 10, probe, scheduler);
+        instance.recordFailure();
+        assertFalse(instance.allowRequest());
+        awaitProbes(2);
+        assertFalse(instance.allowRequest());
+
+        healthy.set(true);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!instance.allowRequest() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, instance.getState());
+
+        int seen = probes.get();
+        Thread.sleep(50);
+        assertEquals(seen, probes.get());
+        instance.recordFailure();
+        assertFalse(instance.allowRequest());
+    }
+
+    @Test
+    public void testProbeThrows() throws Exception {
+        CircuitBreaker instance = new CircuitBreaker(1, 10, new BooleanSupplier() {
+            @Override
+            public boolean getAsBoolean() {
+                probes.incrementAndGet();
+                throw new IllegalStateException("down");
+            }
+        }, scheduler);
+        instance.recordFailure();
+        awaitProbes(2);
+        assertFalse(instance.allowRequest());
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals("CircuitBreaker [state=CLOSED, failures=0, failureThreshold=5, openMillis=100]",
+                new CircuitBreaker(5, 100, probe, scheduler).toString());
+    }
+
+    private void awaitProbes(final int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (probes.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(probes.get() >= count);
+    }
+}
@@ -1,7 +1,30 @@
 package net.parttimepolymath.properties.consul;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -17,6 +40,14 @@ public class ConsulClientImplTest {
     private ConsulClientImpl instance;
     private static MockWebServer server;
     private static HttpUrl serverUrl;
+    private static final Pattern KEY = Pattern.compile("\"Key\":\"([^\"]*)\"");
+    private static final AtomicInteger transactions = new AtomicInteger();
+    private static final AtomicInteger slowRequests = new AtomicInteger();
+    private static final CountDownLatch release = new CountDownLatch(1);
+    private static final AtomicInteger popularRequests = new AtomicInteger();
+    private static final CountDownLatch popularRelease = new CountDownLatch(1);
+    private static final CountDownLatch watching = new CountDownLatch(1);
+    private static final CountDownLatch watchRelease = new CountDownLatch(1);
 
     @BeforeClass
     public static void setUp() throws Exception {
@@ -32,6 +63,70 @@ public class ConsulClientImplTest {
                     return new MockResponse().setResponseCode(200).setBody("testPrefixResult");
                 }
 
+                if (request.getPath().equals("/v1/kv/web/?recurse")) {
+                    return new MockResponse().setResponseCode(200).setHeader("X-Consul-Index", "42")
+                            .setBody("[{\"Key\":\"web/key\",\"Value\":\"dGVzdFByZWZpeFJlc3VsdA==\"},"
+                                    + "{\"Key\":\"web/other\",\"Value\":\"b3RoZXI=\"}]");
+                }
+
+                if (request.getPath().equals("/v1/kv/web/?recurse&index=42&wait=5s")) {
+                    return new MockResponse().setResponseCode(200).setHeader("X-Consul-Index", "43")
+                            .setBody("[{\"Key\":\"web/key\",\"Value\":\"Y2hhbmdlZA==\"}]");
+                }
+
+                if (request.getPath().equals("/v1/kv/web/?recurse&index=99&wait=30s")) {
+                    watching.countDown();
+                    watchRelease.await(10, TimeUnit.SECONDS);
+                    return new MockResponse().setResponseCode(200).setHeader("X-Consul-Index", "100")
+                            .setBody("[{\"Key\":\"web/key\",\"Value\":\"Y2hhbmdlZA==\"}]");
+                }
+
+                if (request.getPath().equals("/v1/kv/web/k?recurse")) {
+                    return new MockResponse().setResponseCode(200)
+                            .setBody("[{\"Key\":\"web/key\",\"Value\":\"dGVzdFByZWZpeFJlc3VsdA==\"}]");
+                }
+
+                if (request.getPath().equals("/v1/kv/web/x?recurse")) {
+                    return new MockResponse().setResponseCode(404);
+                }
+
+                if (request.getPath().equals("/v1/kv/empty/?recurse")) {
+                    return new MockResponse().setResponseCode(404).setHeader("X-Consul-Index", "7");
+                }
+
+                if (request.getPath().equals("/v1/kv/bad/?recurse")) {
+                    return new MockResponse().setResponseCode(200).setBody("[{\"Key\":");
+                }
+
+                if (request.getPath().equals("/v1/kv/web/slow?raw")) {
+                    slowRequests.incrementAndGet();
+                    release.await(10, TimeUnit.SECONDS);
+                    return new MockResponse().setResponseCode(200).setBody("slowResult");
+                }
+
+                if (request.getPath().equals("/v1/kv/web/popular?raw")) {
+                    popularRequests.incrementAndGet();
+                    popularRelease.await(10, TimeUnit.SECONDS);
+                    return new MockResponse().setResponseCode(200).setBody("popularResult");
+                }
+
+                if (request.getPath().equals("/v1/txn")) {
+                    return transaction(request);
+                }
+
+                if (request.getPath().equals("/v1/kv/web/key?raw&stale")) {
+                    return new MockResponse().setResponseCode(200).setBody("staleResult");
+                }
+
+                if (request.getPath().equals("/v1/kv/web/?recurse&stale")) {
+                    return new MockResponse().setResponseCode(200).setHeader("X-Consul-Index", "42")
+                            .setBody("[{\"Key\":\"web/key\",\"Value\":\"c3RhbGVSZXN1bHQ=\"}]");
+                }
+
+                if (request.getPath().equals("/v1/txn?stale")) {
+                    return transaction(request);
+                }
+
                 if (request.getPath().equals("/v1/kv/key?raw")) {
                     return new MockResponse().setResponseCode(200).setBody("testNoPrefixResult");
                 }
@@ -43,6 +138,35 @@ public class ConsulClientImplTest {
         server.setDispatcher(dispatcher);
     }
 
+    /**
+     * answer a transaction, failing with a conflict if any key contains "missing" as Consul does for absent keys.
+     */
+    private static MockResponse transaction(final RecordedRequest request) {
+        transactions.incrementAndGet();
+        List<String> keys = new ArrayList<>();
+        Matcher matcher = KEY.matcher(request.getBody().readUtf8());
+        while (matcher.find()) {
+            keys.add(matcher.group(1));
+        }
+        StringBuilder errors = new StringBuilder();
+        StringBuilder results = new StringBuilder();
+        for (int i = 0; i < keys.size(); i++) {
+            if (keys.get(i).contains("broken")) {
+                return new MockResponse().setResponseCode(500);
+            }
+            if (keys.get(i).contains("missing")) {
+                errors.append(errors.length() == 0 ? "" : ",").append(String.format("{\"OpIndex\":%d,\"What\":\"key not found\"}", i));
+            }
+            String value = Base64.getEncoder().encodeToString(("value of " + keys.get(i)).getBytes(StandardCharsets.UTF_8));
+            results.append(results.length() == 0 ? "" : ",")
+                    .append(String.format("{\"KV\":{\"Key\":\"%s\",\"Value\":\"%s\"}}", keys.get(i), value));
+        }
+        if (errors.length() > 0) {
+            return new MockResponse().setResponseCode(409).setBody(String.format("{\"Results\":null,\"Errors\":[%s]}", errors));
+        }
+        return new MockResponse().setResponseCode(200).setBody(String.format("{\"Results\":[%s],\"Errors\":null}", results));
+    }
+
     @AfterClass
     public static void tearDown() throws Exception {
         server.shutdown();
@@ -83,6 +207,177 @@ public class ConsulClientImplTest {
         assertNull(result);
     }
 
+    @Test
+    public void testValues() {
+        instance = new ConsulClientImpl(serverUrl.host(), serverUrl.port());
+        KeyValueSnapshot result = instance.getValues("web");
+        assertEquals(42, result.getIndex());
+        assertEquals(2, result.getValues().size());
+        assertEquals("testPrefixResult", result.getValues().get("key"));
+        assertEquals("other", result.getValues().get("other"));
+    }
+
+    @Test
+    public void testBlockingValues() {
+        instance = new ConsulClientImpl(serverUrl.host(), serverUrl.port());
+        KeyValueSnapshot result = instance.getValues("web", 42, 5);
+        assertEquals(43, result.getIndex());
+        assertEquals("changed", result.getValues().get("key"));
+
+        result = instance.getValues("web", 0, 5);
+        assertEquals(42, result.getIndex());
+    }
+
+    @Test
+    public void testBlockingValuesInterrupted() throws Exception {
+        instance = new ConsulClientImpl(serverUrl.host(), serverUrl.port());
+        final AtomicReference<KeyValueSnapshot> result = new AtomicReference<>();
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        Thread watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result.set(instance.getValues("web", 99, 30));
+                interrupted.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        watcher.start();
+        try {
+            assertTrue(watching.await(5, TimeUnit.SECONDS));
+            watcher.interrupt();
+            watcher.join(TimeUnit.SECONDS.toMillis(5));
+            assertFalse(watcher.isAlive());
+            assertNull(result.get());
+            assertTrue(interrupted.get());
+            assertEquals("testPrefixResult", instance.getValues("web").getValues().get("key"));
+        } finally {
+            watchRelease.countDown();
+        }
+    }
+
+    @Test
+    public void testValuesNotFound() {
+        instance = new ConsulClientImpl(serverUrl.host(), serverUrl.port());
+        KeyValueSnapshot result = instance.getValues("empty/");
+        assertEquals(7, result.getIndex());
+        assertTrue(result.getValues().isEmpty());
+    }
+
+    @Test
+    public void testValuesFail() {
+        instance = new ConsulClientImpl(serverUrl.host(), serverUrl.port());
+        assertNull(instance.getValues("bad"));
+    }
+
+    @Test
+    public void testValuesStartingWith() {
+        instance = new ConsulClientImpl(serverUrl.host(), serverUrl.port());
+        Map<String, String> result = instance.getValuesStartingWith("web", "k");
+        assertEquals(1, result.size());
+        assertEquals("testPrefixResult", result.get("key"));
+        assertEquals(2, instance.getValuesStartingWith("web/", null).size());
+        assertTrue(instance.getValuesStartingWith("web", "x").isEmpty());
+        assertNull(instance.getValuesStartingWith("bad", ""));
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        instance = new ConsulClientImpl(serverUrl.host(), serverUrl.port());
+        assertEquals("testPrefixResult", instance.getValueAsync("web", "key").get(10, TimeUnit.SECONDS));
+        assertNull(instance.getValueAsync("web", "noSuchKey").get(10, TimeUnit.SECONDS));
+        assertNull(instance.getValueAsync("web", null).get());
+        assertNull(instance.getValueAsync("web", "").get());
+    }
+
+    @Test
+    public void testAsyncFailure() throws Exception {
+        instance = new ConsulClientImpl(serverUrl.host(), 1);
+        assertNull(instance.getValueAsync("web", "key").get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAsyncMerged() throws Exception {
+        instance = new ConsulClientImpl(serverUrl.host(), serverUrl.port());
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(instance.getValueAsync("web", "slow"));
+        }
+        results.get(0).cancel(false);
+        release.countDown();
+        for (int i = 1; i < results.size(); i++) {
+            assertEquals("slowResult", results.get(i).get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, slowRequests.get());
+
+        assertEquals("slowResult", instance.getValueAsync("web", "slow").get(10, TimeUnit.SECONDS));
+        assertEquals(2, slowRequests.get());
+    }
+
+    @Test
+    public void testCoalesced() throws Exception {
+        final ConsulClientImpl client = new ConsulClientImpl(serverUrl.host(), serverUrl.port());
+        final int callers = 64;
+        final CyclicBarrier start = new CyclicBarrier(callers);
+        final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException | BrokenBarrierException e) {
+                        return;
+                    }
+                    results.add(client.getValue("web", "popular"));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        // the first caller is held up by the server; wait until every other caller is waiting for its answer
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while ((popularRequests.get() == 0 || waiting(threads) < callers - 1) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        CompletableFuture<String> async = client.getValueAsync("web", "popular");
+        popularRelease.countDown();
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        assertEquals(callers, results.size());
+        for (String result : results) {
+            assertEquals("popularResult", result);
+        }
+        assertEquals("popularResult", async.get(10, TimeUnit.SECONDS));
+        assertEquals(1, popularRequests.get());
+
+        assertEquals("popularResult", client.getValue("web", "popular"));
+        assertEquals(2, popularRequests.get());
+    }
+
+    // count the threads waiting for the answer to a request made by another thread
+    private static int waiting(final List<Thread> threads) {
+        int count = 0;
+        for (Thread thread : threads) {
+            for (StackTraceElement frame : thread.getStackTrace()) {
+                if (frame.getClassName().equals(CompletableFuture.class.getName()) && frame.getMethodName().equals("join")) {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testParseIndex() {
+        assertEquals(0, ConsulClientImpl.parseIndex(null));
+        assertEquals(0, ConsulClientImpl.parseIndex("fish"));
+        assertEquals(12, ConsulClientImpl.parseIndex(" 12 "));
+    }
+
     @Test
     public void testNullKey() {
         instance = new ConsulClientImpl(serverUrl.host(), serverUrl.port());
@@ -90,4 +385,211 @@ public class ConsulClientImplTest {
         assertNull(result);
     }
 
+    @Test
+    public void testGetAll() {
+        instance = new ConsulClientImpl(serverUrl.host(), serverUrl.port());
+        transactions.set(0);
+        Map<String, String> result = instance.getValues("web", Arrays.asList("one", "two", "one", null, ""));
+        assertEquals(2, result.size());
+        assertEquals("value of web/one", result.get("one"));
+        assertEquals("value of web/two", result.get("two"));
+        assertEquals(1, transactions.get());
+    }
+
+    @Test
+    public void testGetAllMissing() {
+        instance = new ConsulClientImpl(serverUrl.host(), serverUrl.port());
+        transactions.set(0);
+        Map<String, String> result = instance.getValues("", Arrays.asList("missing1", "one", "missing2"));
+        assertEquals(1, result.size());
+        assertEquals("value of one", result.get("one"));
+        assertEquals(2, transactions.get());
+
+        assertTrue(instance.getValues("web", Arrays.asList("missing")).isEmpty());
+    }
+
+    @Test
+    public void testGetAllBatched() {
+        instance = new ConsulClientImpl(serverUrl.host(), serverUrl.port());
+        transactions.set(0);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i <= ConsulClientImpl.MAX_TRANSACTION_SIZE; i++) {
+            keys.add("key" + i);
+        }
+        Map<String, String> result = instance.getValues("web", keys);
+        assertEquals(keys.size(), result.size());
+        assertEquals("value of web/key64", result.get("key64"));
+        assertEquals(2, transactions.get());
+    }
+
+    @Test
+    public void testGetAllFail() {
+        instance = new ConsulClientImpl(serverUrl.host(), serverUrl.port());
+        assertNull(instance.getValues("web", Arrays.asList("one", "broken")));
+        assertTrue(instance.getValues("web", new ArrayList<String>()).isEmpty());
+    }
+
+    @Test
+    public void testConsistency() throws Exception {
+        ConsulTransport transport = ConsulTransport.builder().withConsistency(ConsulTransport.Consistency.STALE).build();
+        instance = new ConsulClientImpl(serverUrl.host(), serverUrl.port(), transport, 0, 1000);
+        assertEquals("staleResult", instance.getValue("web", "key"));
+        assertEquals("staleResult", instance.getValue("web/", "key"));
+        assertEquals("staleResult", instance.getValueAsync("web", "key").get(10, TimeUnit.SECONDS));
+        assertEquals("staleResult", instance.getValues("web").getValues().get("key"));
+        assertEquals("value of web/one", instance.getValues("web", Arrays.asList("one")).get("one"));
+    }
+
+    @Test
+    public void testConstructUrl() {
+        instance = new ConsulClientImpl("consul", 8500);
+        assertEquals("http://consul:8500/v1/kv/key?raw", instance.constructUrl(null, "key"));
+        assertEquals("http://consul:8500/v1/kv/key?raw", instance.constructUrl("", "key"));
+        assertEquals("http://consul:8500/v1/kv/web/key?raw", instance.constructUrl("web", "key"));
+        assertEquals("http://consul:8500/v1/kv/web/key?raw", instance.constructUrl("web/", "key"));
+        assertEquals("http://consul:8500/v1/kv/a/b/key?raw", instance.constructUrl("a/b", "key"));
+    }
+
+    @Test
+    public void testStaleOnFailure() throws Exception {
+        final AtomicBoolean down = new AtomicBoolean();
+        MockWebServer flaky = flakyServer(down, new AtomicInteger(), new AtomicInteger());
+        try {
+            instance = new ConsulClientImpl(flaky.getHostName(), flaky.getPort(), null, 0, 1000);
+            assertEquals("value", instance.getValue("web", "key"));
+            assertEquals(Collections.singletonMap("key", "value"), instance.getValues("web", Arrays.asList("key")));
+            assertNull(instance.getValue("web", "missing"));
+
+            down.set(true);
+            assertEquals("value", instance.getValue("web", "key"));
+            assertEquals("value", instance.getValueAsync("web", "key").get(10, TimeUnit.SECONDS));
+            assertNull(instance.getValue("web", "other"));
+            assertNull(instance.getValues("web", Arrays.asList("key")));
+            assertNull(instance.getValues("web"));
+            assertEquals(CircuitBreaker.State.CLOSED, instance.getBreaker().getState());
+        } finally {
+            flaky.shutdown();
+        }
+    }
+
+    @Test
+    public void testFetchReportsFailure() throws Exception {
+        final AtomicBoolean down = new AtomicBoolean();
+        MockWebServer flaky = flakyServer(down, new AtomicInteger(), new AtomicInteger());
+        try {
+            instance = new ConsulClientImpl(flaky.getHostName(), flaky.getPort(), null, 0, 1000);
+            assertEquals("value", instance.fetchValue("web", "key"));
+            assertNull(instance.fetchValue("web", "missing"));
+
+            down.set(true);
+            try {
+                instance.fetchValue("web", "key");
+                fail("expected fetchValue() to fail");
+            } catch (ConsulUnavailableException cue) {
+                assertEquals("value", cue.getLastKnown());
+            }
+            try {
+                instance.fetchValueAsync("web", "other").get(10, TimeUnit.SECONDS);
+                fail("expected fetchValueAsync() to fail");
+            } catch (ExecutionException ee) {
+                assertNull(((ConsulUnavailableException) ee.getCause()).getLastKnown());
+            }
+        } finally {
+            flaky.shutdown();
+        }
+    }
+
+    @Test
+    public void testCircuitOpens() throws Exception {
+        final AtomicBoolean down = new AtomicBoolean();
+        AtomicInteger reads = new AtomicInteger();
+        AtomicInteger probes = new AtomicInteger();
+        MockWebServer flaky = flakyServer(down, reads, probes);
+        try {
+            instance = new ConsulClientImpl(flaky.getHostName(), flaky.getPort(), null, 2, 50);
+            assertEquals("value", instance.getValue("web", "key"));
+
+            down.set(true);
+            assertEquals("value", instance.getValue("web", "key"));
+            assertEquals("value", instance.getValue("web", "key"));
+            assertEquals(3, reads.get());
+            assertTrue(instance.getBreaker().getState() != CircuitBreaker.State.CLOSED);
+
+            assertEquals("value", instance.getValue("web", "key"));
+            assertEquals("value", instance.getValueAsync("web", "key").get(10, TimeUnit.SECONDS));
+            assertNull(instance.getValues("web", Arrays.asList("key", "other")));
+            assertNull(instance.getValues("web"));
+            assertNull(instance.getValuesStartingWith("web", "k"));
+            assertEquals(3, reads.get());
+
+            down.set(false);
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (instance.getBreaker().getState() != CircuitBreaker.State.CLOSED && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(CircuitBreaker.State.CLOSED, instance.getBreaker().getState());
+            assertTrue(probes.get() > 0);
+            assertEquals("value", instance.getValue("web", "key"));
+            assertEquals(4, reads.get());
+        } finally {
+            flaky.shutdown();
+        }
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        MockWebServer sleepy = new MockWebServer();
+        sleepy.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(2));
+                return new MockResponse().setResponseCode(200).setBody("late");
+            }
+        });
+        sleepy.start();
+        try {
+            instance = new ConsulClientImpl(sleepy.getHostName(), sleepy.getPort(),
+                    ConsulTransport.shared().withTimeouts(1000, 100), 0, 1000);
+            long start = System.nanoTime();
+            assertNull(instance.getValue("web", "key"));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        } finally {
+            sleepy.shutdown();
+        }
+    }
+
+    private static MockWebServer flakyServer(final AtomicBoolean down, final AtomicInteger reads, final AtomicInteger probes)
+            throws IOException {
+        MockWebServer flaky = new MockWebServer();
+        flaky.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().equals("/v1/status/leader")) {
+                    probes.incrementAndGet();
+                    return new MockResponse().setResponseCode(down.get() ? 500 : 200).setBody("\"127.0.0.1:8300\"");
+                }
+                reads.incrementAndGet();
+                if (down.get()) {
+                    return new MockResponse().setResponseCode(500);
+                }
+                if (request.getPath().equals("/v1/kv/web/key?raw")) {
+                    return new MockResponse().setResponseCode(200).setBody("value");
+                }
+                if (request.getPath().equals("/v1/txn")) {
+                    return new MockResponse().setResponseCode(200)
+                            .setBody("{\"Results\":[{\"KV\":{\"Key\":\"web/key\",\"Value\":\"dmFsdWU=\"}}]}");
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        flaky.start();
+        return flaky;
+    }
+
+    @Test
+    public void testTransactionBody() {
+        assertEquals("[{\"KV\":{\"Verb\":\"get\",\"Key\":\"web/a\"}},{\"KV\":{\"Verb\":\"get\",\"Key\":\"web/q\\\"\\\\\\u0001\"}}]",
+                ConsulClientImpl.transactionBody("web", Arrays.asList("a", "q\"\\\u0001")));
+    }
+
 }
@@ -0,0 +1,61 @@
+package net.parttimepolymath.properties.consul;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ConsulClientTest {
+
+    @Test
+    public void testDefaults() throws Exception {
+        final AtomicInteger reads = new AtomicInteger();
+        ConsulClient instance = new ConsulClient() {
+            @Override
+            public String getValue(final String prefix, final String key) {
+                reads.incrementAndGet();
+                return key.startsWith("missing") ? null : prefix + "/" + key;
+            }
+        };
+        assertEquals("web/a", instance.getValueAsync("web", "a").get());
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("a", "web/a");
+        expected.put("b", "web/b");
+        reads.set(0);
+        assertEquals(expected, instance.getValues("web", Arrays.asList("a", "b", "a", "missing", null, "")));
+        assertEquals(3, reads.get());
+
+        assertTrue(instance.getValues("web").getValues().isEmpty());
+        assertEquals(0, instance.getValues("web").getIndex());
+        assertEquals(0, instance.getValues("web", 42, 5).getIndex());
+        assertEquals(Collections.emptyMap(), instance.getValuesStartingWith("web", "a"));
+    }
+
+    @Test
+    public void testValuesStartingWith() {
+        ConsulClient instance = new ConsulClient() {
+            @Override
+            public String getValue(final String prefix, final String key) {
+                return null;
+            }
+
+            @Override
+            public KeyValueSnapshot getValues(final String prefix) {
+                Map<String, String> values = new HashMap<>();
+                values.put("alpha", "1");
+                values.put("beta", "2");
+                return new KeyValueSnapshot(values, 3);
+            }
+        };
+        assertEquals(Collections.singletonMap("alpha", "1"), instance.getValuesStartingWith("web", "al"));
+        assertEquals(2, instance.getValuesStartingWith("web", null).size());
+        assertEquals(3, instance.getValues("web", 2, 5).getIndex());
+    }
+}
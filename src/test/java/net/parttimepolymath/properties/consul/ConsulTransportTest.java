@@ -0,0 +1,75 @@
+package net.parttimepolymath.properties.consul;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import okhttp3.OkHttpClient;
+
+public class ConsulTransportTest {
+
+    @Test
+    public void testDefaults() {
+        ConsulTransport instance = ConsulTransport.builder().build();
+        assertEquals(ConsulTransport.DEFAULT_CONNECT_TIMEOUT, instance.getConnectTimeout());
+        assertEquals(ConsulTransport.DEFAULT_READ_TIMEOUT, instance.getReadTimeout());
+        assertEquals(ConsulTransport.Consistency.DEFAULT, instance.getConsistency());
+        assertEquals(ConsulTransport.DEFAULT_MAX_REQUESTS, instance.getClient().dispatcher().getMaxRequestsPerHost());
+        assertSame(ConsulTransport.shared(), ConsulTransport.shared());
+    }
+
+    @Test
+    public void testBuilder() {
+        ConsulTransport instance = ConsulTransport.builder().withTimeouts(100, 200).withConnectionPool(2, 1000).withMaxRequests(8)
+                .withConsistency(ConsulTransport.Consistency.STALE).build();
+        assertEquals(100, instance.getConnectTimeout());
+        assertEquals(200, instance.getReadTimeout());
+        assertEquals(ConsulTransport.Consistency.STALE, instance.getConsistency());
+        assertEquals(8, instance.getClient().dispatcher().getMaxRequestsPerHost());
+
+        instance = ConsulTransport.builder().withTimeouts(0, -1).withConnectionPool(-1, 0).withMaxRequests(0).withConsistency(null)
+                .build();
+        assertEquals(ConsulTransport.DEFAULT_CONNECT_TIMEOUT, instance.getConnectTimeout());
+        assertEquals(ConsulTransport.DEFAULT_READ_TIMEOUT, instance.getReadTimeout());
+        assertEquals(ConsulTransport.Consistency.DEFAULT, instance.getConsistency());
+        assertEquals(ConsulTransport.DEFAULT_MAX_REQUESTS, instance.getClient().dispatcher().getMaxRequestsPerHost());
+    }
+
+    @Test
+    public void testWithTimeouts() {
+        ConsulTransport instance = ConsulTransport.builder().withConsistency(ConsulTransport.Consistency.CONSISTENT).build();
+        assertSame(instance, instance.withTimeouts(ConsulTransport.DEFAULT_CONNECT_TIMEOUT, 0));
+
+        ConsulTransport derived = instance.withTimeouts(100, 200);
+        assertNotSame(instance, derived);
+        assertEquals(100, derived.getConnectTimeout());
+        assertEquals(200, derived.getReadTimeout());
+        assertEquals(ConsulTransport.Consistency.CONSISTENT, derived.getConsistency());
+        assertSame(instance.getClient().connectionPool(), derived.getClient().connectionPool());
+        assertSame(instance.getClient().dispatcher(), derived.getClient().dispatcher());
+    }
+
+    @Test
+    public void testBlockingClient() {
+        ConsulTransport instance = ConsulTransport.builder().build();
+        OkHttpClient blocking = instance.getBlockingClient(40);
+        assertEquals(40000, blocking.readTimeoutMillis());
+        assertSame(blocking, instance.getBlockingClient(40));
+        assertSame(instance.getClient().connectionPool(), blocking.connectionPool());
+    }
+
+    @Test
+    public void testConsistency() {
+        assertEquals("", ConsulTransport.Consistency.DEFAULT.getParameter());
+        assertEquals("stale", ConsulTransport.Consistency.STALE.getParameter());
+        assertEquals("consistent", ConsulTransport.Consistency.CONSISTENT.getParameter());
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals("ConsulTransport [connectTimeout=100, readTimeout=200, consistency=STALE]",
+                ConsulTransport.builder().withTimeouts(100, 200).withConsistency(ConsulTransport.Consistency.STALE).build().toString());
+    }
+}
@@ -0,0 +1,72 @@
+package net.parttimepolymath.properties.consul;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class KeyValueReaderTest {
+
+    @Test
+    public void testEmpty() throws IOException {
+        assertTrue(KeyValueReader.read(new StringReader(" [ ] "), "web/").isEmpty());
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        String json = "[{\"LockIndex\":0,\"Key\":\"web/\",\"Flags\":0,\"Value\":null,\"CreateIndex\":5,\"ModifyIndex\":5},"
+                + "{\"LockIndex\":0,\"Key\":\"web/one\",\"Flags\":0,\"Value\":\"b25l\",\"CreateIndex\":6,\"ModifyIndex\":6},\n"
+                + " {\"Key\" : \"web/nested/two\", \"Session\": {\"a\": [1, true, \"x\\\"y\"], \"b\": {}}, \"Value\": \"dHdv\"},"
+                + "{\"Key\":\"other/three\",\"Value\":\"dGhyZWU=\"},"
+                + "{\"Key\":\"web/esc\\u0061ped\",\"Value\":\"w6lsw6g=\",\"Extra\":[]}]";
+        Map<String, String> result = KeyValueReader.read(new StringReader(json), "web/");
+        assertEquals(3, result.size());
+        assertEquals("one", result.get("one"));
+        assertEquals("two", result.get("nested/two"));
+        assertEquals("\u00e9l\u00e8", result.get("escaped"));
+    }
+
+    @Test
+    public void testNoPrefix() throws IOException {
+        Map<String, String> result = KeyValueReader.read(new StringReader("[{\"Key\":\"one\",\"Value\":\"b25l\"},{}]"), "");
+        assertEquals(1, result.size());
+        assertEquals("one", result.get("one"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        KeyValueReader.read(new StringReader("[{\"Key\":\"one\",\"Value\":\"b25l"), "");
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformed() throws IOException {
+        KeyValueReader.read(new StringReader("{\"Key\":\"one\"}"), "");
+    }
+
+    @Test
+    public void testTransaction() throws IOException {
+        String json = "{\"Results\":[{\"KV\":{\"Key\":\"web/one\",\"Value\":\"b25l\",\"Flags\":0}},"
+                + "{\"KV\":{\"Key\":\"web/two\",\"Value\":\"dHdv\"}}],\"Errors\":null,\"Index\":3}";
+        List<Integer> failed = new ArrayList<>();
+        Map<String, String> result = KeyValueReader.readTransaction(new StringReader(json), "web/", failed);
+        assertEquals(2, result.size());
+        assertEquals("one", result.get("one"));
+        assertEquals("two", result.get("two"));
+        assertTrue(failed.isEmpty());
+    }
+
+    @Test
+    public void testTransactionErrors() throws IOException {
+        String json = "{\"Results\":null,\"Errors\":[{\"OpIndex\":2,\"What\":\"key \\\"c\\\" doesn't exist\"},{\"OpIndex\":0}]}";
+        List<Integer> failed = new ArrayList<>();
+        assertTrue(KeyValueReader.readTransaction(new StringReader(json), "", failed).isEmpty());
+        assertEquals(Arrays.asList(2, 0), failed);
+    }
+}
@@ -0,0 +1,125 @@
+package net.parttimepolymath.properties.consul;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KeyValueSnapshotFileTest {
+    private Path directory;
+    private Path file;
+    private KeyValueSnapshot snapshot;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("KeyValueSnapshotFile");
+        file = directory.resolve("nested").resolve("consul.snapshot");
+        Map<String, String> values = new HashMap<>();
+        values.put("key", "value");
+        values.put("empty", "");
+        values.put("unicode/é中", "üß😀");
+        snapshot = new KeyValueSnapshot(values, 42);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delete(directory.toFile());
+    }
+
+    private static void delete(final File target) {
+        File[] children = target.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        target.delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        KeyValueSnapshotFile.write(file, "web", snapshot);
+        KeyValueSnapshot result = KeyValueSnapshotFile.read(file, "web");
+        assertNotNull(result);
+        assertEquals(42, result.getIndex());
+        assertEquals(snapshot.getValues(), result.getValues());
+
+        KeyValueSnapshotFile.write(file, "web", new KeyValueSnapshot(Collections.singletonMap("key", "changed"), 43));
+        result = KeyValueSnapshotFile.read(file, "web");
+        assertEquals(43, result.getIndex());
+        assertEquals(Collections.singletonMap("key", "changed"), result.getValues());
+        assertEquals(1, file.getParent().toFile().list().length);
+    }
+
+    @Test
+    public void testNoPrefix() throws Exception {
+        KeyValueSnapshotFile.write(file, null, snapshot);
+        assertEquals(snapshot.getValues(), KeyValueSnapshotFile.read(file, "").getValues());
+        assertEquals(snapshot.getValues(), KeyValueSnapshotFile.read(file, null).getValues());
+        assertNull(KeyValueSnapshotFile.read(file, "web"));
+    }
+
+    @Test
+    public void testWrongPrefix() throws Exception {
+        KeyValueSnapshotFile.write(file, "web", snapshot);
+        assertNull(KeyValueSnapshotFile.read(file, "other"));
+    }
+
+    @Test
+    public void testMissing() {
+        assertNull(KeyValueSnapshotFile.read(file, "web"));
+    }
+
+    @Test
+    public void testDamaged() throws Exception {
+        byte[] content = KeyValueSnapshotFile.encode("web", snapshot);
+        assertNotNull(KeyValueSnapshotFile.decode(ByteBuffer.wrap(content), "web"));
+
+        byte[] damaged = content.clone();
+        damaged[damaged.length / 2] ^= 1;
+        assertNull(KeyValueSnapshotFile.decode(ByteBuffer.wrap(damaged), "web"));
+
+        for (int length = 0; length < content.length; length += 7) {
+            assertNull(KeyValueSnapshotFile.decode(ByteBuffer.wrap(content, 0, length), "web"));
+        }
+
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[] {1, 2, 3});
+        assertNull(KeyValueSnapshotFile.read(file, "web"));
+    }
+
+    @Test
+    public void testBadHeader() throws Exception {
+        assertNull(KeyValueSnapshotFile.decode(withChecksum(ByteBuffer.allocate(8).putInt(0).putInt(1)), "web"));
+        assertNull(KeyValueSnapshotFile.decode(
+                withChecksum(ByteBuffer.allocate(8).putInt(KeyValueSnapshotFile.MAGIC).putInt(KeyValueSnapshotFile.VERSION + 1)), "web"));
+        assertNull(KeyValueSnapshotFile.decode(withChecksum(ByteBuffer.allocate(24).putInt(KeyValueSnapshotFile.MAGIC)
+                .putInt(KeyValueSnapshotFile.VERSION).putLong(1).putInt(0).putInt(-1)), ""));
+        assertNull(KeyValueSnapshotFile.decode(withChecksum(ByteBuffer.allocate(20).putInt(KeyValueSnapshotFile.MAGIC)
+                .putInt(KeyValueSnapshotFile.VERSION).putLong(1).putInt(-5)), ""));
+        assertEquals(0, KeyValueSnapshotFile.decode(withChecksum(ByteBuffer.allocate(24).putInt(KeyValueSnapshotFile.MAGIC)
+                .putInt(KeyValueSnapshotFile.VERSION).putLong(1).putInt(0).putInt(0)), "").getValues().size());
+    }
+
+    private static ByteBuffer withChecksum(final ByteBuffer content) {
+        byte[] bytes = content.array();
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, content.position());
+        ByteBuffer result = ByteBuffer.allocate(content.position() + Long.BYTES);
+        result.put(bytes, 0, content.position()).putLong(checksum.getValue());
+        result.flip();
+        return result;
+    }
+}
@@ -0,0 +1,45 @@
+package net.parttimepolymath.properties.consul;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class LruCacheTest {
+
+    @Test
+    public void testPutIfAbsent() {
+        LruCache<String, String> instance = new LruCache<>(4);
+        String value = new String("value");
+        assertSame(value, instance.putIfAbsent("key", value));
+        assertSame(value, instance.putIfAbsent("key", new String("value")));
+        assertSame(value, instance.get("key"));
+        assertNull(instance.get("other"));
+        assertEquals(1, instance.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        LruCache<Integer, String> instance = new LruCache<>(3);
+        instance.putIfAbsent(1, "one");
+        instance.putIfAbsent(2, "two");
+        instance.putIfAbsent(3, "three");
+        assertEquals("one", instance.get(1));
+        instance.putIfAbsent(4, "four");
+        assertEquals(3, instance.size());
+        assertNull(instance.get(2));
+        assertEquals("one", instance.get(1));
+        assertEquals("three", instance.get(3));
+        assertEquals("four", instance.get(4));
+    }
+
+    @Test
+    public void testMinimumCapacity() {
+        LruCache<Integer, String> instance = new LruCache<>(0);
+        instance.putIfAbsent(1, "one");
+        instance.putIfAbsent(2, "two");
+        assertEquals(1, instance.size());
+        assertEquals("two", instance.get(2));
+    }
+}
@@ -4,6 +4,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import java.util.Arrays;
+
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -41,4 +43,65 @@ public class CacheResolverTest {
         assertEquals("fish", value);
 
     }
+
+    @Test
+    public void testInvalidateKeys() {
+        CacheResolverImpl instance = new CacheResolverImpl(64, 0, 2);
+        instance.touchCache("one", "1", 0, instance.getGeneration());
+        instance.touchCache("two", "2", 1, instance.getGeneration());
+        instance.invalidate(Arrays.asList("one"));
+        assertNull(instance.get("one"));
+        assertEquals("2", instance.get("two"));
+        instance.invalidate(null);
+        assertNull(instance.get("two"));
+    }
+
+    @Test
+    public void testInvalidateSource() {
+        CacheResolverImpl instance = new CacheResolverImpl(64, 0, 3);
+        instance.touchCache("zero", "0", 0, instance.getGeneration());
+        instance.touchCache("one", "1", 1, instance.getGeneration());
+        instance.touchCache("two", "2", 2, instance.getGeneration());
+        instance.invalidateSource(1);
+        assertEquals("0", instance.get("zero"));
+        assertNull(instance.get("one"));
+        assertNull(instance.get("two"));
+
+        instance.touchCache("one", "I", 1, instance.getGeneration());
+        assertEquals("I", instance.get("one"));
+    }
+
+    @Test
+    public void testStaleLookupNotCached() {
+        CacheResolverImpl instance = new CacheResolverImpl(64, 0, 1);
+        long generation = instance.getGeneration();
+        instance.invalidateSource(0);
+        instance.touchCache("key", "stale", 0, generation);
+        assertNull(instance.get("key"));
+    }
+
+    @Test
+    public void testTtl() throws InterruptedException {
+        CacheResolverImpl instance = new CacheResolverImpl(64, 50, 1);
+        instance.touchCache("key", "value", 0, instance.getGeneration());
+        assertEquals("value", instance.get("key"));
+        Thread.sleep(100);
+        assertNull(instance.get("key"));
+    }
+
+    @Test
+    public void testStatistics() {
+        CacheResolverImpl instance = new CacheResolverImpl(2);
+        assertNull(instance.get("one"));
+        instance.touchCache("one", "1");
+        assertEquals("1", instance.get("one"));
+        assertEquals(1, instance.getHitCount());
+        assertEquals(1, instance.getMissCount());
+        assertEquals(0, instance.getEvictionCount());
+
+        for (int i = 0; i < 10; i++) {
+            instance.touchCache("key" + i, "value");
+        }
+        assertEquals(9, instance.getEvictionCount());
+    }
 }
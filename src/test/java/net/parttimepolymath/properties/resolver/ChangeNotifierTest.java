@@ -0,0 +1,220 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChangeNotifierTest {
+    private Map<String, String> values;
+    private Resolver source;
+    private List<String> seen;
+    private PropertyListener listener;
+    private ChangeNotifier instance;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    @Before
+    public void setup() {
+        values = Collections.synchronizedMap(new TreeMap<String, String>());
+        values.put("db.pool.size", "10");
+        values.put("db.url", "jdbc:x");
+        source = new Resolver() {
+            @Override
+            public String get(final String key) {
+                return values.get(key);
+            }
+
+            @Override
+            public SortedMap<String, String> getByPrefix(final String prefix) {
+                return PrefixIndex.scan(new TreeMap<>(values), prefix);
+            }
+        };
+        seen = Collections.synchronizedList(new ArrayList<String>());
+        listener = new PropertyListener() {
+            @Override
+            public void changed(final String key, final String oldValue, final String newValue) {
+                seen.add(String.format("%s:%s->%s", key, oldValue, newValue));
+            }
+        };
+        instance = new ChangeNotifier(source, DIRECT);
+    }
+
+    @Test
+    public void testKey() {
+        instance.addKeyListener("db.url", listener);
+        instance.changed(Arrays.asList("db.url"));
+        assertTrue(seen.isEmpty());
+
+        values.put("db.url", "jdbc:y");
+        values.put("db.pool.size", "20");
+        instance.changed(Arrays.asList("db.url", "db.pool.size"));
+        instance.changed(null);
+        assertEquals(Arrays.asList("db.url:jdbc:x->jdbc:y"), seen);
+
+        values.remove("db.url");
+        instance.changed(Arrays.asList("db.pool.size"));
+        instance.changed(null);
+        assertEquals(Arrays.asList("db.url:jdbc:x->jdbc:y", "db.url:jdbc:y->null"), seen);
+    }
+
+    @Test
+    public void testPrefix() {
+        instance.addPrefixListener("db.pool.", listener);
+        values.put("db.pool.size", "20");
+        values.put("db.pool.min", "2");
+        values.put("db.url", "jdbc:y");
+        instance.changed(Arrays.asList("db.pool.size", "db.pool.min", "db.url"));
+        Collections.sort(seen);
+        assertEquals(Arrays.asList("db.pool.min:null->2", "db.pool.size:10->20"), seen);
+
+        seen.clear();
+        values.remove("db.pool.size");
+        instance.changed(null);
+        assertEquals(Arrays.asList("db.pool.size:20->null"), seen);
+    }
+
+    @Test
+    public void testIgnored() {
+        instance.addKeyListener(null, listener);
+        instance.addKeyListener("", listener);
+        instance.addKeyListener("db.url", null);
+        instance.addPrefixListener("db.", null);
+        assertEquals(0, instance.size());
+
+        instance.addPrefixListener(null, listener);
+        values.put("other", "x");
+        instance.changed(null);
+        assertEquals(Arrays.asList("other:null->x"), seen);
+    }
+
+    @Test
+    public void testRemove() {
+        instance.addKeyListener("db.url", listener);
+        instance.addPrefixListener("db.", listener);
+        assertEquals(2, instance.size());
+        instance.remove(listener);
+        assertEquals(0, instance.size());
+
+        values.put("db.url", "jdbc:y");
+        instance.changed(null);
+        assertTrue(seen.isEmpty());
+    }
+
+    @Test
+    public void testFailingListener() {
+        instance.addKeyListener("db.url", new PropertyListener() {
+            @Override
+            public void changed(final String key, final String oldValue, final String newValue) {
+                throw new IllegalStateException("deliberate");
+            }
+        });
+        instance.addPrefixListener("db.", listener);
+        values.put("db.url", "jdbc:y");
+        values.put("db.pool.size", "20");
+        instance.changed(null);
+        assertEquals(2, seen.size());
+    }
+
+    @Test
+    public void testRejected() {
+        instance = new ChangeNotifier(source, new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                throw new RejectedExecutionException("deliberate");
+            }
+        });
+        instance.addKeyListener("db.url", listener);
+        values.put("db.url", "jdbc:y");
+        instance.changed(null);
+        assertTrue(seen.isEmpty());
+    }
+
+    @Test
+    public void testResolvedOnExecutor() {
+        final List<String> lookups = Collections.synchronizedList(new ArrayList<String>());
+        Resolver counting = new Resolver() {
+            @Override
+            public String get(final String key) {
+                lookups.add(key);
+                return values.get(key);
+            }
+        };
+        final List<Runnable> queued = new ArrayList<>();
+        instance = new ChangeNotifier(counting, new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                queued.add(command);
+            }
+        });
+        instance.addKeyListener("db.url", listener);
+        lookups.clear();
+
+        values.put("db.url", "jdbc:y");
+        instance.changed(Arrays.asList("db.url"));
+        instance.changed(null);
+        assertEquals(1, queued.size());
+        assertTrue(lookups.isEmpty());
+        assertTrue(seen.isEmpty());
+
+        queued.remove(0).run();
+        assertEquals(Arrays.asList("db.url", "db.url"), lookups);
+        assertEquals(Arrays.asList("db.url:jdbc:x->jdbc:y"), seen);
+    }
+
+    @Test
+    public void testDeliveredInOrder() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            instance = new ChangeNotifier(source, executor);
+            final CountDownLatch done = new CountDownLatch(1);
+            instance.addKeyListener("db.pool.size", listener);
+            instance.addKeyListener("done", new PropertyListener() {
+                @Override
+                public void changed(final String key, final String oldValue, final String newValue) {
+                    done.countDown();
+                }
+            });
+            for (int i = 0; i < 100; i++) {
+                values.put("db.pool.size", Integer.toString(i));
+                instance.changed(Arrays.asList("db.pool.size"));
+            }
+            values.put("done", "yes");
+            instance.changed(Arrays.asList("done"));
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+
+            // values are resolved when checked, so changes that follow quickly may be reported as one
+            assertTrue(!seen.isEmpty() && seen.size() <= 100);
+            String previous = "10";
+            for (String change : seen) {
+                assertTrue(change, change.startsWith("db.pool.size:" + previous + "->"));
+                String next = change.substring(change.indexOf("->") + 2);
+                assertTrue(change, Integer.parseInt(next) > Integer.parseInt(previous) || "10".equals(previous));
+                previous = next;
+            }
+            assertEquals("99", previous);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -3,17 +3,50 @@ package net.parttimepolymath.properties.resolver;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Before;
 import org.junit.Test;
 
 import net.parttimepolymath.properties.consul.ConsulClient;
+import net.parttimepolymath.properties.consul.ConsulClientImpl;
+import net.parttimepolymath.properties.consul.ConsulUnavailableException;
+import net.parttimepolymath.properties.consul.KeyValueSnapshot;
+import net.parttimepolymath.properties.consul.KeyValueSnapshotFile;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 
 public class ConsulResolverTest {
 
     private ConsulClient client;
+    private Map<String, String> remote;
+    private AtomicInteger bulkReads;
+    private AtomicInteger batchReads;
 
     @Before
     public void setUp() throws Exception {
+        remote = new HashMap<>();
+        bulkReads = new AtomicInteger();
+        batchReads = new AtomicInteger();
         client = new ConsulClient() {
             @Override
             public String getValue(String prefix, String key) {
@@ -22,6 +55,66 @@ public class ConsulResolverTest {
                 }
                 return String.format("prefix:{%s}, key:{%s}", prefix, key);
             }
+
+            @Override
+            public String fetchValue(String prefix, String key) {
+                if (key.equals("down")) {
+                    throw new ConsulUnavailableException(key, "stale");
+                }
+                return getValue(prefix, key);
+            }
+
+            @Override
+            public CompletableFuture<String> fetchValueAsync(String prefix, String key) {
+                CompletableFuture<String> call = new CompletableFuture<>();
+                try {
+                    call.complete(fetchValue(prefix, key));
+                } catch (ConsulUnavailableException cue) {
+                    call.completeExceptionally(cue);
+                }
+                return call;
+            }
+
+            @Override
+            public KeyValueSnapshot getValues(String prefix) {
+                bulkReads.incrementAndGet();
+                return remote == null ? null : new KeyValueSnapshot(remote, bulkReads.get());
+            }
+
+            @Override
+            public KeyValueSnapshot getValues(String prefix, long index, long waitSeconds) {
+                return getValues(prefix);
+            }
+
+            @Override
+            public Map<String, String> getValues(String prefix, Collection<String> keys) {
+                batchReads.incrementAndGet();
+                if (remote == null) {
+                    return null;
+                }
+                Map<String, String> result = new HashMap<>();
+                for (String key : keys) {
+                    if (remote.containsKey(key)) {
+                        result.put(key, remote.get(key));
+                    }
+                }
+                return result;
+            }
+
+            @Override
+            public Map<String, String> getValuesStartingWith(String prefix, String keyStart) {
+                batchReads.incrementAndGet();
+                if (remote == null) {
+                    return null;
+                }
+                Map<String, String> result = new HashMap<>();
+                for (Map.Entry<String, String> entry : remote.entrySet()) {
+                    if (entry.getKey().startsWith(keyStart)) {
+                        result.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                return result;
+            }
         };
     }
 
@@ -37,6 +130,347 @@ public class ConsulResolverTest {
         assertNull(instance.get("fail"));
     }
 
+    @Test
+    public void testPrefetch() {
+        remote.put("somekey", "somevalue");
+        ConsulResolver instance = new ConsulResolver(client, "some/prefix", 60000);
+        try {
+            assertEquals(1, bulkReads.get());
+            assertEquals("somevalue", instance.get("somekey"));
+            assertNull(instance.get("fail"));
+            assertNull(instance.get(null));
+            assertEquals(1, bulkReads.get());
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testGetAsync() throws Exception {
+        ConsulResolver instance = new ConsulResolver(client, "some/prefix");
+        assertEquals("prefix:{some/prefix}, key:{somekey}", instance.getAsync("somekey").get());
+        assertNull(instance.getAsync("fail").get());
+
+        remote.put("somekey", "somevalue");
+        instance = new ConsulResolver(client, "some/prefix", 60000);
+        try {
+            assertEquals("somevalue", instance.getAsync("somekey").get());
+            assertNull(instance.getAsync(null).get());
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testGetAll() {
+        remote.put("one", "1");
+        remote.put("two", "2");
+        ConsulResolver instance = new ConsulResolver(client, "some/prefix");
+        Map<String, String> result = instance.getAll(Arrays.asList("one", "two", "three"));
+        assertEquals(2, result.size());
+        assertEquals("1", result.get("one"));
+        assertEquals("2", result.get("two"));
+        assertEquals(1, batchReads.get());
+
+        remote = null;
+        try {
+            instance.getAll(Arrays.asList("one"));
+            fail("expected getAll() to fail");
+        } catch (ResolverUnavailableException rue) {
+            assertNull(rue.getFallback());
+        }
+    }
+
+    @Test
+    public void testUnavailable() throws Exception {
+        ConsulResolver instance = new ConsulResolver(client, "some/prefix");
+        try {
+            instance.get("down");
+            fail("expected get() to fail");
+        } catch (ResolverUnavailableException rue) {
+            assertEquals("stale", rue.getFallback());
+        }
+        try {
+            instance.getAsync("down").get();
+            fail("expected getAsync() to fail");
+        } catch (ExecutionException ee) {
+            assertEquals("stale", ((ResolverUnavailableException) ee.getCause()).getFallback());
+        }
+    }
+
+    @Test
+    public void testGetAllPrefetched() {
+        remote.put("one", "1");
+        ConsulResolver instance = new ConsulResolver(client, "some/prefix", 60000);
+        try {
+            Map<String, String> result = instance.getAll(Arrays.asList("one", "two", null));
+            assertEquals(1, result.size());
+            assertEquals("1", result.get("one"));
+            assertEquals(0, batchReads.get());
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testGetByPrefix() {
+        remote.put("db.pool.size", "10");
+        remote.put("db.pool.min", "2");
+        remote.put("db.url", "jdbc:x");
+        ConsulResolver instance = new ConsulResolver(client, "some/prefix");
+        SortedMap<String, String> result = instance.getByPrefix("db.pool.");
+        assertEquals(Arrays.asList("db.pool.min", "db.pool.size"), new ArrayList<>(result.keySet()));
+        assertEquals(1, batchReads.get());
+
+        remote = null;
+        assertTrue(instance.getByPrefix("db.").isEmpty());
+    }
+
+    @Test
+    public void testGetByPrefixPrefetched() {
+        remote.put("db.pool.size", "10");
+        remote.put("db.url", "jdbc:x");
+        ConsulResolver instance = new ConsulResolver(client, "some/prefix", 60000);
+        try {
+            assertEquals(Collections.singletonMap("db.pool.size", "10"), instance.getByPrefix("db.pool."));
+            assertEquals(2, instance.getByPrefix(null).size());
+            assertEquals(0, batchReads.get());
+
+            remote.put("db.pool.min", "2");
+            instance.refresh();
+            assertEquals("2", instance.getByPrefix("db.pool.").get("db.pool.min"));
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testPrefetchRefresh() {
+        final AtomicInteger reloads = new AtomicInteger();
+        ConsulResolver instance = new ConsulResolver(client, "some/prefix", 60000);
+        instance.addReloadListener(new ReloadListener() {
+            @Override
+            public void reloaded(final ReloadEvent event) {
+                reloads.incrementAndGet();
+            }
+        });
+        try {
+            assertNull(instance.get("somekey"));
+            instance.refresh();
+            assertEquals(0, reloads.get());
+
+            remote.put("somekey", "somevalue");
+            instance.refresh();
+            assertEquals(1, reloads.get());
+            assertEquals("somevalue", instance.get("somekey"));
+
+            remote = null;
+            instance.refresh();
+            assertEquals("somevalue", instance.get("somekey"));
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testWatch() throws IOException, InterruptedException {
+        final CountDownLatch changed = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        MockWebServer server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) throws InterruptedException {
+                String path = request.getPath();
+                if (path.equals("/v1/kv/web/?recurse")) {
+                    return kvResponse(10, "b25l");
+                }
+                if (path.equals("/v1/kv/web/?recurse&index=10&wait=30s")) {
+                    changed.await(10, TimeUnit.SECONDS);
+                    return kvResponse(11, "dHdv");
+                }
+                // nothing more changes, hold the query open as Consul would
+                finished.await(10, TimeUnit.SECONDS);
+                return kvResponse(11, "dHdv");
+            }
+        });
+        server.start();
+
+        final CountDownLatch reloaded = new CountDownLatch(1);
+        ConsulResolver instance = new ConsulResolver(new ConsulClientImpl(server.getHostName(), server.getPort()), "web", 0, 30);
+        instance.addReloadListener(new ReloadListener() {
+            @Override
+            public void reloaded(final ReloadEvent event) {
+                reloaded.countDown();
+            }
+        });
+        try {
+            assertEquals("one", instance.get("key"));
+            changed.countDown();
+            assertTrue(reloaded.await(5, TimeUnit.SECONDS));
+            assertEquals("two", instance.get("key"));
+            assertEquals("/v1/kv/web/?recurse", server.takeRequest().getPath());
+            assertEquals("/v1/kv/web/?recurse&index=10&wait=30s", server.takeRequest().getPath());
+            assertEquals("/v1/kv/web/?recurse&index=11&wait=30s", server.takeRequest(5, TimeUnit.SECONDS).getPath());
+            assertEquals(3, server.getRequestCount());
+        } finally {
+            instance.close();
+            finished.countDown();
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void testCloseWhileWatching() throws InterruptedException {
+        final CountDownLatch watching = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        ConsulClient blocking = new ConsulClient() {
+            @Override
+            public String getValue(final String prefix, final String key) {
+                return null;
+            }
+
+            @Override
+            public KeyValueSnapshot getValues(final String prefix) {
+                return new KeyValueSnapshot(Collections.singletonMap("key", "one"), 10);
+            }
+
+            @Override
+            public KeyValueSnapshot getValues(final String prefix, final long index, final long waitSeconds) {
+                watching.countDown();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                } catch (InterruptedException ie) {
+                    interrupted.countDown();
+                }
+                // a client that answers despite the interrupt must not change anything
+                return new KeyValueSnapshot(Collections.singletonMap("key", "two"), 11);
+            }
+        };
+        final AtomicInteger reloads = new AtomicInteger();
+        ConsulResolver instance = new ConsulResolver(blocking, "web", 0, 30);
+        instance.addReloadListener(new ReloadListener() {
+            @Override
+            public void reloaded(final ReloadEvent event) {
+                reloads.incrementAndGet();
+            }
+        });
+        assertTrue(watching.await(5, TimeUnit.SECONDS));
+        instance.close();
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals("one", instance.get("key"));
+        assertEquals(0, reloads.get());
+    }
+
+    @Test
+    public void testSnapshotFile() throws Exception {
+        Path directory = Files.createTempDirectory("ConsulResolver");
+        Path file = directory.resolve("consul.snapshot");
+        try {
+            remote.put("key", "one");
+            ConsulResolver instance = new ConsulResolver(client, "web", 60000, 0, file);
+            instance.close();
+            assertEquals("one", instance.get("key"));
+            assertEquals(1, instance.getIndex());
+            assertEquals(Collections.singletonMap("key", "one"), KeyValueSnapshotFile.read(file, "web").getValues());
+
+            // Consul is down, but the saved values are used
+            remote = null;
+            instance = new ConsulResolver(client, "web", 60000, 0, file);
+            instance.close();
+            assertEquals("one", instance.get("key"));
+            assertEquals(1, instance.getIndex());
+            assertEquals("one", instance.getByPrefix("k").get("key"));
+
+            // Consul has moved on, and the saved values are replaced in the background
+            remote = Collections.singletonMap("key", "two");
+            bulkReads.set(5);
+            instance = new ConsulResolver(client, "web", 60000, 0, file);
+            KeyValueSnapshot saved = KeyValueSnapshotFile.read(file, "web");
+            try {
+                // the refresh may finish before a listener could be added, so wait for the file to be replaced
+                long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+                while (saved.getIndex() == 1 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                    saved = KeyValueSnapshotFile.read(file, "web");
+                }
+                assertEquals("two", instance.get("key"));
+            } finally {
+                instance.close();
+            }
+            assertTrue(saved.getIndex() > 1);
+            assertEquals(Collections.singletonMap("key", "two"), saved.getValues());
+
+            // the file is ignored unless prefetching
+            instance = new ConsulResolver(client, "web", 0, 0, file);
+            assertEquals("prefix:{web}, key:{key}", instance.get("key"));
+            assertEquals(0, instance.getIndex());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void testSnapshotFileWatched() throws Exception {
+        Path directory = Files.createTempDirectory("ConsulResolver");
+        Path file = directory.resolve("consul.snapshot");
+        KeyValueSnapshotFile.write(file, "web", new KeyValueSnapshot(Collections.singletonMap("key", "one"), 10));
+        final CountDownLatch changed = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        MockWebServer server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) throws InterruptedException {
+                if (request.getPath().equals("/v1/kv/web/?recurse&index=10&wait=30s")) {
+                    changed.await(10, TimeUnit.SECONDS);
+                    return kvResponse(11, "dHdv");
+                }
+                finished.await(10, TimeUnit.SECONDS);
+                return kvResponse(11, "dHdv");
+            }
+        });
+        server.start();
+
+        final CountDownLatch reloaded = new CountDownLatch(1);
+        ConsulResolver instance = new ConsulResolver(new ConsulClientImpl(server.getHostName(), server.getPort()), "web", 0, 30, file);
+        instance.addReloadListener(new ReloadListener() {
+            @Override
+            public void reloaded(final ReloadEvent event) {
+                reloaded.countDown();
+            }
+        });
+        try {
+            // the saved values are used at once, and the first query only returns when they are out of date
+            assertEquals("one", instance.get("key"));
+            assertEquals(10, instance.getIndex());
+            assertEquals("/v1/kv/web/?recurse&index=10&wait=30s", server.takeRequest(5, TimeUnit.SECONDS).getPath());
+            changed.countDown();
+            assertTrue(reloaded.await(5, TimeUnit.SECONDS));
+            assertEquals("two", instance.get("key"));
+            assertEquals(11, KeyValueSnapshotFile.read(file, "web").getIndex());
+        } finally {
+            instance.close();
+            finished.countDown();
+            server.shutdown();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static MockResponse kvResponse(final long index, final String value) {
+        return new MockResponse().setResponseCode(200).setHeader("X-Consul-Index", Long.toString(index))
+                .setBody(String.format("[{\"Key\":\"web/key\",\"Value\":\"%s\"}]", value));
+    }
+
+    @Test
+    public void testRefreshWithoutPrefetch() {
+        ConsulResolver instance = new ConsulResolver(client, "some/prefix");
+        instance.refresh();
+        instance.close();
+        assertEquals(0, bulkReads.get());
+    }
+
     @Test
     public void testConstructor() {
         ConsulResolver instance = new ConsulResolver("some.server.com", 8555, "aPrefix");
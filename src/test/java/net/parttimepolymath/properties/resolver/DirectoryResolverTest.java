@@ -2,12 +2,19 @@ package net.parttimepolymath.properties.resolver;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -100,6 +107,185 @@ public class DirectoryResolverTest {
         assertNull("four", instance.get("frt.key.four"));
     }
 
+    @Test
+    public void testFilesAddedAndRemoved() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("DirectoryResolver");
+        DirectoryResolver instance = new DirectoryResolver(dir.toString());
+        try {
+            assertNull(instance.get("drt.key"));
+
+            CountDownLatch added = reloadLatch(instance);
+            Path later = dir.resolve("b.properties");
+            write(later, "drt.key", "later");
+            assertTrue(added.await(10, TimeUnit.SECONDS));
+            assertEquals("later", instance.get("drt.key"));
+
+            CountDownLatch shadowed = reloadLatch(instance);
+            Path earlier = dir.resolve("a.properties");
+            write(earlier, "drt.key", "earlier");
+            write(earlier, "drt.other", "other");
+            assertTrue(shadowed.await(10, TimeUnit.SECONDS));
+            waitFor(instance, "drt.other", "other");
+            assertEquals("later", instance.get("drt.key"));
+
+            CountDownLatch removed = reloadLatch(instance);
+            Files.delete(later);
+            assertTrue(removed.await(10, TimeUnit.SECONDS));
+            assertEquals("earlier", instance.get("drt.key"));
+            Files.delete(earlier);
+        } finally {
+            instance.close();
+            for (File file : dir.toFile().listFiles()) {
+                file.delete();
+            }
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testPolledRescan() throws IOException {
+        Path dir = Files.createTempDirectory("DirectoryResolver");
+        DirectoryResolver instance = new DirectoryResolver(dir.toString(), 1, null, ForkJoinPool.commonPool(), false,
+                FileResolver.REFRESH_INTERVAL);
+        try {
+            assertNull(instance.get("drt.key"));
+            Path file = dir.resolve("a.properties");
+            write(file, "drt.key", "polled");
+            instance.rescan();
+            assertEquals("polled", instance.get("drt.key"));
+            Files.delete(file);
+            instance.rescan();
+            assertNull(instance.get("drt.key"));
+        } finally {
+            instance.close();
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testTree() throws IOException {
+        Path dir = Files.createTempDirectory("DirectoryResolver");
+        Path nested = Files.createDirectories(dir.resolve("b").resolve("c"));
+        write(dir.resolve("z.properties"), "drt.top", "top");
+        write(dir.resolve("b").resolve("a.properties"), "drt.middle", "middle");
+        write(nested.resolve("a.properties"), "drt.bottom", "bottom");
+        write(nested.resolve("a.properties"), "drt.top", "overridden");
+        write(nested.resolve("a.conf"), "drt.conf", "conf");
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        DirectoryResolver flat = new DirectoryResolver(dir.toString());
+        DirectoryResolver shallow = new DirectoryResolver(dir.toString(), 2, null, pool);
+        DirectoryResolver deep = new DirectoryResolver(dir.toString(), 3, null, pool);
+        DirectoryResolver conf = new DirectoryResolver(dir.toString(), 3, "*.conf", pool);
+        try {
+            assertEquals("top", flat.get("drt.top"));
+            assertNull(flat.get("drt.middle"));
+
+            assertEquals("middle", shallow.get("drt.middle"));
+            assertNull(shallow.get("drt.bottom"));
+
+            assertEquals("middle", deep.get("drt.middle"));
+            assertEquals("bottom", deep.get("drt.bottom"));
+            assertEquals("top", deep.get("drt.top"));
+
+            assertEquals("conf", conf.get("drt.conf"));
+            assertNull(conf.get("drt.top"));
+        } finally {
+            flat.close();
+            shallow.close();
+            deep.close();
+            conf.close();
+            pool.shutdown();
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testTreeWatched() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("DirectoryResolver");
+        DirectoryResolver instance = new DirectoryResolver(dir.toString(), 3, null);
+        try {
+            assertNull(instance.get("drt.key"));
+            Path nested = Files.createDirectories(dir.resolve("b").resolve("c"));
+            Thread.sleep(200);
+            write(nested.resolve("a.properties"), "drt.key", "nested");
+            waitFor(instance, "drt.key", "nested");
+
+            write(nested.resolve("a.properties"), "drt.key", "changed");
+            waitFor(instance, "drt.key", "changed");
+
+            delete(dir.resolve("b"));
+            waitFor(instance, "drt.key", null);
+        } finally {
+            instance.close();
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testDirectoryRecreated() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("DirectoryResolver");
+        write(dir.resolve("a.properties"), "drt.key", "original");
+        DirectoryResolver instance = new DirectoryResolver(dir.toString());
+        try {
+            assertEquals("original", instance.get("drt.key"));
+            delete(dir);
+            waitFor(instance, "drt.key", null);
+
+            Files.createDirectory(dir);
+            write(dir.resolve("a.properties"), "drt.key", "recreated");
+            waitFor(instance, "drt.key", "recreated");
+
+            write(dir.resolve("a.properties"), "drt.key", "changed");
+            waitFor(instance, "drt.key", "changed");
+        } finally {
+            instance.close();
+            delete(dir);
+        }
+    }
+
+    private static void delete(final Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            for (File file : path.toFile().listFiles()) {
+                delete(file.toPath());
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+
+    private static CountDownLatch reloadLatch(final ReloadableResolver resolver) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        resolver.addReloadListener(new ReloadListener() {
+            @Override
+            public void reloaded(final ReloadEvent event) {
+                latch.countDown();
+                resolver.removeReloadListener(this);
+            }
+        });
+        return latch;
+    }
+
+    private static void waitFor(final Resolver resolver, final String key, final String value) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!Objects.equals(value, resolver.get(key)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(value, resolver.get(key));
+    }
+
+    private static void write(final Path path, final String key, final String value) throws IOException {
+        Properties properties = new Properties();
+        if (Files.exists(path)) {
+            try (InputStream stream = Files.newInputStream(path)) {
+                properties.load(stream);
+            }
+        }
+        properties.setProperty(key, value);
+        try (FileOutputStream stream = new FileOutputStream(path.toString())) {
+            properties.store(stream, null);
+        }
+    }
+
     @Test
     public void testEmptyDirectory() throws IOException {
         Path emptyDir = Files.createTempDirectory("DirectoryResolver");
@@ -1,7 +1,11 @@
 package net.parttimepolymath.properties.resolver;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SortedMap;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -35,4 +39,12 @@ public class EnvironmentResolverTest {
     public void testUnresolvable() {
         assertNull(instance.get("this.should.never.exist.unless.you.really.try.hard"));
     }
+
+    @Test
+    public void testGetByPrefix() {
+        SortedMap<String, String> result = instance.getByPrefix("PAT");
+        assertEquals(System.getenv("PATH"), result.get("PATH"));
+        assertEquals(System.getenv().size(), instance.getByPrefix(null).size());
+        assertTrue(instance.getByPrefix("this.should.never.exist.").isEmpty());
+    }
 }
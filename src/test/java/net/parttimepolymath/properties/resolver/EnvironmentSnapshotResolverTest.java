@@ -0,0 +1,61 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class EnvironmentSnapshotResolverTest {
+
+    @Test
+    public void testResolvable() {
+        Resolver instance = new EnvironmentSnapshotResolver();
+        // TODO: this might be OS specific
+        assertEquals(System.getenv("PATH"), instance.get("PATH"));
+        assertNull(instance.get(null));
+        assertNull(instance.get(""));
+        assertNull(instance.get("this.should.never.exist.unless.you.really.try.hard"));
+        assertNull(instance.get("path"));
+    }
+
+    @Test
+    public void testGetByPrefix() {
+        Resolver instance = new EnvironmentSnapshotResolver();
+        assertEquals(System.getenv("PATH"), instance.getByPrefix("PAT").get("PATH"));
+        assertEquals(System.getenv().size(), instance.getByPrefix(null).size());
+    }
+
+    @Test
+    public void testRelaxedNames() {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("APP_DB_HOST", "db");
+        variables.put("APP_DB_PORT", "5432");
+        variables.put("app.db.port", "6543");
+        variables.put("App_Name", "mixed");
+        variables.put("APP_NAME", "upper");
+
+        Resolver strict = new EnvironmentSnapshotResolver(variables, false);
+        assertEquals("db", strict.get("APP_DB_HOST"));
+        assertNull(strict.get("app.db.host"));
+
+        Resolver relaxed = new EnvironmentSnapshotResolver(variables, true);
+        assertEquals("db", relaxed.get("APP_DB_HOST"));
+        assertEquals("db", relaxed.get("app.db.host"));
+        // a variable whose actual name matches takes precedence
+        assertEquals("6543", relaxed.get("app.db.port"));
+        assertEquals("5432", relaxed.get("APP_DB_PORT"));
+        // the first in name order wins when two variables have the same relaxed name
+        assertEquals("upper", relaxed.get("app.name"));
+        assertTrue(relaxed.getByPrefix("app.db.").containsKey("app.db.host"));
+    }
+
+    @Test
+    public void testRelax() {
+        assertEquals("a.b.c", EnvironmentSnapshotResolver.relax("A_B_C"));
+        assertEquals("path", EnvironmentSnapshotResolver.relax("PATH"));
+    }
+}
@@ -0,0 +1,166 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.parttimepolymath.properties.PropertySourceConfig;
+
+public class FeatureFlagTest {
+    private static final String TESTKEY = "net.partimepolymath.flag.value";
+    private Path path;
+    private FileResolver files;
+
+    @Before
+    public void setup() throws IOException {
+        path = Files.createTempFile("FeatureFlagTest", "properties");
+        write("true");
+        files = new FileResolver(Arrays.asList(path), false, false, 0);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        files.close();
+        Files.delete(path);
+        System.clearProperty(TESTKEY);
+    }
+
+    private void write(final String value) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("fft.flag", value);
+        try (FileOutputStream stream = new FileOutputStream(path.toString())) {
+            properties.store(stream, null);
+        }
+    }
+
+    private static void waitFor(final FeatureFlag flag, final boolean expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (flag.isEnabled() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, flag.isEnabled());
+    }
+
+    private static boolean check(final MethodHandle invoker, final int times) throws Throwable {
+        boolean result = false;
+        for (int i = 0; i < times; i++) {
+            result = (boolean) invoker.invokeExact();
+        }
+        return result;
+    }
+
+    @Test
+    public void testFlag() throws Throwable {
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().withCaching().build(),
+                Arrays.<Resolver> asList(files));
+        try {
+            FeatureFlag flag = instance.flag("fft.flag", false);
+            assertEquals("fft.flag", flag.getName());
+            assertFalse(flag.getDefaultValue());
+            assertTrue(flag.isEnabled());
+            // enough calls for the check to be compiled with the value as a constant
+            assertTrue(check(flag.getInvoker(), 100000));
+
+            write("false");
+            files.reload();
+            waitFor(flag, false);
+            assertFalse(check(flag.getInvoker(), 100000));
+
+            write("TRUE");
+            files.reload();
+            waitFor(flag, true);
+            assertTrue(check(flag.getInvoker(), 1));
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testDefaults() throws Throwable {
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().build(), Arrays.<Resolver> asList(files));
+        try {
+            assertFalse(instance.flag("fft.missing", false).isEnabled());
+            assertTrue(instance.flag("fft.missing", true).isEnabled());
+            assertTrue((boolean) instance.flag("fft.missing", true).getInvoker().invokeExact());
+            assertTrue(instance.flag(null, true).isEnabled());
+            assertFalse(instance.flag("", false).isEnabled());
+
+            assertSame(instance.flag("fft.flag", false), instance.flag("fft.flag", false));
+            assertNotSame(instance.flag("fft.flag", false), instance.flag("fft.flag", true));
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testPrefixed() throws IOException, InterruptedException {
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().build(), Arrays.<Resolver> asList(files));
+        try {
+            FeatureFlag flag = instance.withPrefix("fft.").flag("flag", false);
+            assertSame(instance.flag("fft.flag", false), flag);
+            write("false");
+            files.reload();
+            waitFor(flag, false);
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testUnstableSource() throws Throwable {
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().build(),
+                Arrays.<Resolver> asList(new SystemResolver(), files));
+        try {
+            FeatureFlag flag = instance.flag(TESTKEY, false);
+            assertFalse(flag.isEnabled());
+            System.setProperty(TESTKEY, "true");
+            waitFor(flag, true);
+            assertTrue((boolean) flag.getInvoker().invokeExact());
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testRefreshedOnListenerExecutor() throws IOException {
+        final List<Runnable> queued = new ArrayList<>();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                queued.add(command);
+            }
+        };
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().withListenerExecutor(executor).build(),
+                Arrays.<Resolver> asList(files));
+        try {
+            FeatureFlag flag = instance.flag("fft.flag", false);
+            assertTrue(flag.isEnabled());
+            write("false");
+            files.reload();
+            assertTrue(flag.isEnabled());
+            assertEquals(1, queued.size());
+            queued.remove(0).run();
+            assertFalse(flag.isEnabled());
+        } finally {
+            instance.close();
+        }
+    }
+}
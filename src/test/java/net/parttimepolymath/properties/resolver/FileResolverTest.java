@@ -2,11 +2,23 @@ package net.parttimepolymath.properties.resolver;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -72,4 +84,223 @@ public class FileResolverTest {
         assertEquals("four", instance.get("frt.key.four"));
     }
 
+    @Test
+    public void testNullKey() {
+        instance = new FileResolver(propertyPathOne);
+        assertNull(instance.get(null));
+    }
+
+    @Test
+    public void testReload() throws IOException {
+        Path path = Files.createTempFile("FileResolverTest3", "properties");
+        FileResolver resolver = new FileResolver(path);
+        try {
+            assertNull(resolver.get("frt.key.five"));
+            write(path, "frt.key.five", "five");
+            resolver.reload();
+            assertEquals("five", resolver.get("frt.key.five"));
+        } finally {
+            resolver.close();
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testWatched() throws IOException, InterruptedException {
+        Path path = Files.createTempFile("FileResolverTest4", "properties");
+        FileResolver resolver = new FileResolver(path);
+        CountDownLatch latch = reloadLatch(resolver);
+        try {
+            write(path, "frt.key.six", "six");
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals("six", resolver.get("frt.key.six"));
+        } finally {
+            resolver.close();
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testPolled() throws IOException, InterruptedException {
+        Path path = Files.createTempFile("FileResolverTest5", "properties");
+        FileResolver resolver = new FileResolver(Arrays.asList(path), false, false, 20);
+        CountDownLatch latch = reloadLatch(resolver);
+        try {
+            write(path, "frt.key.seven", "seven");
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals("seven", resolver.get("frt.key.seven"));
+        } finally {
+            resolver.close();
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testIncremental() throws IOException {
+        Path first = Files.createTempFile("FileResolverTest6", "properties");
+        Path second = Files.createTempFile("FileResolverTest7", "properties");
+        write(first, "frt.key.eight", "eight", 100000);
+        write(second, "frt.key.eight", "ate", 100000);
+        FileResolver resolver = new FileResolver(Arrays.asList(first, second), false, false, FileResolver.REFRESH_INTERVAL);
+        final AtomicReference<ReloadEvent> lastEvent = new AtomicReference<>();
+        resolver.addReloadListener(new ReloadListener() {
+            @Override
+            public void reloaded(final ReloadEvent event) {
+                lastEvent.set(event);
+            }
+        });
+        try {
+            assertEquals("ate", resolver.get("frt.key.eight"));
+            assertEquals(2, resolver.getParseCount());
+
+            resolver.reload();
+            assertEquals(2, resolver.getParseCount());
+            assertNull(lastEvent.get());
+
+            write(second, "frt.key.nine", "nine", 50000);
+            resolver.reload();
+            assertEquals(3, resolver.getParseCount());
+            assertEquals("eight", resolver.get("frt.key.eight"));
+            assertEquals("nine", resolver.get("frt.key.nine"));
+            assertEquals(new HashSet<>(Arrays.asList("frt.key.eight", "frt.key.nine")), lastEvent.get().getChangedKeys());
+        } finally {
+            resolver.close();
+            Files.delete(first);
+            Files.delete(second);
+        }
+    }
+
+    @Test
+    public void testChecksums() throws IOException {
+        Path path = Files.createTempFile("FileResolverTest8", "properties");
+        write(path, "frt.key.ten", "ten", 100000);
+        FileResolver resolver = new FileResolver(Collections.singletonList(path), true, false, FileResolver.REFRESH_INTERVAL);
+        try {
+            assertEquals(1, resolver.getParseCount());
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() - 50000));
+            resolver.reload();
+            assertEquals(1, resolver.getParseCount());
+            assertEquals("ten", resolver.get("frt.key.ten"));
+
+            write(path, "frt.key.ten", "TEN", 40000);
+            resolver.reload();
+            assertEquals(2, resolver.getParseCount());
+            assertEquals("TEN", resolver.get("frt.key.ten"));
+        } finally {
+            resolver.close();
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testStringChecksumConstructor() {
+        FileResolver resolver = new FileResolver(Arrays.asList(propertyPathOne.toString(), propertyPathTwo.toString()), true);
+        assertEquals("III", resolver.get("frt.key.three"));
+        resolver.close();
+    }
+
+    @Test
+    public void testSetPaths() {
+        FileResolver resolver = new FileResolver(Arrays.asList(propertyPathOne), false, false, 0);
+        assertEquals("three", resolver.get("frt.key.three"));
+        resolver.setPaths(Arrays.asList(propertyPathOne, propertyPathTwo), 2);
+        assertEquals("III", resolver.get("frt.key.three"));
+        resolver.setPaths(Arrays.asList(propertyPathOne), 1);
+        assertEquals("III", resolver.get("frt.key.three"));
+        assertEquals("four", resolver.get("frt.key.four"));
+        resolver.setPaths(Arrays.asList(propertyPathOne), 3);
+        assertEquals("three", resolver.get("frt.key.three"));
+        assertNull(resolver.get("frt.key.four"));
+        resolver.close();
+    }
+
+    @Test
+    public void testDirectoryRecreated() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("FileResolverTest");
+        Path path = dir.resolve("a.properties");
+        write(path, "frt.key.eleven", "original");
+        FileResolver resolver = new FileResolver(path);
+        try {
+            assertEquals("original", resolver.get("frt.key.eleven"));
+            Files.delete(path);
+            Files.delete(dir);
+            waitFor(resolver, "frt.key.eleven", null);
+
+            Files.createDirectory(dir);
+            write(path, "frt.key.eleven", "recreated");
+            waitFor(resolver, "frt.key.eleven", "recreated");
+
+            write(path, "frt.key.eleven", "changed");
+            waitFor(resolver, "frt.key.eleven", "changed");
+        } finally {
+            resolver.close();
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    public void testLinkSwapped() throws IOException, InterruptedException {
+        // laid out as Kubernetes mounts a ConfigMap: the file links through ..data, and an update replaces only ..data
+        Path dir = Files.createTempDirectory("FileResolverTest12");
+        Path first = Files.createDirectory(dir.resolve("first"));
+        Path second = Files.createDirectory(dir.resolve("second"));
+        // the same size and time, so that only the identity of the file tells them apart
+        FileTime written = FileTime.fromMillis(System.currentTimeMillis() - 100000);
+        write(first.resolve("app.properties"), "frt.key.twelve", "one");
+        write(second.resolve("app.properties"), "frt.key.twelve", "two");
+        Files.setLastModifiedTime(first.resolve("app.properties"), written);
+        Files.setLastModifiedTime(second.resolve("app.properties"), written);
+        Path data = Files.createSymbolicLink(dir.resolve("..data"), first.getFileName());
+        Path path = Files.createSymbolicLink(dir.resolve("app.properties"), Paths.get("..data", "app.properties"));
+        FileResolver resolver = new FileResolver(path);
+        try {
+            assertEquals("one", resolver.get("frt.key.twelve"));
+            Path swap = Files.createSymbolicLink(dir.resolve("..data_tmp"), second.getFileName());
+            Files.move(swap, data, StandardCopyOption.ATOMIC_MOVE);
+            waitFor(resolver, "frt.key.twelve", "two");
+        } finally {
+            resolver.close();
+            Files.delete(path);
+            Files.delete(data);
+            Files.delete(first.resolve("app.properties"));
+            Files.delete(second.resolve("app.properties"));
+            Files.delete(first);
+            Files.delete(second);
+            Files.delete(dir);
+        }
+    }
+
+    private static void waitFor(final Resolver resolver, final String key, final String value) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!Objects.equals(value, resolver.get(key)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(value, resolver.get(key));
+    }
+
+    private static CountDownLatch reloadLatch(final FileResolver resolver) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        resolver.addReloadListener(new ReloadListener() {
+            @Override
+            public void reloaded(final ReloadEvent event) {
+                latch.countDown();
+            }
+        });
+        return latch;
+    }
+
+    private static void write(final Path path, final String key, final String value) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(key, value);
+        try (FileOutputStream stream = new FileOutputStream(path.toString())) {
+            properties.store(stream, null);
+        }
+    }
+
+    private static void write(final Path path, final String key, final String value, final long age) throws IOException {
+        write(path, key, value);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() - age));
+    }
+
 }
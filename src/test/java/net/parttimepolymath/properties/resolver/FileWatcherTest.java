@@ -0,0 +1,92 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class FileWatcherTest {
+
+    @Test
+    public void testChangeReported() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("FileWatcherTest");
+        final BlockingQueue<Path> changes = new ArrayBlockingQueue<>(16);
+        FileWatcher.Listener listener = new FileWatcher.Listener() {
+            @Override
+            public void changed(final Path path) {
+                changes.offer(path);
+            }
+
+            @Override
+            public void invalidated(final Path directory) {
+                // not expected
+            }
+        };
+        assertTrue(FileWatcher.getInstance().register(directory, listener));
+        Path file = directory.resolve("created.properties");
+        try {
+            Files.write(file, "a=b".getBytes("UTF-8"));
+            assertEquals(file.toAbsolutePath().normalize(), changes.poll(10, TimeUnit.SECONDS));
+        } finally {
+            FileWatcher.getInstance().unregister(directory, listener);
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testDeletedDirectory() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("FileWatcherTest");
+        final BlockingQueue<Path> lost = new ArrayBlockingQueue<>(16);
+        FileWatcher.Listener listener = new FileWatcher.Listener() {
+            @Override
+            public void changed(final Path path) {
+                // not of interest
+            }
+
+            @Override
+            public void invalidated(final Path dir) {
+                lost.offer(dir);
+            }
+        };
+        assertTrue(FileWatcher.getInstance().register(directory, listener));
+        try {
+            Files.delete(directory);
+            assertEquals(directory.toAbsolutePath().normalize(), lost.poll(10, TimeUnit.SECONDS));
+
+            Files.createDirectory(directory);
+            assertTrue(FileWatcher.getInstance().register(directory, listener));
+            Files.delete(directory);
+            assertEquals(directory.toAbsolutePath().normalize(), lost.poll(10, TimeUnit.SECONDS));
+        } finally {
+            FileWatcher.getInstance().unregister(directory, listener);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void testMissingDirectory() {
+        FileWatcher.Listener listener = new FileWatcher.Listener() {
+            @Override
+            public void changed(final Path path) {
+                // not expected
+            }
+
+            @Override
+            public void invalidated(final Path directory) {
+                // not expected
+            }
+        };
+        assertFalse(FileWatcher.getInstance().register(Paths.get("/this/will/not/exist"), listener));
+        FileWatcher.getInstance().unregister(Paths.get("/this/will/not/exist"), listener);
+    }
+}
@@ -0,0 +1,41 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FrequencySketchTest {
+
+    @Test
+    public void testCounts() {
+        FrequencySketch instance = new FrequencySketch(512);
+        assertEquals(0, instance.frequency("key"));
+        for (int i = 0; i < 5; i++) {
+            instance.increment("key");
+        }
+        assertEquals(5, instance.frequency("key"));
+        assertTrue(instance.frequency("other") < 5);
+    }
+
+    @Test
+    public void testSaturates() {
+        FrequencySketch instance = new FrequencySketch(512);
+        for (int i = 0; i < 100; i++) {
+            instance.increment("key");
+        }
+        assertEquals(FrequencySketch.MAX_FREQUENCY, instance.frequency("key"));
+    }
+
+    @Test
+    public void testAges() {
+        FrequencySketch instance = new FrequencySketch(16);
+        for (int i = 0; i < 8; i++) {
+            instance.increment("key");
+        }
+        for (int i = 0; i < 200; i++) {
+            instance.increment(i);
+        }
+        assertTrue(instance.frequency("key") < 8);
+    }
+}
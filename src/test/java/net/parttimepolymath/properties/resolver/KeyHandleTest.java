@@ -0,0 +1,141 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.parttimepolymath.properties.PropertySourceConfig;
+
+public class KeyHandleTest {
+    private static final String TESTKEY = "net.partimepolymath.handle.value";
+    private Path path;
+    private FileResolver files;
+
+    @Before
+    public void setup() throws IOException {
+        path = Files.createTempFile("KeyHandleTest", "properties");
+        write("one", "42");
+        files = new FileResolver(Arrays.asList(path), false, false, 0);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        files.close();
+        Files.delete(path);
+        System.clearProperty(TESTKEY);
+    }
+
+    private void write(final String one, final String number) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("kht.key.one", one);
+        properties.setProperty("kht.key.number", number);
+        try (FileOutputStream stream = new FileOutputStream(path.toString())) {
+            properties.store(stream, null);
+        }
+    }
+
+    private static long lookups(final PropertyResolver instance) {
+        return instance.getStatistics().getResolvers().get(0).getLookupLatency().getCount();
+    }
+
+    @Test
+    public void testHeldUntilReload() throws IOException {
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().build(), Arrays.<Resolver> asList(files));
+        try {
+            PropertyKey<String> one = instance.key("kht.key.one");
+            PropertyKey<String> missing = instance.key("kht.key.missing");
+            assertEquals("kht.key.one", one.getName());
+            assertEquals("one", one.get());
+            assertNull(missing.get());
+            long before = lookups(instance);
+            for (int i = 0; i < 100; i++) {
+                assertEquals("one", one.get());
+                assertNull(missing.get());
+            }
+            assertEquals(before, lookups(instance));
+
+            write("uno", "42");
+            files.reload();
+            assertEquals("uno", one.get());
+            assertEquals(before + 1, lookups(instance));
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testUnstableSource() {
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().build(),
+                Arrays.<Resolver> asList(new SystemResolver(), files));
+        try {
+            assertEquals(PropertyResolver.UNSTABLE, instance.getGeneration());
+            PropertyKey<String> handle = instance.key(TESTKEY);
+            assertNull(handle.get());
+            System.setProperty(TESTKEY, "set");
+            assertEquals("set", handle.get());
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testTyped() throws IOException {
+        final AtomicInteger parses = new AtomicInteger();
+        Function<String, Integer> parser = new Function<String, Integer>() {
+            @Override
+            public Integer apply(final String raw) {
+                parses.incrementAndGet();
+                return Integer.valueOf(raw);
+            }
+        };
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().build(),
+                Arrays.<Resolver> asList(new SystemResolver(), files));
+        try {
+            PropertyKey<Integer> number = instance.key("kht.key.number", parser, -1);
+            assertEquals(Integer.valueOf(42), number.get());
+            assertEquals(Integer.valueOf(42), number.get());
+            assertEquals(1, parses.get());
+
+            write("one", "fish");
+            files.reload();
+            assertEquals(Integer.valueOf(-1), number.get());
+            assertEquals(Integer.valueOf(-1), number.get());
+            assertEquals(2, parses.get());
+
+            assertEquals(Integer.valueOf(-1), instance.key("kht.key.missing", parser, -1).get());
+            assertEquals(Integer.valueOf(7), instance.key(null, parser, 7).get());
+            assertEquals(2, parses.get());
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testPrefixed() throws IOException {
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().withCaching().build(),
+                Arrays.<Resolver> asList(files));
+        try {
+            PropertyKey<String> one = instance.withPrefix("kht.key.").key("one");
+            assertEquals("kht.key.one", one.getName());
+            assertEquals("one", one.get());
+            write("uno", "42");
+            files.reload();
+            assertEquals("uno", one.get());
+            assertNull(instance.withPrefix("kht.key.").key("").get());
+        } finally {
+            instance.close();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucket() {
+        assertEquals(0, LatencyHistogram.bucket(0));
+        assertEquals(1, LatencyHistogram.bucket(1));
+        assertEquals(2, LatencyHistogram.bucket(2));
+        assertEquals(2, LatencyHistogram.bucket(3));
+        assertEquals(3, LatencyHistogram.bucket(4));
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencySummary summary = new LatencyHistogram().summarise();
+        assertEquals(0, summary.getCount());
+        assertEquals(0, summary.getMeanNanos());
+        assertEquals(0, summary.getP50Nanos());
+        assertEquals(0, summary.getP99Nanos());
+        assertEquals(0, summary.getMaxNanos());
+    }
+
+    @Test
+    public void testSummarise() {
+        LatencyHistogram instance = new LatencyHistogram();
+        for (int i = 0; i < 98; i++) {
+            instance.record(10);
+        }
+        instance.record(1000000);
+        instance.record(1000000);
+        LatencySummary summary = instance.summarise();
+        assertEquals(100, summary.getCount());
+        assertEquals(98 * 10 + 2000000, summary.getTotalNanos());
+        assertEquals((98 * 10 + 2000000) / 100, summary.getMeanNanos());
+        assertEquals(15, summary.getP50Nanos());
+        assertEquals(15, summary.getP90Nanos());
+        assertEquals(1000000, summary.getP99Nanos());
+        assertEquals(1000000, summary.getMaxNanos());
+    }
+
+    @Test
+    public void testExtremes() {
+        LatencyHistogram instance = new LatencyHistogram();
+        instance.record(-5);
+        instance.record(TimeUnit.HOURS.toNanos(1));
+        LatencySummary summary = instance.summarise();
+        assertEquals(2, summary.getCount());
+        assertEquals(0, summary.getP50Nanos());
+        assertEquals(TimeUnit.HOURS.toNanos(1), summary.getP99Nanos());
+        assertEquals(TimeUnit.HOURS.toNanos(1), summary.getMaxNanos());
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        final LatencyHistogram instance = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        instance.record(j);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        LatencySummary summary = instance.summarise();
+        assertEquals(40000, summary.getCount());
+        assertEquals(9999, summary.getMaxNanos());
+    }
+}
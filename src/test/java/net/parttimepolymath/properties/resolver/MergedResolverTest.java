@@ -0,0 +1,108 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MergedResolverTest {
+    private Path pathOne;
+    private Path pathTwo;
+    private FileResolver fileOne;
+    private FileResolver fileTwo;
+
+    @Before
+    public void setup() throws IOException {
+        pathOne = Files.createTempFile("MergedResolverTest1", "properties");
+        pathTwo = Files.createTempFile("MergedResolverTest2", "properties");
+        write(pathOne, "mrt.key.one", "one");
+        write(pathTwo, "mrt.key.one", "1");
+        fileOne = new FileResolver(Collections.singletonList(pathOne), false, false, 0);
+        fileTwo = new FileResolver(Collections.singletonList(pathTwo), false, false, 0);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        fileOne.close();
+        fileTwo.close();
+        Files.delete(pathOne);
+        Files.delete(pathTwo);
+    }
+
+    @Test
+    public void testPrecedence() {
+        MergedResolver instance = new MergedResolver(Arrays.<SnapshotResolver> asList(fileOne, fileTwo));
+        assertEquals("one", instance.get("mrt.key.one"));
+        assertEquals(1, instance.getSnapshot().size());
+        assertNull(instance.get("no.such"));
+        assertNull(instance.get(null));
+
+        instance = new MergedResolver(Arrays.<SnapshotResolver> asList(fileTwo, fileOne));
+        assertEquals("1", instance.get("mrt.key.one"));
+    }
+
+    @Test
+    public void testGetByPrefix() throws IOException {
+        write(pathTwo, "mrt.key.one", "1", "mrt.key.two", "2", "mrt.other", "x");
+        fileTwo.reload();
+        MergedResolver instance = new MergedResolver(Arrays.<SnapshotResolver> asList(fileOne, fileTwo));
+        SortedMap<String, String> result = instance.getByPrefix("mrt.key.");
+        assertEquals(2, result.size());
+        assertEquals("one", result.get("mrt.key.one"));
+        assertEquals("2", result.get("mrt.key.two"));
+        assertEquals(3, instance.getByPrefix("").size());
+        assertTrue(instance.getByPrefix("mrt.key.three").isEmpty());
+
+        write(pathOne, "mrt.key.three", "three");
+        fileOne.reload();
+        assertEquals("1", instance.getByPrefix("mrt.key.").get("mrt.key.one"));
+        assertEquals("three", instance.getByPrefix("mrt.key.").get("mrt.key.three"));
+    }
+
+    @Test
+    public void testRebuiltOnReload() throws IOException {
+        MergedResolver instance = new MergedResolver(Arrays.<SnapshotResolver> asList(fileOne, new NullResolver(), fileTwo));
+        final AtomicReference<ReloadEvent> seen = new AtomicReference<>();
+        instance.addReloadListener(new ReloadListener() {
+            @Override
+            public void reloaded(final ReloadEvent event) {
+                seen.set(event);
+            }
+        });
+
+        write(pathTwo, "mrt.key.two", "two");
+        fileTwo.reload();
+        assertEquals("two", instance.get("mrt.key.two"));
+        assertEquals("one", instance.get("mrt.key.one"));
+        assertEquals(instance, seen.get().getSource());
+        assertTrue(seen.get().getChangedKeys().contains("mrt.key.two"));
+
+        write(pathOne, "mrt.key.three", "three");
+        fileOne.reload();
+        assertNull(instance.get("mrt.key.one"));
+        assertEquals("three", instance.get("mrt.key.three"));
+    }
+
+    private static void write(final Path path, final String... keysAndValues) throws IOException {
+        Properties properties = new Properties();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            properties.setProperty(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        try (FileOutputStream stream = new FileOutputStream(path.toString())) {
+            properties.store(stream, null);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class NegativeCacheTest {
+
+    @Test
+    public void testDisabled() {
+        NegativeCache instance = new NegativeCache(0, 1000);
+        assertFalse(instance.isEnabled());
+        instance.recordAbsent("some.key", instance.getGeneration());
+        assertFalse(instance.isAbsent("some.key"));
+        assertEquals(0, instance.getHitCount());
+        assertEquals(0, instance.getMissCount());
+
+        assertFalse(new NegativeCache(10, 0).isEnabled());
+    }
+
+    @Test
+    public void testRecordAndHit() {
+        NegativeCache instance = new NegativeCache(10, 60000);
+        assertTrue(instance.isEnabled());
+        assertFalse(instance.isAbsent("some.key"));
+        instance.recordAbsent("some.key", instance.getGeneration());
+        assertTrue(instance.isAbsent("some.key"));
+        assertEquals(1, instance.getHitCount());
+        assertEquals(1, instance.getMissCount());
+    }
+
+    @Test
+    public void testNullKey() {
+        NegativeCache instance = new NegativeCache(10, 60000);
+        instance.recordAbsent(null, instance.getGeneration());
+        assertFalse(instance.isAbsent(null));
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        NegativeCache instance = new NegativeCache(10, 1);
+        instance.recordAbsent("some.key", instance.getGeneration());
+        Thread.sleep(5);
+        assertFalse(instance.isAbsent("some.key"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        NegativeCache instance = new NegativeCache(10, 60000);
+        instance.recordAbsent("some.key", instance.getGeneration());
+        instance.invalidate();
+        assertFalse(instance.isAbsent("some.key"));
+    }
+
+    @Test
+    public void testInvalidateKeys() {
+        NegativeCache instance = new NegativeCache(10, 60000);
+        instance.recordAbsent("one", instance.getGeneration());
+        instance.recordAbsent("two", instance.getGeneration());
+        long generation = instance.getGeneration();
+        instance.invalidate(Arrays.asList("one", "three"));
+        assertFalse(instance.isAbsent("one"));
+        assertTrue(instance.isAbsent("two"));
+
+        instance.recordAbsent("three", generation);
+        assertFalse(instance.isAbsent("three"));
+
+        instance.invalidate(null);
+        assertFalse(instance.isAbsent("two"));
+    }
+
+    @Test
+    public void testStaleGeneration() {
+        NegativeCache instance = new NegativeCache(10, 60000);
+        long generation = instance.getGeneration();
+        instance.invalidate();
+        instance.recordAbsent("some.key", generation);
+        assertFalse(instance.isAbsent("some.key"));
+    }
+
+    @Test
+    public void testBounded() {
+        NegativeCache instance = new NegativeCache(2, 60000);
+        instance.recordAbsent("one", instance.getGeneration());
+        instance.recordAbsent("two", instance.getGeneration());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(instance.isAbsent("one"));
+        }
+        instance.recordAbsent("three", instance.getGeneration());
+        int remembered = 0;
+        for (String key : new String[] {"one", "two", "three"}) {
+            remembered += instance.isAbsent(key) ? 1 : 0;
+        }
+        assertEquals(2, remembered);
+        assertTrue(instance.isAbsent("one"));
+    }
+}
@@ -0,0 +1,83 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ParsedValueCacheTest {
+
+    @Test
+    public void testParsedOnlyWhenRawChanges() {
+        final AtomicInteger parses = new AtomicInteger();
+        ParsedValueCache<Long> instance = new ParsedValueCache<>(new ValueParser<Long>() {
+            @Override
+            public Long parse(final String raw) {
+                parses.incrementAndGet();
+                return Long.valueOf(raw);
+            }
+        });
+        Long first = instance.get("key", "1234567");
+        assertEquals(Long.valueOf(1234567), first);
+        assertSame(first, instance.get("key", new String("1234567")));
+        assertEquals(1, parses.get());
+
+        assertEquals(Long.valueOf(42), instance.get("key", "42"));
+        assertEquals(2, parses.get());
+    }
+
+    @Test
+    public void testFailuresRemembered() {
+        final AtomicInteger parses = new AtomicInteger();
+        ParsedValueCache<Integer> instance = new ParsedValueCache<>(new ValueParser<Integer>() {
+            @Override
+            public Integer parse(final String raw) {
+                parses.incrementAndGet();
+                return Integer.valueOf(raw);
+            }
+        });
+        assertNull(instance.get("key", "fred"));
+        assertNull(instance.get("key", "fred"));
+        assertEquals(1, parses.get());
+    }
+
+    @Test
+    public void testNulls() {
+        ParsedValueCache<Integer> instance = new ParsedValueCache<>(ValueParsers.INTEGER);
+        assertNull(instance.get(null, "1"));
+        assertNull(instance.get("key", null));
+        assertEquals(0, instance.size());
+    }
+
+    @Test
+    public void testBounded() {
+        ParsedValueCache<Integer> instance = new ParsedValueCache<>(ValueParsers.INTEGER);
+        for (int i = 0; i < ParsedValueCache.LIMIT * 2; i++) {
+            assertEquals(Integer.valueOf(i), instance.get("key" + i, Integer.toString(i)));
+        }
+        assertTrue(instance.size() <= ParsedValueCache.LIMIT);
+    }
+
+    @Test
+    public void testFrequentKeyKept() {
+        final AtomicInteger parses = new AtomicInteger();
+        ParsedValueCache<Integer> instance = new ParsedValueCache<>(new ValueParser<Integer>() {
+            @Override
+            public Integer parse(final String raw) {
+                if (raw.equals("-1")) {
+                    parses.incrementAndGet();
+                }
+                return Integer.valueOf(raw);
+            }
+        });
+        for (int i = 0; i < ParsedValueCache.LIMIT * 4; i++) {
+            assertEquals(Integer.valueOf(-1), instance.get("frequent", "-1"));
+            instance.get("key" + i, Integer.toString(i));
+        }
+        assertEquals(1, parses.get());
+    }
+}
@@ -0,0 +1,80 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrefixIndexTest {
+    private Map<String, String> content;
+
+    @Before
+    public void setup() {
+        content = new HashMap<>();
+        content.put("db.pool.size", "10");
+        content.put("db.pool.min", "2");
+        content.put("db.poolish", "no");
+        content.put("db.url", "jdbc:x");
+        content.put("dc", "dc");
+        content.put("web.port", "80");
+    }
+
+    @Test
+    public void testSubtree() {
+        PrefixIndex instance = new PrefixIndex(content);
+        assertEquals(6, instance.size());
+        assertEquals(Arrays.asList("db.pool.min", "db.pool.size"), new ArrayList<>(instance.subtree("db.pool.").keySet()));
+        assertEquals(3, instance.subtree("db.pool").size());
+        assertEquals(4, instance.subtree("db.").size());
+        assertEquals(1, instance.subtree("web.port").size());
+        assertTrue(instance.subtree("web.port.").isEmpty());
+        assertTrue(instance.subtree("x").isEmpty());
+        assertEquals(6, instance.subtree("").size());
+        assertEquals(6, instance.subtree(null).size());
+    }
+
+    @Test
+    public void testCopied() {
+        PrefixIndex instance = new PrefixIndex(content);
+        content.put("db.pool.max", "20");
+        assertEquals(2, instance.subtree("db.pool.").size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiable() {
+        new PrefixIndex(content).subtree("db.").put("db.new", "x");
+    }
+
+    @Test
+    public void testLargestCharacter() {
+        content.put("z\uffff", "max");
+        content.put("z\uffff\uffff.a", "max.a");
+        content.put("\uffff\uffff", "top");
+        PrefixIndex instance = new PrefixIndex(content);
+        assertEquals(2, instance.subtree("z\uffff").size());
+        assertEquals(1, instance.subtree("\uffff").size());
+    }
+
+    @Test
+    public void testSuccessor() {
+        assertEquals("db/", PrefixIndex.successor("db."));
+        assertEquals("b", PrefixIndex.successor("a\uffff"));
+        assertNull(PrefixIndex.successor("\uffff\uffff"));
+    }
+
+    @Test
+    public void testScan() {
+        SortedMap<String, String> result = PrefixIndex.scan(content, "db.pool.");
+        assertEquals(new PrefixIndex(content).subtree("db.pool."), result);
+        assertEquals(content, PrefixIndex.scan(content, null));
+        assertEquals(content, PrefixIndex.scan(content, ""));
+    }
+}
@@ -0,0 +1,181 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.parttimepolymath.properties.PropertySource;
+import net.parttimepolymath.properties.PropertySourceConfig;
+
+public class PrefixedPropertySourceTest {
+    private PropertyResolver parent;
+    private PropertySource instance;
+    private Map<String, String> content;
+    private MapResolver resolver;
+
+    @Before
+    public void setup() {
+        content = new HashMap<>();
+        content.put("db.pool.size", "10");
+        content.put("db.pool.flag", "true");
+        content.put("db.pool.timeout", "5s");
+        content.put("db.pool.buffer", "64k");
+        content.put("db.pool.unit", "seconds");
+        content.put("db.pool.hosts", "a, b");
+        content.put("db.pool.ratio", "0.5");
+        content.put("db.url", "jdbc:x");
+        resolver = new MapResolver(content);
+        Executor direct = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        };
+        parent = new PropertyResolver(PropertySourceConfig.builder().withListenerExecutor(direct).build(),
+                Arrays.<Resolver> asList(resolver));
+        instance = parent.withPrefix("db.pool.");
+    }
+
+    @Test
+    public void testGet() {
+        assertEquals("10", instance.get("size"));
+        assertNull(instance.get("url"));
+        assertNull(instance.get(null));
+        assertNull(instance.get(""));
+    }
+
+    @Test
+    public void testGetAsync() throws Exception {
+        assertEquals("10", instance.getAsync("size").get());
+        assertNull(instance.getAsync("url").get());
+    }
+
+    @Test
+    public void testTyped() {
+        assertEquals(10, instance.getNumber("size"));
+        assertEquals(1, instance.getNumber("missing", 1));
+        assertTrue(instance.getFlag("flag"));
+        assertFalse(instance.getFlag("missing", false));
+        assertEquals(10L, instance.getLong("size", 0));
+        assertEquals(0.5, instance.getDouble("ratio", 0), 0);
+        assertEquals(Duration.ofSeconds(5), instance.getDuration("timeout", null));
+        assertEquals(65536L, instance.getSize("buffer", 0));
+        assertEquals(TimeUnit.SECONDS, instance.getEnum("unit", TimeUnit.class, null));
+        assertEquals(Arrays.asList("a", "b"), instance.getList("hosts"));
+    }
+
+    @Test
+    public void testGetAll() {
+        Map<String, String> result = instance.getAll(Arrays.asList("size", "flag", "url", null));
+        assertEquals(2, result.size());
+        assertEquals("10", result.get("size"));
+        assertEquals("true", result.get("flag"));
+    }
+
+    @Test
+    public void testGetByPrefix() {
+        assertEquals(7, instance.getByPrefix(null).size());
+        assertEquals(Collections.singletonMap("ratio", "0.5"), instance.getByPrefix("r"));
+        assertEquals(parent.getByPrefix("db.").size(), parent.withPrefix(null).getByPrefix("db.").size());
+    }
+
+    @Test
+    public void testNested() {
+        PropertySource nested = parent.withPrefix("db.").withPrefix("pool.");
+        assertEquals("10", nested.get("size"));
+        assertEquals("db.pool.", ((PrefixedPropertySource) nested).getPrefix());
+    }
+
+    @Test
+    public void testFullKeyRemembered() {
+        PrefixedPropertySource view = (PrefixedPropertySource) instance;
+        assertEquals("db.pool.size", view.fullKey("size"));
+        assertSame(view.fullKey("size"), view.fullKey("size"));
+        for (int i = 0; i < PrefixedPropertySource.LIMIT * 2; i++) {
+            assertEquals("db.pool.key" + i, view.fullKey("key" + i));
+        }
+    }
+
+    @Test
+    public void testListeners() {
+        final List<String> seen = new ArrayList<>();
+        PropertyListener listener = new PropertyListener() {
+            @Override
+            public void changed(final String key, final String oldValue, final String newValue) {
+                seen.add(key);
+            }
+        };
+        instance.addListener("size", listener);
+        instance.addPrefixListener("r", listener);
+        instance.addListener(null, listener);
+        instance.addPrefixListener("r", null);
+        content.put("db.pool.size", "20");
+        content.put("db.pool.ratio", "0.75");
+        resolver.reload();
+        Collections.sort(seen);
+        assertEquals(Arrays.asList("ratio", "size"), seen);
+
+        instance.removeListener(listener);
+        instance.removeListener(null);
+        content.put("db.pool.size", "30");
+        resolver.reload();
+        assertEquals(2, seen.size());
+    }
+
+    @Test
+    public void testClose() {
+        instance.close();
+        assertEquals("10", instance.get("size"));
+    }
+
+    private static final class MapResolver implements SnapshotResolver, ReloadableResolver {
+        private final Map<String, String> content;
+        private final ReloadSupport support = new ReloadSupport();
+        private volatile Map<String, String> snapshot;
+
+        MapResolver(final Map<String, String> theContent) {
+            content = theContent;
+            snapshot = new HashMap<>(content);
+        }
+
+        void reload() {
+            snapshot = new HashMap<>(content);
+            support.fire(new ReloadEvent(this));
+        }
+
+        @Override
+        public String get(final String key) {
+            return key == null ? null : snapshot.get(key);
+        }
+
+        @Override
+        public Map<String, String> getSnapshot() {
+            return Collections.unmodifiableMap(snapshot);
+        }
+
+        @Override
+        public void addReloadListener(final ReloadListener listener) {
+            support.add(listener);
+        }
+
+        @Override
+        public void removeReloadListener(final ReloadListener listener) {
+            support.remove(listener);
+        }
+    }
+}
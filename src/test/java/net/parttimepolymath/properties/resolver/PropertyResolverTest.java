@@ -5,17 +5,38 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.SortedMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.sun.management.ThreadMXBean;
+
 import net.parttimepolymath.properties.PropertySource;
 import net.parttimepolymath.properties.PropertySourceConfig;
 import net.parttimepolymath.properties.PropertySourceFactory;
@@ -60,6 +81,494 @@ public class PropertyResolverTest {
         assertNotNull(instance);
     }
 
+    @Test
+    public void testCompiledChain() throws IOException {
+        FileResolver files = new FileResolver(Arrays.asList(propertyPathOne, propertyPathTwo), false, false, 0);
+        ResourceResolver resources = new ResourceResolver(this.getClass(), "/test1.properties");
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().withNegativeCaching().build(),
+                Arrays.<Resolver> asList(new SystemResolver(), files, new NullResolver(), resources, new EnvironmentResolver()));
+        try {
+            assertEquals(3, instance.getResolverChain().size());
+            assertTrue(instance.getResolverChain().get(1) instanceof MergedResolver);
+            assertEquals("III", instance.get("frt.key.three"));
+            assertNull(instance.get("frt.key.five"));
+
+            Properties properties = new Properties();
+            properties.setProperty("frt.key.five", "five");
+            try (FileOutputStream stream = new FileOutputStream(propertyPathTwo.toString())) {
+                properties.store(stream, null);
+            }
+            files.reload();
+            assertEquals("five", instance.get("frt.key.five"));
+            assertEquals("three", instance.get("frt.key.three"));
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testSnapshotChain() {
+        FileResolver files = new FileResolver(Arrays.asList(propertyPathOne, propertyPathTwo), false, false, 0);
+        SystemSnapshotResolver system = new SystemSnapshotResolver();
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().withCaching().withNegativeCaching().build(),
+                Arrays.<Resolver> asList(system, new EnvironmentSnapshotResolver(true), files));
+        try {
+            assertEquals(1, instance.getResolverChain().size());
+            assertTrue(instance.getResolverChain().get(0) instanceof MergedResolver);
+            assertEquals("III", instance.get("frt.key.three"));
+            assertEquals(System.getenv("PATH"), instance.get("path"));
+            assertNull(instance.get(TESTKEY));
+
+            System.setProperty(TESTKEY, "snapshot");
+            System.setProperty("frt.key.three", "3");
+            assertNull(instance.get(TESTKEY));
+            system.refresh();
+            assertEquals("snapshot", instance.get(TESTKEY));
+            assertEquals("3", instance.get("frt.key.three"));
+        } finally {
+            System.clearProperty(TESTKEY);
+            System.clearProperty("frt.key.three");
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testCacheInvalidatedOnReload() throws IOException {
+        FileResolver files = new FileResolver(Arrays.asList(propertyPathOne, propertyPathTwo), false, false, 0);
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().withCaching().build(),
+                Arrays.<Resolver> asList(new SystemResolver(), files));
+        try {
+            assertEquals("III", instance.get("frt.key.three"));
+            assertEquals("four", instance.get("frt.key.four"));
+
+            Properties properties = new Properties();
+            properties.setProperty("frt.key.three", "3");
+            try (FileOutputStream stream = new FileOutputStream(propertyPathTwo.toString())) {
+                properties.store(stream, null);
+            }
+            files.reload();
+            assertEquals("3", instance.get("frt.key.three"));
+            assertNull(instance.get("frt.key.four"));
+            assertEquals("one", instance.get("frt.key.one"));
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testStatistics() {
+        FileResolver files = new FileResolver(Arrays.asList(propertyPathOne, propertyPathTwo), false, false, 0);
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().withCaching().build(),
+                Arrays.<Resolver> asList(new SystemResolver(), files));
+        try {
+            assertEquals("one", instance.get("frt.key.one"));
+            assertEquals("one", instance.get("frt.key.one"));
+            assertNull(instance.get("frt.key.five"));
+            assertEquals(1, instance.getAll(Arrays.asList("frt.key.two", "frt.key.six")).size());
+
+            PropertySourceStatistics statistics = instance.getStatistics();
+            assertEquals(1, statistics.getCacheHitCount());
+            assertEquals(4, statistics.getCacheMissCount());
+            assertEquals(0, statistics.getCacheEvictionCount());
+            assertEquals(0, statistics.getNegativeCacheHitCount());
+            assertEquals(2, statistics.getResolvers().size());
+
+            ResolverStatistics system = statistics.getResolvers().get(0);
+            assertEquals("SystemResolver", system.getName());
+            assertEquals(0, system.getPosition());
+            assertEquals(0, system.getHitCount());
+            assertEquals(4, system.getMissCount());
+            assertEquals(3, system.getLookupLatency().getCount());
+
+            ResolverStatistics merged = statistics.getResolvers().get(1);
+            assertEquals("MergedResolver", merged.getName());
+            assertEquals(1, merged.getPosition());
+            assertEquals(2, merged.getHitCount());
+            assertEquals(2, merged.getMissCount());
+            assertEquals(0, merged.getErrorCount());
+            assertEquals(0, merged.getReloadCount());
+            assertEquals(3, merged.getLookupLatency().getCount());
+
+            assertEquals(statistics.getResolvers().size(), instance.withPrefix("frt.").getStatistics().getResolvers().size());
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testStatisticsErrors() throws InterruptedException {
+        Resolver broken = new Resolver() {
+            @Override
+            public String get(final String key) {
+                throw new IllegalStateException("broken");
+            }
+
+            @Override
+            public CompletableFuture<String> getAsync(final String key) {
+                CompletableFuture<String> call = new CompletableFuture<>();
+                call.completeExceptionally(new IllegalStateException("broken"));
+                return call;
+            }
+        };
+        PropertyResolver instance = new PropertyResolver(0, broken);
+        try {
+            instance.get("key");
+            fail("expected get() to fail");
+        } catch (IllegalStateException ise) {
+            // expected
+        }
+        try {
+            instance.getAsync("key").get();
+            fail("expected getAsync() to fail");
+        } catch (ExecutionException ee) {
+            // expected
+        }
+        ResolverStatistics statistics = instance.getStatistics().getResolvers().get(0);
+        assertEquals(2, statistics.getErrorCount());
+        assertEquals(0, statistics.getHitCount());
+        assertEquals(0, statistics.getMissCount());
+        assertEquals(2, statistics.getLookupLatency().getCount());
+    }
+
+    @Test
+    public void testStatisticsUnavailable() throws Exception {
+        final AtomicBoolean down = new AtomicBoolean(true);
+        Resolver remote = new Resolver() {
+            @Override
+            public String get(final String key) {
+                if (down.get()) {
+                    throw new ResolverUnavailableException("down");
+                }
+                return "value";
+            }
+        };
+        Resolver stale = new Resolver() {
+            @Override
+            public String get(final String key) {
+                throw new ResolverUnavailableException(new IllegalStateException("down"), "stale");
+            }
+        };
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().withCaching().withNegativeCaching().build(),
+                Arrays.<Resolver> asList(remote));
+        try {
+            assertNull(instance.get("key"));
+            assertNull(instance.getAsync("key").get());
+            assertTrue(instance.getAll(Arrays.asList("key")).isEmpty());
+            ResolverStatistics statistics = instance.getStatistics().getResolvers().get(0);
+            assertEquals(3, statistics.getErrorCount());
+            assertEquals(0, statistics.getMissCount());
+
+            // a failed read is not remembered as absent
+            down.set(false);
+            assertEquals("value", instance.get("key"));
+        } finally {
+            instance.close();
+        }
+
+        instance = new PropertyResolver(PropertySourceConfig.builder().withCaching().withNegativeCaching().build(),
+                Arrays.<Resolver> asList(stale));
+        try {
+            assertEquals("stale", instance.get("key"));
+            assertEquals("stale", instance.getAsync("key").get());
+            assertEquals(Collections.singletonMap("key", "stale"), instance.getAll(Arrays.asList("key")));
+            assertEquals(3, instance.getStatistics().getResolvers().get(0).getErrorCount());
+            assertEquals(0, instance.getStatistics().getResolvers().get(0).getHitCount());
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testStatisticsReload() throws IOException {
+        FileResolver files = new FileResolver(Arrays.asList(propertyPathOne, propertyPathTwo), false, false, 0);
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().build(), Arrays.<Resolver> asList(files));
+        try {
+            Properties properties = new Properties();
+            properties.setProperty("frt.key.five", "five");
+            try (FileOutputStream stream = new FileOutputStream(propertyPathTwo.toString())) {
+                properties.store(stream, null);
+            }
+            files.reload();
+            ResolverStatistics statistics = instance.getStatistics().getResolvers().get(0);
+            assertEquals(1, statistics.getReloadCount());
+            assertEquals(1, statistics.getReloadLatency().getCount());
+            assertTrue(statistics.getReloadLatency().getMaxNanos() > 0);
+
+            // a reload that changes nothing is not counted
+            files.reload();
+            assertEquals(1, instance.getStatistics().getResolvers().get(0).getReloadCount());
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testGetDoesNotAllocate() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        String environmentKey = System.getenv().keySet().iterator().next();
+        FileResolver files = new FileResolver(Arrays.asList(propertyPathOne, propertyPathTwo), false, false, 0);
+        List<Resolver> chain = Arrays.<Resolver> asList(new EnvironmentResolver(), new SystemResolver(), files);
+
+        PropertyResolver uncached = new PropertyResolver(PropertySourceConfig.builder().build(), chain);
+        PropertyResolver cached = new PropertyResolver(PropertySourceConfig.builder().withCaching().withNegativeCaching().build(), chain);
+        try {
+            // static source hits, from the last resolver, the environment, and the system properties
+            assertGetDoesNotAllocate(threads, uncached, "frt.key.one");
+            assertGetDoesNotAllocate(threads, uncached, environmentKey);
+            assertGetDoesNotAllocate(threads, uncached, "java.version");
+            // cache hits
+            assertGetDoesNotAllocate(threads, cached, "frt.key.one");
+            assertGetDoesNotAllocate(threads, cached, "java.version");
+        } finally {
+            uncached.close();
+            cached.close();
+        }
+    }
+
+    private static void assertGetDoesNotAllocate(final ThreadMXBean threads, final PropertySource instance, final String key) {
+        final int lookups = 100000;
+        assertNotNull(instance.get(key));
+        long id = Thread.currentThread().getId();
+        // warm up first, so that class loading and the like are not measured
+        for (int round = 0; round < 3; round++) {
+            long before = threads.getThreadAllocatedBytes(id);
+            for (int i = 0; i < lookups; i++) {
+                instance.get(key);
+            }
+            long allocated = threads.getThreadAllocatedBytes(id) - before;
+            if (round == 2) {
+                // any allocation per lookup would be at least 16 bytes each, so this allows only for the measurement
+                assertTrue(key + " allocated " + allocated + " bytes", allocated < lookups);
+            }
+        }
+    }
+
+    @Test
+    public void testGetAll() {
+        final List<Collection<String>> requests = new ArrayList<>();
+        Resolver counting = new Resolver() {
+            @Override
+            public String get(final String key) {
+                return "frt.key.five".equals(key) ? "five" : null;
+            }
+
+            @Override
+            public Map<String, String> getAll(final Collection<String> keys) {
+                requests.add(new ArrayList<>(keys));
+                return Resolver.super.getAll(keys);
+            }
+        };
+        FileResolver files = new FileResolver(Arrays.asList(propertyPathOne, propertyPathTwo), false, false, 0);
+        PropertyResolver instance = new PropertyResolver(
+                PropertySourceConfig.builder().withCaching().withNegativeCaching().build(), Arrays.<Resolver> asList(files, counting));
+        try {
+            assertEquals("one", instance.get("frt.key.one"));
+            Map<String, String> result = instance
+                    .getAll(Arrays.asList("frt.key.one", "frt.key.three", "frt.key.five", "frt.key.six", null, "frt.key.one"));
+            assertEquals(3, result.size());
+            assertEquals("one", result.get("frt.key.one"));
+            assertEquals("III", result.get("frt.key.three"));
+            assertEquals("five", result.get("frt.key.five"));
+            assertEquals(1, requests.size());
+            assertEquals(Arrays.asList("frt.key.five", "frt.key.six"), requests.get(0));
+
+            result = instance.getAll(Arrays.asList("frt.key.three", "frt.key.five", "frt.key.six"));
+            assertEquals(2, result.size());
+            assertEquals(1, requests.size());
+            assertEquals(1, instance.getNegativeCache().getHitCount());
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testGetAsync() throws Exception {
+        final Map<String, CompletableFuture<String>> calls = new HashMap<>();
+        Resolver remote = new Resolver() {
+            @Override
+            public String get(final String key) {
+                throw new UnsupportedOperationException("should not block");
+            }
+
+            @Override
+            public CompletableFuture<String> getAsync(final String key) {
+                CompletableFuture<String> call = new CompletableFuture<>();
+                calls.put(key, call);
+                return call;
+            }
+        };
+        FileResolver files = new FileResolver(Arrays.asList(propertyPathOne, propertyPathTwo), false, false, 0);
+        PropertyResolver instance = new PropertyResolver(
+                PropertySourceConfig.builder().withCaching().withNegativeCaching().build(), Arrays.<Resolver> asList(files, remote));
+        try {
+            CompletableFuture<String> local = instance.getAsync("frt.key.one");
+            assertTrue(local.isDone());
+            assertEquals("one", local.get());
+
+            CompletableFuture<String> found = instance.getAsync("remote.key");
+            CompletableFuture<String> missing = instance.getAsync("missing.key");
+            assertFalse(found.isDone());
+            calls.get("remote.key").complete("remote");
+            calls.get("missing.key").complete(null);
+            assertEquals("remote", found.get());
+            assertNull(missing.get());
+
+            calls.clear();
+            assertEquals("remote", instance.getAsync("remote.key").get());
+            assertNull(instance.getAsync("missing.key").get());
+            assertTrue(calls.isEmpty());
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testGetByPrefix() {
+        FileResolver files = new FileResolver(Arrays.asList(propertyPathOne, propertyPathTwo), false, false, 0);
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().build(),
+                Arrays.<Resolver> asList(new SystemResolver(), files));
+        System.setProperty("frt.key.two", "2");
+        try {
+            SortedMap<String, String> result = instance.getByPrefix("frt.key.");
+            assertEquals(Arrays.asList("frt.key.four", "frt.key.one", "frt.key.three", "frt.key.two"),
+                    new ArrayList<>(result.keySet()));
+            assertEquals("2", result.get("frt.key.two"));
+            assertEquals("III", result.get("frt.key.three"));
+            assertTrue(instance.getByPrefix("frt.key.five").isEmpty());
+            assertEquals("four", instance.withPrefix("frt.key.").get("four"));
+        } finally {
+            System.clearProperty("frt.key.two");
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testListeners() throws IOException {
+        final List<String> seen = new ArrayList<>();
+        PropertyListener listener = new PropertyListener() {
+            @Override
+            public void changed(final String key, final String oldValue, final String newValue) {
+                seen.add(String.format("%s:%s->%s", key, oldValue, newValue));
+            }
+        };
+        Executor direct = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        };
+        FileResolver files = new FileResolver(Arrays.asList(propertyPathOne, propertyPathTwo), false, false, 0);
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().withCaching().withListenerExecutor(direct).build(),
+                Arrays.<Resolver> asList(files));
+        try {
+            instance.addListener("frt.key.three", listener);
+            instance.addListener("frt.key.one", listener);
+            instance.addPrefixListener("frt.key.f", listener);
+            assertEquals("III", instance.get("frt.key.three"));
+
+            Properties properties = new Properties();
+            properties.setProperty("frt.key.three", "3");
+            properties.setProperty("frt.key.five", "five");
+            try (FileOutputStream stream = new FileOutputStream(propertyPathTwo.toString())) {
+                properties.store(stream, null);
+            }
+            files.reload();
+            Collections.sort(seen);
+            assertEquals(Arrays.asList("frt.key.five:null->five", "frt.key.four:four->null", "frt.key.three:III->3"), seen);
+            assertEquals("3", instance.get("frt.key.three"));
+
+            seen.clear();
+            instance.removeListener(listener);
+            properties.setProperty("frt.key.three", "4");
+            try (FileOutputStream stream = new FileOutputStream(propertyPathTwo.toString())) {
+                properties.store(stream, null);
+            }
+            files.reload();
+            assertEquals("4", instance.get("frt.key.three"));
+            assertTrue(seen.isEmpty());
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testListenerThread() throws IOException, InterruptedException {
+        final BlockingQueue<String> seen = new LinkedBlockingQueue<>();
+        PropertyListener listener = new PropertyListener() {
+            @Override
+            public void changed(final String key, final String oldValue, final String newValue) {
+                seen.add(Thread.currentThread().getName() + ":" + newValue);
+            }
+        };
+        FileResolver files = new FileResolver(Arrays.asList(propertyPathOne, propertyPathTwo), false, false, 0);
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().build(), Arrays.<Resolver> asList(files));
+        try {
+            instance.addListener("frt.key.three", listener);
+            Properties properties = new Properties();
+            for (int i = 0; i < 3; i++) {
+                properties.setProperty("frt.key.three", Integer.toString(i));
+                try (FileOutputStream stream = new FileOutputStream(propertyPathTwo.toString())) {
+                    properties.store(stream, null);
+                }
+                files.reload();
+            }
+            for (int i = 0; i < 3; i++) {
+                assertEquals("PropertySource-Listeners:" + i, seen.poll(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testNegativeCache() {
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().withNegativeCaching().build(),
+                Arrays.<Resolver> asList(new SystemResolver()));
+        assertNull(instance.get(TESTKEY));
+        assertNull(instance.get(TESTKEY));
+        assertEquals(1, instance.getNegativeCache().getHitCount());
+        assertEquals(1, instance.getNegativeCache().getMissCount());
+
+        System.setProperty(TESTKEY, "42");
+        try {
+            assertNull(instance.get(TESTKEY));
+        } finally {
+            System.clearProperty(TESTKEY);
+        }
+    }
+
+    @Test
+    public void testNegativeCacheInvalidatedOnReload() {
+        final ReloadSupport support = new ReloadSupport();
+        final Properties properties = new Properties();
+        ReloadableResolver reloadable = new ReloadableResolver() {
+            @Override
+            public String get(final String key) {
+                return properties.getProperty(key);
+            }
+
+            @Override
+            public void addReloadListener(final ReloadListener listener) {
+                support.add(listener);
+            }
+
+            @Override
+            public void removeReloadListener(final ReloadListener listener) {
+                support.remove(listener);
+            }
+        };
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().withNegativeCaching().build(),
+                Arrays.<Resolver> asList(reloadable));
+
+        assertNull(instance.get("late.key"));
+        properties.setProperty("late.key", "arrived");
+        assertNull(instance.get("late.key"));
+
+        support.fire(new ReloadEvent(reloadable));
+        assertEquals("arrived", instance.get("late.key"));
+    }
+
     @Test
     public void testFileResolution() {
         assertEquals("one", source.get("frt.key.one"));
@@ -124,6 +633,37 @@ public class PropertyResolverTest {
         assertEquals(0, source.getNumber(TESTKEY));
     }
 
+    @Test
+    public void testTypedValues() {
+        assertEquals(7L, source.getLong(TESTKEY, 7L));
+        assertEquals(1.5, source.getDouble(TESTKEY, 1.5), 0.0);
+        assertEquals(Duration.ofSeconds(3), source.getDuration(TESTKEY, Duration.ofSeconds(3)));
+        assertEquals(10, source.getSize(TESTKEY, 10));
+        assertEquals(TimeUnit.DAYS, source.getEnum(TESTKEY, TimeUnit.class, TimeUnit.DAYS));
+        assertTrue(source.getList(TESTKEY).isEmpty());
+        try {
+            System.setProperty(TESTKEY, "12345678901");
+            assertEquals(12345678901L, source.getLong(TESTKEY, 7L));
+            assertEquals(12345678901.0, source.getDouble(TESTKEY, 1.5), 0.0);
+            assertEquals(Duration.ofMillis(12345678901L), source.getDuration(TESTKEY, null));
+            assertEquals(12345678901L, source.getSize(TESTKEY, 10));
+            assertEquals(TimeUnit.DAYS, source.getEnum(TESTKEY, TimeUnit.class, TimeUnit.DAYS));
+            assertEquals(Arrays.asList("12345678901"), source.getList(TESTKEY));
+
+            System.setProperty(TESTKEY, "hours, 90s");
+            assertEquals(7L, source.getLong(TESTKEY, 7L));
+            assertEquals(Duration.ofSeconds(3), source.getDuration(TESTKEY, Duration.ofSeconds(3)));
+            assertEquals(Arrays.asList("hours", "90s"), source.getList(TESTKEY));
+
+            System.setProperty(TESTKEY, "hours");
+            assertEquals(TimeUnit.HOURS, source.getEnum(TESTKEY, TimeUnit.class, TimeUnit.DAYS));
+            System.setProperty(TESTKEY, "2 MiB");
+            assertEquals(2 * 1024 * 1024, source.getSize(TESTKEY, 10));
+        } finally {
+            System.clearProperty(TESTKEY);
+        }
+    }
+
     @Test
     public void testKnownFlag() {
         assertFalse(source.getFlag(TESTKEY));
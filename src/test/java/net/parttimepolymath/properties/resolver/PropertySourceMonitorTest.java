@@ -0,0 +1,75 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+import net.parttimepolymath.properties.PropertySourceConfig;
+
+public class PropertySourceMonitorTest {
+
+    @Test
+    public void testRegistered() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        PropertySourceConfig config = PropertySourceConfig.builder().withCaching().withJmx("monitor test").build();
+        PropertyResolver instance = new PropertyResolver(config, Arrays.<Resolver> asList(new NullResolver()));
+        ObjectName name = new ObjectName(PropertySourceMonitor.DOMAIN + ":type=PropertySource,name=\"monitor test\"");
+        try {
+            assertTrue(server.isRegistered(name));
+            instance.get("no.such.key");
+            instance.get("no.such.key");
+
+            assertEquals(2L, server.getAttribute(name, "CacheMissCount"));
+            assertEquals(0L, server.getAttribute(name, "CacheHitCount"));
+            assertEquals(0L, server.getAttribute(name, "CacheEvictionCount"));
+            assertEquals(0L, server.getAttribute(name, "NegativeCacheHitCount"));
+            assertEquals(0L, server.getAttribute(name, "NegativeCacheMissCount"));
+            CompositeData[] resolvers = (CompositeData[]) server.getAttribute(name, "Resolvers");
+            assertEquals(1, resolvers.length);
+            assertEquals("MergedResolver", resolvers[0].get("name"));
+            assertEquals(2L, resolvers[0].get("missCount"));
+            assertEquals(2L, ((CompositeData) resolvers[0].get("lookupLatency")).get("count"));
+        } finally {
+            instance.close();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testDuplicateName() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        PropertySourceConfig config = PropertySourceConfig.builder().withJmx("duplicate").build();
+        PropertyResolver first = new PropertyResolver(config, Arrays.<Resolver> asList(new NullResolver()));
+        PropertyResolver second = new PropertyResolver(config, Arrays.<Resolver> asList(new NullResolver()));
+        PropertySourceMonitor monitor = new PropertySourceMonitor(second, "duplicate");
+        try {
+            assertFalse(monitor.register());
+            second.close();
+            assertTrue(server.isRegistered(monitor.getObjectName()));
+        } finally {
+            first.close();
+        }
+        assertFalse(server.isRegistered(monitor.getObjectName()));
+        monitor.unregister();
+    }
+
+    @Test
+    public void testNotRegistered() {
+        PropertyResolver instance = new PropertyResolver(PropertySourceConfig.builder().build(),
+                Arrays.<Resolver> asList(new NullResolver()));
+        PropertySourceMonitor monitor = new PropertySourceMonitor(instance, "unregistered");
+        monitor.unregister();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(monitor.getObjectName()));
+        assertEquals(0, monitor.getResolvers().get(0).getHitCount());
+        assertEquals(String.format("PropertySourceMonitor [objectName=%s]", monitor.getObjectName()), monitor.toString());
+    }
+}
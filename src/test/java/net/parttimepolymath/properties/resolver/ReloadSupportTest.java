@@ -0,0 +1,59 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ReloadSupportTest {
+
+    @Test
+    public void testChangedKeys() {
+        Map<String, String> before = new HashMap<>();
+        before.put("same", "value");
+        before.put("changed", "old");
+        before.put("removed", "gone");
+        Map<String, String> after = new HashMap<>();
+        after.put("same", "value");
+        after.put("changed", "new");
+        after.put("added", "here");
+
+        assertEquals(new HashSet<>(Arrays.asList("changed", "removed", "added")), ReloadSupport.changedKeys(before, after));
+        assertTrue(ReloadSupport.changedKeys(before, before).isEmpty());
+    }
+
+    @Test
+    public void testFire() {
+        final AtomicInteger calls = new AtomicInteger();
+        ReloadListener failing = new ReloadListener() {
+            @Override
+            public void reloaded(final ReloadEvent event) {
+                throw new IllegalStateException("expected");
+            }
+        };
+        ReloadListener counting = new ReloadListener() {
+            @Override
+            public void reloaded(final ReloadEvent event) {
+                calls.incrementAndGet();
+                assertNull(event.getChangedKeys());
+            }
+        };
+        ReloadSupport instance = new ReloadSupport();
+        instance.add(failing);
+        instance.add(counting);
+        instance.add(null);
+        instance.fire(new ReloadEvent(new NullResolver()));
+        assertEquals(1, calls.get());
+
+        instance.remove(counting);
+        instance.fire(new ReloadEvent(new NullResolver()));
+        assertEquals(1, calls.get());
+    }
+}
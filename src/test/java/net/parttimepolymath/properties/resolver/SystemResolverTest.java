@@ -1,7 +1,11 @@
 package net.parttimepolymath.properties.resolver;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SortedMap;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -34,4 +38,13 @@ public class SystemResolverTest {
         assertNull(instance.get("this.should.never.exist.unless.you.really.try.hard"));
     }
 
+    @Test
+    public void testGetByPrefix() {
+        SortedMap<String, String> result = instance.getByPrefix("java.");
+        assertEquals(System.getProperty("java.class.path"), result.get("java.class.path"));
+        for (String key : result.keySet()) {
+            assertTrue(key.startsWith("java."));
+        }
+        assertTrue(instance.getByPrefix("this.should.never.exist.").isEmpty());
+    }
 }
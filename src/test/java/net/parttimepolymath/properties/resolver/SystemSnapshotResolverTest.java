@@ -0,0 +1,89 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class SystemSnapshotResolverTest {
+    private static final String TESTKEY = "net.partimepolymath.snapshot.value";
+
+    @After
+    public void teardown() {
+        System.clearProperty(TESTKEY);
+    }
+
+    @Test
+    public void testResolvable() {
+        SystemSnapshotResolver instance = new SystemSnapshotResolver();
+        assertNotNull(instance.get("java.class.path"));
+        assertEquals(System.getProperty("java.class.path"), instance.getSnapshot().get("java.class.path"));
+        assertNull(instance.get(null));
+        assertNull(instance.get(""));
+        assertNull(instance.get("this.should.never.exist.unless.you.really.try.hard"));
+    }
+
+    @Test
+    public void testGetByPrefix() {
+        SystemSnapshotResolver instance = new SystemSnapshotResolver();
+        assertEquals(System.getProperty("java.class.path"), instance.getByPrefix("java.").get("java.class.path"));
+        assertTrue(instance.getByPrefix("this.should.never.exist.").isEmpty());
+    }
+
+    @Test
+    public void testRefresh() {
+        SystemSnapshotResolver instance = new SystemSnapshotResolver();
+        final AtomicReference<ReloadEvent> lastEvent = new AtomicReference<>();
+        instance.addReloadListener(new ReloadListener() {
+            @Override
+            public void reloaded(final ReloadEvent event) {
+                lastEvent.set(event);
+            }
+        });
+
+        System.setProperty(TESTKEY, "one");
+        assertNull(instance.get(TESTKEY));
+        instance.refresh();
+        assertEquals("one", instance.get(TESTKEY));
+        assertEquals(Collections.singleton(TESTKEY), lastEvent.get().getChangedKeys());
+
+        // a refresh that finds nothing changed does not tell listeners
+        lastEvent.set(null);
+        instance.refresh();
+        assertNull(lastEvent.get());
+
+        System.clearProperty(TESTKEY);
+        instance.refresh();
+        assertNull(instance.get(TESTKEY));
+        assertEquals(Collections.singleton(TESTKEY), lastEvent.get().getChangedKeys());
+    }
+
+    @Test
+    public void testPeriodicRefresh() throws InterruptedException {
+        SystemSnapshotResolver instance = new SystemSnapshotResolver(10);
+        final CountDownLatch latch = new CountDownLatch(1);
+        instance.addReloadListener(new ReloadListener() {
+            @Override
+            public void reloaded(final ReloadEvent event) {
+                if (event.getChangedKeys().contains(TESTKEY)) {
+                    latch.countDown();
+                }
+            }
+        });
+        try {
+            System.setProperty(TESTKEY, "two");
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals("two", instance.get(TESTKEY));
+        } finally {
+            instance.close();
+        }
+    }
+}
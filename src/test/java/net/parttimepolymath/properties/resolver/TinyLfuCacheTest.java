@@ -0,0 +1,121 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TinyLfuCacheTest {
+
+    @Test
+    public void testGetPutRemove() {
+        TinyLfuCache<String, String> instance = new TinyLfuCache<>(10);
+        assertNull(instance.get("key"));
+        assertNull(instance.get(null));
+        instance.put("key", "one");
+        assertEquals("one", instance.get("key"));
+        instance.put("key", "two");
+        assertEquals("two", instance.get("key"));
+        instance.remove("key");
+        assertNull(instance.get("key"));
+        assertEquals(0, instance.size());
+        instance.remove(null);
+    }
+
+    @Test
+    public void testPutIfAbsent() {
+        TinyLfuCache<String, String> instance = new TinyLfuCache<>(10);
+        assertNull(instance.putIfAbsent("key", "one"));
+        assertEquals("one", instance.putIfAbsent("key", "two"));
+        assertEquals("one", instance.get("key"));
+    }
+
+    @Test
+    public void testClear() {
+        TinyLfuCache<String, String> instance = new TinyLfuCache<>(10);
+        for (int i = 0; i < 10; i++) {
+            instance.put("key" + i, "value");
+        }
+        instance.clear();
+        assertEquals(0, instance.size());
+        instance.put("key", "value");
+        assertEquals("value", instance.get("key"));
+    }
+
+    @Test
+    public void testBounded() {
+        TinyLfuCache<Integer, Integer> instance = new TinyLfuCache<>(100);
+        for (int i = 0; i < 10000; i++) {
+            instance.put(i, i);
+        }
+        assertEquals(100, instance.size());
+        assertEquals(100, instance.getMaximumSize());
+        assertEquals(9900, instance.getEvictionCount());
+        assertEquals(1, new TinyLfuCache<String, String>(-5).getMaximumSize());
+    }
+
+    @Test
+    public void testFrequentEntriesSurviveScan() {
+        TinyLfuCache<Integer, Integer> instance = new TinyLfuCache<>(100);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                instance.put(i, i);
+                instance.get(i);
+            }
+        }
+        // a scan of one-off keys, much larger than the cache
+        for (int i = 1000; i < 11000; i++) {
+            instance.put(i, i);
+        }
+        int kept = 0;
+        for (int i = 0; i < 50; i++) {
+            kept += instance.get(i) == null ? 0 : 1;
+        }
+        assertTrue("kept " + kept, kept >= 45);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final TinyLfuCache<Integer, Integer> instance = new TinyLfuCache<>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int seed = t;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for (int i = 0; i < 20000; i++) {
+                            int key = (i * 31 + seed) % 256;
+                            Integer value = instance.get(key);
+                            if (value != null && value != key) {
+                                return false;
+                            }
+                            if (i % 7 == 0) {
+                                instance.remove(key);
+                            } else {
+                                instance.putIfAbsent(key, key);
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        instance.put(-1, -1);
+        assertTrue(instance.size() <= 64);
+    }
+}
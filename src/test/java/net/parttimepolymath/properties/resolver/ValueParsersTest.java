@@ -0,0 +1,96 @@
+package net.parttimepolymath.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ValueParsersTest {
+
+    @Test
+    public void testWhiteSpaceIgnored() {
+        assertEquals(Integer.valueOf(42), ValueParsers.INTEGER.parse(" 42 "));
+        assertEquals(Long.valueOf(42), ValueParsers.LONG.parse("42\t"));
+        assertEquals(Double.valueOf(4.2), ValueParsers.DOUBLE.parse(" 4.2"));
+        assertEquals(Boolean.TRUE, ValueParsers.BOOLEAN.parse("true "));
+        assertEquals(Long.valueOf(64 * 1024), ValueParsers.SIZE.parse(" 64k "));
+        assertEquals(Duration.ofSeconds(1), ValueParsers.DURATION.parse(" 1s "));
+    }
+
+    @Test
+    public void testDuration() {
+        assertEquals(Duration.ofMillis(500), ValueParsers.parseDuration("500"));
+        assertEquals(Duration.ofMillis(500), ValueParsers.parseDuration("500ms"));
+        assertEquals(Duration.ofNanos(12), ValueParsers.parseDuration("12ns"));
+        assertEquals(Duration.ofNanos(12000), ValueParsers.parseDuration("12us"));
+        assertEquals(Duration.ofSeconds(30), ValueParsers.parseDuration(" 30 s "));
+        assertEquals(Duration.ofMinutes(5), ValueParsers.parseDuration("5m"));
+        assertEquals(Duration.ofHours(2), ValueParsers.parseDuration("2H"));
+        assertEquals(Duration.ofDays(1), ValueParsers.parseDuration("1d"));
+        assertEquals(Duration.ofSeconds(90), ValueParsers.parseDuration("PT1M30S"));
+        assertEquals(TimeUnit.DAYS.toMillis(1), ValueParsers.parseDuration("p1d").toMillis());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadDurationUnit() {
+        ValueParsers.parseDuration("5 fortnights");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadDurationNumber() {
+        ValueParsers.parseDuration("ms");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadIsoDuration() {
+        ValueParsers.parseDuration("PT");
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(512, ValueParsers.parseSize("512"));
+        assertEquals(512, ValueParsers.parseSize("512b"));
+        assertEquals(64 * 1024, ValueParsers.parseSize("64k"));
+        assertEquals(64 * 1024, ValueParsers.parseSize("64KB"));
+        assertEquals(10L * 1024 * 1024, ValueParsers.parseSize("10MB"));
+        assertEquals(2L * 1024 * 1024 * 1024, ValueParsers.parseSize("2 GiB"));
+        assertEquals(1024L * 1024 * 1024 * 1024, ValueParsers.parseSize("1t"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadSizeUnit() {
+        ValueParsers.parseSize("12q");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeSize() {
+        ValueParsers.parseSize("-1k");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOversize() {
+        ValueParsers.parseSize("9000000000t");
+    }
+
+    @Test
+    public void testList() {
+        assertEquals(Arrays.asList("a", "b", "c"), ValueParsers.parseList(" a, b,,c ,"));
+        assertTrue(ValueParsers.parseList(" , ").isEmpty());
+    }
+
+    @Test
+    public void testEnum() {
+        ValueParser<TimeUnit> parser = ValueParsers.forEnum(TimeUnit.class);
+        assertEquals(TimeUnit.SECONDS, parser.parse("SECONDS"));
+        assertEquals(TimeUnit.SECONDS, parser.parse(" seconds"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadEnum() {
+        ValueParsers.forEnum(TimeUnit.class).parse("fortnights");
+    }
+}